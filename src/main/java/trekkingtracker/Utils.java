@@ -2,7 +2,6 @@ package trekkingtracker;
 
 import trekkingtracker.data.Person;
 import trekkingtracker.data.PersonAphabeticComparator;
-import trekkingtracker.ui.MainApp;
 
 import java.util.*;
 
@@ -12,27 +11,6 @@ public final class Utils {
     private Utils() {
     }
     
-    /**
-     * Creates a {@code Map} from start number to participant and reports all duplicates.
-     *
-     * @param participants
-     *         the {@code Map} shall be created for
-     * @return the {@code Map} from start number to participant
-     */
-    public static Map<Integer, Person> getStartNumberToParticipantMap(Collection<Person> participants) {
-        Map<Integer, Person> startNumbersToPersons = new HashMap<>(participants.size());
-        for (Person participant : participants) {
-            Integer number = participant.getNumber();
-            if (number != null) {
-                Person alreadyExisting = startNumbersToPersons.computeIfAbsent(number, x -> participant);
-                if (!alreadyExisting.equals(participant)) MainApp.printInfo(
-                        String.format("Starting number %d is in use by %s and %s. Please fix that immediately!",
-                                alreadyExisting.getNumber(), participant, alreadyExisting));
-            }
-        }
-        return startNumbersToPersons;
-    }
-    
     /**
      * Creates a view containing the latest state of all given participants.
      *
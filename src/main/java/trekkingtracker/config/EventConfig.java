@@ -0,0 +1,26 @@
+package trekkingtracker.config;
+
+import config.Config;
+import config.Setting;
+
+/**
+ * Configuration for the dispatching of events between the persistence and the ui.
+ */
+public class EventConfig extends Config {
+    /**
+     * Which events are kept in the order they have been published: {@code global} dispatches all events one after
+     * another, {@code participant} keeps the events relating to the same participant in order and dispatches the
+     * others concurrently.
+     */
+    @Setting(descriptor = "ordering", defaultValue = "participant")
+    public String ordering;
+    /** The number of background threads running the event listeners, ignored for {@code global} ordering */
+    @Setting(descriptor = "worker_threads", defaultValue = "4")
+    public int workerThreads;
+    /**
+     * The time in milliseconds the delivery of events to low-priority ui elements (e.g. the overview) is delayed, so
+     * the events published meanwhile are merged
+     */
+    @Setting(descriptor = "background_delay_ms", defaultValue = "250")
+    public int backgroundDelayMillis;
+}
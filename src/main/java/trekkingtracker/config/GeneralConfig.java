@@ -14,4 +14,13 @@ public class GeneralConfig extends Config {
     /** Configuration for the input table */
     @NestedConfig(prefix = "table.")
     public TableConfig tableConfig;
+    /** Configuration for the persistence of the participant data */
+    @NestedConfig(prefix = "store.")
+    public StoreConfig storeConfig;
+    /** Configuration for the dispatching of events */
+    @NestedConfig(prefix = "event.")
+    public EventConfig eventConfig;
+    /** Configuration for the proposals of free start numbers */
+    @NestedConfig(prefix = "start_numbers.")
+    public StartNumberConfig startNumberConfig;
 }
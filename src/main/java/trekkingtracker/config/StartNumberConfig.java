@@ -0,0 +1,22 @@
+package trekkingtracker.config;
+
+import config.Config;
+import config.Setting;
+
+/**
+ * Configuration for the proposals of free start numbers.
+ */
+public class StartNumberConfig extends Config {
+    /** The highest start number to be proposed, the lowest one is 1 */
+    @Setting(descriptor = "max", defaultValue = "9999")
+    public int maxNumber;
+    /**
+     * The start numbers reserved for a {@code Category}, e.g. {@code TOUR:1-199,DOGTREKKING:200-399}. Participants of
+     * other {@code Categories} get numbers outside of all reserved ranges.
+     */
+    @Setting(descriptor = "reserved_ranges", isOptional = true)
+    public String reservedRanges = "";
+    /** The number of seconds a proposed start number is kept for the participant it has been proposed for */
+    @Setting(descriptor = "lease_seconds", defaultValue = "300")
+    public int leaseSeconds;
+}
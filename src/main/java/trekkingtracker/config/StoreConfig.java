@@ -0,0 +1,50 @@
+package trekkingtracker.config;
+
+import config.Config;
+import config.Setting;
+
+/**
+ * Configuration for the persistence of the participant data.
+ */
+public class StoreConfig extends Config {
+    /**
+     * Where the participant data is stored: {@code file} in an append-only data file or {@code h2} in an embedded H2
+     * database file. The other settings describe the data file, some of them apply to the database as well.
+     */
+    @Setting(descriptor = "backend", defaultValue = "file")
+    public String backend;
+    /**
+     * Tells when updates are written: {@code sync} writes and forces every update to the storage device before it
+     * counts as stored, {@code group} writes and forces all updates within the {@link #groupCommitWindowMillis} at
+     * once, {@code async} writes the updates in the background and lets them count as stored right away.
+     */
+    @Setting(descriptor = "durability", defaultValue = "sync")
+    public String durability;
+    /** The time in milliseconds updates are collected before they are written at once in {@code group} mode */
+    @Setting(descriptor = "group_commit_window", defaultValue = "10")
+    public int groupCommitWindowMillis;
+    /** The maximum number of updates waiting to be written in {@code async} mode, further updates will block */
+    @Setting(descriptor = "write_queue_capacity", defaultValue = "1000")
+    public int writeQueueCapacity;
+    /** The minimum time in seconds between two reports of the write statistics, {@code 0} disables the reports */
+    @Setting(descriptor = "statistics_interval", defaultValue = "0")
+    public int statisticsIntervalSeconds;
+    /**
+     * The number of updates after which a snapshot of the latest participant states is written in the background,
+     * so restoring won't have to replay all updates. {@code 0} disables the snapshots while running.
+     */
+    @Setting(descriptor = "snapshot_interval", defaultValue = "200")
+    public int snapshotInterval;
+    /**
+     * The format new data files are written in: {@code text} for human-readable lines or {@code binary} for compact
+     * records. Existing data files in another format are converted on startup.
+     */
+    @Setting(descriptor = "format", defaultValue = "text")
+    public String format;
+    /** The maximum number of backups of former data files to be kept, {@code 0} keeps all */
+    @Setting(descriptor = "backup_retention", defaultValue = "0")
+    public int backupRetention;
+    /** How backups of former data files are stored: {@code none} as they are or {@code gzip} compressed */
+    @Setting(descriptor = "backup_compression", defaultValue = "none")
+    public String backupCompression;
+}
@@ -0,0 +1,271 @@
+package trekkingtracker.data;
+
+import trekkingtracker.persistence.FileUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Immutable implementation of a participant. The hash code and the trip time are computed once on creation, so
+ * hashing and comparing don't need to allocate anything. Modifications create an adjusted copy via the {@code with}
+ * methods.
+ */
+public final class ImmutablePerson implements Person {
+    
+    /** The id identifying the participant, {@link #NO_ID} as long as none has been assigned */
+    private final int id;
+    /** The name */
+    private final String name;
+    /** The {@code Person's} birthday */
+    private final LocalDate birthday;
+    /** The trekking category */
+    private final Category category;
+    /** The number the participant got when starting */
+    private final Integer number;
+    /** The start time */
+    private final Instant start;
+    /** The time of arrival, i.e. when the {@code Person} finished its trip */
+    private final Instant stop;
+    /**
+     * {@code true} if the {@code Person} counts as finisher, otherwise {@code false}. Kept as set even without
+     * {@link #start} or {@link #stop}, like {@link PersonImpl} does, so a copy with both of them set is a finisher.
+     */
+    private final boolean finisher;
+    /** The time taken in milliseconds, or {@link #NO_TRIP_TIME} if the {@code Person} is no finisher */
+    private final long tripTimeMillis;
+    /** The {@link #id}, or the hash code of the {@link #name} as long as there's no id */
+    private final int hash;
+    
+    /**
+     * Creates a new {@code Person}.
+     *
+     * @param name
+     *         the name
+     * @param birthday
+     *         the {@code Person's} birthday
+     * @throws IllegalArgumentException
+     *         if the name contains invalid characters (@see FileUtils#isValid(String))
+     */
+    public ImmutablePerson(final String name, final LocalDate birthday) {
+        this(NO_ID, validate(name), Objects.requireNonNull(birthday), null, null, null, null, false);
+    }
+    
+    /**
+     * Creates a new {@code Person} with all field values.
+     *
+     * @param id
+     *         the id identifying the participant, {@link #NO_ID} if none has been assigned yet
+     * @param name
+     *         the name
+     * @param birthday
+     *         the {@code Person's} birthday
+     * @param category
+     *         the trekking category
+     * @param number
+     *         the starting number
+     * @param start
+     *         the start time
+     * @param stop
+     *         the time of arrival
+     * @param finisher
+     *         {@code true} if the {@code Person} counts as finisher, otherwise {@code false}. Note that {@link
+     *         #isFinisher()} will return {@code false} even when this value is set to {@code true} as long as
+     *         {@link #start} or {@link #stop} are not set.
+     */
+    private ImmutablePerson(final int id, final String name, final LocalDate birthday, final Category category,
+            final Integer number, final Instant start, final Instant stop, final boolean finisher) {
+        this.id = id;
+        this.name = name;
+        this.birthday = birthday;
+        this.category = category;
+        this.number = number;
+        this.start = start;
+        this.stop = stop;
+        this.finisher = finisher;
+        this.tripTimeMillis = isFinisher() ? stop.toEpochMilli() - start.toEpochMilli() : NO_TRIP_TIME;
+        this.hash = id != NO_ID ? id : name.hashCode();
+    }
+    
+    /**
+     * Returns an immutable {@code Person} with the field values of the given one.
+     *
+     * @param toCopy
+     *         whose field values shall be copied
+     * @return the given {@code Person} itself if it's immutable already, otherwise a copy
+     */
+    public static ImmutablePerson of(final Person toCopy) {
+        if (toCopy instanceof ImmutablePerson) return (ImmutablePerson) toCopy;
+        return new ImmutablePerson(toCopy.getId(), toCopy.getName(), toCopy.getBirthday(), toCopy.getCategory(),
+                toCopy.getNumber(), toCopy.getStart(), toCopy.getStop(), toCopy.isFinisher());
+    }
+    
+    /**
+     * Ensures the name is valid, so every immutable state of a participant can be written to the participant files.
+     *
+     * @param name
+     *         to be checked
+     * @return the given name
+     * @throws IllegalArgumentException
+     *         if the name contains invalid characters (@see FileUtils#isValid(String))
+     */
+    private static String validate(final String name) {
+        if (!FileUtils.isValid(name)) throw new IllegalArgumentException(name + " contains invalid characters.");
+        return name;
+    }
+    
+    /**
+     * Returns a copy with the given id.
+     *
+     * @param id
+     *         the id assigned by the store
+     * @return a copy with the given id
+     */
+    public ImmutablePerson withId(final int id) {
+        return new ImmutablePerson(id, name, birthday, category, number, start, stop, finisher);
+    }
+    
+    /**
+     * Returns a copy with the given name, identifying the same participant as long as there's an id.
+     *
+     * @param name
+     *         the new name
+     * @return a copy with the given name
+     * @throws IllegalArgumentException
+     *         if the name contains invalid characters (@see FileUtils#isValid(String))
+     */
+    public ImmutablePerson withName(final String name) {
+        return new ImmutablePerson(id, validate(name), birthday, category, number, start, stop, finisher);
+    }
+    
+    /**
+     * Returns a copy with the given {@code Category} of the trip.
+     *
+     * @param category
+     *         the {@code Category} of the trip
+     * @return a copy with the given {@code Category}
+     */
+    public ImmutablePerson withCategory(final Category category) {
+        return new ImmutablePerson(id, name, birthday, category, number, start, stop, finisher);
+    }
+    
+    /**
+     * Returns a copy with the given starting number.
+     *
+     * @param number
+     *         the starting number to be set
+     * @return a copy with the given starting number
+     */
+    public ImmutablePerson withNumber(final int number) {
+        return new ImmutablePerson(id, name, birthday, category, number, start, stop, finisher);
+    }
+    
+    /**
+     * Returns a copy with the given starting time.
+     *
+     * @param start
+     *         the starting time to be set
+     * @return a copy with the given starting time
+     */
+    public ImmutablePerson withStart(final Instant start) {
+        return new ImmutablePerson(id, name, birthday, category, number, start, stop, finisher);
+    }
+    
+    /**
+     * Returns a copy with the given time of arrival and finisher state, since both are set together when a {@code
+     * Person} arrives.
+     *
+     * @param stop
+     *         the time of arrival to be set
+     * @param finisher
+     *         {@code true} if the {@code Person} counts as finisher, otherwise {@code false}
+     * @return a copy with the given time of arrival and finisher state
+     */
+    public ImmutablePerson withStop(final Instant stop, final boolean finisher) {
+        return new ImmutablePerson(id, name, birthday, category, number, start, stop, finisher);
+    }
+    
+    @Override
+    public int getId() {
+        return id;
+    }
+    
+    @Override
+    public String getName() {
+        return name;
+    }
+    
+    @Override
+    public LocalDate getBirthday() {
+        return birthday;
+    }
+    
+    @Override
+    public Category getCategory() {
+        return category;
+    }
+    
+    @Override
+    public Integer getNumber() {
+        return number;
+    }
+    
+    @Override
+    public Instant getStart() {
+        return start;
+    }
+    
+    @Override
+    public Instant getStop() {
+        return stop;
+    }
+    
+    @Override
+    public boolean isFinisher() {
+        return (start != null && stop != null) && finisher;
+    }
+    
+    @Override
+    public Optional<Duration> getTripTime() {
+        return isFinisher() ? Optional.of(Duration.ofMillis(tripTimeMillis)) : Optional.empty();
+    }
+    
+    @Override
+    public long getTripTimeMillis() {
+        return tripTimeMillis;
+    }
+    
+    @Override
+    public String toString() {
+        return name;
+    }
+    
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+    
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o instanceof ImmutablePerson) {
+            final ImmutablePerson person = (ImmutablePerson) o;
+            if (id != NO_ID || person.id != NO_ID) return id == person.id;
+            return hash == person.hash && name.equals(person.name) && birthday.equals(person.birthday);
+        } else if (o instanceof Person) {
+            final Person person = (Person) o;
+            if (id != NO_ID || person.getId() != NO_ID) return id == person.getId();
+            return name.equals(person.getName()) && birthday.equals(person.getBirthday());
+        } else return false;
+    }
+    
+    @Override
+    public boolean deepEquals(final Person p) {
+        return equals(p) && name.equals(p.getName()) && birthday.equals(p.getBirthday())
+                && Objects.equals(number, p.getNumber()) && Objects.equals(start, p.getStart())
+                && Objects.equals(stop, p.getStop()) && category == p.getCategory() && isFinisher() == p.isFinisher()
+                && tripTimeMillis == p.getTripTimeMillis();
+    }
+}
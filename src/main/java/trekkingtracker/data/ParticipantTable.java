@@ -0,0 +1,412 @@
+package trekkingtracker.data;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Holds the latest state of each participant column by column, so rankings and statistics scan primitive arrays
+ * instead of unboxing the fields of the {@code Person} instances. Each participant takes the row of its id, which
+ * works since the ids are handed out in ascending order. Kept up to date state by state. Thread-safe.
+ */
+public final class ParticipantTable {
+    /** Held by the {@link #numbers} column for participants without start number */
+    private static final int NO_NUMBER = Integer.MIN_VALUE;
+    /** Held by the {@link #starts} and {@link #stops} columns for participants without time */
+    private static final long NO_TIME = Long.MIN_VALUE;
+    /** Held by the {@link #categories} column for empty rows and participants without {@code Category} */
+    private static final byte NO_CATEGORY = -1;
+    /** Orders participants with the same trip time, the way {@link PersonTripTimeComparator} does */
+    private static final Comparator<Person> NAME_ORDER = Comparator.comparing(Person::getName).thenComparing(
+            Person::getBirthday);
+    /** The number of rows the columns are created with */
+    private static final int INITIAL_ROWS = 16;
+    
+    /** The latest states, to be returned by the queries. {@code null} for rows without participant. */
+    private Person[] states = new Person[INITIAL_ROWS];
+    /** The start numbers, {@link #NO_NUMBER} if there's none */
+    private int[] numbers = new int[INITIAL_ROWS];
+    /** The start times in epoch milliseconds, {@link #NO_TIME} if there's none */
+    private long[] starts = new long[INITIAL_ROWS];
+    /** The stop times in epoch milliseconds, {@link #NO_TIME} if there's none */
+    private long[] stops = new long[INITIAL_ROWS];
+    /** The ordinals of the {@code Categories}, {@link #NO_CATEGORY} if there's none */
+    private byte[] categories = new byte[INITIAL_ROWS];
+    /** Tells which rows hold a finisher */
+    private final BitSet finishers = new BitSet(INITIAL_ROWS);
+    /** The number of participants */
+    private int size = 0;
+    
+    /** Creates a new, empty {@code ParticipantTable}. */
+    public ParticipantTable() {
+        Arrays.fill(categories, NO_CATEGORY);
+    }
+    
+    /**
+     * Replaces all participants.
+     *
+     * @param participants
+     *         the latest state of each participant, all with id
+     * @throws IllegalArgumentException
+     *         if a participant has no id
+     */
+    public synchronized void replaceAll(final Collection<? extends Person> participants) {
+        Arrays.fill(states, null);
+        Arrays.fill(categories, NO_CATEGORY);
+        finishers.clear();
+        size = 0;
+        for (Person participant : participants)
+            update(participant);
+    }
+    
+    /**
+     * Sets the latest state of a participant.
+     *
+     * @param state
+     *         the new state, with id
+     * @throws IllegalArgumentException
+     *         if the state has no id
+     */
+    public synchronized void update(final Person state) {
+        int row = state.getId();
+        if (row == Person.NO_ID) throw new IllegalArgumentException(state + " has no id.");
+        if (row >= states.length) grow(row);
+        if (states[row] == null) size++;
+        states[row] = state;
+        Integer number = state.getNumber();
+        numbers[row] = number != null ? number : NO_NUMBER;
+        Instant start = state.getStart();
+        starts[row] = start != null ? start.toEpochMilli() : NO_TIME;
+        Instant stop = state.getStop();
+        stops[row] = stop != null ? stop.toEpochMilli() : NO_TIME;
+        Person.Category category = state.getCategory();
+        categories[row] = category != null ? (byte) category.ordinal() : NO_CATEGORY;
+        finishers.set(row, state.isFinisher());
+    }
+    
+    /**
+     * Removes a participant.
+     *
+     * @param id
+     *         the id of the participant
+     */
+    public synchronized void remove(final int id) {
+        if (id <= Person.NO_ID || id >= states.length || states[id] == null) return;
+        states[id] = null;
+        categories[id] = NO_CATEGORY;
+        finishers.clear(id);
+        size--;
+    }
+    
+    /**
+     * Returns the number of participants.
+     *
+     * @return the number of participants
+     */
+    public synchronized int size() {
+        return size;
+    }
+    
+    /**
+     * Ranks the participants of a {@code Category} in the order of {@link PersonTripTimeComparator}: finishers by their
+     * trip times first, then the others by their names. Only the finishers are sorted by their primitive trip times,
+     * the others all share {@link Person#NO_TRIP_TIME}.
+     *
+     * @param category
+     *         the {@code Category} to be ranked
+     * @return the participants of the {@code Category}, best first
+     */
+    public synchronized List<Person> ranking(final Person.Category category) {
+        byte ordinal = (byte) category.ordinal();
+        int[] rows = new int[size];
+        long[] tripTimes = new long[size];
+        Person[] others = new Person[size];
+        int finisherCount = 0;
+        int otherCount = 0;
+        for (int row = 1; row < states.length; row++) {
+            if (categories[row] != ordinal) continue;
+            if (finishers.get(row)) {
+                rows[finisherCount] = row;
+                tripTimes[finisherCount++] = stops[row] - starts[row];
+            } else others[otherCount++] = states[row];
+        }
+        sort(rows, tripTimes, finisherCount, this::compareNames);
+        Arrays.sort(others, 0, otherCount, NAME_ORDER);
+        List<Person> ranking = toStates(rows, finisherCount, finisherCount + otherCount);
+        ranking.addAll(Arrays.asList(others).subList(0, otherCount));
+        return ranking;
+    }
+    
+    /**
+     * Compares two rows by the names and birthdays of their participants, the way {@link PersonTripTimeComparator}
+     * does for the same trip time.
+     *
+     * @param a
+     *         the first row
+     * @param b
+     *         the second row
+     * @return a negative number if the first row comes first, a positive number if the second one does, {@code 0} if
+     * both have the same name and birthday
+     */
+    private int compareNames(final int a, final int b) {
+        return NAME_ORDER.compare(states[a], states[b]);
+    }
+    
+    /**
+     * Lists the participants who have started, by their start time.
+     *
+     * @param arrived
+     *         {@code true} for the ones who have arrived already, {@code false} for the ones still on track
+     * @return the participants, earliest start first
+     */
+    public synchronized List<Person> byStartTime(final boolean arrived) {
+        int[] rows = new int[size];
+        long[] startTimes = new long[size];
+        int count = 0;
+        for (int row = 1; row < states.length; row++) {
+            if (states[row] == null || starts[row] == NO_TIME || arrived == (stops[row] == NO_TIME)) continue;
+            rows[count] = row;
+            startTimes[count++] = starts[row];
+        }
+        sort(rows, startTimes, count, (a, b) -> 0);
+        return toStates(rows, count, count);
+    }
+    
+    /**
+     * Looks up the participant holding a start number.
+     *
+     * @param number
+     *         the start number
+     * @return the participant with the lowest id holding the number, empty if there's none
+     */
+    public synchronized Optional<Person> findByStartNumber(final int number) {
+        for (int row = 1; row < states.length; row++)
+            if (numbers[row] == number && states[row] != null) return Optional.of(states[row]);
+        return Optional.empty();
+    }
+    
+    /**
+     * Counts the participants of a {@code Category} by their progress.
+     *
+     * @param category
+     *         the {@code Category} to be summarized
+     * @return the summary of the {@code Category}
+     */
+    public synchronized Summary summarize(final Person.Category category) {
+        byte ordinal = (byte) category.ordinal();
+        int participants = 0;
+        int started = 0;
+        int arrived = 0;
+        long fastest = Person.NO_TRIP_TIME;
+        for (int row = 1; row < states.length; row++) {
+            if (categories[row] != ordinal) continue;
+            participants++;
+            if (starts[row] != NO_TIME) started++;
+            if (stops[row] != NO_TIME) arrived++;
+        }
+        int finisherCount = 0;
+        for (int row = finishers.nextSetBit(0); row >= 0; row = finishers.nextSetBit(row + 1)) {
+            if (categories[row] != ordinal) continue;
+            finisherCount++;
+            fastest = Math.min(fastest, stops[row] - starts[row]);
+        }
+        return new Summary(category, participants, started, arrived, finisherCount, fastest);
+    }
+    
+    /**
+     * Enlarges the columns so they hold the given row.
+     *
+     * @param row
+     *         the row to be held
+     */
+    private void grow(final int row) {
+        int length = Math.max(states.length * 2, row + 1);
+        int former = states.length;
+        states = Arrays.copyOf(states, length);
+        numbers = Arrays.copyOf(numbers, length);
+        starts = Arrays.copyOf(starts, length);
+        stops = Arrays.copyOf(stops, length);
+        categories = Arrays.copyOf(categories, length);
+        Arrays.fill(categories, former, length, NO_CATEGORY);
+    }
+    
+    /**
+     * Returns the states of the given rows.
+     *
+     * @param rows
+     *         the rows in the order they shall be returned
+     * @param count
+     *         the number of rows to be returned
+     * @param capacity
+     *         the number of states the returned list shall be able to hold without growing
+     * @return the states of the rows
+     */
+    private List<Person> toStates(final int[] rows, final int count, final int capacity) {
+        List<Person> found = new ArrayList<>(capacity);
+        for (int i = 0; i < count; i++)
+            found.add(states[rows[i]]);
+        return found;
+    }
+    
+    /**
+     * Sorts rows by a key with a stable merge sort, so the keys don't need to be boxed.
+     *
+     * @param rows
+     *         the rows to be sorted, sorted in place
+     * @param keys
+     *         the key of each row, at the same position. Sorted along with the rows.
+     * @param count
+     *         the number of rows to be sorted
+     * @param tieBreak
+     *         compares two rows with the same key
+     */
+    private static void sort(int[] rows, long[] keys, final int count, final IntBinaryOperator tieBreak) {
+        int[] sourceRows = rows;
+        long[] sourceKeys = keys;
+        int[] targetRows = new int[count];
+        long[] targetKeys = new long[count];
+        for (int width = 1; width < count; width *= 2) {
+            for (int from = 0; from < count; from += 2 * width) {
+                int middle = Math.min(from + width, count);
+                int to = Math.min(from + 2 * width, count);
+                int left = from;
+                int right = middle;
+                for (int i = from; i < to; i++) {
+                    boolean takeLeft = right >= to || left < middle && (sourceKeys[left] < sourceKeys[right]
+                            || sourceKeys[left] == sourceKeys[right]
+                            && tieBreak.applyAsInt(sourceRows[left], sourceRows[right]) <= 0);
+                    int taken = takeLeft ? left++ : right++;
+                    targetRows[i] = sourceRows[taken];
+                    targetKeys[i] = sourceKeys[taken];
+                }
+            }
+            int[] swappedRows = sourceRows;
+            sourceRows = targetRows;
+            targetRows = swappedRows;
+            long[] swappedKeys = sourceKeys;
+            sourceKeys = targetKeys;
+            targetKeys = swappedKeys;
+        }
+        if (sourceRows != rows) {
+            System.arraycopy(sourceRows, 0, rows, 0, count);
+            System.arraycopy(sourceKeys, 0, keys, 0, count);
+        }
+    }
+    
+    /** The progress of the participants of a {@code Category} */
+    public static final class Summary {
+        /** The summarized {@code Category} */
+        private final Person.Category category;
+        /** The number of participants */
+        private final int participants;
+        /** The number of participants who have started */
+        private final int started;
+        /** The number of participants who have arrived */
+        private final int arrived;
+        /** The number of finishers */
+        private final int finishers;
+        /** The fastest trip time in milliseconds, {@link Person#NO_TRIP_TIME} if there are no finishers */
+        private final long fastestTripTimeMillis;
+        
+        /**
+         * Creates a new {@code Summary}.
+         *
+         * @param category
+         *         the summarized {@code Category}
+         * @param participants
+         *         the number of participants
+         * @param started
+         *         the number of participants who have started
+         * @param arrived
+         *         the number of participants who have arrived
+         * @param finishers
+         *         the number of finishers
+         * @param fastestTripTimeMillis
+         *         the fastest trip time in milliseconds, {@link Person#NO_TRIP_TIME} if there are no finishers
+         */
+        private Summary(Person.Category category, int participants, int started, int arrived, int finishers,
+                long fastestTripTimeMillis) {
+            this.category = category;
+            this.participants = participants;
+            this.started = started;
+            this.arrived = arrived;
+            this.finishers = finishers;
+            this.fastestTripTimeMillis = fastestTripTimeMillis;
+        }
+        
+        /**
+         * Returns the summarized {@code Category}.
+         *
+         * @return the summarized {@code Category}
+         */
+        public Person.Category getCategory() {
+            return category;
+        }
+        
+        /**
+         * Returns the number of participants.
+         *
+         * @return the number of participants
+         */
+        public int getParticipants() {
+            return participants;
+        }
+        
+        /**
+         * Returns the number of participants who have started.
+         *
+         * @return the number of participants who have started, including the ones who have arrived
+         */
+        public int getStarted() {
+            return started;
+        }
+        
+        /**
+         * Returns the number of participants who have arrived.
+         *
+         * @return the number of participants who have arrived, including the finishers
+         */
+        public int getArrived() {
+            return arrived;
+        }
+        
+        /**
+         * Returns the number of finishers.
+         *
+         * @return the number of finishers
+         */
+        public int getFinishers() {
+            return finishers;
+        }
+        
+        /**
+         * Returns the fastest trip time.
+         *
+         * @return the fastest trip time in milliseconds, {@link Person#NO_TRIP_TIME} if there are no finishers
+         */
+        public long getFastestTripTimeMillis() {
+            return fastestTripTimeMillis;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("%s: %d participants, %d started, %d arrived, %d finishers", category, participants,
+                    started, arrived, finishers);
+        }
+        
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Summary)) return false;
+            final Summary that = (Summary) o;
+            return category == that.category && participants == that.participants && started == that.started
+                    && arrived == that.arrived && finishers == that.finishers
+                    && fastestTripTimeMillis == that.fastestTripTimeMillis;
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(category, participants, started, arrived, finishers, fastestTripTimeMillis);
+        }
+    }
+}
@@ -6,7 +6,10 @@ import java.time.LocalDate;
 import java.util.Optional;
 
 /**
- * Represents a participant. Use this interface to prevent modifications.
+ * Represents a participant. Use this interface to prevent modifications. A participant is identified by the id the
+ * store assigns to it, so it keeps its identity even if its name changes. Implementations are equal if their ids
+ * are, and use the id as their hash code. Participants without an id yet (see {@link #NO_ID}) are equal if their
+ * names and birthdays are and use the hash code of the name, they never equal a participant with an id.
  */
 public interface Person {
     /** The walking category this {@code Person} take part in */
@@ -23,6 +26,18 @@ public interface Person {
         UNKNOWN
     }
     
+    /** Returned by {@link #getId()} if the {@code Person} has not been assigned an id yet */
+    int NO_ID = 0;
+    /** Returned by {@link #getTripTimeMillis()} if the {@code Person} has no trip time */
+    long NO_TRIP_TIME = Long.MAX_VALUE;
+    
+    /**
+     * Returns the id which identifies the participant across all its states.
+     *
+     * @return the id, or {@link #NO_ID} if the participant has not been stored yet
+     */
+    int getId();
+    
     /**
      * Returns the name
      *
@@ -79,6 +94,17 @@ public interface Person {
      */
     Optional<Duration> getTripTime();
     
+    /**
+     * Returns the time the {@code Person} took to finish its trip as primitive value, so comparisons don't need to
+     * allocate anything.
+     *
+     * @return the time taken in milliseconds, or {@link #NO_TRIP_TIME} in case there's no start or stop, so
+     * finishers come first in an ascending order
+     */
+    default long getTripTimeMillis() {
+        return getTripTime().map(Duration::toMillis).orElse(NO_TRIP_TIME);
+    }
+    
     /**
      * Tells whether the given {@code Person} equals this one in all aspects
      *
@@ -13,6 +13,8 @@ import java.util.Optional;
  */
 public class PersonImpl implements Person {
     
+    /** The id identifying the participant, {@link #NO_ID} as long as none has been assigned */
+    private int id = NO_ID;
     /** The name */
     private final String name;
     /** The {@code Person's} birthday */
@@ -53,6 +55,7 @@ public class PersonImpl implements Person {
      *         whose field values shall be copied
      */
     public PersonImpl(Person toCopy) {
+        this.id = toCopy.getId();
         this.name = toCopy.getName();
         this.birthday = toCopy.getBirthday();
         this.category = toCopy.getCategory();
@@ -62,6 +65,11 @@ public class PersonImpl implements Person {
         this.finisher = toCopy.isFinisher();
     }
     
+    @Override
+    public int getId() {
+        return id;
+    }
+    
     @Override
     public String getName() {
         return name;
@@ -103,6 +111,21 @@ public class PersonImpl implements Person {
                 Duration.ofMillis(stop.toEpochMilli() - start.toEpochMilli())) : Optional.empty();
     }
     
+    @Override
+    public long getTripTimeMillis() {
+        return isFinisher() ? stop.toEpochMilli() - start.toEpochMilli() : NO_TRIP_TIME;
+    }
+    
+    /**
+     * Sets the id identifying the participant.
+     *
+     * @param id
+     *         the id assigned by the store
+     */
+    public void setId(final int id) {
+        this.id = id;
+    }
+    
     /**
      * Set the {@code Category} of the trip.
      *
@@ -162,7 +185,7 @@ public class PersonImpl implements Person {
     
     @Override
     public int hashCode() {
-        return Objects.hash(name);
+        return id != NO_ID ? id : name.hashCode();
     }
     
     @Override
@@ -170,16 +193,17 @@ public class PersonImpl implements Person {
         if (this == o) return true;
         if (o instanceof Person) {
             final Person person = (Person) o;
+            if (id != NO_ID || person.getId() != NO_ID) return id == person.getId();
             return Objects.equals(name, person.getName()) && Objects.equals(birthday, person.getBirthday());
         } else return false;
     }
     
     @Override
     public boolean deepEquals(final Person p) {
-        return equals(p) && Objects.equals(number, p.getNumber()) && Objects.equals(start,
+        return equals(p) && Objects.equals(name, p.getName()) && Objects.equals(birthday, p.getBirthday())
+                && Objects.equals(number, p.getNumber()) && Objects.equals(start,
                 p.getStart()) && Objects.equals(stop, p.getStop()) && Objects.equals(category,
-                p.getCategory()) && Objects.equals(number, p.getNumber()) && Objects.equals(isFinisher(),
-                p.isFinisher()) && Objects.equals(getTripTime(), p.getTripTime());
+                p.getCategory()) && isFinisher() == p.isFinisher() && getTripTimeMillis() == p.getTripTimeMillis();
     }
 }
 
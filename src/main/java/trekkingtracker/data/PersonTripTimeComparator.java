@@ -1,6 +1,5 @@
 package trekkingtracker.data;
 
-import java.time.Duration;
 import java.util.Comparator;
 
 /**
@@ -10,8 +9,6 @@ import java.util.Comparator;
 public class PersonTripTimeComparator implements Comparator<Person> {
     /** Static instance of this {@code PersonAphabeticComparator} class. */
     public static final PersonTripTimeComparator INSTANCE = new PersonTripTimeComparator();
-    /** {@code null} robust comparison of the trip times, meaning finisher will come first */
-    private static final Comparator<Duration> TIME_COMPARATOR = Comparator.nullsLast(Duration::compareTo);
     
     @Override
     public int compare(final Person p1, final Person p2) {
@@ -20,9 +17,8 @@ public class PersonTripTimeComparator implements Comparator<Person> {
         int catComp = p1.getCategory().compareTo(p2.getCategory());
         if (catComp != 0) return catComp;
         
-        Duration p1TripTime = p1.getTripTime().orElse(null);
-        Duration p2TripTime = p2.getTripTime().orElse(null);
-        int tripComp = TIME_COMPARATOR.compare(p1TripTime, p2TripTime);
+        // participants without trip time have the highest value, meaning finisher will come first
+        int tripComp = Long.compare(p1.getTripTimeMillis(), p2.getTripTimeMillis());
         if (tripComp != 0) return tripComp;
         
         int nameComp = p1.getName().compareTo(p2.getName());
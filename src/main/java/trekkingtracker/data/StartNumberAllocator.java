@@ -0,0 +1,373 @@
+package trekkingtracker.data;
+
+import trekkingtracker.config.StartNumberConfig;
+import trekkingtracker.data.Person.Category;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Proposes free start numbers to new participants. The numbers from {@code 1} up to the configured maximum are kept in
+ * a hierarchical bit set, so the next free number is found in a logarithmic number of steps no matter how many
+ * numbers are taken already. Each {@link Category} can have a range of numbers reserved for it, participants of
+ * other categories get numbers outside of all reserved ranges.
+ * <p>
+ * A proposed number is leased for a while, so several groups proposing numbers at the same time don't propose the
+ * same one. A lease ends once its number is taken by a participant, when it's released or when it has expired.
+ * Thread-safe.
+ */
+public final class StartNumberAllocator {
+    /** The bits of a word of the bit set */
+    private static final int WORD_BITS = Long.SIZE;
+    /** The shift to get the word of a bit */
+    private static final int WORD_SHIFT = 6;
+    
+    /** The highest number to be proposed */
+    private final int maxNumber;
+    /** The reserved ranges by their category */
+    private final Map<Category, Range> reserved;
+    /** The reserved ranges in ascending order */
+    private final Range[] reservedInOrder;
+    /** How long a proposed number is leased */
+    private final Duration leaseDuration;
+    /** Tells the expiry of the leases */
+    private final Clock clock;
+    /**
+     * The taken or leased numbers, a bit per number. Level {@code 0} holds the numbers, each bit of a higher level
+     * tells whether the word below it is full. Bits beyond the numbers are always set.
+     */
+    private final long[][] levels;
+    /** The current leases by their numbers */
+    private final Map<Integer, Lease> leases = new HashMap<>();
+    
+    /**
+     * Creates a new {@code StartNumberAllocator} with all numbers free.
+     *
+     * @param config
+     *         the highest number, the reserved ranges and the lease duration
+     * @throws IllegalArgumentException
+     *         if the config is invalid
+     */
+    public StartNumberAllocator(StartNumberConfig config) {
+        this(config, Clock.systemUTC());
+    }
+    
+    /**
+     * Creates a new {@code StartNumberAllocator} with all numbers free.
+     *
+     * @param config
+     *         the highest number, the reserved ranges and the lease duration
+     * @param clock
+     *         tells the expiry of the leases
+     * @throws IllegalArgumentException
+     *         if the config is invalid
+     */
+    StartNumberAllocator(StartNumberConfig config, Clock clock) {
+        if (config.maxNumber < 1) throw new IllegalArgumentException(
+                String.format("The highest start number must be positive but is %d.", config.maxNumber));
+        if (config.leaseSeconds < 1) throw new IllegalArgumentException(
+                String.format("The lease duration must be positive but is %d seconds.", config.leaseSeconds));
+        this.maxNumber = config.maxNumber;
+        this.leaseDuration = Duration.ofSeconds(config.leaseSeconds);
+        this.clock = requireNonNull(clock);
+        this.reserved = parseRanges(config.reservedRanges, maxNumber);
+        this.reservedInOrder = reserved.values().toArray(new Range[0]);
+        Arrays.sort(reservedInOrder, Comparator.comparingInt(range -> range.from));
+        for (int i = 1; i < reservedInOrder.length; i++) {
+            if (reservedInOrder[i].from <= reservedInOrder[i - 1].to) throw new IllegalArgumentException(
+                    String.format("The reserved start numbers %s and %s overlap.", reservedInOrder[i - 1],
+                            reservedInOrder[i]));
+        }
+        List<long[]> created = new ArrayList<>();
+        int bits = maxNumber + 1;
+        do {
+            long[] level = new long[(bits + WORD_BITS - 1) >>> WORD_SHIFT];
+            for (int bit = bits; bit < level.length * WORD_BITS; bit++) level[bit >>> WORD_SHIFT] |= 1L << bit;
+            created.add(level);
+            bits = level.length;
+        } while (bits > 1);
+        levels = created.toArray(new long[0][]);
+        mark(0, 0);
+    }
+    
+    /**
+     * Leases the lowest free number for a participant. Uses the range reserved for the category, or the numbers
+     * outside of all reserved ranges if the category has none or its range is exhausted.
+     *
+     * @param category
+     *         the category of the participant
+     * @return the lease of the number, empty if no number is free
+     */
+    public synchronized Optional<Lease> lease(Category category) {
+        purgeExpired();
+        Range range = reserved.get(category);
+        int number = range != null ? nextClear(0, range.from) : -1;
+        if (number < 0 || number > range.to) number = nextUnreserved();
+        if (number < 0) return Optional.empty();
+        Lease lease = new Lease(number, category, clock.instant().plus(leaseDuration));
+        leases.put(number, lease);
+        mark(0, number);
+        return Optional.of(lease);
+    }
+    
+    /**
+     * Ends a lease, so its number can be proposed again unless it's taken meanwhile.
+     *
+     * @param lease
+     *         the lease to be ended
+     */
+    public synchronized void release(Lease lease) {
+        if (leases.remove(lease.number, lease)) unmark(lease.number);
+    }
+    
+    /**
+     * Marks a number as taken by a participant, ending its lease if there's one.
+     *
+     * @param number
+     *         the taken number, ignored if it's out of range
+     */
+    public synchronized void take(int number) {
+        if (number < 1 || number > maxNumber) return;
+        leases.remove(number);
+        mark(0, number);
+    }
+    
+    /**
+     * Marks a number as no longer taken by any participant.
+     *
+     * @param number
+     *         the freed number, ignored if it's out of range or leased
+     */
+    public synchronized void free(int number) {
+        if (number < 1 || number > maxNumber || leases.containsKey(number)) return;
+        unmark(number);
+    }
+    
+    /**
+     * Replaces the taken numbers, e.g. when all participants are reloaded. The current leases are kept.
+     *
+     * @param taken
+     *         the numbers taken by participants, those out of range are ignored
+     */
+    public synchronized void reset(int[] taken) {
+        for (int number = 1; number <= maxNumber; number++) {
+            if (!leases.containsKey(number)) unmark(number);
+        }
+        for (int number : taken) take(number);
+    }
+    
+    /**
+     * Tells whether a number is neither taken nor leased.
+     *
+     * @param number
+     *         the number
+     * @return {@code true} if the number is in range and free, otherwise {@code false}
+     */
+    public synchronized boolean isFree(int number) {
+        if (number < 1 || number > maxNumber) return false;
+        purgeExpired();
+        return (levels[0][number >>> WORD_SHIFT] & 1L << number) == 0;
+    }
+    
+    /**
+     * Returns the lowest free number outside of all reserved ranges.
+     *
+     * @return the number, {@code -1} if there's none
+     */
+    private int nextUnreserved() {
+        int number = nextClear(0, 1);
+        for (Range range : reservedInOrder) {
+            if (number < 0 || number < range.from) return number;
+            if (number <= range.to) number = range.to < maxNumber ? nextClear(0, range.to + 1) : -1;
+        }
+        return number;
+    }
+    
+    /** Ends the expired leases, so their numbers can be proposed again. */
+    private void purgeExpired() {
+        if (leases.isEmpty()) return;
+        Instant now = clock.instant();
+        Iterator<Lease> iterator = leases.values().iterator();
+        while (iterator.hasNext()) {
+            Lease lease = iterator.next();
+            if (lease.expiry.isAfter(now)) continue;
+            iterator.remove();
+            unmark(lease.number);
+        }
+    }
+    
+    /**
+     * Returns the lowest clear bit of a level at or after the given one.
+     *
+     * @param level
+     *         the level
+     * @param from
+     *         the first bit to be considered
+     * @return the clear bit, {@code -1} if there's none
+     */
+    private int nextClear(int level, int from) {
+        long[] words = levels[level];
+        int word = from >>> WORD_SHIFT;
+        if (word >= words.length) return -1;
+        long clear = ~words[word] & -1L << from;
+        if (clear == 0) {
+            if (level + 1 == levels.length) return -1;
+            word = nextClear(level + 1, word + 1);
+            if (word < 0) return -1;
+            clear = ~words[word];
+        }
+        return word * WORD_BITS + Long.numberOfTrailingZeros(clear);
+    }
+    
+    /**
+     * Sets a bit of a level, and the bit of its word at the level above if the word has become full.
+     *
+     * @param level
+     *         the level
+     * @param bit
+     *         the bit
+     */
+    private void mark(int level, int bit) {
+        long[] words = levels[level];
+        int word = bit >>> WORD_SHIFT;
+        words[word] |= 1L << bit;
+        if (words[word] == -1L && level + 1 < levels.length) mark(level + 1, word);
+    }
+    
+    /**
+     * Clears the bit of a number, and the bits of its words at all levels above.
+     *
+     * @param number
+     *         the number
+     */
+    private void unmark(int number) {
+        int bit = number;
+        for (long[] words : levels) {
+            words[bit >>> WORD_SHIFT] &= ~(1L << bit);
+            bit >>>= WORD_SHIFT;
+        }
+    }
+    
+    /**
+     * Parses the reserved ranges, e.g. {@code TOUR:1-199,DOGTREKKING:200-399}.
+     *
+     * @param ranges
+     *         the ranges, {@code null} or blank if none are reserved
+     * @param maxNumber
+     *         the highest number a range may contain
+     * @return the ranges by their categories
+     * @throws IllegalArgumentException
+     *         if the ranges can't be parsed or are out of bounds
+     */
+    private static Map<Category, Range> parseRanges(String ranges, int maxNumber) {
+        Map<Category, Range> parsed = new EnumMap<>(Category.class);
+        if (ranges == null || ranges.isBlank()) return parsed;
+        for (String entry : ranges.split(",")) {
+            String[] parts = entry.trim().split("[:-]");
+            if (parts.length != 3) throw new IllegalArgumentException(
+                    String.format("Reserved start numbers '%s' don't match CATEGORY:FROM-TO.", entry.trim()));
+            Range range;
+            Category category;
+            try {
+                category = Category.valueOf(parts[0].trim());
+                range = new Range(Integer.parseInt(parts[1].trim()), Integer.parseInt(parts[2].trim()));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(
+                        String.format("Reserved start numbers '%s' don't match CATEGORY:FROM-TO.", entry.trim()), e);
+            }
+            if (range.from < 1 || range.from > range.to || range.to > maxNumber) throw new IllegalArgumentException(
+                    String.format("Reserved start numbers %s must be within 1-%d.", range, maxNumber));
+            if (parsed.put(category, range) != null) throw new IllegalArgumentException(
+                    String.format("Start numbers are reserved twice for %s.", category));
+        }
+        return parsed;
+    }
+    
+    /** A proposed start number, kept for the participant it has been proposed for until it expires */
+    public static final class Lease {
+        /** The leased number */
+        private final int number;
+        /** The category the number has been proposed for */
+        private final Category category;
+        /** When the lease ends unless the number is taken before */
+        private final Instant expiry;
+        
+        /**
+         * Creates a new {@code Lease}.
+         *
+         * @param number
+         *         the leased number
+         * @param category
+         *         the category the number has been proposed for
+         * @param expiry
+         *         when the lease ends unless the number is taken before
+         */
+        private Lease(int number, Category category, Instant expiry) {
+            this.number = number;
+            this.category = category;
+            this.expiry = expiry;
+        }
+        
+        /**
+         * Returns the leased number.
+         *
+         * @return the number
+         */
+        public int getNumber() {
+            return number;
+        }
+        
+        /**
+         * Returns the category the number has been proposed for.
+         *
+         * @return the category
+         */
+        public Category getCategory() {
+            return category;
+        }
+        
+        /**
+         * Returns when the lease ends unless the number is taken before.
+         *
+         * @return the expiry
+         */
+        public Instant getExpiry() {
+            return expiry;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("%d for %s until %s", number, category, expiry);
+        }
+    }
+    
+    /** A range of reserved numbers */
+    private static final class Range {
+        /** The first number */
+        private final int from;
+        /** The last number */
+        private final int to;
+        
+        /**
+         * Creates a new {@code Range}.
+         *
+         * @param from
+         *         the first number
+         * @param to
+         *         the last number
+         */
+        private Range(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        public String toString() {
+            return from + "-" + to;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package trekkingtracker.event.participantevents;
+
+import trekkingtracker.event.publishing.CoalescableEvent;
+import trekkingtracker.event.publishing.EventPriority;
+import trekkingtracker.event.publishing.MultiKeyedEvent;
+import trekkingtracker.event.publishing.PrioritizedEvent;
+import trekkingtracker.event.tracing.RequestTrace;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/** Holds updates about multiple participants which have been stored at once, e.g. a mass start */
+public class ParticipantBatchUpdateEvent implements ParticipantEvent, PrioritizedEvent, MultiKeyedEvent {
+    /** The updates, in the order they have been stored */
+    private final List<ParticipantUpdateEvent> updates;
+    /** The trace of the request the updates result from, can be {@code null} */
+    private final RequestTrace trace;
+    
+    /**
+     * Creates a new {@code ParticipantBatchUpdateEvent}.
+     *
+     * @param updates
+     *         the updates of the single participants, in the order they have been stored - they won't be propagated
+     *         directly but as an unmodifiable copy
+     */
+    public ParticipantBatchUpdateEvent(List<ParticipantUpdateEvent> updates) {
+        this(updates, null);
+    }
+    
+    /**
+     * Creates a new {@code ParticipantBatchUpdateEvent} resulting from a traced request.
+     *
+     * @param updates
+     *         the updates of the single participants, in the order they have been stored - they won't be propagated
+     *         directly but as an unmodifiable copy
+     * @param trace
+     *         the trace of the request the updates result from, can be {@code null}
+     */
+    public ParticipantBatchUpdateEvent(List<ParticipantUpdateEvent> updates, RequestTrace trace) {
+        this.updates = Collections.unmodifiableList(new ArrayList<>(updates));
+        this.trace = trace;
+    }
+    
+    /**
+     * Combines merged updates of different participants, so the ui can process them at once.
+     *
+     * @param events
+     *         the merged events, in the order they have been published
+     * @return the combined updates, or {@code null} if there are events other than {@code ParticipantUpdateEvents}
+     */
+    public static ParticipantBatchUpdateEvent combine(List<CoalescableEvent> events) {
+        List<ParticipantUpdateEvent> updates = new ArrayList<>(events.size());
+        for (CoalescableEvent event : events) {
+            if (!(event instanceof ParticipantUpdateEvent)) return null;
+            updates.add((ParticipantUpdateEvent) event);
+        }
+        return new ParticipantBatchUpdateEvent(updates);
+    }
+    
+    /**
+     * Returns the updates of the single participants.
+     *
+     * @return the unmodifiable updates, in the order they have been stored
+     */
+    public List<ParticipantUpdateEvent> getUpdates() {
+        return updates;
+    }
+    
+    /**
+     * Returns the priority of the updates.
+     *
+     * @return {@link EventPriority#CRITICAL} if one of the updates is critical, e.g. a mass start, otherwise {@link
+     * EventPriority#NORMAL}
+     */
+    @Override
+    public EventPriority getPriority() {
+        for (ParticipantUpdateEvent update : updates)
+            if (update.getPriority() == EventPriority.CRITICAL) return EventPriority.CRITICAL;
+        return EventPriority.NORMAL;
+    }
+    
+    /**
+     * Returns the participants the updates relate to.
+     *
+     * @return the keys of the single updates
+     */
+    @Override
+    public Collection<?> getDispatchKeys() {
+        List<Object> keys = new ArrayList<>(updates.size());
+        for (ParticipantUpdateEvent update : updates)
+            keys.add(update.getDispatchKey());
+        return keys;
+    }
+    
+    /**
+     * Returns the trace of the request the updates result from.
+     *
+     * @return the trace, or {@code null} if the updates have been combined from several requests - see the traces of
+     * the single updates then
+     */
+    @Override
+    public RequestTrace getTrace() {
+        return trace;
+    }
+    
+    @Override
+    public String toString() {
+        return "Batch update of " + updates.size() + " persons";
+    }
+    
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ParticipantBatchUpdateEvent)) return false;
+        final ParticipantBatchUpdateEvent that = (ParticipantBatchUpdateEvent) o;
+        return Objects.equals(updates, that.updates);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hash(updates);
+    }
+}
@@ -1,4 +1,17 @@
 package trekkingtracker.event.participantevents;
 
-/** Marker interface for all participant-related events being propagated in this application */
-public interface ParticipantEvent {}
+import trekkingtracker.event.tracing.RequestTrace;
+import trekkingtracker.event.tracing.Traceable;
+
+/** Interface for all participant-related events being propagated in this application */
+public interface ParticipantEvent extends Traceable {
+    /**
+     * Returns the trace of the request the event results from.
+     *
+     * @return the trace, or {@code null} if the event doesn't result from a single request
+     */
+    @Override
+    default RequestTrace getTrace() {
+        return null;
+    }
+}
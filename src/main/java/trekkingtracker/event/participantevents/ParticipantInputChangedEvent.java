@@ -2,6 +2,7 @@ package trekkingtracker.event.participantevents;
 
 import trekkingtracker.Utils;
 import trekkingtracker.data.Person;
+import trekkingtracker.event.tracing.RequestTrace;
 
 import java.util.Collection;
 import java.util.Collections;
@@ -12,6 +13,8 @@ import java.util.Set;
 public class ParticipantInputChangedEvent implements ParticipantEvent {
     /** The new data model to be propagated */
     private final Collection<Person> input;
+    /** The trace of the request the change results from, can be {@code null} */
+    private final RequestTrace trace;
     
     /**
      * Creates a new {@code ParticipantInputChangedEvent}.
@@ -21,7 +24,21 @@ public class ParticipantInputChangedEvent implements ParticipantEvent {
      *         for example to indicate the initialization has failed.
      */
     public ParticipantInputChangedEvent(Collection<Person> input) {
+        this(input, null);
+    }
+    
+    /**
+     * Creates a new {@code ParticipantInputChangedEvent} resulting from a traced request.
+     *
+     * @param input
+     *         the new input - it won't be propagated directly but as a unmodifiable version. Can be {@code null},
+     *         for example to indicate the initialization has failed.
+     * @param trace
+     *         the trace of the request the change results from, can be {@code null}
+     */
+    public ParticipantInputChangedEvent(Collection<Person> input, RequestTrace trace) {
         this.input = input != null ? Collections.unmodifiableCollection(input) : null;
+        this.trace = trace;
     }
     
     /**
@@ -42,6 +59,11 @@ public class ParticipantInputChangedEvent implements ParticipantEvent {
         return input;
     }
     
+    @Override
+    public RequestTrace getTrace() {
+        return trace;
+    }
+    
     @Override
     public String toString() {
         int size = input != null ? input.size() : 0;
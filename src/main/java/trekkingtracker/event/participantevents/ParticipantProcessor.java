@@ -1,14 +1,45 @@
 package trekkingtracker.event.participantevents;
 
+import trekkingtracker.event.publishing.DispatchTable;
 import trekkingtracker.event.publishing.EventHandler;
+import trekkingtracker.event.tracing.LatencyRecorder;
+import trekkingtracker.event.tracing.TraceStage;
 
-/** Indicates that the implementing class is interested in participants and relating updates. */
+/**
+ * Indicates that the implementing class is interested in participants and relating updates. The time until an event
+ * has been applied is recorded per implementing class, see {@link LatencyRecorder}.
+ */
 public interface ParticipantProcessor extends EventHandler<ParticipantEvent> {
+    /** Routes the events to the methods handling them */
+    DispatchTable<ParticipantProcessor, ParticipantEvent> HANDLERS = DispatchTable
+            .<ParticipantProcessor, ParticipantEvent>builder()
+            .on(ParticipantInputChangedEvent.class, ParticipantProcessor::setInput)
+            .on(ParticipantUpdateEvent.class, ParticipantProcessor::updatePerson)
+            .on(ParticipantBatchUpdateEvent.class, ParticipantProcessor::updatePersons)
+            .build();
     
     @Override
     default void handle(ParticipantEvent event) {
-        if (event instanceof ParticipantInputChangedEvent) setInput((ParticipantInputChangedEvent) event);
-        else if (event instanceof ParticipantUpdateEvent) updatePerson((ParticipantUpdateEvent) event);
+        getHandlers().dispatch(this, event);
+        
+        String processor = getClass().getSimpleName();
+        if (event.getTrace() == null && event instanceof ParticipantBatchUpdateEvent) {
+            // combined from several requests
+            for (ParticipantUpdateEvent update : ((ParticipantBatchUpdateEvent) event).getUpdates())
+                LatencyRecorder.INSTANCE.record(update.getTrace(), TraceStage.APPLIED, processor);
+        } else {
+            LatencyRecorder.INSTANCE.record(event.getTrace(), TraceStage.APPLIED, processor);
+        }
+    }
+    
+    /**
+     * Returns the handlers of the events. Implementations handling further event types can override it with a table
+     * declaring handlers for them, too.
+     *
+     * @return routes the events to the methods handling them, {@link #HANDLERS} by default
+     */
+    default DispatchTable<ParticipantProcessor, ParticipantEvent> getHandlers() {
+        return HANDLERS;
     }
     
     /**
@@ -26,4 +57,17 @@ public interface ParticipantProcessor extends EventHandler<ParticipantEvent> {
      *         holds information about the participant (state) that was replaced and the replacement (state)
      */
     void updatePerson(ParticipantUpdateEvent updateEvent);
+    
+    /**
+     * Updates the internal state and adjusts the displayed information based on the given updates of multiple
+     * participants. Applies each update on its own by default, implementations should override it if they can adjust
+     * the displayed information once for all updates.
+     *
+     * @param batchEvent
+     *         holds information about all participant (states) that were replaced and their replacements (states)
+     */
+    default void updatePersons(ParticipantBatchUpdateEvent batchEvent) {
+        for (ParticipantUpdateEvent updateEvent : batchEvent.getUpdates())
+            updatePerson(updateEvent);
+    }
 }
@@ -1,15 +1,21 @@
 package trekkingtracker.event.participantevents;
 
 import trekkingtracker.data.Person;
+import trekkingtracker.event.publishing.CoalescableEvent;
+import trekkingtracker.event.publishing.EventPriority;
+import trekkingtracker.event.publishing.PrioritizedEvent;
+import trekkingtracker.event.tracing.RequestTrace;
 
 import java.util.Objects;
 
 /** Holds an update about a single participant */
-public class ParticipantUpdateEvent implements ParticipantEvent {
+public class ParticipantUpdateEvent implements ParticipantEvent, CoalescableEvent, PrioritizedEvent {
     /** The previous state */
     private final Person newValue;
     /** The new state */
     private final Person oldValue;
+    /** The trace of the request the update results from, can be {@code null} */
+    private final RequestTrace trace;
     
     /**
      * Creates a new {@code ParticipantUpdateEvent}.
@@ -24,10 +30,29 @@ public class ParticipantUpdateEvent implements ParticipantEvent {
      *         if the old and new state must relate to two different participants
      */
     public ParticipantUpdateEvent(Person oldValue, Person newValue) {
+        this(oldValue, newValue, null);
+    }
+    
+    /**
+     * Creates a new {@code ParticipantUpdateEvent} resulting from a traced request.
+     *
+     * @param oldValue
+     *         the previous state of the participant, or {@code null} if there was no previous one (i.e. the
+     *         participant was newly created)
+     * @param newValue
+     *         the the current state of the participant, or {@code null} if there was no current one anymore (i.e.
+     *         the participant was deleted)
+     * @param trace
+     *         the trace of the request the update results from, can be {@code null}
+     * @throws IllegalArgumentException
+     *         if the old and new state must relate to two different participants
+     */
+    public ParticipantUpdateEvent(Person oldValue, Person newValue, RequestTrace trace) {
         if (oldValue != null && newValue != null && !oldValue.equals(newValue)) throw new IllegalArgumentException(
                 "Old and new state must relate to the equal participant.");
         this.oldValue = oldValue;
         this.newValue = newValue;
+        this.trace = trace;
     }
     
     /**
@@ -48,6 +73,60 @@ public class ParticipantUpdateEvent implements ParticipantEvent {
         return newValue;
     }
     
+    /**
+     * Returns the id of the participant the update relates to, which stays the same even if its name changes.
+     *
+     * @return the id of the new state, or of the old state if there's no new one. {@link Person#NO_ID} if the
+     * participant has not been assigned an id.
+     */
+    public int getParticipantId() {
+        Person participant = newValue != null ? newValue : oldValue;
+        return participant != null ? participant.getId() : Person.NO_ID;
+    }
+    
+    /**
+     * Returns the participant the update relates to, so updates of the same participant are dispatched in order.
+     *
+     * @return the new state, or the old state if there's no new one
+     */
+    @Override
+    public Object getDispatchKey() {
+        return newValue != null ? newValue : oldValue;
+    }
+    
+    /**
+     * Merges this update with a newer update of the same participant.
+     *
+     * @param newer
+     *         the newer {@code ParticipantUpdateEvent} of the same participant
+     * @return an update from the old state of this update to the new state of the newer one, with the trace of the
+     * newer one
+     */
+    @Override
+    public ParticipantUpdateEvent coalesce(CoalescableEvent newer) {
+        ParticipantUpdateEvent newerUpdate = (ParticipantUpdateEvent) newer;
+        return new ParticipantUpdateEvent(oldValue, newerUpdate.getNewValue(), newerUpdate.getTrace());
+    }
+    
+    /**
+     * Returns the priority of the update: capturing a start or stop time is critical, everything else normal.
+     *
+     * @return {@link EventPriority#CRITICAL} if the start or stop time of an existing participant has changed,
+     * otherwise {@link EventPriority#NORMAL}
+     */
+    @Override
+    public EventPriority getPriority() {
+        if (oldValue == null || newValue == null) return EventPriority.NORMAL;
+        boolean captured = !Objects.equals(oldValue.getStart(), newValue.getStart()) || !Objects.equals(
+                oldValue.getStop(), newValue.getStop());
+        return captured ? EventPriority.CRITICAL : EventPriority.NORMAL;
+    }
+    
+    @Override
+    public RequestTrace getTrace() {
+        return trace;
+    }
+    
     @Override
     public String toString() {
         return "Update " + oldValue + "->" + newValue;
@@ -0,0 +1,336 @@
+package trekkingtracker.event.participantevents;
+
+import trekkingtracker.data.Person;
+import trekkingtracker.data.StartNumberAllocator;
+import trekkingtracker.ui.MainApp;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Tells which participant holds which start number, shared by all ui groups. Updated once per event, it should be
+ * registered with {@link trekkingtracker.event.publishing.EventPriority#CRITICAL} so it's up to date before the other
+ * listeners receive the same event. Conflicts, i.e. numbers claimed by several participants, are reported once when
+ * they arise. The first participant claiming a number holds it, the others are kept as claimants and take the number
+ * over in the order they have claimed it once it's released. The held numbers are passed on to a {@link
+ * StartNumberAllocator}, so it won't propose them to new participants.
+ * <p>
+ * The holders are kept in an open-addressing hash table with primitive keys, so lookups don't box the numbers.
+ * Updates must come from a single thread, the lookups are lock-free and may come from any thread. {@link
+ * Integer#MIN_VALUE} is not supported as start number.
+ */
+public final class StartNumberIndex implements ParticipantProcessor {
+    /** Marks a slot of the {@link Table} which has never held a number */
+    private static final int EMPTY = Integer.MIN_VALUE;
+    /** The number of slots the {@link Table} has at least */
+    private static final int MIN_CAPACITY = 16;
+    
+    /** The holders by their start numbers, replaced as a whole when it's full */
+    private volatile Table holders = new Table(MIN_CAPACITY);
+    /** The further participants claiming a number held by another one, by the number. Accessed by the updater only. */
+    private final Map<Integer, List<Person>> claimants = new HashMap<>();
+    /** The participants of each conflicting number, holder first, as a read-only snapshot */
+    private volatile Map<Integer, List<Person>> conflicts = Collections.emptyMap();
+    /** Proposes the numbers which are not held */
+    private final StartNumberAllocator allocator;
+    
+    /**
+     * Creates a new, empty {@code StartNumberIndex}.
+     *
+     * @param allocator
+     *         is told which numbers are held
+     */
+    public StartNumberIndex(StartNumberAllocator allocator) {
+        this.allocator = Objects.requireNonNull(allocator);
+    }
+    
+    /**
+     * Returns the allocator proposing the numbers which are not held.
+     *
+     * @return the allocator
+     */
+    public StartNumberAllocator getAllocator() {
+        return allocator;
+    }
+    
+    /**
+     * Returns the participant holding a start number.
+     *
+     * @param number
+     *         the start number
+     * @return the participant holding the number, empty if it's free
+     */
+    public Optional<Person> findHolder(int number) {
+        return Optional.ofNullable(holders.get(number));
+    }
+    
+    /**
+     * Tells whether a start number is held by another participant than the given one.
+     *
+     * @param number
+     *         the start number
+     * @param participant
+     *         the participant who wants to use the number, can be {@code null}
+     * @return {@code true} if another participant holds the number, otherwise {@code false}
+     */
+    public boolean isTakenByOther(int number, Person participant) {
+        Person holder = holders.get(number);
+        return holder != null && !holder.equals(participant);
+    }
+    
+    /**
+     * Returns the numbers which are claimed by several participants.
+     *
+     * @return the participants claiming each conflicting number, the holder first
+     */
+    public Map<Integer, List<Person>> getConflicts() {
+        return conflicts;
+    }
+    
+    @Override
+    public void setInput(final ParticipantInputChangedEvent inputEvent) {
+        Collection<Person> participants = inputEvent.getInputView();
+        if (participants == null) return;
+        Table replacement = new Table(capacityFor(participants.size()));
+        claimants.clear();
+        int[] held = new int[participants.size()];
+        int heldCount = 0;
+        for (Person participant : participants) {
+            Integer number = participant.getNumber();
+            if (number == null) continue;
+            Person holder = replacement.get(number);
+            if (holder == null) {
+                replacement = replacement.put(number, participant);
+                held[heldCount++] = number;
+            } else claim(number, holder, participant);
+        }
+        holders = replacement;
+        allocator.reset(Arrays.copyOf(held, heldCount));
+        publishConflicts();
+    }
+    
+    @Override
+    public void updatePerson(final ParticipantUpdateEvent updateEvent) {
+        if (apply(updateEvent)) publishConflicts();
+    }
+    
+    /** Publishes the conflicts at most once for all updates. */
+    @Override
+    public void updatePersons(final ParticipantBatchUpdateEvent batchEvent) {
+        boolean conflictsChanged = false;
+        for (ParticipantUpdateEvent updateEvent : batchEvent.getUpdates())
+            conflictsChanged |= apply(updateEvent);
+        if (conflictsChanged) publishConflicts();
+    }
+    
+    /**
+     * Releases the former number of a participant and lets it hold its new number.
+     *
+     * @param updateEvent
+     *         the update of the participant
+     * @return {@code true} if the conflicts have changed, otherwise {@code false}
+     */
+    private boolean apply(final ParticipantUpdateEvent updateEvent) {
+        Person oldP = updateEvent.getOldValue();
+        Person newP = updateEvent.getNewValue();
+        Integer oldNumber = oldP != null ? oldP.getNumber() : null;
+        Integer newNumber = newP != null ? newP.getNumber() : null;
+        boolean conflictsChanged = false;
+        if (oldNumber != null && !oldNumber.equals(newNumber)) conflictsChanged = release(oldNumber, oldP);
+        if (newNumber == null) return conflictsChanged;
+        Person holder = holders.get(newNumber);
+        if (holder == null || holder.equals(newP)) {
+            holders = holders.put(newNumber, newP);
+            if (holder == null) allocator.take(newNumber);
+            return conflictsChanged;
+        }
+        return claim(newNumber, holder, newP) || conflictsChanged;
+    }
+    
+    /**
+     * Releases a number held or claimed by a participant. The first further claimant takes over a held number.
+     *
+     * @param number
+     *         the number to be released
+     * @param participant
+     *         the participant releasing the number
+     * @return {@code true} if the conflicts have changed, otherwise {@code false}
+     */
+    private boolean release(int number, Person participant) {
+        List<Person> waiting = claimants.get(number);
+        Person holder = holders.get(number);
+        if (holder != null && holder.equals(participant)) {
+            if (waiting == null) {
+                holders.remove(number);
+                allocator.free(number);
+                return false;
+            }
+            holders = holders.put(number, waiting.remove(0));
+        } else if (waiting == null || !waiting.remove(participant)) return false;
+        if (waiting.isEmpty()) claimants.remove(number);
+        return true;
+    }
+    
+    /**
+     * Records that a participant claims a number held by another one and reports the conflict.
+     *
+     * @param number
+     *         the claimed number
+     * @param holder
+     *         the participant holding the number
+     * @param claimant
+     *         the participant claiming the number
+     * @return {@code true} since the conflicts have changed
+     */
+    private boolean claim(int number, Person holder, Person claimant) {
+        List<Person> waiting = claimants.computeIfAbsent(number, n -> new ArrayList<>(1));
+        int index = waiting.indexOf(claimant);
+        if (index >= 0) waiting.set(index, claimant);
+        else {
+            waiting.add(claimant);
+            MainApp.printInfo(String.format("Starting number %d is in use by %s and %s. Please fix that immediately!",
+                    number, holder, claimant));
+        }
+        return true;
+    }
+    
+    /** Publishes a snapshot of the current conflicts to the readers. */
+    private void publishConflicts() {
+        Map<Integer, List<Person>> snapshot = new TreeMap<>();
+        for (Map.Entry<Integer, List<Person>> entry : claimants.entrySet()) {
+            List<Person> participants = new ArrayList<>(entry.getValue().size() + 1);
+            participants.add(holders.get(entry.getKey()));
+            participants.addAll(entry.getValue());
+            snapshot.put(entry.getKey(), Collections.unmodifiableList(participants));
+        }
+        conflicts = Collections.unmodifiableMap(snapshot);
+    }
+    
+    /**
+     * Returns the capacity of a {@link Table} which holds the given number of start numbers without being replaced.
+     *
+     * @param numbers
+     *         the number of start numbers
+     * @return the capacity, a power of two
+     */
+    private static int capacityFor(int numbers) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < numbers * 2 + 1) capacity <<= 1;
+        return capacity;
+    }
+    
+    /**
+     * Holds participants by their start numbers with linear probing. A removed number keeps its slot, so lookups can
+     * run concurrently to the updates: the keys of a slot never change once set. Replaced as a whole when more than
+     * half of the slots are used.
+     */
+    private static final class Table {
+        /** The start numbers, {@link #EMPTY} for unused slots */
+        private final int[] keys;
+        /** The participants holding the numbers at the same positions, {@code null} for removed ones */
+        private final AtomicReferenceArray<Person> values;
+        /** The number of slots holding a key, including the removed ones. Accessed by the updater only. */
+        private int used = 0;
+        
+        /**
+         * Creates a new, empty {@code Table}.
+         *
+         * @param capacity
+         *         the number of slots, a power of two
+         */
+        private Table(int capacity) {
+            keys = new int[capacity];
+            Arrays.fill(keys, EMPTY);
+            values = new AtomicReferenceArray<>(capacity);
+        }
+        
+        /**
+         * Returns the first slot to probe for a number.
+         *
+         * @param number
+         *         the number
+         * @return the first slot
+         */
+        private int slot(int number) {
+            int hash = number * 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) & (keys.length - 1);
+        }
+        
+        /**
+         * Returns the participant holding a number.
+         *
+         * @param number
+         *         the number
+         * @return the participant, {@code null} if the number is free
+         */
+        private Person get(int number) {
+            int mask = keys.length - 1;
+            for (int slot = slot(number); ; slot = (slot + 1) & mask) {
+                int key = keys[slot];
+                if (key == number) return values.get(slot);
+                if (key == EMPTY) return null;
+            }
+        }
+        
+        /**
+         * Lets a participant hold a number.
+         *
+         * @param number
+         *         the number
+         * @param participant
+         *         the participant
+         * @return this table, or a larger copy holding the number if this one is full already
+         */
+        private Table put(int number, Person participant) {
+            int mask = keys.length - 1;
+            int slot = slot(number);
+            while (keys[slot] != EMPTY && keys[slot] != number) slot = (slot + 1) & mask;
+            if (keys[slot] == number) {
+                values.set(slot, participant);
+                return this;
+            }
+            if ((used + 1) * 2 > keys.length) return copy(number, participant);
+            keys[slot] = number;
+            values.set(slot, participant);
+            used++;
+            return this;
+        }
+        
+        /**
+         * Releases a number.
+         *
+         * @param number
+         *         the number
+         */
+        private void remove(int number) {
+            int mask = keys.length - 1;
+            for (int slot = slot(number); keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+                if (keys[slot] == number) {
+                    values.set(slot, null);
+                    return;
+                }
+            }
+        }
+        
+        /**
+         * Creates a copy holding the numbers which are not removed plus another number.
+         *
+         * @param number
+         *         the further number
+         * @param participant
+         *         the participant holding the further number
+         * @return the copy
+         */
+        private Table copy(int number, Person participant) {
+            int held = 1;
+            for (int slot = 0; slot < keys.length; slot++)
+                if (values.get(slot) != null) held++;
+            Table copy = new Table(capacityFor(held * 2));
+            for (int slot = 0; slot < keys.length; slot++) {
+                Person holder = values.get(slot);
+                if (holder != null) copy.put(keys[slot], holder);
+            }
+            return copy.put(number, participant);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package trekkingtracker.event.publishing;
+
+/**
+ * Event which is acknowledged by the listener processing it, see {@link EventPublisher#submit(Acknowledgeable)}.
+ *
+ * @param <O>
+ *         the type of the outcome the event is acknowledged with
+ */
+public interface Acknowledgeable<O> {
+    /**
+     * Returns the acknowledgement of the event. The listener processing the event must claim it first, the event
+     * must not be processed anymore if it has been withdrawn (e.g. cancelled or timed out) before.
+     *
+     * @return completed with the outcome as soon as the event has been processed
+     */
+    Acknowledgement<O> getAcknowledgement();
+}
@@ -0,0 +1,81 @@
+package trekkingtracker.event.publishing;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The acknowledgement of an {@link Acknowledgeable} event, which is either withdrawn by the submitter or claimed by
+ * the listener processing the event, whichever comes first. Cancelling it or completing it exceptionally (e.g. by
+ * {@link #orTimeout(long, java.util.concurrent.TimeUnit)}) withdraws the event unless it has been claimed already.
+ * Once claimed, it is only completed with the outcome, so the submitter learns whether the event has been processed.
+ * Thread-safe.
+ *
+ * @param <O>
+ *         the type of the outcome
+ */
+public class Acknowledgement<O> extends CompletableFuture<O> {
+    /** Neither claimed nor withdrawn yet */
+    private static final int OPEN = 0;
+    /** Claimed by the listener processing the event */
+    private static final int CLAIMED = 1;
+    /** Withdrawn by the submitter */
+    private static final int WITHDRAWN = 2;
+    
+    /** Whether the event has been claimed or withdrawn */
+    private final AtomicInteger state = new AtomicInteger(OPEN);
+    
+    /**
+     * Claims the event for processing, so it can't be withdrawn anymore. Must be called before the event is
+     * processed, and only by the listener processing it.
+     *
+     * @return {@code true} if the event has been claimed, {@code false} if it has been withdrawn and must not be
+     * processed
+     */
+    public boolean claim() {
+        return state.compareAndSet(OPEN, CLAIMED);
+    }
+    
+    /**
+     * Tells whether the event has been withdrawn before it has been claimed.
+     *
+     * @return {@code true} if the event must not be processed anymore
+     */
+    public boolean isWithdrawn() {
+        return state.get() == WITHDRAWN;
+    }
+    
+    /**
+     * Withdraws the event and cancels the acknowledgement, unless the event has been claimed.
+     *
+     * @param mayInterruptIfRunning
+     *         ignored, as for any {@code CompletableFuture}
+     * @return {@code true} if the event has been withdrawn, {@code false} if it has been claimed or the
+     * acknowledgement has been completed before
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return withdraw() && super.cancel(mayInterruptIfRunning);
+    }
+    
+    /**
+     * Withdraws the event and completes the acknowledgement with the exception, unless the event has been claimed.
+     *
+     * @param ex
+     *         the reason of the withdrawal, e.g. a {@link java.util.concurrent.TimeoutException}
+     * @return {@code true} if the event has been withdrawn, {@code false} if it has been claimed or the
+     * acknowledgement has been completed before
+     */
+    @Override
+    public boolean completeExceptionally(Throwable ex) {
+        return withdraw() && super.completeExceptionally(ex);
+    }
+    
+    /**
+     * Marks the event as withdrawn unless it has been claimed.
+     *
+     * @return {@code true} if the event is withdrawn
+     */
+    private boolean withdraw() {
+        return state.compareAndSet(OPEN, WITHDRAWN) || state.get() == WITHDRAWN;
+    }
+}
@@ -1,49 +1,129 @@
 package trekkingtracker.event.publishing;
 
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.stream.Collectors;
 
+/**
+ * {@code EventPublisher} which calls the listeners in the publishing thread, in the order they have been registered.
+ * The listeners matching an event class are resolved once and cached, so publishing an event of an already known class
+ * doesn't allocate anything. Registering or unregistering a listener replaces the registrations and the cache
+ * (copy-on-write), publishing never blocks.
+ */
 public class BasicEventPublisher implements EventPublisher {
-    
-    /** Holds all listeners */
-    private final Map<Class<?>, Collection<EventHandler<?>>> eventListeners = new ConcurrentHashMap<>();
+    /** Shared by all event classes without any listeners */
+    private static final EventHandler<?>[] NO_HANDLERS = new EventHandler<?>[0];
+    /** Guards the replacement of the {@link #registrations} */
+    private final Object registrationLock = new Object();
+    /** Holds all listeners in the order of their registration, replaced on each change */
+    private volatile Registration[] registrations = new Registration[0];
+    /**
+     * The listeners per concrete event class, resolved from the {@link #registrations} on first use. Replaced by an
+     * empty cache on each change of the registrations.
+     */
+    private volatile Map<Class<?>, EventHandler<?>[]> dispatchCache = new ConcurrentHashMap<>();
     
     @Override
     public <T> void addEventListener(Class<T> eventType, EventHandler<T> toAdd) {
-        eventListeners.computeIfAbsent(eventType, x -> new ConcurrentLinkedQueue<>()).add(toAdd);
+        synchronized (registrationLock) {
+            Registration[] changed = Arrays.copyOf(registrations, registrations.length + 1);
+            changed[registrations.length] = new Registration(eventType, toAdd);
+            replaceRegistrations(changed);
+        }
     }
     
     @Override
     public void removeEventListener(EventHandler<?> toRemove) {
-        eventListeners.values().removeIf(l -> l.equals(toRemove));
+        synchronized (registrationLock) {
+            List<Registration> remaining = new ArrayList<>(registrations.length);
+            for (Registration registration : registrations)
+                if (!registration.handler.equals(toRemove)) remaining.add(registration);
+            if (remaining.size() < registrations.length)
+                replaceRegistrations(remaining.toArray(new Registration[0]));
+        }
     }
     
     @Override
     public <T> void removeEventListener(final Class<T> eventType, final EventHandler<T> toRemove) {
-        Collection<EventHandler<?>> nonUiHandlers = eventListeners.get(eventType);
-        if (nonUiHandlers != null) nonUiHandlers.remove(toRemove);
+        synchronized (registrationLock) {
+            for (int i = 0; i < registrations.length; i++) {
+                Registration registration = registrations[i];
+                if (registration.eventType.equals(eventType) && registration.handler.equals(toRemove)) {
+                    Registration[] changed = new Registration[registrations.length - 1];
+                    System.arraycopy(registrations, 0, changed, 0, i);
+                    System.arraycopy(registrations, i + 1, changed, i, changed.length - i);
+                    replaceRegistrations(changed);
+                    return;
+                }
+            }
+        }
     }
     
     @Override
+    @SuppressWarnings("unchecked")
     public <T> void publish(T event) {
-        Collection<EventHandler<T>> listeners = getEventListeners(event);
-        listeners.forEach(l -> { try {l.handle(event);} catch (Exception e) {/*no op*/} });
+        EventHandler<?>[] listeners = getEventListeners(event.getClass());
+        for (EventHandler<?> listener : listeners) {
+            try {
+                ((EventHandler<T>) listener).handle(event);
+            } catch (Exception e) {/*no op*/}
+        }
+    }
+    
+    /**
+     * Replaces the registrations and invalidates the {@link #dispatchCache}. Must be called while holding the
+     * {@link #registrationLock}.
+     *
+     * @param changed
+     *         the new registrations, must not be modified afterwards
+     */
+    private void replaceRegistrations(Registration[] changed) {
+        // registrations first: whoever sees the new cache will resolve from the new registrations
+        registrations = changed;
+        dispatchCache = new ConcurrentHashMap<>();
     }
     
     /**
-     * Determines which of the given listeners match for the given event type.
+     * Determines which of the registered listeners match for the given event class.
      *
-     * @param event
-     *         the listeners shall be determined for
-     * @param <T>
-     *         the type of event the listeners are searched for
-     * @return all matching listeners, including the ones which are registered for subtypes of the given event
+     * @param eventClass
+     *         the class of the event the listeners shall be determined for
+     * @return all matching listeners, including the ones which are registered for supertypes of the given class. Must
+     * not be modified.
      */
-    private <T> Collection<EventHandler<T>> getEventListeners(T event) {
-        return eventListeners.entrySet().stream().filter(e -> e.getKey().isAssignableFrom(event.getClass())).flatMap(
-                e -> e.getValue().stream()).map(l -> (EventHandler<T>) l).collect(Collectors.toList());
+    private EventHandler<?>[] getEventListeners(Class<?> eventClass) {
+        Map<Class<?>, EventHandler<?>[]> cache = dispatchCache;
+        EventHandler<?>[] listeners = cache.get(eventClass);
+        if (listeners != null) return listeners;
+        List<EventHandler<?>> matching = new ArrayList<>();
+        for (Registration registration : registrations)
+            if (registration.eventType.isAssignableFrom(eventClass)) matching.add(registration.handler);
+        listeners = matching.isEmpty() ? NO_HANDLERS : matching.toArray(NO_HANDLERS);
+        // a cache which has been replaced meanwhile is just discarded, together with this entry
+        cache.putIfAbsent(eventClass, listeners);
+        return listeners;
+    }
+    
+    /** A listener registered for an event type. Immutable. */
+    private static final class Registration {
+        /** The listener will listen to all events of this event type (and all its subtypes) */
+        private final Class<?> eventType;
+        /** The listener */
+        private final EventHandler<?> handler;
+        
+        /**
+         * Creates a new {@code Registration}.
+         *
+         * @param eventType
+         *         the listener will listen to all events of this event type (and all its subtypes)
+         * @param handler
+         *         the listener
+         */
+        private Registration(Class<?> eventType, EventHandler<?> handler) {
+            this.eventType = eventType;
+            this.handler = handler;
+        }
     }
 }
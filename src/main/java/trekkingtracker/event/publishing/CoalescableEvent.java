@@ -0,0 +1,16 @@
+package trekkingtracker.event.publishing;
+
+/**
+ * {@link KeyedEvent} which can be merged with a newer event of the same class and key, so the ui listeners only need to
+ * process the result if both events are delivered at once.
+ */
+public interface CoalescableEvent extends KeyedEvent {
+    /**
+     * Merges this event with a newer one.
+     *
+     * @param newer
+     *         the newer event, of the same class and with an equal {@link #getDispatchKey() key}
+     * @return an event which has the same effect as this event followed by the newer one
+     */
+    CoalescableEvent coalesce(CoalescableEvent newer);
+}
@@ -0,0 +1,28 @@
+package trekkingtracker.event.publishing;
+
+import java.util.Locale;
+
+/** Tells which events an {@link EventDispatcher} keeps in the order they have been published. */
+public enum DispatchOrdering {
+    /** All events are dispatched one after another, in the order they have been published */
+    GLOBAL,
+    /**
+     * Events with the same {@link KeyedEvent#getDispatchKey() key} (i.e. relating to the same participant) are
+     * dispatched in the order they have been published, events with different keys may be dispatched concurrently.
+     * Events without a key are dispatched after all events published before and before all events published after.
+     */
+    PARTICIPANT;
+    
+    /**
+     * Parses a {@code DispatchOrdering} case-insensitively, e.g. from a configuration value.
+     *
+     * @param identifier
+     *         the name of the ordering
+     * @return the parsed {@code DispatchOrdering}
+     * @throws IllegalArgumentException
+     *         if there's no ordering with the given name
+     */
+    public static DispatchOrdering parse(String identifier) {
+        return valueOf(identifier.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,193 @@
+package trekkingtracker.event.publishing;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Collects statistics about the events dispatched by a {@link ThreadAwareEventPublisher}. Thread-safe. */
+public final class DispatchStatistics {
+    /** The number of events waiting to be dispatched */
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    /** The highest number of events which have been waiting to be dispatched at once */
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    /** The number of events whose background listeners have been run */
+    private final LongAdder dispatches = new LongAdder();
+    /** The total time in nanoseconds from publishing the events until their background listeners were run */
+    private final LongAdder dispatchLatencyNanos = new LongAdder();
+    /** The longest time in nanoseconds from publishing an event until its background listeners were run */
+    private final AtomicLong maxDispatchLatencyNanos = new AtomicLong();
+    /** The number of events whose ui listeners have been run */
+    private final LongAdder uiDispatches = new LongAdder();
+    /** The total time in nanoseconds from publishing the events until their ui listeners were run */
+    private final LongAdder uiLatencyNanos = new LongAdder();
+    /** The longest time in nanoseconds from publishing an event until its ui listeners were run */
+    private final AtomicLong maxUiLatencyNanos = new AtomicLong();
+    /** The number of events which have been delivered to the background ui listeners */
+    private final LongAdder backgroundDispatches = new LongAdder();
+    /** The total time in nanoseconds from publishing the events until their background ui listeners were run */
+    private final LongAdder backgroundLatencyNanos = new LongAdder();
+    /** The longest time in nanoseconds from publishing an event until its background ui listeners were run */
+    private final AtomicLong maxBackgroundLatencyNanos = new AtomicLong();
+    
+    /**
+     * Sets the number of events currently waiting to be dispatched.
+     *
+     * @param depth
+     *         the number of waiting events
+     */
+    void queueDepth(int depth) {
+        queueDepth.set(depth);
+        maxQueueDepth.accumulateAndGet(depth, Math::max);
+    }
+    
+    /**
+     * Records an event whose background listeners have been run.
+     *
+     * @param latencyNanos
+     *         the time in nanoseconds from publishing the event until its background listeners were run
+     */
+    void dispatched(long latencyNanos) {
+        dispatches.increment();
+        dispatchLatencyNanos.add(latencyNanos);
+        maxDispatchLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+    }
+    
+    /**
+     * Records an event whose ui listeners have been run.
+     *
+     * @param latencyNanos
+     *         the time in nanoseconds from publishing the event until its ui listeners were run
+     */
+    void uiDispatched(long latencyNanos) {
+        uiDispatches.increment();
+        uiLatencyNanos.add(latencyNanos);
+        maxUiLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+    }
+    
+    /**
+     * Records an event which has been delivered to the ui listeners of {@link EventPriority#BACKGROUND} priority.
+     *
+     * @param latencyNanos
+     *         the time in nanoseconds from publishing the event until its background ui listeners were run
+     */
+    void backgroundDispatched(long latencyNanos) {
+        backgroundDispatches.increment();
+        backgroundLatencyNanos.add(latencyNanos);
+        maxBackgroundLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+    }
+    
+    /**
+     * Returns the number of events currently waiting to be dispatched.
+     *
+     * @return the number of waiting events
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+    
+    /**
+     * Returns the highest number of events which have been waiting to be dispatched at once.
+     *
+     * @return the highest number of waiting events
+     */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+    
+    /**
+     * Returns the number of events whose background listeners have been run so far.
+     *
+     * @return the number of dispatched events
+     */
+    public long getDispatchCount() {
+        return dispatches.sum();
+    }
+    
+    /**
+     * Returns the average time from publishing an event until its background listeners were run.
+     *
+     * @return the average dispatch latency in milliseconds, {@code 0} if nothing has been dispatched yet
+     */
+    public double getAverageDispatchLatencyMillis() {
+        return averageMillis(dispatchLatencyNanos.sum(), dispatches.sum());
+    }
+    
+    /**
+     * Returns the longest time from publishing an event until its background listeners were run.
+     *
+     * @return the maximum dispatch latency in milliseconds
+     */
+    public double getMaxDispatchLatencyMillis() {
+        return averageMillis(maxDispatchLatencyNanos.get(), 1);
+    }
+    
+    /**
+     * Returns the average time from publishing an event until its ui listeners were run.
+     *
+     * @return the average ui latency in milliseconds, {@code 0} if nothing has reached the ui yet
+     */
+    public double getAverageUiLatencyMillis() {
+        return averageMillis(uiLatencyNanos.sum(), uiDispatches.sum());
+    }
+    
+    /**
+     * Returns the longest time from publishing an event until its ui listeners were run.
+     *
+     * @return the maximum ui latency in milliseconds
+     */
+    public double getMaxUiLatencyMillis() {
+        return averageMillis(maxUiLatencyNanos.get(), 1);
+    }
+    
+    /**
+     * Returns the number of events which have been delivered to the background ui listeners so far, merged events
+     * included.
+     *
+     * @return the number of events delivered to the background ui listeners
+     */
+    public long getBackgroundDispatchCount() {
+        return backgroundDispatches.sum();
+    }
+    
+    /**
+     * Returns the average time from publishing an event until its background ui listeners were run.
+     *
+     * @return the average background latency in milliseconds, {@code 0} if nothing has been delivered yet
+     */
+    public double getAverageBackgroundLatencyMillis() {
+        return averageMillis(backgroundLatencyNanos.sum(), backgroundDispatches.sum());
+    }
+    
+    /**
+     * Returns the longest time from publishing an event until its background ui listeners were run.
+     *
+     * @return the maximum background latency in milliseconds
+     */
+    public double getMaxBackgroundLatencyMillis() {
+        return averageMillis(maxBackgroundLatencyNanos.get(), 1);
+    }
+    
+    /**
+     * Calculates an average duration.
+     *
+     * @param totalNanos
+     *         the sum of all durations in nanoseconds
+     * @param count
+     *         the number of durations
+     * @return the average duration in milliseconds, {@code 0} if the count is {@code 0}
+     */
+    private static double averageMillis(long totalNanos, long count) {
+        return count == 0 ? 0 : (double) totalNanos / count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+    
+    @Override
+    public String toString() {
+        return String.format(
+                "Event queue depth %d (max %d), dispatch latency %.2f ms (max %.2f ms) over %d events, ui latency %.2f"
+                        + " ms (max %.2f ms), background ui latency %.2f ms (max %.2f ms)", getQueueDepth(),
+                getMaxQueueDepth(), getAverageDispatchLatencyMillis(), getMaxDispatchLatencyMillis(),
+                getDispatchCount(), getAverageUiLatencyMillis(), getMaxUiLatencyMillis(),
+                getAverageBackgroundLatencyMillis(), getMaxBackgroundLatencyMillis());
+    }
+}
@@ -0,0 +1,163 @@
+package trekkingtracker.event.publishing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Routes events to the handlers declared per event class, instead of checking the event's class against each of
+ * them. The handler of a concrete event class is resolved once and cached, so adding handlers for further classes
+ * doesn't slow down the dispatching of the others. An event is routed to the handler declared for its own class,
+ * otherwise to the first declared handler for one of its supertypes. Immutable and thread-safe, see {@link
+ * #builder()}.
+ *
+ * @param <R>
+ *         the type of the receiver handling the events, so a single table can be shared by all receivers
+ * @param <E>
+ *         the common type of the events
+ */
+public final class DispatchTable<R, E> {
+    /** Marks the event classes without a handler in the {@link #resolved} handlers */
+    private static final BiConsumer<Object, Object> NO_HANDLER = (receiver, event) -> {};
+    /** The declared handlers, in the order of their declaration */
+    private final List<Declaration<R>> declarations;
+    /** The handlers per concrete event class, the declared ones and the ones resolved on first use */
+    private final Map<Class<?>, BiConsumer<? super R, Object>> resolved = new ConcurrentHashMap<>();
+    
+    /**
+     * Creates a new {@code DispatchTable}.
+     *
+     * @param declarations
+     *         the declared handlers, in the order of their declaration
+     */
+    private DispatchTable(List<Declaration<R>> declarations) {
+        this.declarations = declarations;
+        for (Declaration<R> declaration : declarations)
+            resolved.putIfAbsent(declaration.eventType, declaration.handler);
+    }
+    
+    /**
+     * Creates a builder for a new {@code DispatchTable}.
+     *
+     * @param <R>
+     *         the type of the receiver handling the events
+     * @param <E>
+     *         the common type of the events
+     * @return the builder, to declare the handlers with
+     */
+    public static <R, E> Builder<R, E> builder() {
+        return new Builder<>();
+    }
+    
+    /**
+     * Routes an event to its handler.
+     *
+     * @param receiver
+     *         the receiver handling the event
+     * @param event
+     *         the event to be handled
+     * @return {@code true} if there's a handler for the event, {@code false} if it has been ignored
+     */
+    public boolean dispatch(R receiver, E event) {
+        BiConsumer<? super R, Object> handler = resolved.get(event.getClass());
+        if (handler == null) handler = resolve(event.getClass());
+        if (handler == NO_HANDLER) return false;
+        handler.accept(receiver, event);
+        return true;
+    }
+    
+    /**
+     * Determines the handler of an event class which hasn't been declared itself, and caches it.
+     *
+     * @param eventClass
+     *         the concrete class of the event
+     * @return the handler declared first for one of its supertypes, or {@link #NO_HANDLER}
+     */
+    private BiConsumer<? super R, Object> resolve(Class<?> eventClass) {
+        BiConsumer<? super R, Object> handler = NO_HANDLER;
+        for (Declaration<R> declaration : declarations) {
+            if (declaration.eventType.isAssignableFrom(eventClass)) {
+                handler = declaration.handler;
+                break;
+            }
+        }
+        resolved.putIfAbsent(eventClass, handler);
+        return handler;
+    }
+    
+    /**
+     * Collects the handlers of a {@link DispatchTable}.
+     *
+     * @param <R>
+     *         the type of the receiver handling the events
+     * @param <E>
+     *         the common type of the events
+     */
+    public static final class Builder<R, E> {
+        /** The declared handlers, in the order of their declaration */
+        private final List<Declaration<R>> declarations = new ArrayList<>();
+        
+        /** Creates a new {@code Builder}, see {@link DispatchTable#builder()}. */
+        private Builder() {}
+        
+        /**
+         * Declares the handler for an event class.
+         *
+         * @param eventType
+         *         the handler will handle all events of this event type (and all its subtypes, unless they have an
+         *         own handler or an earlier declared handler matches as well)
+         * @param handler
+         *         handles the event, e.g. a method reference of the receiver
+         * @param <T>
+         *         the type of the events to be handled
+         * @return this builder
+         * @throws IllegalArgumentException
+         *         if there's a handler for the event type already
+         */
+        @SuppressWarnings("unchecked")
+        public <T extends E> Builder<R, E> on(Class<T> eventType, BiConsumer<? super R, ? super T> handler) {
+            for (Declaration<R> declaration : declarations)
+                if (declaration.eventType.equals(eventType)) throw new IllegalArgumentException(
+                        String.format("There's a handler for %s already.", eventType.getSimpleName()));
+            declarations.add(new Declaration<>(eventType, (BiConsumer<? super R, Object>) handler));
+            return this;
+        }
+        
+        /**
+         * Creates the {@code DispatchTable} with the declared handlers.
+         *
+         * @return the new table
+         */
+        public DispatchTable<R, E> build() {
+            return new DispatchTable<>(new ArrayList<>(declarations));
+        }
+    }
+    
+    /**
+     * A handler declared for an event type. Immutable.
+     *
+     * @param <R>
+     *         the type of the receiver handling the events
+     */
+    private static final class Declaration<R> {
+        /** The handler will handle all events of this event type (and all its subtypes) */
+        private final Class<?> eventType;
+        /** The handler */
+        private final BiConsumer<? super R, Object> handler;
+        
+        /**
+         * Creates a new {@code Declaration}.
+         *
+         * @param eventType
+         *         the handler will handle all events of this event type (and all its subtypes)
+         * @param handler
+         *         the handler
+         */
+        private Declaration(Class<?> eventType, BiConsumer<? super R, Object> handler) {
+            this.eventType = eventType;
+            this.handler = handler;
+        }
+    }
+}
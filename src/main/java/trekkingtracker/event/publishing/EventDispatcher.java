@@ -0,0 +1,343 @@
+package trekkingtracker.event.publishing;
+
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Runs the listeners of published events on a fixed number of background threads, the so-called lanes, and hands
+ * the events over to the {@link UiEventBuffer UiEventBuffers} for their ui listeners afterwards. Each lane runs its
+ * events one after another. With {@link DispatchOrdering#GLOBAL} there is just one lane, with {@link
+ * DispatchOrdering#PARTICIPANT} each {@link KeyedEvent} is assigned to a lane by its key, events without a key pass
+ * all lanes at once like a barrier.
+ * <p>
+ * Events are dispatched in the order they have been published, except that an event of a higher {@link EventPriority}
+ * may overtake pending events of a lower one on the same lane, as long as they have different keys and no barrier is
+ * in between. A {@link MultiKeyedEvent} may overtake pending events with other keys as well, everything else (and all
+ * events with {@link DispatchOrdering#GLOBAL}) is never overtaken.
+ */
+final class EventDispatcher implements Closeable {
+    /** The time in seconds {@link #close()} waits for the pending events */
+    private static final long CLOSE_TIMEOUT_SECONDS = 5;
+    /** Each one runs its events one after another */
+    private final Lane[] lanes;
+    /** {@code true} if all events have to be dispatched in the order they have been published */
+    private final boolean global;
+    /** Hands the events over to the ui listeners, along with the {@link System#nanoTime()} of their publishing */
+    private final ObjLongConsumer<Object> uiHandover;
+    /** The number of events waiting to be dispatched */
+    private final AtomicInteger pending = new AtomicInteger();
+    /** Collects the queue depth and latencies */
+    private final DispatchStatistics statistics;
+    /** The number of events dispatched so far, orders the events of the same priority on a lane */
+    private long sequence = 0;
+    
+    /**
+     * Creates a new {@code EventDispatcher}.
+     *
+     * @param ordering
+     *         which events are kept in the order they have been published
+     * @param workerThreads
+     *         the number of background threads, ignored for {@link DispatchOrdering#GLOBAL} which uses a single one
+     * @param uiHandover
+     *         hands the events over to the ui listeners, along with the {@link System#nanoTime()} of their publishing
+     * @param statistics
+     *         collects the queue depth and latencies
+     * @throws IllegalArgumentException
+     *         if the number of threads is lower than {@code 1}
+     */
+    EventDispatcher(DispatchOrdering ordering, int workerThreads, ObjLongConsumer<Object> uiHandover,
+            DispatchStatistics statistics) {
+        if (workerThreads < 1) throw new IllegalArgumentException("At least one worker thread is required.");
+        this.uiHandover = uiHandover;
+        this.statistics = statistics;
+        global = ordering == DispatchOrdering.GLOBAL;
+        lanes = new Lane[global ? 1 : workerThreads];
+        for (int i = 0; i < lanes.length; i++)
+            lanes[i] = new Lane("event-dispatcher-" + i);
+    }
+    
+    /**
+     * Dispatches an event: runs the background job on the event's lane and hands the event over to the ui listeners
+     * once the background job is finished.
+     *
+     * @param event
+     *         the published event, determines the lane and the priority
+     * @param backgroundJob
+     *         runs the event's background listeners
+     */
+    synchronized void dispatch(Object event, Runnable backgroundJob) {
+        // synchronized, so all lanes receive the barriers in the same order as the other events
+        long published = System.nanoTime();
+        statistics.queueDepth(pending.incrementAndGet());
+        Runnable job = () -> run(event, published, backgroundJob);
+        int rank = EventPriority.of(event).ordinal();
+        long position = sequence++;
+        Object key = !global && event instanceof KeyedEvent ? ((KeyedEvent) event).getDispatchKey() : null;
+        Collection<?> keys = !global && event instanceof MultiKeyedEvent ? ((MultiKeyedEvent) event)
+                .getDispatchKeys() : null;
+        if (key != null) lanes[Math.floorMod(spread(key.hashCode()), lanes.length)].execute(job, rank, position, key,
+                null);
+        else if (lanes.length == 1) lanes[0].execute(job, rank, position, null, keys);
+        else dispatchBarrier(job, rank, position, keys);
+    }
+    
+    /**
+     * Runs a job once all lanes have finished their previous events. The lanes are blocked until the job is finished,
+     * so none of them starts with a later event before.
+     *
+     * @param job
+     *         the job to be run
+     * @param rank
+     *         the priority of the event, lower values are dispatched first
+     * @param position
+     *         the position of the event among all dispatched events
+     * @param keys
+     *         the keys of the event, or {@code null} if it must not overtake any pending event
+     */
+    private void dispatchBarrier(Runnable job, int rank, long position, Collection<?> keys) {
+        AtomicInteger outstanding = new AtomicInteger(lanes.length);
+        CountDownLatch finished = new CountDownLatch(1);
+        for (Lane lane : lanes) {
+            lane.execute(() -> {
+                if (outstanding.decrementAndGet() == 0) {
+                    try {
+                        job.run();
+                    } finally {
+                        finished.countDown();
+                    }
+                } else {
+                    awaitUninterruptibly(finished);
+                }
+            }, rank, position, null, keys);
+        }
+    }
+    
+    /**
+     * Runs the background job of an event and hands the event over to the ui listeners afterwards.
+     *
+     * @param event
+     *         the published event
+     * @param published
+     *         the {@link System#nanoTime()} the event has been published at
+     * @param backgroundJob
+     *         runs the event's background listeners
+     */
+    private void run(Object event, long published, Runnable backgroundJob) {
+        statistics.queueDepth(pending.decrementAndGet());
+        try {
+            backgroundJob.run();
+        } catch (RuntimeException e) {/*no op, must not stop the lane*/}
+        statistics.dispatched(System.nanoTime() - published);
+        uiHandover.accept(event, published);
+    }
+    
+    /**
+     * Dispatches the pending events (waiting a few seconds at most) and stops the background threads. Events
+     * published afterwards are rejected.
+     */
+    @Override
+    public void close() {
+        for (Lane lane : lanes)
+            lane.executor.shutdown();
+        try {
+            for (Lane lane : lanes)
+                lane.executor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Spreads the bits of a hash code, so keys whose hash codes only differ in the upper bits still end up on
+     * different lanes.
+     *
+     * @param hashCode
+     *         the hash code of a key
+     * @return the spread hash code
+     */
+    private static int spread(int hashCode) {
+        return hashCode ^ (hashCode >>> 16);
+    }
+    
+    /**
+     * Waits until the latch has been counted down, even if the thread gets interrupted meanwhile.
+     *
+     * @param latch
+     *         the latch to wait for
+     */
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+    
+    /**
+     * A background thread running its events one after another, by their priority and otherwise in the order they
+     * have been dispatched. Tracks the priorities of its pending events, so an event never overtakes one it has to
+     * follow.
+     */
+    private static final class Lane {
+        /** The number of priorities */
+        private static final int RANKS = EventPriority.values().length;
+        /** Runs the events, the one with the lowest rank and position first */
+        private final ThreadPoolExecutor executor;
+        /** The number of pending events per rank */
+        private final int[] pendingPerRank = new int[RANKS];
+        /** The number of pending barriers (events without a single key) per rank */
+        private final int[] barriersPerRank = new int[RANKS];
+        /** The number of pending events per key and rank */
+        private final Map<Object, int[]> keysPerRank = new HashMap<>();
+        
+        /**
+         * Creates a new {@code Lane}.
+         *
+         * @param threadName
+         *         the name of the background thread
+         */
+        private Lane(String threadName) {
+            executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(), r -> {
+                Thread thread = new Thread(r, threadName);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        
+        /**
+         * Queues the job of an event. Its rank is raised to the highest rank of the pending events it has to follow.
+         *
+         * @param job
+         *         the job to be run
+         * @param rank
+         *         the priority of the event, lower values are dispatched first
+         * @param position
+         *         the position of the event among all dispatched events
+         * @param key
+         *         the key of the event, or {@code null} if it's a barrier
+         * @param keys
+         *         the keys of a barrier which may overtake pending events with other keys, {@code null} if it must not
+         *         overtake any pending event
+         */
+        private synchronized void execute(Runnable job, int rank, long position, Object key, Collection<?> keys) {
+            int effectiveRank;
+            if (key != null) {
+                effectiveRank = Math.max(rank, Math.max(highestRank(keysPerRank.get(key)),
+                        highestRank(barriersPerRank)));
+            } else if (keys != null) {
+                effectiveRank = Math.max(rank, highestRank(barriersPerRank));
+                for (Object otherKey : keys)
+                    effectiveRank = Math.max(effectiveRank, highestRank(keysPerRank.get(otherKey)));
+            } else {
+                effectiveRank = Math.max(rank, highestRank(pendingPerRank));
+            }
+            LaneJob laneJob = new LaneJob(this, job, effectiveRank, position, key);
+            count(laneJob, 1);
+            executor.execute(laneJob);
+        }
+        
+        /**
+         * Updates the pending events.
+         *
+         * @param job
+         *         the job which has been queued or started
+         * @param delta
+         *         {@code 1} if it has been queued, {@code -1} if it has been started
+         */
+        private void count(LaneJob job, int delta) {
+            pendingPerRank[job.rank] += delta;
+            if (job.key == null) {
+                barriersPerRank[job.rank] += delta;
+                return;
+            }
+            int[] perRank = keysPerRank.computeIfAbsent(job.key, k -> new int[RANKS]);
+            perRank[job.rank] += delta;
+            if (highestRank(perRank) == 0 && perRank[0] == 0) keysPerRank.remove(job.key);
+        }
+        
+        /**
+         * Marks a job as started, so later events don't have to follow it anymore.
+         *
+         * @param job
+         *         the started job
+         */
+        private synchronized void started(LaneJob job) {
+            count(job, -1);
+        }
+        
+        /**
+         * Determines the highest rank with pending events.
+         *
+         * @param perRank
+         *         the number of pending events per rank, can be {@code null}
+         * @return the highest rank with pending events, {@code 0} if there are none
+         */
+        private static int highestRank(int[] perRank) {
+            if (perRank == null) return 0;
+            for (int rank = perRank.length - 1; rank > 0; rank--)
+                if (perRank[rank] > 0) return rank;
+            return 0;
+        }
+    }
+    
+    /** The job of an event queued on a {@link Lane}, ordered by its rank and position. */
+    private static final class LaneJob implements Runnable, Comparable<LaneJob> {
+        /** The lane the job is queued on */
+        private final Lane lane;
+        /** The job to be run */
+        private final Runnable job;
+        /** The effective priority, lower values are run first */
+        private final int rank;
+        /** The position of the event among all dispatched events */
+        private final long position;
+        /** The key of the event, {@code null} for barriers */
+        private final Object key;
+        
+        /**
+         * Creates a new {@code LaneJob}.
+         *
+         * @param lane
+         *         the lane the job is queued on
+         * @param job
+         *         the job to be run
+         * @param rank
+         *         the effective priority, lower values are run first
+         * @param position
+         *         the position of the event among all dispatched events
+         * @param key
+         *         the key of the event, {@code null} for barriers
+         */
+        private LaneJob(Lane lane, Runnable job, int rank, long position, Object key) {
+            this.lane = lane;
+            this.job = job;
+            this.rank = rank;
+            this.position = position;
+            this.key = key;
+        }
+        
+        @Override
+        public void run() {
+            lane.started(this);
+            job.run();
+        }
+        
+        @Override
+        public int compareTo(LaneJob other) {
+            if (rank != other.rank) return Integer.compare(rank, other.rank);
+            return Long.compare(position, other.position);
+        }
+    }
+}
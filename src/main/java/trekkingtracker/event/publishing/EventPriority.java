@@ -0,0 +1,27 @@
+package trekkingtracker.event.publishing;
+
+/**
+ * The priority classes of the events and the event listeners. Publishers which don't distinguish between priorities
+ * treat everything as {@link #NORMAL}.
+ */
+public enum EventPriority {
+    /** Time-critical work, e.g. capturing starts and stops, which shall be persisted and acknowledged first */
+    CRITICAL,
+    /** Everything which doesn't tell otherwise */
+    NORMAL,
+    /** Work which may be delayed or merged under load, e.g. recalculating overviews and statistics */
+    BACKGROUND;
+    
+    /**
+     * Determines the priority of an event.
+     *
+     * @param event
+     *         the event
+     * @return the priority of a {@link PrioritizedEvent}, otherwise {@link #NORMAL}
+     */
+    public static EventPriority of(Object event) {
+        if (!(event instanceof PrioritizedEvent)) return NORMAL;
+        EventPriority priority = ((PrioritizedEvent) event).getPriority();
+        return priority != null ? priority : NORMAL;
+    }
+}
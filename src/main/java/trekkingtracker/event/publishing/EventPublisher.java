@@ -1,5 +1,8 @@
 package trekkingtracker.event.publishing;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
 /** Propagates events of any type to listeners for these event types. */
 public interface EventPublisher {
     /**
@@ -12,6 +15,24 @@ public interface EventPublisher {
      */
     <T> void addEventListener(Class<T> eventType, EventHandler<T> toAdd);
     
+    /**
+     * Registers a new event listener with a priority for the given event type. Publishers which don't distinguish
+     * between priorities register it like any other listener.
+     *
+     * @param eventType
+     *         the listener will listen to all events of this event type (and all its subtypes)
+     * @param toAdd
+     *         the listener to be registered
+     * @param priority
+     *         the priority of the listener, e.g. {@link EventPriority#BACKGROUND} if its events may be delayed or
+     *         merged under load
+     * @param <T>
+     *         the type of event the listener shall be registered for
+     */
+    default <T> void addEventListener(Class<T> eventType, EventHandler<T> toAdd, EventPriority priority) {
+        addEventListener(eventType, toAdd);
+    }
+    
     /**
      * Unregisters the listener for all event types.
      *
@@ -43,4 +64,42 @@ public interface EventPublisher {
      *         the type of the event which is propagated
      */
     <T> void publish(T event);
+    
+    /**
+     * Propagates an event like {@link #publish(Object)} and returns its acknowledgement, so the caller can react to
+     * the outcome instead of waiting for the resulting events. Cancelling the acknowledgement withdraws the event if
+     * its listener hasn't claimed it yet.
+     *
+     * @param request
+     *         to be propagated
+     * @param <O>
+     *         the type of the outcome
+     * @return completed with the outcome as soon as the event has been processed
+     */
+    default <O> CompletableFuture<O> submit(Acknowledgeable<O> request) {
+        CompletableFuture<O> acknowledgement = request.getAcknowledgement();
+        publish(request);
+        return acknowledgement;
+    }
+    
+    /**
+     * Propagates an event like {@link #submit(Acknowledgeable)}, but withdraws it if its listener hasn't claimed it in
+     * time. A claimed event isn't withdrawn anymore, its outcome is awaited however long the processing takes.
+     *
+     * @param request
+     *         to be propagated
+     * @param timeout
+     *         how long to wait for the outcome
+     * @param unit
+     *         the unit of the timeout
+     * @param <O>
+     *         the type of the outcome
+     * @return completed with the outcome as soon as the event has been processed, or exceptionally with a {@link
+     * java.util.concurrent.TimeoutException} if the event has been withdrawn
+     */
+    default <O> CompletableFuture<O> submit(Acknowledgeable<O> request, long timeout, TimeUnit unit) {
+        CompletableFuture<O> acknowledgement = request.getAcknowledgement().orTimeout(timeout, unit);
+        publish(request);
+        return acknowledgement;
+    }
 }
@@ -0,0 +1,15 @@
+package trekkingtracker.event.publishing;
+
+/**
+ * Event which relates to a single entity, e.g. a participant. Events with equal keys are dispatched in the order they
+ * have been published, see {@link DispatchOrdering#PARTICIPANT}.
+ */
+public interface KeyedEvent {
+    /**
+     * Returns the key of the entity the event relates to.
+     *
+     * @return the key, or {@code null} if the event relates to several entities and must be ordered against all
+     * other events
+     */
+    Object getDispatchKey();
+}
@@ -0,0 +1,17 @@
+package trekkingtracker.event.publishing;
+
+import java.util.Collection;
+
+/**
+ * Event which relates to several entities, e.g. a batch update of participants. It is dispatched in order with all
+ * other events like an event without a key, but may overtake pending events of a lower priority with other keys, see
+ * {@link PrioritizedEvent}.
+ */
+public interface MultiKeyedEvent {
+    /**
+     * Returns the keys of the entities the event relates to.
+     *
+     * @return the keys, see {@link KeyedEvent#getDispatchKey()}
+     */
+    Collection<?> getDispatchKeys();
+}
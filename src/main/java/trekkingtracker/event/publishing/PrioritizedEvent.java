@@ -0,0 +1,14 @@
+package trekkingtracker.event.publishing;
+
+/**
+ * Event which tells its own priority. A {@link ThreadAwareEventPublisher} dispatches {@link EventPriority#CRITICAL}
+ * events before pending events of a lower priority, as long as this doesn't break the configured order.
+ */
+public interface PrioritizedEvent {
+    /**
+     * Returns the priority of the event.
+     *
+     * @return the priority
+     */
+    EventPriority getPriority();
+}
@@ -0,0 +1,317 @@
+package trekkingtracker.event.publishing;
+
+import javafx.application.Platform;
+import trekkingtracker.ui.utils.UiUtils;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * {@code UiAwareEventPublisher} built on a preallocated ring buffer, for publishing lots of events (e.g. when
+ * replaying or simulating a run) without allocating anything per event. Publishers are serialized, so the ring has a
+ * single producer. It has two consumers, each one tracking its progress by a sequence number: a background thread runs
+ * the background listeners of all published events, the ui listeners are run in batches in the ui thread and may only
+ * pass the background thread's sequence (the barrier). A slot of the ring is reused as soon as the ui listeners have
+ * processed its event.
+ * <p>
+ * Events published by the listeners while the ring is full are held back and moved into the ring as soon as there's
+ * space, so a listener never has to wait for its own thread.
+ */
+public class RingBufferEventPublisher implements UiAwareEventPublisher, Closeable {
+    /** The number of slots if nothing else is configured */
+    private static final int DEFAULT_CAPACITY = 1024;
+    /** The number of spins before a {@link WaitStrategy#YIELDING} thread yields */
+    private static final int SPIN_ATTEMPTS = 100;
+    /** The time in seconds {@link #close()} waits for the pending events */
+    private static final long CLOSE_TIMEOUT_SECONDS = 5;
+    /** Holds all listeners from non-ui threads */
+    private final BasicEventPublisher nonUiPublisher = new BasicEventPublisher();
+    /** Holds all listeners from ui threads */
+    private final BasicEventPublisher uiPublisher = new BasicEventPublisher();
+    /** The slots holding the events, reused in turns */
+    private final Object[] slots;
+    /** Maps a sequence number to its slot */
+    private final int mask;
+    /** Tells how the threads wait for events or for free slots */
+    private final WaitStrategy waitStrategy;
+    /** Runs the batches of the ui listeners, in the order they have been handed over */
+    private final Executor uiExecutor;
+    /** The sequence number of the latest published event */
+    private final AtomicLong cursor = new AtomicLong(-1);
+    /** The sequence number of the latest event whose background listeners have been run */
+    private final AtomicLong nonUiSequence = new AtomicLong(-1);
+    /** The sequence number of the latest event whose ui listeners have been run */
+    private final AtomicLong uiSequence = new AtomicLong(-1);
+    /** Serializes the publishers and guards the {@link #heldBack} events */
+    private final Object producerLock = new Object();
+    /** Notifies {@link WaitStrategy#BLOCKING} threads about progress */
+    private final Object signal = new Object();
+    /** Events published by listeners while the ring was full, in the order they have been published */
+    private final ArrayDeque<Object> heldBack = new ArrayDeque<>();
+    /** {@code true} if a batch of ui listeners has been handed over and hasn't finished yet */
+    private final AtomicBoolean uiBatchScheduled = new AtomicBoolean();
+    /** Runs the next batch of ui listeners, created once so scheduling it doesn't allocate */
+    private final Runnable uiBatch = this::runUiBatch;
+    /** Runs the background listeners */
+    private final Thread consumer;
+    /** Tells whether the current thread runs the ui listeners */
+    private final BooleanSupplier uiThread;
+    /** {@code false} once the publisher has been closed */
+    private volatile boolean running = true;
+    
+    /**
+     * Creates a new {@code RingBufferEventPublisher} with 1024 slots whose threads block while waiting.
+     */
+    public RingBufferEventPublisher() {
+        this(DEFAULT_CAPACITY, WaitStrategy.BLOCKING, UiUtils::uiJob, Platform::isFxApplicationThread);
+    }
+    
+    /**
+     * Creates a new {@code RingBufferEventPublisher}.
+     *
+     * @param capacity
+     *         the number of slots, must be a power of two
+     * @param waitStrategy
+     *         tells how the threads wait for events or for free slots
+     * @param uiExecutor
+     *         runs the batches of the ui listeners in the ui thread, must keep their order
+     * @param uiThread
+     *         tells whether the current thread is the one the ui executor runs the batches in
+     * @throws IllegalArgumentException
+     *         if the capacity is not a positive power of two
+     */
+    public RingBufferEventPublisher(int capacity, WaitStrategy waitStrategy, Executor uiExecutor,
+            BooleanSupplier uiThread) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("The capacity must be a power of two.");
+        slots = new Object[capacity];
+        mask = capacity - 1;
+        this.waitStrategy = Objects.requireNonNull(waitStrategy);
+        this.uiExecutor = Objects.requireNonNull(uiExecutor);
+        this.uiThread = Objects.requireNonNull(uiThread);
+        consumer = new Thread(this::consume, "ring-event-consumer");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+    
+    @Override
+    public <T> void addEventListener(final Class<T> eventType, final EventHandler<T> toAdd) {
+        addEventListenerNonUi(eventType, toAdd);
+    }
+    
+    @Override
+    public <T> void addEventListener(Class<T> eventType, EventHandler<T> toAdd, boolean uiListener) {
+        Objects.requireNonNull(toAdd);
+        if (uiListener) uiPublisher.addEventListener(eventType, toAdd);
+        else nonUiPublisher.addEventListener(eventType, toAdd);
+    }
+    
+    @Override
+    public void removeEventListener(EventHandler<?> toRemove) {
+        nonUiPublisher.removeEventListener(toRemove);
+        uiPublisher.removeEventListener(toRemove);
+    }
+    
+    @Override
+    public <T> void removeEventListener(final Class<T> eventType, final EventHandler<T> toRemove) {
+        nonUiPublisher.removeEventListener(eventType, toRemove);
+        uiPublisher.removeEventListener(eventType, toRemove);
+    }
+    
+    /**
+     * Puts the event into the next free slot. Waits for a free slot if the ring is full, unless called by a listener.
+     *
+     * @param event
+     *         to be propagated
+     * @param <T>
+     *         the type of the event which is propagated
+     * @throws IllegalStateException
+     *         if the publisher has been closed
+     */
+    @Override
+    public <T> void publish(T event) {
+        Objects.requireNonNull(event);
+        boolean listenerThread = Thread.currentThread() == consumer || uiThread.getAsBoolean();
+        synchronized (producerLock) {
+            checkRunning();
+            if (heldBack.isEmpty() && tryPublish(event)) return;
+            if (listenerThread) {
+                heldBack.add(event);
+                return;
+            }
+        }
+        while (true) {
+            awaitSequence(uiSequence, cursor.get() + 1 - slots.length);
+            synchronized (producerLock) {
+                checkRunning();
+                publishHeldBack();
+                if (heldBack.isEmpty() && tryPublish(event)) return;
+            }
+        }
+    }
+    
+    /**
+     * Runs the listeners of the pending events (waiting a few seconds at most) and stops the background thread. Events
+     * published afterwards are rejected.
+     */
+    @Override
+    public void close() {
+        long last;
+        synchronized (producerLock) {
+            last = cursor.get() + heldBack.size();
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(CLOSE_TIMEOUT_SECONDS);
+        while (uiSequence.get() < last && System.nanoTime() < deadline)
+            Thread.yield();
+        synchronized (producerLock) {
+            running = false;
+        }
+        signal();
+        try {
+            consumer.join(TimeUnit.SECONDS.toMillis(CLOSE_TIMEOUT_SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Puts the event into the next slot if it's free. Must be called while holding the {@link #producerLock}.
+     *
+     * @param event
+     *         the event to be published
+     * @return {@code true} if the event has been published, {@code false} if the ring is full
+     */
+    private boolean tryPublish(Object event) {
+        long next = cursor.get() + 1;
+        if (next - slots.length > uiSequence.get()) return false;
+        slots[(int) next & mask] = event;
+        cursor.set(next); // publishes the slot content as well
+        signal();
+        return true;
+    }
+    
+    /**
+     * Moves the {@link #heldBack} events into the ring as long as there are free slots. Must be called while holding
+     * the {@link #producerLock}.
+     */
+    private void publishHeldBack() {
+        while (!heldBack.isEmpty() && tryPublish(heldBack.peek()))
+            heldBack.poll();
+    }
+    
+    /** Runs the background listeners of the published events until the publisher gets closed. */
+    private void consume() {
+        long next = 0;
+        while (running) {
+            long available = awaitSequence(cursor, next);
+            if (available < next) continue; // closed meanwhile
+            for (long sequence = next; sequence <= available; sequence++)
+                dispatch(nonUiPublisher, slots[(int) sequence & mask]);
+            nonUiSequence.set(available);
+            signal();
+            scheduleUiBatch();
+            next = available + 1;
+            synchronized (producerLock) {
+                publishHeldBack();
+            }
+        }
+    }
+    
+    /** Hands the next batch of ui listeners over to the ui thread unless there's one pending already. */
+    private void scheduleUiBatch() {
+        if (uiBatchScheduled.compareAndSet(false, true)) uiExecutor.execute(uiBatch);
+    }
+    
+    /** Runs the ui listeners of all events whose background listeners have been run, and frees their slots. */
+    private void runUiBatch() {
+        long end = nonUiSequence.get();
+        for (long sequence = uiSequence.get() + 1; sequence <= end; sequence++) {
+            int slot = (int) sequence & mask;
+            Object event = slots[slot];
+            slots[slot] = null;
+            dispatch(uiPublisher, event);
+        }
+        uiSequence.set(end);
+        signal();
+        uiBatchScheduled.set(false);
+        synchronized (producerLock) {
+            publishHeldBack();
+        }
+        if (nonUiSequence.get() > uiSequence.get()) scheduleUiBatch();
+    }
+    
+    /**
+     * Runs the listeners of an event.
+     *
+     * @param publisher
+     *         holds the listeners
+     * @param event
+     *         the event to be propagated
+     */
+    private static void dispatch(BasicEventPublisher publisher, Object event) {
+        try {
+            publisher.publish(event);
+        } catch (Exception e) {/*no op, must not stop the consumer*/}
+    }
+    
+    /**
+     * Waits until a sequence has reached the target, according to the {@link #waitStrategy}.
+     *
+     * @param sequence
+     *         the sequence to wait for
+     * @param target
+     *         the value the sequence must reach
+     * @return the current value of the sequence, lower than the target if the publisher has been closed meanwhile
+     */
+    private long awaitSequence(AtomicLong sequence, long target) {
+        long value;
+        int attempts = 0;
+        boolean interrupted = false;
+        while ((value = sequence.get()) < target && running) {
+            switch (waitStrategy) {
+                case BUSY_SPIN:
+                    Thread.onSpinWait();
+                    break;
+                case YIELDING:
+                    if (attempts++ < SPIN_ATTEMPTS) Thread.onSpinWait();
+                    else Thread.yield();
+                    break;
+                default:
+                    synchronized (signal) {
+                        try {
+                            if (sequence.get() < target && running) signal.wait();
+                        } catch (InterruptedException e) {
+                            interrupted = true;
+                        }
+                    }
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        return value;
+    }
+    
+    /** Wakes up the {@link WaitStrategy#BLOCKING} threads, so they check their sequences again. */
+    private void signal() {
+        if (waitStrategy == WaitStrategy.BLOCKING) {
+            synchronized (signal) {
+                signal.notifyAll();
+            }
+        }
+    }
+    
+    /**
+     * Checks whether events can still be published.
+     *
+     * @throws IllegalStateException
+     *         if the publisher has been closed
+     */
+    private void checkRunning() {
+        if (!running) throw new IllegalStateException("The publisher has been closed.");
+    }
+}
@@ -1,18 +1,153 @@
 package trekkingtracker.event.publishing;
 
+import trekkingtracker.config.EventConfig;
 import trekkingtracker.ui.utils.UiUtils;
 
+import java.io.Closeable;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
  * {@code EventPublisher} which distinguishes between background thread and ui thread event listeners. Background
- * listeners will be run first (in a background thread), afterwards ui-thread listeners in the ui thread.
+ * listeners will be run first (in a background thread), afterwards ui-thread listeners in the ui thread. The
+ * background threads are pooled by an {@link EventDispatcher}, which keeps the events in the configured order. The ui
+ * listeners receive the events in batches by an {@link UiEventBuffer}, at most once per JavaFX pulse.
+ * <p>
+ * {@link EventPriority#CRITICAL} events overtake pending events of lower priorities, as far as the ordering allows.
+ * The listeners of an event are run by their priority: {@link EventPriority#CRITICAL} ones first, {@link
+ * EventPriority#BACKGROUND} ones last. The background ui listeners receive their events in separate batches, delayed
+ * for a while, so the events published meanwhile are merged.
  */
-public class ThreadAwareEventPublisher implements EventPublisher {
-    /** Holds all listeners from non-ui threads */
-    private final BasicEventPublisher nonUiPublisher = new BasicEventPublisher();
-    /** Holds all listeners from ui threads */
-    private final BasicEventPublisher uiPublisher = new BasicEventPublisher();
+public class ThreadAwareEventPublisher implements UiAwareEventPublisher, Closeable {
+    /** The number of background threads if nothing else is configured */
+    private static final int DEFAULT_WORKER_THREADS = 4;
+    /** The time in milliseconds the background ui listeners are delayed if nothing else is configured */
+    private static final long DEFAULT_BACKGROUND_DELAY_MILLIS = 250;
+    /** Doesn't combine any events, so merged events with different keys are delivered one by one */
+    private static final Function<List<CoalescableEvent>, Object> NO_BATCHES = events -> null;
+    /** Holds all listeners from non-ui threads, per priority */
+    private final BasicEventPublisher[] nonUiPublishers = createPublishers();
+    /** Holds all listeners from ui threads, per priority */
+    private final BasicEventPublisher[] uiPublishers = createPublishers();
+    /** Collects the queue depth and latencies */
+    private final DispatchStatistics statistics = new DispatchStatistics();
+    /** Runs the listeners in the background threads and hands the events over to the ui listeners */
+    private final EventDispatcher dispatcher;
+    /** Delays the batches of the background ui listeners, {@code null} if they aren't delayed */
+    private final ScheduledExecutorService backgroundDelay;
+    /** {@code true} once a background ui listener has been registered */
+    private volatile boolean backgroundUiListeners = false;
+    
+    /**
+     * Creates a new {@code ThreadAwareEventPublisher} which keeps the events relating to the same participant in
+     * order and doesn't combine merged ui events to batches.
+     */
+    public ThreadAwareEventPublisher() {
+        this(DispatchOrdering.PARTICIPANT, DEFAULT_WORKER_THREADS, UiUtils::pulseJob, NO_BATCHES,
+                DEFAULT_BACKGROUND_DELAY_MILLIS);
+    }
+    
+    /**
+     * Creates a new {@code ThreadAwareEventPublisher}.
+     *
+     * @param config
+     *         tells the ordering, the number of background threads and the delay of the background ui listeners
+     * @param uiBatcher
+     *         combines merged {@link CoalescableEvent CoalescableEvents} with different keys to a single event for the
+     *         ui listeners, or returns {@code null} if it cannot
+     * @throws IllegalArgumentException
+     *         if the configured ordering is unknown, the number of threads is lower than {@code 1} or the delay is
+     *         negative
+     */
+    public ThreadAwareEventPublisher(EventConfig config, Function<List<CoalescableEvent>, Object> uiBatcher) {
+        this(DispatchOrdering.parse(config.ordering), config.workerThreads, UiUtils::pulseJob, uiBatcher,
+                config.backgroundDelayMillis);
+    }
+    
+    /**
+     * Creates a new {@code ThreadAwareEventPublisher}.
+     *
+     * @param ordering
+     *         which events are kept in the order they have been published
+     * @param workerThreads
+     *         the number of background threads
+     * @param uiFlushScheduler
+     *         runs the delivery of the buffered events to the ui listeners, must keep the order of the jobs
+     * @param uiBatcher
+     *         combines merged {@link CoalescableEvent CoalescableEvents} with different keys to a single event for the
+     *         ui listeners, or returns {@code null} if it cannot
+     * @throws IllegalArgumentException
+     *         if the number of threads is lower than {@code 1}
+     */
+    public ThreadAwareEventPublisher(DispatchOrdering ordering, int workerThreads, Executor uiFlushScheduler,
+            Function<List<CoalescableEvent>, Object> uiBatcher) {
+        this(ordering, workerThreads, uiFlushScheduler, uiBatcher, 0);
+    }
+    
+    /**
+     * Creates a new {@code ThreadAwareEventPublisher}.
+     *
+     * @param ordering
+     *         which events are kept in the order they have been published
+     * @param workerThreads
+     *         the number of background threads
+     * @param uiFlushScheduler
+     *         runs the delivery of the buffered events to the ui listeners, must keep the order of the jobs
+     * @param uiBatcher
+     *         combines merged {@link CoalescableEvent CoalescableEvents} with different keys to a single event for the
+     *         ui listeners, or returns {@code null} if it cannot
+     * @param backgroundDelayMillis
+     *         the time in milliseconds the delivery to the {@link EventPriority#BACKGROUND} ui listeners is delayed,
+     *         so the events published meanwhile are merged. {@code 0} delivers them with the next flush after the
+     *         other ui listeners.
+     * @throws IllegalArgumentException
+     *         if the number of threads is lower than {@code 1} or the delay is negative
+     */
+    public ThreadAwareEventPublisher(DispatchOrdering ordering, int workerThreads, Executor uiFlushScheduler,
+            Function<List<CoalescableEvent>, Object> uiBatcher, long backgroundDelayMillis) {
+        if (backgroundDelayMillis < 0) throw new IllegalArgumentException("The delay must not be negative.");
+        UiEventBuffer uiBuffer = new UiEventBuffer(uiFlushScheduler, event -> {
+            uiPublishers[EventPriority.CRITICAL.ordinal()].publish(event);
+            uiPublishers[EventPriority.NORMAL.ordinal()].publish(event);
+        }, uiBatcher, statistics::uiDispatched);
+        Executor backgroundScheduler;
+        if (backgroundDelayMillis == 0) {
+            backgroundDelay = null;
+            backgroundScheduler = uiFlushScheduler;
+        } else {
+            backgroundDelay = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "event-background-delay");
+                thread.setDaemon(true);
+                return thread;
+            });
+            backgroundScheduler = job -> backgroundDelay.schedule(() -> uiFlushScheduler.execute(job),
+                    backgroundDelayMillis, TimeUnit.MILLISECONDS);
+        }
+        UiEventBuffer backgroundBuffer = new UiEventBuffer(backgroundScheduler,
+                uiPublishers[EventPriority.BACKGROUND.ordinal()]::publish, uiBatcher,
+                statistics::backgroundDispatched);
+        dispatcher = new EventDispatcher(ordering, workerThreads, (event, published) -> {
+            uiBuffer.add(event, published);
+            if (backgroundUiListeners) backgroundBuffer.add(event, published);
+        }, statistics);
+    }
+    
+    /**
+     * Creates one publisher per priority.
+     *
+     * @return the publishers, indexed by the ordinal of their priority
+     */
+    private static BasicEventPublisher[] createPublishers() {
+        BasicEventPublisher[] publishers = new BasicEventPublisher[EventPriority.values().length];
+        for (int i = 0; i < publishers.length; i++)
+            publishers[i] = new BasicEventPublisher();
+        return publishers;
+    }
     
     /**
      * Registers a new background thread event listener for the given event type.
@@ -39,6 +174,7 @@ public class ThreadAwareEventPublisher implements EventPublisher {
      * @param <T>
      *         the type of event the listener shall be registered for
      */
+    @Override
     public <T> void addEventListenerNonUi(Class<T> eventType, EventHandler<T> toAdd) {
         addEventListener(eventType, toAdd, false);
     }
@@ -53,6 +189,7 @@ public class ThreadAwareEventPublisher implements EventPublisher {
      * @param <T>
      *         the type of event the listener shall be registered for
      */
+    @Override
     public <T> void addEventListenerUi(Class<T> eventType, EventHandler<T> toAdd) {
         addEventListener(eventType, toAdd, true);
     }
@@ -69,26 +206,95 @@ public class ThreadAwareEventPublisher implements EventPublisher {
      * @param <T>
      *         the type of event the listener shall be registered for
      */
+    @Override
     public <T> void addEventListener(Class<T> eventType, final EventHandler<T> toAdd, boolean uiListener) {
+        addEventListener(eventType, toAdd, uiListener, EventPriority.NORMAL);
+    }
+    
+    /**
+     * Registers a new background thread event listener with a priority for the given event type.
+     *
+     * @param eventType
+     *         the listener will listen to all events of this event type (and all its subtypes)
+     * @param toAdd
+     *         the listener to be registered
+     * @param priority
+     *         the priority of the listener, tells whether it's run before or after the other listeners
+     * @param <T>
+     *         the type of event the listener shall be registered for
+     */
+    @Override
+    public <T> void addEventListener(Class<T> eventType, EventHandler<T> toAdd, EventPriority priority) {
+        addEventListener(eventType, toAdd, false, priority);
+    }
+    
+    /**
+     * Registers a new event listener with a priority for the given event type.
+     *
+     * @param eventType
+     *         the listener will listen to all events of this event type (and all its subtypes)
+     * @param toAdd
+     *         the listener to be registered
+     * @param uiListener
+     *         {@code true} if the listener shall be called in an ui thread, otherwise {@code false}
+     * @param priority
+     *         the priority of the listener, tells whether it's run before or after the other listeners. {@link
+     *         EventPriority#BACKGROUND} ui listeners receive their events delayed and merged.
+     * @param <T>
+     *         the type of event the listener shall be registered for
+     */
+    @Override
+    public <T> void addEventListener(Class<T> eventType, EventHandler<T> toAdd, boolean uiListener,
+            EventPriority priority) {
         Objects.requireNonNull(toAdd);
-        if (uiListener) uiPublisher.addEventListener(eventType, toAdd);
-        else nonUiPublisher.addEventListener(eventType, toAdd);
+        if (uiListener) {
+            uiPublishers[priority.ordinal()].addEventListener(eventType, toAdd);
+            if (priority == EventPriority.BACKGROUND) backgroundUiListeners = true;
+        } else {
+            nonUiPublishers[priority.ordinal()].addEventListener(eventType, toAdd);
+        }
     }
     
     @Override
     public void removeEventListener(EventHandler<?> toRemove) {
-        nonUiPublisher.removeEventListener(toRemove);
-        uiPublisher.removeEventListener(toRemove);
+        for (BasicEventPublisher publisher : nonUiPublishers)
+            publisher.removeEventListener(toRemove);
+        for (BasicEventPublisher publisher : uiPublishers)
+            publisher.removeEventListener(toRemove);
     }
     
     @Override
     public <T> void removeEventListener(final Class<T> eventType, final EventHandler<T> toRemove) {
-        nonUiPublisher.removeEventListener(eventType, toRemove);
-        uiPublisher.removeEventListener(eventType, toRemove);
+        for (BasicEventPublisher publisher : nonUiPublishers)
+            publisher.removeEventListener(eventType, toRemove);
+        for (BasicEventPublisher publisher : uiPublishers)
+            publisher.removeEventListener(eventType, toRemove);
     }
     
     @Override
     public <T> void publish(T event) {
-        UiUtils.backgroundJob(() -> nonUiPublisher.publish(event), () -> uiPublisher.publish(event));
+        dispatcher.dispatch(event, () -> {
+            for (BasicEventPublisher publisher : nonUiPublishers)
+                publisher.publish(event);
+        });
+    }
+    
+    /**
+     * Returns the statistics about the published events.
+     *
+     * @return the queue depth and latencies, updated continuously
+     */
+    public DispatchStatistics getStatistics() {
+        return statistics;
+    }
+    
+    /**
+     * Runs the listeners of the pending events and stops the background threads. Delayed batches of the background ui
+     * listeners are still delivered.
+     */
+    @Override
+    public void close() {
+        dispatcher.close();
+        if (backgroundDelay != null) backgroundDelay.shutdown();
     }
 }
@@ -0,0 +1,86 @@
+package trekkingtracker.event.publishing;
+
+/**
+ * {@code EventPublisher} which distinguishes between background thread and ui thread event listeners: the background
+ * listeners of an event are run first, afterwards its ui listeners in the ui thread.
+ */
+public interface UiAwareEventPublisher extends EventPublisher {
+    /**
+     * Registers a new background thread event listener for the given event type.
+     *
+     * @param eventType
+     *         the listener will listen to all events of this event type (and all its subtypes)
+     * @param toAdd
+     *         the listener to be registered
+     * @param <T>
+     *         the type of event the listener shall be registered for
+     */
+    default <T> void addEventListenerNonUi(Class<T> eventType, EventHandler<T> toAdd) {
+        addEventListener(eventType, toAdd, false);
+    }
+    
+    /**
+     * Registers a new ui thread event listener for the given event type.
+     *
+     * @param eventType
+     *         the listener will listen to all events of this event type (and all its subtypes)
+     * @param toAdd
+     *         the listener to be registered
+     * @param <T>
+     *         the type of event the listener shall be registered for
+     */
+    default <T> void addEventListenerUi(Class<T> eventType, EventHandler<T> toAdd) {
+        addEventListener(eventType, toAdd, true);
+    }
+    
+    /**
+     * Registers a new event listener for the given event type.
+     *
+     * @param eventType
+     *         the listener will listen to all events of this event type (and all its subtypes)
+     * @param toAdd
+     *         the listener to be registered
+     * @param uiListener
+     *         {@code true} if the listener shall be called in an ui thread, otherwise {@code false}
+     * @param <T>
+     *         the type of event the listener shall be registered for
+     */
+    <T> void addEventListener(Class<T> eventType, EventHandler<T> toAdd, boolean uiListener);
+    
+    /**
+     * Registers a new ui thread event listener with a priority for the given event type.
+     *
+     * @param eventType
+     *         the listener will listen to all events of this event type (and all its subtypes)
+     * @param toAdd
+     *         the listener to be registered
+     * @param priority
+     *         the priority of the listener, e.g. {@link EventPriority#BACKGROUND} if its events may be delayed or
+     *         merged under load
+     * @param <T>
+     *         the type of event the listener shall be registered for
+     */
+    default <T> void addEventListenerUi(Class<T> eventType, EventHandler<T> toAdd, EventPriority priority) {
+        addEventListener(eventType, toAdd, true, priority);
+    }
+    
+    /**
+     * Registers a new event listener with a priority for the given event type. Publishers which don't distinguish
+     * between priorities register it like any other listener.
+     *
+     * @param eventType
+     *         the listener will listen to all events of this event type (and all its subtypes)
+     * @param toAdd
+     *         the listener to be registered
+     * @param uiListener
+     *         {@code true} if the listener shall be called in an ui thread, otherwise {@code false}
+     * @param priority
+     *         the priority of the listener
+     * @param <T>
+     *         the type of event the listener shall be registered for
+     */
+    default <T> void addEventListener(Class<T> eventType, EventHandler<T> toAdd, boolean uiListener,
+            EventPriority priority) {
+        addEventListener(eventType, toAdd, uiListener);
+    }
+}
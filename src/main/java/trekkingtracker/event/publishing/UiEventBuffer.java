@@ -0,0 +1,152 @@
+package trekkingtracker.event.publishing;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+
+/**
+ * Collects the events for the ui listeners and delivers them in batches, at most once per scheduled flush (i.e. once
+ * per JavaFX pulse). Consecutive {@link CoalescableEvent CoalescableEvents} of the same class are merged per key and,
+ * if there are several keys, combined to a single batch event. All other events are delivered as they are and keep
+ * their position relative to the merged ones. Thread-safe.
+ */
+final class UiEventBuffer {
+    /** Runs the flushes in the ui thread, e.g. on the next pulse */
+    private final Executor flushScheduler;
+    /** Delivers an event to the ui listeners */
+    private final Consumer<Object> uiListeners;
+    /** Combines merged events with different keys to a batch event, or returns {@code null} if it cannot */
+    private final Function<List<CoalescableEvent>, Object> batcher;
+    /** Records the time in nanoseconds from publishing an event until it has been delivered */
+    private final LongConsumer latencies;
+    /** Guards {@link #pending} and {@link #flushScheduled} */
+    private final Object lock = new Object();
+    /** The events waiting for the next flush, in the order they have been added */
+    private List<BufferedEvent> pending = new ArrayList<>();
+    /** {@code true} if a flush has been scheduled which hasn't started yet */
+    private boolean flushScheduled = false;
+    
+    /**
+     * Creates a new {@code UiEventBuffer}.
+     *
+     * @param flushScheduler
+     *         runs the flushes in the ui thread, must keep their order
+     * @param uiListeners
+     *         delivers an event to the ui listeners
+     * @param batcher
+     *         combines merged events with different keys to a batch event, or returns {@code null} if it cannot
+     * @param latencies
+     *         records the time in nanoseconds from publishing an event until it has been delivered
+     */
+    UiEventBuffer(Executor flushScheduler, Consumer<Object> uiListeners,
+            Function<List<CoalescableEvent>, Object> batcher, LongConsumer latencies) {
+        this.flushScheduler = flushScheduler;
+        this.uiListeners = uiListeners;
+        this.batcher = batcher;
+        this.latencies = latencies;
+    }
+    
+    /**
+     * Adds an event to be delivered with the next flush and schedules the flush if none is pending.
+     *
+     * @param event
+     *         the event to be delivered to the ui listeners
+     * @param published
+     *         the {@link System#nanoTime()} the event has been published at
+     */
+    void add(Object event, long published) {
+        synchronized (lock) {
+            pending.add(new BufferedEvent(event, published));
+            if (flushScheduled) return;
+            flushScheduled = true;
+        }
+        flushScheduler.execute(this::flush);
+    }
+    
+    /** Delivers all events added since the last flush. */
+    private void flush() {
+        List<BufferedEvent> buffered;
+        synchronized (lock) {
+            buffered = pending;
+            pending = new ArrayList<>();
+            flushScheduled = false;
+        }
+        int runStart = 0;
+        for (int i = 0; i < buffered.size(); i++) {
+            Object event = buffered.get(i).event;
+            if (isCoalescable(event)) {
+                if (event.getClass() != buffered.get(runStart).event.getClass()) {
+                    deliverRun(buffered.subList(runStart, i));
+                    runStart = i;
+                }
+            } else {
+                deliverRun(buffered.subList(runStart, i));
+                uiListeners.accept(event);
+                runStart = i + 1;
+            }
+        }
+        deliverRun(buffered.subList(runStart, buffered.size()));
+        long delivered = System.nanoTime();
+        for (BufferedEvent bufferedEvent : buffered)
+            latencies.accept(delivered - bufferedEvent.published);
+    }
+    
+    /**
+     * Merges consecutive coalescable events of the same class per key and delivers the result.
+     *
+     * @param run
+     *         the events to be merged
+     */
+    private void deliverRun(List<BufferedEvent> run) {
+        if (run.isEmpty()) return;
+        if (run.size() == 1) {
+            uiListeners.accept(run.get(0).event);
+            return;
+        }
+        Map<Object, CoalescableEvent> merged = new LinkedHashMap<>();
+        for (BufferedEvent bufferedEvent : run) {
+            CoalescableEvent event = (CoalescableEvent) bufferedEvent.event;
+            merged.merge(event.getDispatchKey(), event, CoalescableEvent::coalesce);
+        }
+        Object batch = merged.size() > 1 ? batcher.apply(new ArrayList<>(merged.values())) : null;
+        if (batch != null) uiListeners.accept(batch);
+        else merged.values().forEach(uiListeners);
+    }
+    
+    /**
+     * Tells whether an event can be merged with others.
+     *
+     * @param event
+     *         the event to be checked
+     * @return {@code true} if it is a {@link CoalescableEvent} with a key
+     */
+    private static boolean isCoalescable(Object event) {
+        return event instanceof CoalescableEvent && ((CoalescableEvent) event).getDispatchKey() != null;
+    }
+    
+    /** An event waiting to be delivered. Immutable. */
+    private static final class BufferedEvent {
+        /** The event to be delivered */
+        private final Object event;
+        /** The {@link System#nanoTime()} the event has been published at */
+        private final long published;
+        
+        /**
+         * Creates a new {@code BufferedEvent}.
+         *
+         * @param event
+         *         the event to be delivered
+         * @param published
+         *         the {@link System#nanoTime()} the event has been published at
+         */
+        private BufferedEvent(Object event, long published) {
+            this.event = event;
+            this.published = published;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package trekkingtracker.event.publishing;
+
+import java.util.Locale;
+
+/** Tells how the threads of a {@link RingBufferEventPublisher} wait for events or for free slots. */
+public enum WaitStrategy {
+    /** The threads sleep until they are notified, which costs the least CPU but adds the most latency */
+    BLOCKING,
+    /** The threads spin for a short while and yield to other threads afterwards */
+    YIELDING,
+    /** The threads spin all the time, which has the least latency but occupies one CPU core per waiting thread */
+    BUSY_SPIN;
+    
+    /**
+     * Parses a {@code WaitStrategy} case-insensitively, e.g. from a configuration value.
+     *
+     * @param identifier
+     *         the name of the wait strategy, words may be separated by {@code -} or {@code _}
+     * @return the parsed {@code WaitStrategy}
+     * @throws IllegalArgumentException
+     *         if there's no wait strategy with the given name
+     */
+    public static WaitStrategy parse(String identifier) {
+        return valueOf(identifier.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+    }
+}
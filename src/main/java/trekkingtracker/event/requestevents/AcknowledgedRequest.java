@@ -0,0 +1,30 @@
+package trekkingtracker.event.requestevents;
+
+import trekkingtracker.event.publishing.Acknowledgeable;
+
+/**
+ * Request which is acknowledged with its {@link RequestOutcome} once it has been processed, so the submitter can
+ * react to it, see {@link trekkingtracker.event.publishing.EventPublisher#submit(Acknowledgeable)}.
+ */
+public interface AcknowledgedRequest extends ParticipantEventRequest, Acknowledgeable<RequestOutcome> {
+    /**
+     * Completes the acknowledgement with the outcome, unless it has been completed before.
+     *
+     * @param outcome
+     *         the outcome of the request
+     */
+    default void acknowledge(RequestOutcome outcome) {
+        getAcknowledgement().complete(outcome);
+    }
+    
+    /**
+     * Claims the request for processing, so it can't be withdrawn anymore, see {@link
+     * trekkingtracker.event.publishing.Acknowledgement#claim()}.
+     *
+     * @return {@code true} if the request has been claimed, {@code false} if it has been cancelled or has timed out
+     * before and must not be processed anymore
+     */
+    default boolean claim() {
+        return getAcknowledgement().claim();
+    }
+}
@@ -0,0 +1,61 @@
+package trekkingtracker.event.requestevents;
+
+import trekkingtracker.event.publishing.Acknowledgement;
+import trekkingtracker.event.tracing.RequestTrace;
+
+/** Request to replace the current participant data with one of its backups */
+public class ParticipantBackupRestoreRequest implements AcknowledgedRequest {
+    /** The id of the backup to be restored */
+    private final int backupId;
+    /** Identifies the request and tells when it has been created */
+    private final RequestTrace trace = RequestTrace.start();
+    /** Completed with the outcome once the request has been processed */
+    private final Acknowledgement<RequestOutcome> acknowledgement = new Acknowledgement<>();
+    
+    /**
+     * Creates a new {@code ParticipantBackupRestoreRequest}.
+     *
+     * @param backupId
+     *         the id of the backup to be restored
+     */
+    public ParticipantBackupRestoreRequest(int backupId) {
+        this.backupId = backupId;
+    }
+    
+    /**
+     * Returns the id of the backup to be restored.
+     *
+     * @return the id of the backup to be restored
+     */
+    public int getBackupId() {
+        return backupId;
+    }
+    
+    @Override
+    public Acknowledgement<RequestOutcome> getAcknowledgement() {
+        return acknowledgement;
+    }
+    
+    @Override
+    public RequestTrace getTrace() {
+        return trace;
+    }
+    
+    @Override
+    public String toString() {
+        return "Restore backup " + backupId;
+    }
+    
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ParticipantBackupRestoreRequest)) return false;
+        final ParticipantBackupRestoreRequest that = (ParticipantBackupRestoreRequest) o;
+        return backupId == that.backupId;
+    }
+    
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(backupId);
+    }
+}
@@ -0,0 +1,119 @@
+package trekkingtracker.event.requestevents;
+
+import trekkingtracker.event.participantevents.ParticipantBatchUpdateEvent;
+import trekkingtracker.event.participantevents.ParticipantUpdateEvent;
+import trekkingtracker.event.publishing.Acknowledgement;
+import trekkingtracker.event.publishing.EventPriority;
+import trekkingtracker.event.publishing.MultiKeyedEvent;
+import trekkingtracker.event.publishing.PrioritizedEvent;
+import trekkingtracker.event.tracing.RequestTrace;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Request for updates of multiple participants which shall be validated and stored at once: either all of them are
+ * applied or none. Updates to states which have been stored already are skipped.
+ */
+public class ParticipantBatchUpdateRequest implements AcknowledgedRequest, PrioritizedEvent, MultiKeyedEvent {
+    /** The requested updates, in the order they shall be stored */
+    private final List<ParticipantUpdateRequest> updates;
+    /** Identifies the request and tells when it has been created */
+    private final RequestTrace trace = RequestTrace.start();
+    /** Completed with the outcome once the request has been processed */
+    private final Acknowledgement<RequestOutcome> acknowledgement = new Acknowledgement<>();
+    
+    /**
+     * Creates a new {@code ParticipantBatchUpdateRequest}.
+     *
+     * @param updates
+     *         the updates of the single participants, in the order they shall be stored. Each participant must have a
+     *         new state.
+     * @throws IllegalArgumentException
+     *         if an update has no new state
+     */
+    public ParticipantBatchUpdateRequest(List<ParticipantUpdateRequest> updates) {
+        for (ParticipantUpdateRequest update : updates)
+            if (update.getNewValue() == null) throw new IllegalArgumentException(
+                    "Batch updates must not delete participants.");
+        this.updates = Collections.unmodifiableList(new ArrayList<>(updates));
+    }
+    
+    /**
+     * Returns the requested event.
+     *
+     * @return the requested event
+     */
+    public ParticipantBatchUpdateEvent asEvent() {
+        List<ParticipantUpdateEvent> events = new ArrayList<>(updates.size());
+        for (ParticipantUpdateRequest update : updates)
+            events.add(update.asEvent());
+        return new ParticipantBatchUpdateEvent(events, trace);
+    }
+    
+    /**
+     * Returns the updates of the single participants.
+     *
+     * @return the unmodifiable updates, in the order they shall be stored
+     */
+    public List<ParticipantUpdateRequest> getUpdates() {
+        return updates;
+    }
+    
+    /**
+     * Returns the priority of the updates.
+     *
+     * @return {@link EventPriority#CRITICAL} if one of the updates is critical, e.g. a mass start, otherwise {@link
+     * EventPriority#NORMAL}
+     */
+    @Override
+    public EventPriority getPriority() {
+        for (ParticipantUpdateRequest update : updates)
+            if (update.getPriority() == EventPriority.CRITICAL) return EventPriority.CRITICAL;
+        return EventPriority.NORMAL;
+    }
+    
+    /**
+     * Returns the participants the updates relate to.
+     *
+     * @return the keys of the single updates
+     */
+    @Override
+    public Collection<?> getDispatchKeys() {
+        List<Object> keys = new ArrayList<>(updates.size());
+        for (ParticipantUpdateRequest update : updates)
+            keys.add(update.getDispatchKey());
+        return keys;
+    }
+    
+    @Override
+    public Acknowledgement<RequestOutcome> getAcknowledgement() {
+        return acknowledgement;
+    }
+    
+    @Override
+    public RequestTrace getTrace() {
+        return trace;
+    }
+    
+    @Override
+    public String toString() {
+        return "Batch update ParticipantEventRequest of " + updates.size() + " persons";
+    }
+    
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ParticipantBatchUpdateRequest)) return false;
+        final ParticipantBatchUpdateRequest that = (ParticipantBatchUpdateRequest) o;
+        return Objects.equals(updates, that.updates);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hash(updates);
+    }
+}
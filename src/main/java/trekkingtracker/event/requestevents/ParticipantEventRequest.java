@@ -1,4 +1,9 @@
 package trekkingtracker.event.requestevents;
 
-/** Marker interface for an event-like request to validate an operation and possibly adjust the persisted data model */
-public interface ParticipantEventRequest {}
+import trekkingtracker.event.tracing.Traceable;
+
+/**
+ * Interface for an event-like request to validate an operation and possibly adjust the persisted data model. Each
+ * request carries a trace, so the latency until it has been stored and displayed can be measured.
+ */
+public interface ParticipantEventRequest extends Traceable {}
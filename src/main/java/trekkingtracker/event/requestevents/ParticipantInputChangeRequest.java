@@ -2,14 +2,18 @@ package trekkingtracker.event.requestevents;
 
 import trekkingtracker.data.Person;
 import trekkingtracker.event.participantevents.ParticipantInputChangedEvent;
+import trekkingtracker.event.publishing.Acknowledgement;
+import trekkingtracker.event.tracing.RequestTrace;
 
 import java.util.Collection;
 import java.util.Objects;
 
 /** Request for change of the input */
-public class ParticipantInputChangeRequest implements ParticipantEventRequest {
+public class ParticipantInputChangeRequest implements AcknowledgedRequest {
     /** The requested event, for delegation */
     private final ParticipantInputChangedEvent asEvent;
+    /** Completed with the outcome once the request has been processed */
+    private final Acknowledgement<RequestOutcome> acknowledgement = new Acknowledgement<>();
     
     /**
      * Creates a new {@code ParticipantInputChangeRequest}.
@@ -19,7 +23,7 @@ public class ParticipantInputChangeRequest implements ParticipantEventRequest {
      *         for example to indicate the initialization has failed.
      */
     public ParticipantInputChangeRequest(Collection<Person> input) {
-        asEvent = new ParticipantInputChangedEvent(input);
+        asEvent = new ParticipantInputChangedEvent(input, RequestTrace.start());
     }
     
     /**
@@ -40,6 +44,16 @@ public class ParticipantInputChangeRequest implements ParticipantEventRequest {
         return asEvent.getInput();
     }
     
+    @Override
+    public Acknowledgement<RequestOutcome> getAcknowledgement() {
+        return acknowledgement;
+    }
+    
+    @Override
+    public RequestTrace getTrace() {
+        return asEvent.getTrace();
+    }
+    
     @Override
     public String toString() {
         int size = asEvent.getInput() != null ? asEvent.getInput().size() : 0;
@@ -1,5 +1,8 @@
 package trekkingtracker.event.requestevents;
 
+import trekkingtracker.event.publishing.Acknowledgement;
+import trekkingtracker.event.tracing.RequestTrace;
+
 import java.io.File;
 import java.nio.charset.Charset;
 import java.util.Objects;
@@ -7,11 +10,15 @@ import java.util.Objects;
 import static java.util.Objects.requireNonNull;
 
 /** Request to re-read the given start input */
-public class ParticipantInputResetRequest implements ParticipantEventRequest {
+public class ParticipantInputResetRequest implements AcknowledgedRequest {
     /** The file containing the new input */
     private final File startInput;
     /** The charset to parse the file with */
     private final Charset cs;
+    /** Identifies the request and tells when it has been created */
+    private final RequestTrace trace = RequestTrace.start();
+    /** Completed with the outcome once the request has been processed */
+    private final Acknowledgement<RequestOutcome> acknowledgement = new Acknowledgement<>();
     
     /**
      * Creates a new {@code ParticipantInputChangeRequest}.
@@ -44,6 +51,16 @@ public class ParticipantInputResetRequest implements ParticipantEventRequest {
         return cs;
     }
     
+    @Override
+    public Acknowledgement<RequestOutcome> getAcknowledgement() {
+        return acknowledgement;
+    }
+    
+    @Override
+    public RequestTrace getTrace() {
+        return trace;
+    }
+    
     @Override
     public String toString() {
         return "Reset with " + startInput + "'s content";
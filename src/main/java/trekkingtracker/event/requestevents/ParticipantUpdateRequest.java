@@ -2,13 +2,20 @@ package trekkingtracker.event.requestevents;
 
 import trekkingtracker.data.Person;
 import trekkingtracker.event.participantevents.ParticipantUpdateEvent;
+import trekkingtracker.event.publishing.Acknowledgement;
+import trekkingtracker.event.publishing.EventPriority;
+import trekkingtracker.event.publishing.KeyedEvent;
+import trekkingtracker.event.publishing.PrioritizedEvent;
+import trekkingtracker.event.tracing.RequestTrace;
 
 import java.util.Objects;
 
 /** Request for an participant update */
-public class ParticipantUpdateRequest implements ParticipantEventRequest {
+public class ParticipantUpdateRequest implements AcknowledgedRequest, KeyedEvent, PrioritizedEvent {
     /** The requested event, for delegation */
     private final ParticipantUpdateEvent asEvent;
+    /** Completed with the outcome once the request has been processed */
+    private final Acknowledgement<RequestOutcome> acknowledgement = new Acknowledgement<>();
     
     /**
      * Creates a new {@code ParticipantUpdateRequest}.
@@ -23,7 +30,7 @@ public class ParticipantUpdateRequest implements ParticipantEventRequest {
      *         if the old and new state must relate to two different participants
      */
     public ParticipantUpdateRequest(Person oldValue, Person newValue) {
-        asEvent = new ParticipantUpdateEvent(oldValue, newValue);
+        asEvent = new ParticipantUpdateEvent(oldValue, newValue, RequestTrace.start());
     }
     
     /**
@@ -32,7 +39,7 @@ public class ParticipantUpdateRequest implements ParticipantEventRequest {
      * @return the requested event
      */
     public ParticipantUpdateEvent asEvent() {
-        return new ParticipantUpdateEvent(getOldValue(), getNewValue());
+        return new ParticipantUpdateEvent(getOldValue(), getNewValue(), getTrace());
     }
     
     /**
@@ -53,6 +60,26 @@ public class ParticipantUpdateRequest implements ParticipantEventRequest {
         return asEvent.getNewValue();
     }
     
+    @Override
+    public Object getDispatchKey() {
+        return asEvent.getDispatchKey();
+    }
+    
+    @Override
+    public EventPriority getPriority() {
+        return asEvent.getPriority();
+    }
+    
+    @Override
+    public Acknowledgement<RequestOutcome> getAcknowledgement() {
+        return acknowledgement;
+    }
+    
+    @Override
+    public RequestTrace getTrace() {
+        return asEvent.getTrace();
+    }
+    
     @Override
     public String toString() {
         return "Update ParticipantEventRequest " + getOldValue() + "->" + getNewValue();
@@ -1,7 +1,16 @@
 package trekkingtracker.event.requestevents;
 
+import trekkingtracker.event.tracing.RequestTrace;
+
 /** Requests the intialization/restoring of the persisted data. */
 public class ParticipantsInitRequest implements ParticipantEventRequest {
     /** Instance of this request */
     public static final ParticipantsInitRequest INSTANCE = new ParticipantsInitRequest();
+    /** Identifies the request and tells when it has been created, i.e. when the application has been started */
+    private final RequestTrace trace = RequestTrace.start();
+    
+    @Override
+    public RequestTrace getTrace() {
+        return trace;
+    }
 }
@@ -0,0 +1,114 @@
+package trekkingtracker.event.requestevents;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/** The outcome of an {@link AcknowledgedRequest}. Immutable. */
+public final class RequestOutcome {
+    /** The outcome of every persisted request */
+    private static final RequestOutcome PERSISTED = new RequestOutcome(Status.PERSISTED, null);
+    /** Whether the request has been persisted */
+    private final Status status;
+    /** Why the request hasn't been persisted, {@code null} if it has */
+    private final String reason;
+    
+    /**
+     * Creates a new {@code RequestOutcome}.
+     *
+     * @param status
+     *         whether the request has been persisted
+     * @param reason
+     *         why the request hasn't been persisted, {@code null} if it has
+     */
+    private RequestOutcome(Status status, String reason) {
+        this.status = status;
+        this.reason = reason;
+    }
+    
+    /**
+     * Returns the outcome of a persisted request.
+     *
+     * @return the outcome
+     */
+    public static RequestOutcome persisted() {
+        return PERSISTED;
+    }
+    
+    /**
+     * Creates the outcome of a rejected request, e.g. a conflicting start number or a failed write.
+     *
+     * @param reason
+     *         why the request has been rejected
+     * @return the outcome
+     */
+    public static RequestOutcome rejected(String reason) {
+        return new RequestOutcome(Status.REJECTED, Objects.requireNonNull(reason));
+    }
+    
+    /**
+     * Creates the outcome of a request which hasn't been persisted because its data has been stored already, e.g. a
+     * stop time submitted twice.
+     *
+     * @param reason
+     *         what has been stored already
+     * @return the outcome
+     */
+    public static RequestOutcome duplicate(String reason) {
+        return new RequestOutcome(Status.DUPLICATE, Objects.requireNonNull(reason));
+    }
+    
+    /**
+     * Returns whether the request has been persisted.
+     *
+     * @return the status of the request
+     */
+    public Status getStatus() {
+        return status;
+    }
+    
+    /**
+     * Returns why the request hasn't been persisted.
+     *
+     * @return the reason, empty if the request has been persisted
+     */
+    public Optional<String> getReason() {
+        return Optional.ofNullable(reason);
+    }
+    
+    /**
+     * Tells whether the request has been persisted.
+     *
+     * @return {@code true} if the request has been persisted, otherwise {@code false}
+     */
+    public boolean isPersisted() {
+        return status == Status.PERSISTED;
+    }
+    
+    @Override
+    public String toString() {
+        return reason == null ? status.toString() : status + ": " + reason;
+    }
+    
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RequestOutcome)) return false;
+        final RequestOutcome that = (RequestOutcome) o;
+        return status == that.status && Objects.equals(reason, that.reason);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hash(status, reason);
+    }
+    
+    /** Whether a request has been persisted */
+    public enum Status {
+        /** The request has been persisted (or queued for writing, depending on the durability) */
+        PERSISTED,
+        /** The request has been rejected, nothing has been persisted */
+        REJECTED,
+        /** Nothing has been persisted because the data has been stored already */
+        DUPLICATE
+    }
+}
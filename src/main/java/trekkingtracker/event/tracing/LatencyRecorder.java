@@ -0,0 +1,122 @@
+package trekkingtracker.event.tracing;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects the latencies of the {@link RequestTrace traced} requests per stage in {@link LatencyHistogram
+ * LatencyHistograms}: the time from creating a request until it has been validated, persisted and applied by each
+ * processor. Thread-safe.
+ */
+public final class LatencyRecorder {
+    /** Collects the latencies of the whole application */
+    public static final LatencyRecorder INSTANCE = new LatencyRecorder();
+    /** The percentiles written by {@link #export(Path)} */
+    private static final double[] EXPORTED_PERCENTILES = {50, 90, 99, 99.9};
+    /** The histograms per stage (and processor), created on first use */
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    
+    /**
+     * Records the time since the traced request has been created as the latency of a stage.
+     *
+     * @param trace
+     *         the trace of the request, nothing is recorded for {@code null}
+     * @param stage
+     *         the stage the request has passed right now
+     */
+    public void record(RequestTrace trace, TraceStage stage) {
+        record(trace, stage, null);
+    }
+    
+    /**
+     * Records the time since the traced request has been created as the latency of a stage at a component.
+     *
+     * @param trace
+     *         the trace of the request, nothing is recorded for {@code null}
+     * @param stage
+     *         the stage the request has passed right now
+     * @param component
+     *         the component which has passed the stage (e.g. the name of a processor), or {@code null} if there's
+     *         just one
+     */
+    public void record(RequestTrace trace, TraceStage stage, String component) {
+        if (trace == null) return;
+        String name = component == null ? stage.getLabel() : stage.getLabel() + " by " + component;
+        histograms.computeIfAbsent(name, n -> new LatencyHistogram()).record(trace.getElapsedNanos());
+    }
+    
+    /**
+     * Returns the histograms recorded so far.
+     *
+     * @return the histograms by their name (the stage, possibly followed by the component), sorted by name. The
+     * histograms keep getting updated.
+     */
+    public SortedMap<String, LatencyHistogram> getHistograms() {
+        return new TreeMap<>(histograms);
+    }
+    
+    /** Discards all recorded latencies, e.g. before the next event. */
+    public void clear() {
+        histograms.clear();
+    }
+    
+    /**
+     * Writes a summary of all histograms to a CSV file: one line per histogram with the number of latencies, the
+     * average, some percentiles and the maximum in milliseconds.
+     *
+     * @param file
+     *         the file to be written, will be replaced if it exists
+     * @throws IOException
+     *         if the file cannot be written
+     */
+    public void export(Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            StringBuilder header = new StringBuilder("stage,count,mean_ms");
+            for (double percentile : EXPORTED_PERCENTILES)
+                header.append(",p").append(formatPercentile(percentile)).append("_ms");
+            writer.write(header.append(",max_ms").toString());
+            writer.newLine();
+            for (Map.Entry<String, LatencyHistogram> entry : getHistograms().entrySet()) {
+                LatencyHistogram histogram = entry.getValue();
+                StringBuilder line = new StringBuilder(entry.getKey()).append(',').append(histogram.getCount());
+                line.append(',').append(formatMillis(histogram.getMeanMillis()));
+                for (double percentile : EXPORTED_PERCENTILES)
+                    line.append(',').append(formatMillis(histogram.getPercentileMillis(percentile)));
+                line.append(',').append(formatMillis(histogram.getMaxMillis()));
+                writer.write(line.toString());
+                writer.newLine();
+            }
+        }
+    }
+    
+    /**
+     * Formats a percentile for a column name, e.g. {@code 99.9} as {@code 99_9}.
+     *
+     * @param percentile
+     *         the percentile
+     * @return the formatted percentile
+     */
+    private static String formatPercentile(double percentile) {
+        return percentile == Math.rint(percentile) ? Long.toString((long) percentile) : Double.toString(percentile)
+                                                                                              .replace('.', '_');
+    }
+    
+    /**
+     * Formats a duration independent of the locale.
+     *
+     * @param millis
+     *         the duration in milliseconds
+     * @return the duration with three decimals
+     */
+    private static String formatMillis(double millis) {
+        return String.format(Locale.ROOT, "%.3f", millis);
+    }
+}
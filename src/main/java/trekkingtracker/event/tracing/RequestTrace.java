@@ -0,0 +1,71 @@
+package trekkingtracker.event.tracing;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Identifies a request and tells when it has been created, so the latency of each stage it passes can be measured.
+ * The time stamps come from the monotonic {@link System#nanoTime()} clock, they don't jump with the wall clock.
+ * Immutable.
+ */
+public final class RequestTrace {
+    /** The id of the latest created trace */
+    private static final AtomicLong LAST_ID = new AtomicLong();
+    /** Identifies the request, unique within the running application */
+    private final long id;
+    /** The {@link System#nanoTime()} the request has been created at */
+    private final long createdNanos;
+    
+    /**
+     * Creates a new {@code RequestTrace}.
+     *
+     * @param id
+     *         identifies the request
+     * @param createdNanos
+     *         the {@link System#nanoTime()} the request has been created at
+     */
+    private RequestTrace(long id, long createdNanos) {
+        this.id = id;
+        this.createdNanos = createdNanos;
+    }
+    
+    /**
+     * Creates a trace for a request created right now.
+     *
+     * @return the new trace with the next id
+     */
+    public static RequestTrace start() {
+        return new RequestTrace(LAST_ID.incrementAndGet(), System.nanoTime());
+    }
+    
+    /**
+     * Returns the id of the request.
+     *
+     * @return the id, unique within the running application
+     */
+    public long getId() {
+        return id;
+    }
+    
+    /**
+     * Returns the time the request has been created at.
+     *
+     * @return the {@link System#nanoTime()} of the creation
+     */
+    public long getCreatedNanos() {
+        return createdNanos;
+    }
+    
+    /**
+     * Returns the time passed since the request has been created.
+     *
+     * @return the elapsed time in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return System.nanoTime() - createdNanos;
+    }
+    
+    @Override
+    public String toString() {
+        return "Request #" + id;
+    }
+}
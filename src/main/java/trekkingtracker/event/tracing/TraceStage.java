@@ -0,0 +1,33 @@
+package trekkingtracker.event.tracing;
+
+/** The stages a {@link RequestTrace traced} request passes until its result is displayed. */
+public enum TraceStage {
+    /** The request has been validated by the store */
+    VALIDATED("validated"),
+    /** The result of the request has been stored */
+    PERSISTED("persisted"),
+    /** The resulting event has been applied by a participant processor, e.g. an ui element */
+    APPLIED("applied");
+    
+    /** The name of the stage in reports */
+    private final String label;
+    
+    /**
+     * Creates a new {@code TraceStage}.
+     *
+     * @param label
+     *         the name of the stage in reports
+     */
+    TraceStage(String label) {
+        this.label = label;
+    }
+    
+    /**
+     * Returns the name of the stage in reports.
+     *
+     * @return the name of the stage
+     */
+    public String getLabel() {
+        return label;
+    }
+}
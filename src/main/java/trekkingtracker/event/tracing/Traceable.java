@@ -0,0 +1,11 @@
+package trekkingtracker.event.tracing;
+
+/** Request or event which carries the {@link RequestTrace} of the request it originates from. */
+public interface Traceable {
+    /**
+     * Returns the trace of the originating request.
+     *
+     * @return the trace, or {@code null} if the event doesn't originate from a single request
+     */
+    RequestTrace getTrace();
+}
@@ -0,0 +1,106 @@
+package trekkingtracker.persistence;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Objects;
+
+/** An entry of the backup catalogue, describing a former data file which has been kept as backup. Immutable. */
+public final class Backup {
+    /** The number identifying the backup, unique per data file */
+    private final int id;
+    /** The time the backup has been created */
+    private final Instant created;
+    /** The size of the backed up data file in bytes, before compression */
+    private final long size;
+    /** The number of records in the backed up data file, negative if not counted yet */
+    private final long recordCount;
+    /** {@code true} if the backup file is compressed with GZIP, otherwise {@code false} */
+    private final boolean compressed;
+    /** The file holding the backup */
+    private final Path file;
+    
+    /**
+     * Creates a new {@code Backup}.
+     *
+     * @param id
+     *         the number identifying the backup, unique per data file
+     * @param created
+     *         the time the backup has been created
+     * @param size
+     *         the size of the backed up data file in bytes, before compression
+     * @param recordCount
+     *         the number of records in the backed up data file, negative if not counted yet
+     * @param compressed
+     *         {@code true} if the backup file is compressed with GZIP, otherwise {@code false}
+     * @param file
+     *         the file holding the backup
+     */
+    Backup(int id, Instant created, long size, long recordCount, boolean compressed, Path file) {
+        this.id = id;
+        this.created = Objects.requireNonNull(created);
+        this.size = size;
+        this.recordCount = recordCount;
+        this.compressed = compressed;
+        this.file = Objects.requireNonNull(file);
+    }
+    
+    /**
+     * Returns the number identifying the backup.
+     *
+     * @return the id, unique per data file
+     */
+    public int getId() {
+        return id;
+    }
+    
+    /**
+     * Returns the time the backup has been created.
+     *
+     * @return the creation time
+     */
+    public Instant getCreated() {
+        return created;
+    }
+    
+    /**
+     * Returns the size of the backed up data file.
+     *
+     * @return the size in bytes, before compression
+     */
+    public long getSize() {
+        return size;
+    }
+    
+    /**
+     * Returns the number of records in the backed up data file.
+     *
+     * @return the number of records, negative if they have not been counted yet
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+    
+    /**
+     * Tells whether the backup file is compressed.
+     *
+     * @return {@code true} if the backup file is compressed with GZIP, otherwise {@code false}
+     */
+    public boolean isCompressed() {
+        return compressed;
+    }
+    
+    /**
+     * Returns the file holding the backup.
+     *
+     * @return the backup file
+     */
+    public Path getFile() {
+        return file;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("Backup %d of %s (%d bytes, %s records)", id, created, size,
+                recordCount < 0 ? "?" : Long.toString(recordCount));
+    }
+}
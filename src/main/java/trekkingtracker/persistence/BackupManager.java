@@ -0,0 +1,360 @@
+package trekkingtracker.persistence;
+
+import trekkingtracker.ui.MainApp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps former data files as backups. The backups are listed in a catalogue file together with their creation time,
+ * size and record count, so they can be listed and restored without probing the file system. Creating a backup only
+ * renames the data file, counting its records, compressing it and removing backups beyond the retention limit is done
+ * by a background archiver.
+ */
+class BackupManager implements Closeable {
+    /** The first line of the catalogue file */
+    private static final String CATALOGUE_HEADER = "# Id;Created;Size;Records;Compressed";
+    /** The suffix of compressed backup files */
+    private static final String COMPRESSED_SUFFIX = ".gz";
+    /** The data file to be backed up */
+    private final Path dataFile;
+    /** The file listing all backups */
+    private final Path catalogueFile;
+    /** The maximum number of backups to be kept, {@code 0} keeps all */
+    private final int retention;
+    /** {@code true} if backups shall be compressed, otherwise {@code false} */
+    private final boolean compress;
+    /** Counts, compresses and removes backups in the background */
+    private final ExecutorService archiver = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "backup-archiver");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /** All backups by their id, guarded by {@code this} */
+    private final NavigableMap<Integer, Backup> backups = new TreeMap<>();
+    /** The id of the next backup, guarded by {@code this} */
+    private int nextId;
+    
+    /**
+     * Creates a new {@code BackupManager} and reads the catalogue. If there's no catalogue yet, backups of former
+     * versions next to the data file are added to a new one.
+     *
+     * @param dataFile
+     *         the data file to be backed up
+     * @param catalogueFile
+     *         the file listing all backups
+     * @param retention
+     *         the maximum number of backups to be kept, {@code 0} keeps all
+     * @param compression
+     *         {@code gzip} to compress backups, {@code none} to keep them as they are
+     * @throws IllegalArgumentException
+     *         if the retention is negative or the compression is unknown
+     */
+    BackupManager(Path dataFile, Path catalogueFile, int retention, String compression) {
+        if (retention < 0) throw new IllegalArgumentException(String.format("Invalid backup retention %d.",
+                retention));
+        this.dataFile = Objects.requireNonNull(dataFile);
+        this.catalogueFile = Objects.requireNonNull(catalogueFile);
+        this.retention = retention;
+        this.compress = parseCompression(compression);
+        readCatalogue();
+    }
+    
+    /**
+     * Parses the name of a backup compression.
+     *
+     * @param compression
+     *         {@code gzip} or {@code none}, ignoring case
+     * @return {@code true} for {@code gzip}, {@code false} for {@code none}
+     * @throws IllegalArgumentException
+     *         if the compression is unknown
+     */
+    private static boolean parseCompression(String compression) {
+        switch (compression.trim().toLowerCase(Locale.ROOT)) {
+            case "gzip":
+                return true;
+            case "none":
+                return false;
+            default:
+                throw new IllegalArgumentException(String.format("Unknown backup compression '%s'.", compression));
+        }
+    }
+    
+    /**
+     * Moves the data file aside as a new backup. This is a cheap rename, the backup is counted, compressed and the
+     * retention limit is applied in the background afterwards.
+     *
+     * @return the new backup, or nothing if the data file is empty
+     * @throws IOException
+     *         if the data file cannot be moved or the catalogue cannot be written
+     */
+    synchronized Optional<Backup> backup() throws IOException {
+        long size = Files.size(dataFile);
+        if (size == 0) return Optional.empty();
+        int id = nextId;
+        Path backupFile = backupFile(id, false);
+        Files.move(dataFile, backupFile, StandardCopyOption.ATOMIC_MOVE);
+        nextId++;
+        Backup backup = new Backup(id, Instant.now(), size, -1, false, backupFile);
+        backups.put(id, backup);
+        writeCatalogue();
+        archiveInBackground(id);
+        return Optional.of(backup);
+    }
+    
+    /**
+     * Lists all backups as recorded in the catalogue.
+     *
+     * @return all backups, oldest first
+     */
+    synchronized List<Backup> list() {
+        return Collections.unmodifiableList(new ArrayList<>(backups.values()));
+    }
+    
+    /**
+     * Replaces the data file with a backup. The backup is copied to a temporary file first which is moved into place
+     * atomically, a non-empty data file is kept as a new backup before. Waits for the backups being archived in the
+     * background.
+     *
+     * @param id
+     *         the id of the backup to be restored
+     * @return the new backup of the replaced data file, if there was one
+     * @throws IOException
+     *         if there's no backup with the given id or copying it fails
+     */
+    Optional<Backup> restore(int id) throws IOException {
+        awaitArchiving();
+        Backup backup;
+        synchronized (this) {
+            backup = backups.get(id);
+        }
+        if (backup == null) throw new IOException(String.format("There's no backup %d.", id));
+        Path tempFile = dataFile.resolveSibling(dataFile.getFileName() + ".restored");
+        try (InputStream in = open(backup)) {
+            Files.copy(in, tempFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        // only now, since the retention limit might remove the backup to be restored
+        Optional<Backup> replaced = Files.exists(dataFile) ? backup() : Optional.empty();
+        Files.move(tempFile, dataFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return replaced;
+    }
+    
+    /** Waits for the pending archive tasks and stops the background archiver. */
+    @Override
+    public void close() {
+        archiver.shutdown();
+        try {
+            archiver.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Reads the {@link #catalogueFile}. If it does not exist or is invalid, backups next to the data file are added to
+     * a new one, so no backup gets overridden.
+     */
+    private synchronized void readCatalogue() {
+        try {
+            if (!Files.exists(catalogueFile)) adoptExistingBackups();
+            else for (String line : Files.readAllLines(catalogueFile, StandardCharsets.UTF_8)) {
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] items = line.split(";");
+                int id = Integer.parseInt(items[0]);
+                boolean compressed = Boolean.parseBoolean(items[4]);
+                backups.put(id, new Backup(id, Instant.parse(items[1]), Long.parseLong(items[2]),
+                        Long.parseLong(items[3]), compressed, backupFile(id, compressed)));
+            }
+        } catch (Exception e) {
+            MainApp.printInfo(String.format("Ignoring invalid backup catalogue %s.", catalogueFile));
+            backups.clear();
+            try {
+                adoptExistingBackups();
+            } catch (IOException e2) {
+                MainApp.printInfo(String.format("Could not list the backups of %s.", dataFile));
+            }
+        }
+        nextId = backups.isEmpty() ? 1 : backups.lastKey() + 1;
+    }
+    
+    /**
+     * Adds all backup files next to the data file to the catalogue, e.g. the ones created by former versions which
+     * had no catalogue. Their records are counted in the background.
+     *
+     * @throws IOException
+     *         if the directory cannot be listed or the catalogue cannot be written
+     */
+    private synchronized void adoptExistingBackups() throws IOException {
+        Pattern backupName = Pattern.compile(Pattern.quote(dataFile.getFileName() + ".bak") + "(\\d+)("
+                + Pattern.quote(COMPRESSED_SUFFIX) + ")?");
+        Path directory = dataFile.toAbsolutePath().getParent();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Matcher matcher = backupName.matcher(file.getFileName().toString());
+                if (!matcher.matches()) continue;
+                int id = Integer.parseInt(matcher.group(1));
+                boolean compressed = matcher.group(2) != null;
+                backups.put(id, new Backup(id, Files.getLastModifiedTime(file).toInstant(), Files.size(file), -1,
+                        compressed, backupFile(id, compressed)));
+            }
+        }
+        if (backups.isEmpty()) return;
+        writeCatalogue();
+        for (int id : backups.keySet()) archiveInBackground(id);
+    }
+    
+    /**
+     * Replaces the {@link #catalogueFile} with one listing the current backups. The catalogue is written to a
+     * temporary file first which is moved into place atomically.
+     *
+     * @throws IOException
+     *         if writing the catalogue fails
+     */
+    private synchronized void writeCatalogue() throws IOException {
+        StringBuilder catalogue = new StringBuilder(CATALOGUE_HEADER);
+        for (Backup backup : backups.values())
+            catalogue.append(String.format("%n%d;%s;%d;%d;%b", backup.getId(), backup.getCreated(), backup.getSize(),
+                    backup.getRecordCount(), backup.isCompressed()));
+        Path tempFile = catalogueFile.resolveSibling(catalogueFile.getFileName() + ".tmp");
+        Files.write(tempFile, catalogue.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(tempFile, catalogueFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    /**
+     * Lets the {@link #archiver} count, compress and apply the retention limit to a backup.
+     *
+     * @param id
+     *         the id of the backup to be archived
+     */
+    private void archiveInBackground(int id) {
+        try {
+            archiver.execute(() -> archive(id));
+        } catch (RejectedExecutionException e) { // already closed, will be archived after the next start
+            /*no op*/
+        }
+    }
+    
+    /**
+     * Counts the records of a backup if they are unknown and compresses it if requested. Removes the oldest backups
+     * beyond the retention limit afterwards.
+     *
+     * @param id
+     *         the id of the backup to be archived
+     */
+    private void archive(int id) {
+        Backup backup;
+        synchronized (this) {
+            backup = backups.get(id);
+        }
+        if (backup == null) return;
+        try {
+            long recordCount = backup.getRecordCount() >= 0 ? backup.getRecordCount() : countRecords(backup);
+            Backup archived = new Backup(id, backup.getCreated(), backup.getSize(), recordCount,
+                    backup.isCompressed() || compress, compress ? compress(backup) : backup.getFile());
+            synchronized (this) {
+                backups.put(id, archived);
+                while (retention > 0 && backups.size() > retention)
+                    Files.deleteIfExists(backups.pollFirstEntry().getValue().getFile());
+                writeCatalogue();
+            }
+            if (!archived.getFile().equals(backup.getFile())) Files.deleteIfExists(backup.getFile());
+        } catch (Exception e) {
+            MainApp.printInfo(String.format("Could not archive backup %s.", backup.getFile()));
+        }
+    }
+    
+    /**
+     * Counts the records stored in a backup, up to the first invalid one.
+     *
+     * @param backup
+     *         the backup to be read
+     * @return the number of records
+     * @throws IOException
+     *         if reading the backup fails
+     */
+    private static long countRecords(Backup backup) throws IOException {
+        ByteBuffer data;
+        // not memory-mapped, the file might be deleted right afterwards
+        try (InputStream in = open(backup)) {
+            data = ByteBuffer.wrap(in.readAllBytes());
+        }
+        AtomicLong count = new AtomicLong();
+        LogFormat.detect(data).decode(data, p -> count.incrementAndGet());
+        return count.get();
+    }
+    
+    /**
+     * Compresses a backup, unless it already is.
+     *
+     * @param backup
+     *         the backup to be compressed, won't be deleted
+     * @return the compressed backup file
+     * @throws IOException
+     *         if compressing fails
+     */
+    private Path compress(Backup backup) throws IOException {
+        if (backup.isCompressed()) return backup.getFile();
+        Path compressed = backupFile(backup.getId(), true);
+        Path tempFile = compressed.resolveSibling(compressed.getFileName() + ".tmp");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tempFile))) {
+            Files.copy(backup.getFile(), out);
+        }
+        Files.move(tempFile, compressed, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return compressed;
+    }
+    
+    /**
+     * Opens a backup for reading, decompressing it if necessary.
+     *
+     * @param backup
+     *         the backup to be read
+     * @return the content of the backed up data file
+     * @throws IOException
+     *         if the backup cannot be opened
+     */
+    private static InputStream open(Backup backup) throws IOException {
+        InputStream in = Files.newInputStream(backup.getFile());
+        return backup.isCompressed() ? new GZIPInputStream(in) : in;
+    }
+    
+    /** Waits until the backups scheduled so far are archived. */
+    private void awaitArchiving() {
+        try {
+            archiver.submit(() -> { }).get();
+        } catch (Exception e) {
+            /*no op*/
+        }
+    }
+    
+    /**
+     * Determines the file of a backup.
+     *
+     * @param id
+     *         the id of the backup
+     * @param compressed
+     *         {@code true} if the backup is compressed, otherwise {@code false}
+     * @return the file holding the backup
+     */
+    private Path backupFile(int id, boolean compressed) {
+        return dataFile.resolveSibling(dataFile.getFileName() + ".bak" + id + (compressed ? COMPRESSED_SUFFIX : ""));
+    }
+}
@@ -0,0 +1,437 @@
+package trekkingtracker.persistence;
+
+import trekkingtracker.data.Person;
+import trekkingtracker.data.PersonImpl;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary encoding of participant states. A file starts with the {@link #MAGIC} bytes and the format
+ * {@link #VERSION}, followed by two kinds of records, each one followed by the CRC32 checksum of its bytes (since
+ * version 2):
+ * <ul>
+ * <li>name records: type {@code 1}, varint name id, varint byte length and the UTF-8 bytes of the name. Each name is
+ * stored only once, right before the first participant state using it.</li>
+ * <li>participant records: type {@code 2}, varint participant id ({@code 0} if absent, since version 3), varint
+ * name id, zigzag varint birthday (epoch day), the category ordinal ({@code -1} if absent), varint start number
+ * ({@code 0} if absent, otherwise the zigzag encoded number plus one), start and stop as fixed-width epoch
+ * milliseconds ({@link Long#MIN_VALUE} if absent) and the finisher flag. The name and birthday are kept in each
+ * record, so the former states of a renamed participant keep their former name.</li>
+ * </ul>
+ * Times are stored with millisecond precision.
+ */
+final class BinaryRecordCodec implements RecordCodec {
+    /** The bytes a binary data file starts with */
+    static final byte[] MAGIC = {'T', 'T', 'R', 'B'};
+    /** The version of the binary format written by this codec */
+    static final byte VERSION = 3;
+    /** The first version with checksums */
+    private static final byte CHECKSUM_VERSION = 2;
+    /** The first version with participant ids */
+    private static final byte ID_VERSION = 3;
+    /** Type of a record defining a name */
+    private static final byte NAME_RECORD = 1;
+    /** Type of a record holding a participant state */
+    private static final byte PERSON_RECORD = 2;
+    /** Marks a missing start or stop time */
+    private static final long NO_INSTANT = Long.MIN_VALUE;
+    /** Marks a missing category */
+    private static final byte NO_CATEGORY = -1;
+    /** All categories by their ordinal */
+    private static final Person.Category[] CATEGORIES = Person.Category.values();
+    /** The ids of all names known so far */
+    private final Map<String, Integer> nameIds;
+    /** All names known so far by their ids */
+    private final List<String> names;
+    /** The version of the records */
+    private final byte version;
+    
+    /** Creates a new {@code BinaryRecordCodec} for the current {@link #VERSION} without any known names. */
+    BinaryRecordCodec() {
+        this(VERSION);
+    }
+    
+    /**
+     * Creates a new {@code BinaryRecordCodec} without any known names.
+     *
+     * @param version
+     *         the version of the records
+     */
+    private BinaryRecordCodec(byte version) {
+        this(new HashMap<>(), new ArrayList<>(), version);
+    }
+    
+    /**
+     * Creates a new {@code BinaryRecordCodec}.
+     *
+     * @param nameIds
+     *         the ids of all known names
+     * @param names
+     *         all known names by their ids
+     * @param version
+     *         the version of the records
+     */
+    private BinaryRecordCodec(Map<String, Integer> nameIds, List<String> names, byte version) {
+        this.nameIds = nameIds;
+        this.names = names;
+        this.version = version;
+    }
+    
+    /**
+     * Checks whether the given buffer starts with the header of a binary data file and moves its position behind the
+     * header in that case.
+     *
+     * @param data
+     *         the beginning of a data file
+     * @return a codec for the version given in the header, or {@code null} if the data does not start with the
+     * binary header
+     * @throws IOException
+     *         if the data is binary but has been written in an unsupported version
+     */
+    static BinaryRecordCodec readHeader(ByteBuffer data) throws IOException {
+        if (data.remaining() < MAGIC.length + 1) return null;
+        for (int i = 0; i < MAGIC.length; i++) if (data.get(data.position() + i) != MAGIC[i]) return null;
+        byte version = data.get(data.position() + MAGIC.length);
+        if (version < 1 || version > VERSION)
+            throw new IOException("Unsupported binary format version " + version + ".");
+        data.position(data.position() + MAGIC.length + 1);
+        return new BinaryRecordCodec(version);
+    }
+    
+    @Override
+    public LogFormat getFormat() {
+        return LogFormat.BINARY;
+    }
+    
+    @Override
+    public boolean isLegacy() {
+        return version < VERSION;
+    }
+    
+    @Override
+    public byte[] header() {
+        byte[] header = Arrays.copyOf(MAGIC, MAGIC.length + 1);
+        header[MAGIC.length] = version;
+        return header;
+    }
+    
+    @Override
+    public byte[] encode(final Person toEncode) {
+        RecordBuffer record = new RecordBuffer();
+        String name = FileUtils.sanitizeName(toEncode.getName());
+        Integer nameId = nameIds.get(name);
+        if (nameId == null) {
+            nameId = names.size();
+            names.add(name);
+            nameIds.put(name, nameId);
+            writeName(record, nameId, name);
+        }
+        int recordStart = record.size;
+        record.put(PERSON_RECORD);
+        if (version >= ID_VERSION) record.putVarLong(Integer.toUnsignedLong(toEncode.getId()));
+        record.putVarLong(nameId);
+        record.putVarLong(zigZag(toEncode.getBirthday().toEpochDay()));
+        Person.Category category = toEncode.getCategory();
+        record.put(category != null ? (byte) category.ordinal() : NO_CATEGORY);
+        Integer number = toEncode.getNumber();
+        record.putVarLong(number != null ? zigZag(number) + 1 : 0);
+        record.putLong(toEpochMillis(toEncode.getStart()));
+        record.putLong(toEpochMillis(toEncode.getStop()));
+        record.put((byte) (toEncode.isFinisher() ? 1 : 0));
+        writeChecksum(record, recordStart);
+        return record.toByteArray();
+    }
+    
+    @Override
+    public byte[] encodeState() {
+        RecordBuffer state = new RecordBuffer();
+        for (int id = 0; id < names.size(); id++) writeName(state, id, names.get(id));
+        return state.toByteArray();
+    }
+    
+    @Override
+    public void decode(final ByteBuffer data, final RecordConsumer consumer) {
+        while (data.hasRemaining()) {
+            int recordStart = data.position();
+            try {
+                byte type = data.get();
+                if (type == NAME_RECORD) {
+                    int nameId = (int) getVarLong(data);
+                    long nameLength = getVarLong(data);
+                    if (nameLength > data.remaining()) throw new BufferUnderflowException();
+                    byte[] nameBytes = new byte[(int) nameLength];
+                    data.get(nameBytes);
+                    if (!hasValidChecksum(data, recordStart)) throw new IllegalStateException("Invalid checksum.");
+                    registerName(nameId, new String(nameBytes, StandardCharsets.UTF_8));
+                } else if (type == PERSON_RECORD) {
+                    Person decoded = readPerson(data);
+                    if (!hasValidChecksum(data, recordStart)) throw new IllegalStateException("Invalid checksum.");
+                    consumer.accept(decoded, recordStart, data.position() - recordStart);
+                } else throw new IllegalStateException(String.format("Unknown record type %d.", type));
+            } catch (RuntimeException e) {
+                // an incomplete or corrupt record, nothing after it can be trusted
+                data.position(recordStart);
+                return;
+            }
+        }
+    }
+    
+    @Override
+    public RecordCodec copy() {
+        return new BinaryRecordCodec(new HashMap<>(nameIds), new ArrayList<>(names), version);
+    }
+    
+    /**
+     * Writes a name record.
+     *
+     * @param record
+     *         the name record shall be written to
+     * @param nameId
+     *         the id of the name
+     * @param name
+     *         the name
+     */
+    private void writeName(RecordBuffer record, int nameId, String name) {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int recordStart = record.size;
+        record.put(NAME_RECORD);
+        record.putVarLong(nameId);
+        record.putVarLong(nameBytes.length);
+        record.put(nameBytes);
+        writeChecksum(record, recordStart);
+    }
+    
+    /**
+     * Appends the checksum of a record, if the {@link #version} has checksums.
+     *
+     * @param record
+     *         holding the record
+     * @param recordStart
+     *         the index of the record's first byte
+     */
+    private void writeChecksum(RecordBuffer record, int recordStart) {
+        if (version < CHECKSUM_VERSION) return;
+        CRC32 checksum = new CRC32();
+        checksum.update(record.bytes, recordStart, record.size - recordStart);
+        record.putInt((int) checksum.getValue());
+    }
+    
+    /**
+     * Reads the checksum behind a record and compares it to the record's bytes, if the {@link #version} has
+     * checksums.
+     *
+     * @param data
+     *         positioned behind the record, i.e. at its checksum
+     * @param recordStart
+     *         the position of the record's first byte
+     * @return {@code true} if the checksum matches or if there are no checksums, otherwise {@code false}
+     */
+    private boolean hasValidChecksum(ByteBuffer data, int recordStart) {
+        if (version < CHECKSUM_VERSION) return true;
+        CRC32 checksum = new CRC32();
+        ByteBuffer record = data.duplicate();
+        record.limit(data.position()).position(recordStart);
+        checksum.update(record);
+        return data.getInt() == (int) checksum.getValue();
+    }
+    
+    /**
+     * Registers a name read from a name record.
+     *
+     * @param nameId
+     *         the id of the name
+     * @param name
+     *         the name
+     * @throws IllegalStateException
+     *         if the name id does not fit to the names known so far
+     */
+    private void registerName(int nameId, String name) {
+        if (nameId == names.size()) names.add(name);
+        else if (nameId >= 0 && nameId < names.size()) names.set(nameId, name);
+        else throw new IllegalStateException(String.format("Name id %d is not defined in order.", nameId));
+        nameIds.put(name, nameId);
+    }
+    
+    /**
+     * Reads a participant record (without its type and checksum).
+     *
+     * @param data
+     *         positioned behind the type of the participant record
+     * @return the decoded participant
+     * @throws RuntimeException
+     *         if the record is incomplete or if the name id or the category are unknown
+     */
+    private Person readPerson(ByteBuffer data) {
+        int id = version >= ID_VERSION ? (int) getVarLong(data) : Person.NO_ID;
+        int nameId = (int) getVarLong(data);
+        if (nameId < 0 || nameId >= names.size())
+            throw new IllegalStateException(String.format("Unknown name id %d.", nameId));
+        PersonImpl parsed = new PersonImpl(names.get(nameId), LocalDate.ofEpochDay(zagZig(getVarLong(data))));
+        parsed.setId(id);
+        byte category = data.get();
+        if (category != NO_CATEGORY) {
+            if (category < 0 || category >= CATEGORIES.length)
+                throw new IllegalStateException(String.format("Unknown category %d.", category));
+            parsed.setCategory(CATEGORIES[category]);
+        }
+        long number = getVarLong(data);
+        if (number != 0) parsed.setNumber((int) zagZig(number - 1));
+        long start = data.getLong();
+        if (start != NO_INSTANT) parsed.setStart(Instant.ofEpochMilli(start));
+        long stop = data.getLong();
+        if (stop != NO_INSTANT) parsed.setStop(Instant.ofEpochMilli(stop));
+        parsed.setFinished(data.get() != 0);
+        return parsed;
+    }
+    
+    /**
+     * Converts an {@code Instant} to epoch milliseconds.
+     *
+     * @param instant
+     *         to be converted, can be {@code null}
+     * @return the epoch milliseconds, or {@link #NO_INSTANT} for {@code null}
+     */
+    private static long toEpochMillis(Instant instant) {
+        return instant != null ? instant.toEpochMilli() : NO_INSTANT;
+    }
+    
+    /**
+     * Maps signed values to unsigned ones so small negative values get small varints as well.
+     *
+     * @param value
+     *         the signed value
+     * @return the zigzag encoded value
+     */
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+    
+    /**
+     * Reverts {@link #zigZag(long)}.
+     *
+     * @param value
+     *         the zigzag encoded value
+     * @return the signed value
+     */
+    private static long zagZig(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+    
+    /**
+     * Reads an unsigned varint, i.e. 7 bits per byte with the highest bit set if more bytes follow.
+     *
+     * @param data
+     *         positioned at the varint
+     * @return the read value
+     * @throws RuntimeException
+     *         if the varint is incomplete or too long
+     */
+    private static long getVarLong(ByteBuffer data) {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            byte b = data.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalStateException("Varint is too long.");
+    }
+    
+    /** Growing byte array to encode records */
+    private static class RecordBuffer {
+        /** The bytes written so far, may contain unused bytes at the end */
+        private byte[] bytes = new byte[48];
+        /** The number of bytes written so far */
+        private int size = 0;
+        
+        /**
+         * Makes sure there's room for the given number of bytes.
+         *
+         * @param additional
+         *         the number of bytes to be written
+         */
+        private void ensureCapacity(int additional) {
+            if (size + additional > bytes.length)
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + additional));
+        }
+        
+        /**
+         * Writes a single byte.
+         *
+         * @param b
+         *         to be written
+         */
+        private void put(byte b) {
+            ensureCapacity(1);
+            bytes[size++] = b;
+        }
+        
+        /**
+         * Writes the given bytes.
+         *
+         * @param toPut
+         *         to be written
+         */
+        private void put(byte[] toPut) {
+            ensureCapacity(toPut.length);
+            System.arraycopy(toPut, 0, bytes, size, toPut.length);
+            size += toPut.length;
+        }
+        
+        /**
+         * Writes a fixed-width big-endian {@code long}.
+         *
+         * @param value
+         *         to be written
+         */
+        private void putLong(long value) {
+            ensureCapacity(Long.BYTES);
+            for (int shift = 56; shift >= 0; shift -= 8) bytes[size++] = (byte) (value >>> shift);
+        }
+        
+        /**
+         * Writes a fixed-width big-endian {@code int}.
+         *
+         * @param value
+         *         to be written
+         */
+        private void putInt(int value) {
+            ensureCapacity(Integer.BYTES);
+            for (int shift = 24; shift >= 0; shift -= 8) bytes[size++] = (byte) (value >>> shift);
+        }
+        
+        /**
+         * Writes an unsigned varint.
+         *
+         * @param value
+         *         to be written, interpreted as unsigned
+         */
+        private void putVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+        
+        /**
+         * Returns the bytes written so far.
+         *
+         * @return a copy of the written bytes
+         */
+        private byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package trekkingtracker.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Streams the rows of a character-separated table and extracts only the requested columns. Fields can be quoted as
+ * defined by RFC 4180, i.e. a quoted field can contain separators and line breaks, and {@code ""} within it stands for
+ * a single quote. Rows can end with {@code \n}, {@code \r\n} or {@code \r}. Empty rows and rows starting with {@code #}
+ * are skipped. The characters are read into a reused buffer, only the values of the requested columns are copied.
+ */
+final class CsvTokenizer implements Closeable {
+    /** The number of characters read at once */
+    private static final int BUFFER_SIZE = 1 << 16;
+    /** Supplies the table */
+    private final Reader reader;
+    /** The separator between two fields, taken literally */
+    private final char[] separator;
+    /** The requested column numbers, the first column is 1 */
+    private final int[] columns;
+    /** The values of the current row by column index, {@code null} for columns which are not requested */
+    private final StringBuilder[] values;
+    /** Tells by column index whether the current row contains the column */
+    private final boolean[] present;
+    /** Holds the characters read but not processed yet */
+    private final char[] buffer = new char[BUFFER_SIZE];
+    /** The position of the next character to be processed in the {@link #buffer} */
+    private int pos = 0;
+    /** The number of valid characters in the {@link #buffer} */
+    private int limit = 0;
+    /** {@code true} if the {@link #reader} has no further characters, otherwise {@code false} */
+    private boolean eof = false;
+    /** The number of rows read so far */
+    private int rowCount = 0;
+    
+    /**
+     * Creates a new {@code CsvTokenizer}.
+     *
+     * @param reader
+     *         supplies the table, will be closed together with this tokenizer
+     * @param separator
+     *         the separator between two fields, taken literally (not as a regular expression)
+     * @param columns
+     *         the numbers of the columns to be extracted, the first column is 1
+     * @throws IllegalArgumentException
+     *         if the separator is empty or contains quotes or line breaks, or if a column number is less than 1
+     */
+    CsvTokenizer(Reader reader, String separator, int... columns) {
+        if (separator.isEmpty() || separator.matches(".*[\"\\r\\n].*"))
+            throw new IllegalArgumentException(String.format("Invalid separator '%s'.", separator));
+        this.reader = reader;
+        this.separator = separator.toCharArray();
+        this.columns = columns.clone();
+        int columnCount = Arrays.stream(columns).max().orElse(0);
+        values = new StringBuilder[columnCount];
+        present = new boolean[columnCount];
+        for (int column : columns) {
+            if (column < 1) throw new IllegalArgumentException(String.format("Invalid column number %d.", column));
+            values[column - 1] = new StringBuilder();
+        }
+    }
+    
+    /**
+     * Moves to the next row, skipping empty rows and rows starting with {@code #}.
+     *
+     * @return {@code true} if there is a next row, otherwise {@code false}
+     * @throws IOException
+     *         if reading fails
+     */
+    boolean nextRow() throws IOException {
+        while (available(1)) {
+            char first = buffer[pos];
+            if (first == '#') skipLine();
+            else if (first == '\n' || first == '\r') skipLineBreak();
+            else {
+                readRow();
+                rowCount++;
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Returns the value of a requested column in the current row.
+     *
+     * @param index
+     *         the index of the column in the column numbers passed to the constructor
+     * @return the value, or {@code null} if the current row has fewer columns
+     */
+    String get(int index) {
+        int column = columns[index] - 1;
+        return present[column] ? values[column].toString() : null;
+    }
+    
+    /**
+     * Returns the number of rows read so far, including skipped header rows but excluding empty rows and rows
+     * starting with {@code #}.
+     *
+     * @return the number of the current row, the first row is 1
+     */
+    int getRowCount() {
+        return rowCount;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+    
+    /**
+     * Reads the fields of a row up to and including the line break ending it.
+     *
+     * @throws IOException
+     *         if reading fails
+     */
+    private void readRow() throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            present[i] = false;
+            if (values[i] != null) values[i].setLength(0);
+        }
+        for (int column = 0; ; column++) {
+            StringBuilder value = null;
+            if (column < values.length) {
+                present[column] = true;
+                value = values[column];
+            }
+            if (readField(value)) return;
+        }
+    }
+    
+    /**
+     * Reads a field up to and including the separator or line break ending it.
+     *
+     * @param value
+     *         the field is appended to, {@code null} if the field shall be skipped
+     * @return {@code true} if the field ends the row, otherwise {@code false}
+     * @throws IOException
+     *         if reading fails
+     */
+    private boolean readField(StringBuilder value) throws IOException {
+        if (available(1) && buffer[pos] == '"') {
+            pos++;
+            while (true) {
+                if (!available(1)) return true;
+                char c = buffer[pos++];
+                if (c == '"') {
+                    if (!available(1) || buffer[pos] != '"') break;
+                    pos++;
+                }
+                if (value != null) value.append(c);
+            }
+        }
+        while (available(1)) {
+            if (atSeparator()) {
+                pos += separator.length;
+                return false;
+            }
+            char c = buffer[pos++];
+            if (c == '\n') return true;
+            else if (c == '\r') {
+                if (available(1) && buffer[pos] == '\n') pos++;
+                return true;
+            }
+            if (value != null) value.append(c);
+        }
+        return true;
+    }
+    
+    /**
+     * Checks whether the separator starts at the current position.
+     *
+     * @return {@code true} if the separator follows, otherwise {@code false}
+     * @throws IOException
+     *         if reading fails
+     */
+    private boolean atSeparator() throws IOException {
+        if (buffer[pos] != separator[0]) return false;
+        if (separator.length == 1) return true;
+        if (!available(separator.length)) return false;
+        for (int i = 1; i < separator.length; i++)
+            if (buffer[pos + i] != separator[i]) return false;
+        return true;
+    }
+    
+    /**
+     * Skips all characters up to and including the next line break.
+     *
+     * @throws IOException
+     *         if reading fails
+     */
+    private void skipLine() throws IOException {
+        while (available(1)) {
+            char c = buffer[pos];
+            if (c == '\n' || c == '\r') {
+                skipLineBreak();
+                return;
+            }
+            pos++;
+        }
+    }
+    
+    /**
+     * Skips the line break at the current position.
+     *
+     * @throws IOException
+     *         if reading fails
+     */
+    private void skipLineBreak() throws IOException {
+        if (buffer[pos++] == '\r' && available(1) && buffer[pos] == '\n') pos++;
+    }
+    
+    /**
+     * Makes sure the given number of characters is available in the {@link #buffer}, reading more characters if
+     * necessary.
+     *
+     * @param count
+     *         the number of characters required from the current position on
+     * @return {@code true} if the characters are available, {@code false} if the table ends before
+     * @throws IOException
+     *         if reading fails
+     */
+    private boolean available(int count) throws IOException {
+        if (limit - pos >= count) return true;
+        if (eof) return false;
+        System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+        limit -= pos;
+        pos = 0;
+        while (limit < count) {
+            int read = reader.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                eof = true;
+                return false;
+            }
+            limit += read;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,333 @@
+package trekkingtracker.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append-only access to a data file which is kept open until the {@code DataLog} is closed. All written data is
+ * forced to the storage device, how often depends on the {@link Durability} mode:
+ * <ul>
+ * <li>{@link Durability#SYNC}: data is written and forced directly.</li>
+ * <li>{@link Durability#GROUP}: all data appended within a short time window is written and forced at once.</li>
+ * <li>{@link Durability#ASYNC}: data is queued and written in the background, appending only blocks while the queue
+ * is full. A shutdown hook writes all queued data before the JVM exits.</li>
+ * </ul>
+ * If a write fails, the data file is truncated to its length before the write and the log is broken: the data queued
+ * meanwhile and all data appended afterwards is rejected, so there's never a hole in front of written data. The log
+ * has to be reopened to be written again.
+ */
+class DataLog implements Closeable {
+    /** The channel to the data file, opened in append mode */
+    private final FileChannel channel;
+    /** The time in milliseconds appended data is collected before being written, {@code 0} for direct writes */
+    private final long commitWindowMillis;
+    /** The maximum number of appended writes waiting to be written */
+    private final int queueCapacity;
+    /** Collects statistics about the writes */
+    private final WriteStatistics statistics;
+    /** Guards {@link #pending}, {@link #closed}, {@link #length} and {@link #failure} */
+    private final Lock lock = new ReentrantLock();
+    /** Signals the {@link #committer} that there's data to be written or that this log has been closed */
+    private final Condition dataPending = lock.newCondition();
+    /** Signals appending threads that there's space in the queue again */
+    private final Condition spaceAvailable = lock.newCondition();
+    /** Writes the collected data in group commit and asynchronous mode, {@code null} in synchronous mode */
+    private final Thread committer;
+    /** Writes the queued data when the JVM shuts down, {@code null} if the data is not written asynchronously */
+    private final Thread shutdownHook;
+    /** The data which has been appended but not written yet */
+    private List<PendingWrite> pending = new ArrayList<>();
+    /** {@code true} as soon as {@link #close()} has been called */
+    private boolean closed = false;
+    /** The length of the data file once all appended data has been written */
+    private long length;
+    /** The length of the data file up to the last successful write. Accessed by the writing thread only. */
+    private long writtenLength;
+    /** The failed write which broke this log, {@code null} as long as all writes have succeeded */
+    private IOException failure = null;
+    
+    /**
+     * Creates a new {@code DataLog} and opens the given file for appending. The file will be created if it does not
+     * exist yet.
+     *
+     * @param file
+     *         the data file to append to
+     * @param durability
+     *         tells when appended data gets written
+     * @param commitWindowMillis
+     *         the time in milliseconds appended data is collected before being written at once, only used in
+     *         {@link Durability#GROUP} mode
+     * @param queueCapacity
+     *         the maximum number of appended writes waiting to be written, only used in {@link Durability#ASYNC}
+     *         mode
+     * @param statistics
+     *         collects statistics about the writes
+     * @throws IOException
+     *         if the file cannot be opened
+     */
+    DataLog(Path file, Durability durability, long commitWindowMillis, int queueCapacity,
+            WriteStatistics statistics) throws IOException {
+        this(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND),
+                durability, commitWindowMillis, queueCapacity, statistics);
+    }
+    
+    /**
+     * Creates a new {@code DataLog} appending to the given channel.
+     *
+     * @param channel
+     *         the channel to the data file, opened in append mode. Will be closed along with this log.
+     * @param durability
+     *         tells when appended data gets written
+     * @param commitWindowMillis
+     *         the time in milliseconds appended data is collected before being written at once, only used in
+     *         {@link Durability#GROUP} mode
+     * @param queueCapacity
+     *         the maximum number of appended writes waiting to be written, only used in {@link Durability#ASYNC}
+     *         mode
+     * @param statistics
+     *         collects statistics about the writes
+     * @throws IOException
+     *         if the size of the data file cannot be read
+     */
+    DataLog(FileChannel channel, Durability durability, long commitWindowMillis, int queueCapacity,
+            WriteStatistics statistics) throws IOException {
+        if (durability == Durability.GROUP && commitWindowMillis <= 0)
+            throw new IllegalArgumentException("Commit window must be positive.");
+        if (durability == Durability.ASYNC && queueCapacity <= 0)
+            throw new IllegalArgumentException("Queue capacity must be positive.");
+        this.channel = channel;
+        this.commitWindowMillis = durability == Durability.GROUP ? commitWindowMillis : 0;
+        this.queueCapacity = durability == Durability.ASYNC ? queueCapacity : Integer.MAX_VALUE;
+        this.statistics = statistics;
+        this.length = channel.size();
+        this.writtenLength = length;
+        if (durability != Durability.SYNC) {
+            committer = new Thread(this::runCommits, "data-log-committer");
+            committer.setDaemon(true);
+            committer.start();
+        } else committer = null;
+        if (durability == Durability.ASYNC) {
+            shutdownHook = new Thread(this::closeOnShutdown, "data-log-drainer");
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        } else shutdownHook = null;
+    }
+    
+    /**
+     * Appends the given data to the data file. In synchronous mode the data is written before this method returns,
+     * otherwise it will be written by the {@link #committer} later on. If the queue of the asynchronous mode is full,
+     * this method blocks until there is space again.
+     *
+     * @param data
+     *         to be appended to the data file
+     * @return completed once the data has been written and forced, or completed exceptionally if writing failed or
+     * this log is broken
+     */
+    CompletableFuture<Void> append(byte[] data) {
+        PendingWrite toWrite = new PendingWrite(data);
+        lock.lock();
+        try {
+            while (!closed && pending.size() >= queueCapacity) spaceAvailable.awaitUninterruptibly();
+            if (closed) {
+                toWrite.written.completeExceptionally(new IOException("Data log has been closed already."));
+                return toWrite.written;
+            }
+            if (failure != null) {
+                toWrite.written.completeExceptionally(broken());
+                return toWrite.written;
+            }
+            length += toWrite.data.length;
+            if (committer == null) write(List.of(toWrite));
+            else {
+                pending.add(toWrite);
+                statistics.queueDepth(pending.size());
+                dataPending.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return toWrite.written;
+    }
+    
+    /**
+     * Tells whether a write has failed, so this log rejects all data and has to be reopened.
+     *
+     * @return {@code true} if a write has failed, otherwise {@code false}
+     */
+    boolean isBroken() {
+        lock.lock();
+        try {
+            return failure != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Returns the length the data file will have as soon as all data appended so far has been written.
+     *
+     * @return the length of the data file including all appended data
+     */
+    long length() {
+        lock.lock();
+        try {
+            return length;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Waits for appended data and writes it until this log gets closed. In group commit mode the data appended
+     * within a commit window is written at once, in asynchronous mode all data queued so far.
+     */
+    private void runCommits() {
+        while (true) {
+            List<PendingWrite> toWrite;
+            lock.lock();
+            try {
+                while (pending.isEmpty() && !closed) dataPending.awaitUninterruptibly();
+                if (pending.isEmpty()) return;
+                // give further updates the chance to join this group
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(commitWindowMillis);
+                long remaining;
+                while (!closed && (remaining = deadline - System.nanoTime()) > 0)
+                    dataPending.awaitNanos(remaining);
+                toWrite = pending;
+                pending = new ArrayList<>();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                toWrite = pending;
+                pending = new ArrayList<>();
+            } finally {
+                statistics.queueDepth(0);
+                spaceAvailable.signalAll();
+                lock.unlock();
+            }
+            write(toWrite);
+        }
+    }
+    
+    /**
+     * Writes the given data with a single gathering write and completes their futures. If the write fails, the data
+     * file is truncated to its former length, this log gets broken and the queued data is rejected.
+     *
+     * @param toWrite
+     *         the data to be written
+     */
+    private void write(List<PendingWrite> toWrite) {
+        ByteBuffer[] buffers = new ByteBuffer[toWrite.size()];
+        for (int i = 0; i < buffers.length; i++) buffers[i] = ByteBuffer.wrap(toWrite.get(i).data);
+        try {
+            ByteBuffer last = buffers[buffers.length - 1];
+            while (last.hasRemaining()) channel.write(buffers);
+            long forceStart = System.nanoTime();
+            channel.force(false);
+            long forceEnd = System.nanoTime();
+            statistics.forced(forceEnd - forceStart);
+            for (PendingWrite written : toWrite) writtenLength += written.data.length;
+            for (PendingWrite written : toWrite) {
+                statistics.written(forceEnd - written.appended);
+                written.written.complete(null);
+            }
+        } catch (IOException e) {
+            try {
+                channel.truncate(writtenLength);
+            } catch (IOException truncateFailure) {
+                e.addSuppressed(truncateFailure);
+            }
+            List<PendingWrite> queued;
+            lock.lock();
+            try {
+                failure = e;
+                length = writtenLength;
+                queued = pending;
+                pending = new ArrayList<>();
+                statistics.queueDepth(0);
+                spaceAvailable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            for (PendingWrite failed : toWrite) failed.written.completeExceptionally(e);
+            for (PendingWrite rejected : queued) rejected.written.completeExceptionally(broken());
+        }
+    }
+    
+    /**
+     * Creates the exception rejecting data appended to or queued in a broken log.
+     *
+     * @return the exception, caused by the failed write
+     */
+    private IOException broken() {
+        return new IOException("Data log is broken by a failed write and has to be reopened.", failure);
+    }
+    
+    /**
+     * Writes all pending data and closes the data file afterwards. Can be called several times, each call returns
+     * not before all pending data has been written.
+     *
+     * @throws IOException
+     *         if closing the data file fails
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            dataPending.signalAll();
+            spaceAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (committer != null) try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (shutdownHook != null && Thread.currentThread() != shutdownHook) try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // the JVM is shutting down already, so the hook is running anyway
+        }
+    }
+    
+    /** Closes this log when the JVM shuts down, so all queued data gets written. */
+    private void closeOnShutdown() {
+        try {
+            close();
+        } catch (IOException e) {
+            // all queued data has been written already, there's nobody left to report the failed close to
+        }
+    }
+    
+    /** Data which waits to be written */
+    private static class PendingWrite {
+        /** The encoded data */
+        private final byte[] data;
+        /** Completed as soon as the data has been written */
+        private final CompletableFuture<Void> written = new CompletableFuture<>();
+        /** The time in nanoseconds the data has been appended */
+        private final long appended = System.nanoTime();
+        
+        /**
+         * Creates a new {@code PendingWrite}.
+         *
+         * @param data
+         *         the encoded data
+         */
+        private PendingWrite(byte[] data) {
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package trekkingtracker.persistence;
+
+import java.util.Locale;
+
+/** Tells when updates are written to the data file and when they count as stored. */
+public enum Durability {
+    /** Every update is written and forced to the storage device before it counts as stored */
+    SYNC,
+    /**
+     * Updates arriving within the group commit window are written and forced together, each one counts as stored
+     * once its group has been written
+     */
+    GROUP,
+    /**
+     * Updates count as stored right away and are written (and forced) in the background. Pending updates are written
+     * on shutdown, but an unexpected crash can lose them.
+     */
+    ASYNC;
+    
+    /**
+     * Parses a {@code Durability} case-insensitively, e.g. from a configuration value.
+     *
+     * @param identifier
+     *         the name of the durability mode
+     * @return the parsed {@code Durability}
+     * @throws IllegalArgumentException
+     *         if there's no durability mode with the given name
+     */
+    public static Durability parse(String identifier) {
+        return valueOf(identifier.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -4,6 +4,10 @@ import trekkingtracker.data.Person;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.regex.Pattern;
@@ -56,6 +60,27 @@ public final class FileUtils {
         else return Person.Category.UNKNOWN;
     }
     
+    /**
+     * Reads a file from the given offset to its end.
+     *
+     * @param file
+     *         to be read
+     * @param offset
+     *         the position in the file to start reading from
+     * @return the read data, ready to be read from
+     * @throws IOException
+     *         if reading the file fails
+     */
+    static ByteBuffer read(Path file, long offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer data = ByteBuffer.allocate((int) Math.max(0, channel.size() - offset));
+            channel.position(offset);
+            while (data.hasRemaining() && channel.read(data) >= 0) ;
+            data.flip();
+            return data;
+        }
+    }
+    
     /**
      * Creates an {@code Iterator} for the lines read by a given {@code BufferedReader}. Will ignore lines starting
      * with {@code #}.
@@ -0,0 +1,492 @@
+package trekkingtracker.persistence;
+
+import trekkingtracker.config.StoreConfig;
+import trekkingtracker.data.Person;
+import trekkingtracker.ui.MainApp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Stores the participant data in an append-only data file. The latest states are indexed in memory by participant id
+ * and start number, the former states are located by their offsets in the data file. A snapshot of the latest states is
+ * written now and then so loading won't have to replay all records. Not thread-safe.
+ */
+final class FlatFileParticipantRepository implements ParticipantRepository {
+    /** Name of the file holding the person data */
+    static final String DATA_FILE = "participant_data.dat";
+    /** Name of the file holding the latest participant states, covering the data file up to a certain offset */
+    static final String SNAPSHOT_FILE = "participant_data.snapshot";
+    /** Name of the catalogue of the backups of former data files */
+    static final String BACKUP_CATALOGUE_FILE = "participant_data.backups";
+    /** Store of the person data */
+    private final Path dataFile;
+    /**
+     * All states of all participants, indexed by participant and start number. A value of {@code null} indicates that
+     * nothing has been loaded or stored yet.
+     */
+    private ParticipantHistory participantData = null;
+    /** Tells how the data file shall be written */
+    private final StoreConfig config;
+    /** The format new data files are written in */
+    private final LogFormat format;
+    /** Tells when updates are written to the data file */
+    private final Durability durability;
+    /** Collects statistics about the writes to the data file */
+    private final WriteStatistics writeStatistics = new WriteStatistics();
+    /** Encodes the records for the current data file, {@code null} as long as there's none */
+    private RecordCodec codec = null;
+    /** Appends to the {@link #dataFile}, {@code null} if the file is not opened yet */
+    private DataLog dataLog = null;
+    /** Completed as soon as the latest records appended to the {@link #dataFile} have been written */
+    private CompletableFuture<Void> lastWrite = CompletableFuture.completedFuture(null);
+    /** Writes the snapshots of the latest participant states */
+    private final SnapshotStore snapshotStore;
+    /** The number of updates which are not covered by the latest snapshot */
+    private int updatesSinceSnapshot = 0;
+    /** Keeps former data files as backups */
+    private final BackupManager backupManager;
+    
+    /**
+     * Creates a new {@code FlatFileParticipantRepository}.
+     *
+     * @param directory
+     *         the directory holding the data file, its snapshot and its backups
+     * @param config
+     *         tells how the data file shall be written
+     */
+    FlatFileParticipantRepository(Path directory, StoreConfig config) {
+        this.dataFile = directory.resolve(DATA_FILE);
+        this.config = Objects.requireNonNull(config);
+        this.format = LogFormat.parse(config.format);
+        this.durability = Durability.parse(config.durability);
+        this.snapshotStore = new SnapshotStore(directory.resolve(SNAPSHOT_FILE), dataFile);
+        this.backupManager = new BackupManager(dataFile, directory.resolve(BACKUP_CATALOGUE_FILE),
+                config.backupRetention, config.backupCompression);
+    }
+    
+    /**
+     * Loads the latest state from the snapshot and all updates from the data file which are not covered by the
+     * snapshot. An invalid end of the data file, e.g. a record written partially during a crash, will be cut off. A
+     * data file in another format than the configured one, or in a former version of it, will be converted.
+     */
+    @Override
+    public List<Person> load() throws IOException {
+        participantData = null;
+        if (!Files.exists(dataFile)) return Collections.emptyList();
+        ParticipantHistory restoredState = readExistingData(readSnapshot());
+        if (restoredState.size() == 0) return Collections.emptyList();
+        if (codec.getFormat() != format || codec.isLegacy()) {
+            convertData();
+            // the record locations have changed
+            restoredState = readExistingData(null);
+        }
+        participantData = restoredState;
+        return participantData.getLatestStates();
+    }
+    
+    /**
+     * Looks up the id in memory, a new id is reserved for the participant.
+     *
+     * @throws IllegalStateException
+     *         if nothing has been loaded or stored yet
+     */
+    @Override
+    public Person identify(Person state) throws IOException {
+        checkLoaded();
+        recoverFailedWrite();
+        return participantData.identify(state);
+    }
+    
+    @Override
+    public boolean contains(Person participant) throws IOException {
+        recoverFailedWrite();
+        return participantData != null && participantData.contains(participant);
+    }
+    
+    @Override
+    public Optional<Person> findLatest(Person participant) throws IOException {
+        recoverFailedWrite();
+        return participantData != null ? participantData.getLatest(participant) : Optional.empty();
+    }
+    
+    @Override
+    public Optional<Person> findByStartNumber(int number) throws IOException {
+        recoverFailedWrite();
+        return participantData != null ? participantData.getByStartNumber(number) : Optional.empty();
+    }
+    
+    /** Scans the latest states, there's no index by category. */
+    @Override
+    public List<Person> findByCategory(Person.Category category) throws IOException {
+        List<Person> found = new ArrayList<>();
+        for (Person participant : findAllLatest())
+            if (participant.getCategory() == category) found.add(participant);
+        return found;
+    }
+    
+    @Override
+    public List<Person> findAllLatest() throws IOException {
+        recoverFailedWrite();
+        return participantData != null ? participantData.getLatestStates() : Collections.emptyList();
+    }
+    
+    /**
+     * Appends the records of all states to the data file with a single write. A crash while writing can cut the
+     * batch after any complete record, the incomplete rest is discarded on the next {@link #load()}. The states are
+     * visible to the lookups right away, if the write fails they're dropped again before the next access.
+     *
+     * @throws IllegalStateException
+     *         if nothing has been loaded or stored yet
+     */
+    @Override
+    public CompletableFuture<Void> append(List<Person> states) throws IOException {
+        checkLoaded();
+        recoverFailedWrite();
+        DataLog log = openDataLog();
+        long position = log.length();
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        for (Person state : states) {
+            Person toStore = participantData.identify(state);
+            byte[] record = createRecord(codec, toStore);
+            participantData.add(toStore, position + records.size(), record.length);
+            records.write(record);
+        }
+        lastWrite = log.append(records.toByteArray());
+        updatesSinceSnapshot += states.size();
+        if (updatesSinceSnapshot >= config.snapshotInterval && config.snapshotInterval > 0
+                && snapshotStore.writeInBackground(participantData.copy(), log.length(), codec.copy(), lastWrite))
+            updatesSinceSnapshot = 0;
+        return lastWrite;
+    }
+    
+    /**
+     * Replaces the data file with one holding the given participant states. The data is written into a temporary
+     * file first, the old data file is only moved aside as backup once that has succeeded. The temporary file is
+     * moved into place atomically, so a crash leaves either the old or the new data file.
+     */
+    @Override
+    public void replaceAll(Collection<Person> states) throws IOException {
+        Objects.requireNonNull(states);
+        RecordCodec newCodec = format.newCodec();
+        Path tempFile = dataFile.resolveSibling(dataFile.getFileName() + ".tmp");
+        ParticipantHistory stored;
+        try {
+            stored = writeAllData(states, newCodec, tempFile);
+            closeDataLog();
+            snapshotStore.delete();
+            updatesSinceSnapshot = 0;
+            if (Files.exists(dataFile)) backupData();
+            Files.move(tempFile, dataFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        codec = newCodec;
+        participantData = stored;
+    }
+    
+    /** Only the records of this participant are read, located by the index kept in memory. */
+    @Override
+    public List<Person> getHistory(Person participant) throws IOException {
+        return prepareHistory(participant).read();
+    }
+    
+    /**
+     * Copies the locations of the participant's records and the codec, so the records can be read while further ones
+     * are appended. Reading waits for the records which are still pending.
+     */
+    @Override
+    public HistoryReader prepareHistory(Person participant) throws IOException {
+        recoverFailedWrite();
+        ParticipantHistory.Versions versions = participantData != null ? participantData.getVersions(participant)
+                                                                                        .orElse(null) : null;
+        if (versions == null) return Collections::emptyList;
+        ParticipantHistory.Versions located = versions.copy();
+        RecordCodec historyCodec = codec.copy();
+        CompletableFuture<Void> pending = lastWrite;
+        return () -> readHistory(located, historyCodec, pending);
+    }
+    
+    /**
+     * Reads the records of a participant.
+     *
+     * @param versions
+     *         the locations of the participant's records
+     * @param historyCodec
+     *         decodes the records, must not be used by anyone else
+     * @param pending
+     *         completed as soon as all records have been written
+     * @return all states of the participant, oldest first
+     * @throws IOException
+     *         if a record cannot be read
+     */
+    private List<Person> readHistory(ParticipantHistory.Versions versions, RecordCodec historyCodec,
+                                     CompletableFuture<Void> pending) throws IOException {
+        pending.exceptionally(e -> null).join(); // the records to be read might still be pending
+        List<Person> history = new ArrayList<>(versions.getCount());
+        try (FileChannel channel = FileChannel.open(dataFile, StandardOpenOption.READ)) {
+            for (int i = 0; i < versions.getCount(); i++) {
+                ByteBuffer record = ByteBuffer.allocate(versions.getLength(i));
+                long position = versions.getPosition(i);
+                while (record.hasRemaining())
+                    if (channel.read(record, position + record.position()) < 0) throw new EOFException();
+                record.flip();
+                int found = history.size();
+                historyCodec.decode(record, history::add);
+                if (history.size() != found + 1 || record.hasRemaining())
+                    throw new IOException(String.format("Invalid record at byte %d.", position));
+            }
+        }
+        return history;
+    }
+    
+    @Override
+    public List<Backup> getBackups() {
+        return backupManager.list();
+    }
+    
+    @Override
+    public void restoreBackup(int backupId) throws IOException {
+        closeDataLog();
+        snapshotStore.delete();
+        updatesSinceSnapshot = 0;
+        participantData = null;
+        backupManager.restore(backupId).ifPresent(FlatFileParticipantRepository::printBackupCreated);
+    }
+    
+    @Override
+    public WriteStatistics getWriteStatistics() {
+        return writeStatistics;
+    }
+    
+    /**
+     * Writes all pending updates, releases the data file and stores a snapshot of the latest state so the next
+     * {@link #load()} won't have to replay the updates. There's no snapshot if a write has failed, since the states
+     * in memory might not have been written.
+     */
+    @Override
+    public void close() throws IOException {
+        DataLog log = dataLog;
+        closeDataLog();
+        boolean broken = log != null && log.isBroken();
+        snapshotStore.close();
+        backupManager.close();
+        if (participantData != null && updatesSinceSnapshot > 0 && !broken)
+            snapshotStore.write(participantData, Files.size(dataFile), codec);
+    }
+    
+    /**
+     * Moves an existing data file aside as a new backup so it won't be overridden. The new file name will end with
+     * {@code .bak} plus a number, it's compressed in the background if configured.
+     *
+     * @throws IOException
+     *         if moving the data file fails
+     */
+    private void backupData() throws IOException {
+        backupManager.backup().ifPresent(FlatFileParticipantRepository::printBackupCreated);
+    }
+    
+    /**
+     * Informs about a new backup of the data file.
+     *
+     * @param backup
+     *         the new backup
+     */
+    private static void printBackupCreated(Backup backup) {
+        MainApp.printInfo(String.format("Creating backup file '%s' for old data.", backup.getFile()));
+    }
+    
+    /**
+     * Converts the existing data file into the configured {@link #format}. The original file will be kept as backup.
+     *
+     * @throws IOException
+     *         if the conversion fails
+     */
+    private void convertData() throws IOException {
+        Path converted = dataFile.resolveSibling(dataFile.getFileName() + ".converted");
+        RecordCodec convertedCodec = LogFormatConverter.convert(dataFile, converted, format);
+        closeDataLog();
+        snapshotStore.delete();
+        updatesSinceSnapshot = 0;
+        backupData();
+        Files.move(converted, dataFile, StandardCopyOption.ATOMIC_MOVE);
+        codec = convertedCodec;
+        MainApp.printInfo(String.format("Converted %s to the %s format.", dataFile, format));
+    }
+    
+    /**
+     * Writes a new data file holding the given participant states.
+     *
+     * @param states
+     *         all states of all participants in the order they shall be stored
+     * @param newCodec
+     *         encodes the records of the new data file
+     * @param file
+     *         the new data file
+     * @return the stored states, indexed by their location in the new data file
+     * @throws IOException
+     *         if writing into the new data file fails
+     */
+    private static ParticipantHistory writeAllData(Collection<Person> states, RecordCodec newCodec, Path file)
+            throws IOException {
+        ParticipantHistory stored = new ParticipantHistory();
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        records.write(newCodec.header());
+        for (Person state : states) {
+            Person toWrite = stored.identify(state);
+            byte[] record = createRecord(newCodec, toWrite);
+            stored.add(toWrite, records.size(), record.length);
+            records.write(record);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer data = ByteBuffer.wrap(records.toByteArray());
+            while (data.hasRemaining()) channel.write(data);
+            channel.force(false);
+        }
+        return stored;
+    }
+    
+    /**
+     * Serializes a given {@code Person} to a record to be written into a data file.
+     *
+     * @param recordCodec
+     *         the codec of the data file
+     * @param toWrite
+     *         to be serialized
+     * @return the serialized record
+     */
+    private static byte[] createRecord(RecordCodec recordCodec, final Person toWrite) {
+        if (!FileUtils.isValid(toWrite.getName())) MainApp.printInfo(
+                toWrite.getName() + " was stripped by invalid characters.");
+        return recordCodec.encode(toWrite);
+    }
+    
+    /**
+     * Recovers from a failed write, which has broken the {@link #dataLog} and truncated the data file to the records
+     * written before. The participant data and the {@link #codec} are read from the data file again: the states of
+     * the failed records are dropped, so a retry isn't taken for a duplicate, and the names registered by the failed
+     * records will be written again with the next records using them.
+     *
+     * @throws IOException
+     *         if the data file cannot be read
+     */
+    private void recoverFailedWrite() throws IOException {
+        if (dataLog == null || !dataLog.isBroken()) return;
+        closeDataLog();
+        participantData = readExistingData(readSnapshot());
+        MainApp.printInfo(String.format("Writing to %s failed, restored the participants stored before.", dataFile));
+    }
+    
+    /**
+     * Opens the data file for appending records, if it is not opened yet.
+     *
+     * @return appends to the data file
+     * @throws IOException
+     *         if the data file cannot be opened
+     */
+    private DataLog openDataLog() throws IOException {
+        if (dataLog == null) dataLog = new DataLog(dataFile, durability, config.groupCommitWindowMillis,
+                config.writeQueueCapacity, writeStatistics);
+        return dataLog;
+    }
+    
+    /**
+     * Writes all pending updates and closes the data file, if it is opened.
+     *
+     * @throws IOException
+     *         if closing the data file fails
+     */
+    private void closeDataLog() throws IOException {
+        if (dataLog == null) return;
+        try {
+            dataLog.close();
+        } finally {
+            dataLog = null;
+        }
+    }
+    
+    /**
+     * Checks whether any data has been loaded or stored already and throws an {@code IllegalStateException} otherwise.
+     *
+     * @throws IllegalStateException
+     *         if nothing has been loaded or stored yet
+     */
+    private void checkLoaded() {
+        if (participantData == null) throw new IllegalStateException("Repository has not been loaded yet.");
+    }
+    
+    /**
+     * Reads the latest snapshot of the data file.
+     *
+     * @return the snapshot, {@code null} if there's no valid one
+     * @throws IOException
+     *         if the data file cannot be accessed
+     */
+    private SnapshotStore.Snapshot readSnapshot() throws IOException {
+        return snapshotStore.read(Files.size(dataFile), LogFormat.of(dataFile)).orElse(null);
+    }
+    
+    /**
+     * Reads the existing data file to restore a persisted state of participants and sets up the {@link #codec} to
+     * append further records.
+     *
+     * @param snapshot
+     *         the latest states of the participants covering the data file up to an offset, only the data after this
+     *         offset will be read. Can be {@code null} to read the whole data file.
+     * @return all participants stored in the snapshot and the data file
+     * @throws IOException
+     *         if the data file cannot be read
+     */
+    private ParticipantHistory readExistingData(SnapshotStore.Snapshot snapshot) throws IOException {
+        long offset = snapshot != null ? snapshot.offset : 0;
+        // read instead of mapped, the data file might be truncated, converted or moved aside afterwards, which a
+        // mapping prevents on some platforms until it's garbage collected
+        ByteBuffer data = FileUtils.read(dataFile, offset);
+        ParticipantHistory parsedPersons = snapshot != null ? snapshot.participants : new ParticipantHistory();
+        RecordCodec dataCodec = snapshot != null ? snapshot.codec : LogFormat.detect(data);
+        dataCodec.decode(data, (state, position, length) -> parsedPersons.add(state, offset + position, length));
+        long validLength = data.hasRemaining() ? offset + data.position() : -1;
+        if (validLength >= 0) discardInvalidTail(validLength);
+        codec = dataCodec;
+        return parsedPersons;
+    }
+    
+    /**
+     * Cuts off the invalid end of the data file, e.g. a record which has been written partially due to a crash. The
+     * cut off data is kept in a file ending with {@code .corrupt} plus a number.
+     *
+     * @param validLength
+     *         the number of bytes at the beginning of the data file which hold valid records
+     * @throws IOException
+     *         if the data file cannot be truncated
+     */
+    private void discardInvalidTail(long validLength) throws IOException {
+        Path tailFile;
+        int fileNumber = 0;
+        do {
+            tailFile = dataFile.resolveSibling(dataFile.getFileName() + ".corrupt" + ++fileNumber);
+        } while (Files.exists(tailFile));
+        long discarded;
+        try (FileChannel data = FileChannel.open(dataFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+             FileChannel tail = FileChannel.open(tailFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            discarded = data.size() - validLength;
+            for (long copied = 0; copied < discarded; )
+                copied += data.transferTo(validLength + copied, discarded - copied, tail);
+            tail.force(false);
+            data.truncate(validLength);
+            data.force(false);
+        }
+        MainApp.printInfo(String.format("Discarded %d invalid bytes at the end of %s, they are kept in %s.",
+                discarded, dataFile, tailFile));
+    }
+}
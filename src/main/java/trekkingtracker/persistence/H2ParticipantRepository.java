@@ -0,0 +1,497 @@
+package trekkingtracker.persistence;
+
+import trekkingtracker.config.StoreConfig;
+import trekkingtracker.data.ImmutablePerson;
+import trekkingtracker.data.Person;
+import trekkingtracker.data.PersonImpl;
+import trekkingtracker.ui.MainApp;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Stores the participant data in an embedded H2 database file. All states are kept in an append-only table, the
+ * latest state of each participant in a second table which is indexed by participant id, start number and category,
+ * so lookups don't need to hold the participants in memory. Databases written by a former version get the ids of
+ * their participants when they are opened. Batches of states are written within a single transaction. Backups are
+ * exported as data files in the configured {@link LogFormat}. Not thread-safe.
+ */
+final class H2ParticipantRepository implements ParticipantRepository {
+    /** Name of the database file, without the extension added by H2 */
+    static final String DATABASE_FILE = "participant_db";
+    /** Name of the data file the database content is exported into to be kept as backup */
+    static final String EXPORT_FILE = "participant_db.dat";
+    /** Name of the catalogue of the backups of former database contents */
+    static final String BACKUP_CATALOGUE_FILE = "participant_db.backups";
+    /** The columns describing a participant state, in the order they are bound and read */
+    private static final String COLUMNS = "name, birthday, category, start_number, start_time, stop_time, finisher, "
+            + "participant_id";
+    /** The placeholders of the {@link #COLUMNS} */
+    private static final String VALUES = "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    /** Creates the tables and indexes, if they don't exist yet */
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS participant_state (seq BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                    + "name VARCHAR NOT NULL, birthday DATE NOT NULL, category VARCHAR(32), start_number INT, "
+                    + "start_time TIMESTAMP(9) WITH TIME ZONE, stop_time TIMESTAMP(9) WITH TIME ZONE, "
+                    + "finisher BOOLEAN NOT NULL, participant_id INT)",
+            "ALTER TABLE participant_state ADD COLUMN IF NOT EXISTS participant_id INT",
+            "CREATE INDEX IF NOT EXISTS participant_state_identity ON participant_state (name, birthday, seq)",
+            "CREATE INDEX IF NOT EXISTS participant_state_id ON participant_state (participant_id, seq)",
+            "CREATE TABLE IF NOT EXISTS participant (name VARCHAR NOT NULL, birthday DATE NOT NULL, "
+                    + "category VARCHAR(32), start_number INT, start_time TIMESTAMP(9) WITH TIME ZONE, "
+                    + "stop_time TIMESTAMP(9) WITH TIME ZONE, finisher BOOLEAN NOT NULL, participant_id INT, "
+                    + "PRIMARY KEY (name, birthday))",
+            "ALTER TABLE participant ADD COLUMN IF NOT EXISTS participant_id INT",
+            "CREATE UNIQUE INDEX IF NOT EXISTS participant_id ON participant (participant_id)",
+            "CREATE INDEX IF NOT EXISTS participant_start_number ON participant (start_number)",
+            "CREATE INDEX IF NOT EXISTS participant_category ON participant (category)"};
+    /** The JDBC URL of the database */
+    private final String url;
+    /** The data file the database content is exported into to be kept as backup */
+    private final Path exportFile;
+    /** The format the backups are exported in */
+    private final LogFormat format;
+    /** Collects statistics about the writes to the database */
+    private final WriteStatistics writeStatistics = new WriteStatistics();
+    /** Keeps former database contents as backups */
+    private final BackupManager backupManager;
+    /** The connection to the database, {@code null} if it is not opened yet */
+    private Connection connection = null;
+    /** Hands out the ids of new participants, {@code null} as long as no id has been handed out */
+    private ParticipantIds newParticipants = null;
+    
+    /**
+     * Creates a new {@code H2ParticipantRepository}. The database is opened on first access.
+     *
+     * @param directory
+     *         the directory holding the database file and its backups
+     * @param config
+     *         tells how the database shall be written. The {@link StoreConfig#durability} is mapped to the delay
+     *         between a commit and writing it to the database file: none for {@code sync}, the group commit window for
+     *         {@code group} and H2's default for {@code async}.
+     */
+    H2ParticipantRepository(Path directory, StoreConfig config) {
+        String writeDelay;
+        switch (Durability.parse(config.durability)) {
+            case SYNC:
+                writeDelay = ";WRITE_DELAY=0";
+                break;
+            case GROUP:
+                writeDelay = ";WRITE_DELAY=" + config.groupCommitWindowMillis;
+                break;
+            default:
+                writeDelay = "";
+        }
+        this.url = "jdbc:h2:file:" + directory.resolve(DATABASE_FILE).toAbsolutePath() + writeDelay;
+        this.exportFile = directory.resolve(EXPORT_FILE);
+        this.format = LogFormat.parse(config.format);
+        this.backupManager = new BackupManager(exportFile, directory.resolve(BACKUP_CATALOGUE_FILE),
+                config.backupRetention, config.backupCompression);
+    }
+    
+    @Override
+    public List<Person> load() throws IOException {
+        return findAllLatest();
+    }
+    
+    /** Looks up the id in the database, a new id is reserved in memory until a state with it is stored. */
+    @Override
+    public Person identify(Person state) throws IOException {
+        if (state.getId() != Person.NO_ID) return state;
+        Optional<Person> latest = findLatest(state);
+        if (latest.isPresent()) return ImmutablePerson.of(state).withId(latest.get().getId());
+        if (newParticipants == null) newParticipants = new ParticipantIds(queryMaxId());
+        return newParticipants.identify(state);
+    }
+    
+    @Override
+    public boolean contains(Person participant) throws IOException {
+        return findLatest(participant).isPresent();
+    }
+    
+    @Override
+    public Optional<Person> findLatest(Person participant) throws IOException {
+        List<Person> found = participant.getId() != Person.NO_ID ? query("SELECT " + COLUMNS
+                + " FROM participant WHERE participant_id = ?", participant.getId()) : query("SELECT " + COLUMNS
+                + " FROM participant WHERE name = ? AND birthday = ?", participant.getName(),
+                participant.getBirthday());
+        return found.isEmpty() ? Optional.empty() : Optional.of(found.get(0));
+    }
+    
+    /** If several participants hold the same number, the first one by name and birthday is returned. */
+    @Override
+    public Optional<Person> findByStartNumber(int number) throws IOException {
+        List<Person> found = query("SELECT " + COLUMNS
+                + " FROM participant WHERE start_number = ? ORDER BY name, birthday LIMIT 1", number);
+        return found.isEmpty() ? Optional.empty() : Optional.of(found.get(0));
+    }
+    
+    @Override
+    public List<Person> findByCategory(Person.Category category) throws IOException {
+        return query("SELECT " + COLUMNS + " FROM participant WHERE category = ?", category.name());
+    }
+    
+    @Override
+    public List<Person> findAllLatest() throws IOException {
+        return query("SELECT " + COLUMNS + " FROM participant");
+    }
+    
+    /** The states are written within a single transaction, so either all or none of them are stored. */
+    @Override
+    public CompletableFuture<Void> append(List<Person> states) throws IOException {
+        long start = System.nanoTime();
+        Connection db = connection();
+        List<Person> identified = new ArrayList<>(states.size());
+        for (Person state : states)
+            identified.add(identify(state));
+        try {
+            insert(db, identified);
+            db.commit();
+        } catch (SQLException e) {
+            throw rollback(db, e);
+        }
+        writeStatistics.written(System.nanoTime() - start);
+        return CompletableFuture.completedFuture(null);
+    }
+    
+    @Override
+    public void replaceAll(Collection<Person> states) throws IOException {
+        Objects.requireNonNull(states);
+        if (exportData()) backupManager.backup().ifPresent(H2ParticipantRepository::printBackupCreated);
+        replaceContent(states);
+    }
+    
+    /** The states are looked up by the participant's id, so they include the ones with a former name. */
+    @Override
+    public List<Person> getHistory(Person participant) throws IOException {
+        int id = participant.getId() != Person.NO_ID ? participant.getId() : findLatest(participant).map(Person::getId)
+                                                                                                  .orElse(Person.NO_ID);
+        if (id == Person.NO_ID) return Collections.emptyList();
+        return query("SELECT " + COLUMNS + " FROM participant_state WHERE participant_id = ? ORDER BY seq", id);
+    }
+    
+    @Override
+    public List<Backup> getBackups() {
+        return backupManager.list();
+    }
+    
+    /**
+     * The restored backup is imported into the database within a single transaction. The current database content is
+     * exported to be kept as new backup beforehand.
+     */
+    @Override
+    public void restoreBackup(int backupId) throws IOException {
+        exportData();
+        backupManager.restore(backupId).ifPresent(H2ParticipantRepository::printBackupCreated);
+        ByteBuffer data = FileUtils.read(exportFile, 0);
+        RecordCodec codec = LogFormat.detect(data);
+        List<Person> states = new ArrayList<>();
+        codec.decode(data, states::add);
+        if (data.hasRemaining())
+            throw new IOException(String.format("Invalid record at byte %d of backup %d.", data.position(), backupId));
+        replaceContent(states);
+        Files.delete(exportFile);
+    }
+    
+    @Override
+    public WriteStatistics getWriteStatistics() {
+        return writeStatistics;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        backupManager.close();
+        if (connection == null) return;
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            connection = null;
+        }
+    }
+    
+    /**
+     * Opens the database and creates its tables, if it is not opened yet.
+     *
+     * @return the connection to the database, not in auto-commit mode
+     * @throws IOException
+     *         if the database cannot be opened
+     */
+    private Connection connection() throws IOException {
+        if (connection != null) return connection;
+        try {
+            Connection db = DriverManager.getConnection(url);
+            try (Statement statement = db.createStatement()) {
+                for (String definition : SCHEMA)
+                    statement.execute(definition);
+            }
+            db.setAutoCommit(false);
+            assignMissingIds(db);
+            connection = db;
+            return db;
+        } catch (SQLException e) {
+            throw new IOException(String.format("Could not open the database: %s", e.getMessage()), e);
+        }
+    }
+    
+    /**
+     * Assigns ids to the participants stored by a former version without ids, recognized by their names and
+     * birthdays. All their states get the id as well.
+     *
+     * @param db
+     *         the connection to the database, not in auto-commit mode
+     * @throws IOException
+     *         if reading or writing fails, nothing is changed then
+     */
+    private static void assignMissingIds(Connection db) throws IOException {
+        try (Statement statement = db.createStatement();
+             PreparedStatement latest = db.prepareStatement(
+                     "UPDATE participant SET participant_id = ? WHERE name = ? AND birthday = ?");
+             PreparedStatement history = db.prepareStatement(
+                     "UPDATE participant_state SET participant_id = ? WHERE name = ? AND birthday = ?")) {
+            int id;
+            try (ResultSet max = statement.executeQuery("SELECT COALESCE(MAX(participant_id), 0) FROM participant")) {
+                max.next();
+                id = max.getInt(1);
+            }
+            boolean missing = false;
+            try (ResultSet rows = statement.executeQuery(
+                    "SELECT name, birthday FROM participant WHERE participant_id IS NULL ORDER BY name, birthday")) {
+                while (rows.next()) {
+                    missing = true;
+                    id++;
+                    for (PreparedStatement update : Arrays.asList(latest, history)) {
+                        update.setInt(1, id);
+                        update.setString(2, rows.getString(1));
+                        update.setObject(3, rows.getObject(2, LocalDate.class));
+                        update.addBatch();
+                    }
+                }
+            }
+            if (!missing) return;
+            latest.executeBatch();
+            history.executeBatch();
+            db.commit();
+        } catch (SQLException e) {
+            throw rollback(db, e);
+        }
+    }
+    
+    /**
+     * Returns the highest participant id stored in the database.
+     *
+     * @return the highest id, {@link Person#NO_ID} if there's none
+     * @throws IOException
+     *         if the query fails
+     */
+    private int queryMaxId() throws IOException {
+        try (Statement statement = connection().createStatement();
+             ResultSet max = statement.executeQuery(
+                     "SELECT COALESCE(MAX(participant_id), 0) FROM participant_state")) {
+            max.next();
+            return max.getInt(1);
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Reads participant states from the database.
+     *
+     * @param sql
+     *         the query, selecting the {@link #COLUMNS}
+     * @param parameters
+     *         the values of the query's parameters
+     * @return the states in the order returned by the query
+     * @throws IOException
+     *         if the query fails
+     */
+    private List<Person> query(String sql, Object... parameters) throws IOException {
+        try (PreparedStatement statement = connection().prepareStatement(sql)) {
+            for (int i = 0; i < parameters.length; i++)
+                statement.setObject(i + 1, parameters[i]);
+            List<Person> found = new ArrayList<>();
+            try (ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) found.add(read(rows));
+            }
+            return found;
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Adds states to the history and makes each one the latest state of its participant, without committing them.
+     *
+     * @param db
+     *         the connection to the database
+     * @param states
+     *         the states in the order they shall be stored
+     * @throws SQLException
+     *         if writing fails
+     */
+    private static void insert(Connection db, Collection<Person> states) throws SQLException {
+        try (PreparedStatement history = db.prepareStatement(
+                "INSERT INTO participant_state (" + COLUMNS + ") " + VALUES);
+             PreparedStatement latest = db.prepareStatement(
+                     "MERGE INTO participant (" + COLUMNS + ") KEY (participant_id) " + VALUES)) {
+            for (Person state : states) {
+                bind(history, state);
+                history.addBatch();
+                bind(latest, state);
+                latest.addBatch();
+            }
+            history.executeBatch();
+            latest.executeBatch();
+        }
+    }
+    
+    /**
+     * Replaces the whole database content with the given states within a single transaction. States without id get
+     * the id of their participant, recognized by their names and birthdays.
+     *
+     * @param states
+     *         all states of all participants in the order they shall be stored
+     * @throws IOException
+     *         if writing fails, the former content is kept then
+     */
+    private void replaceContent(Collection<Person> states) throws IOException {
+        Connection db = connection();
+        ParticipantIds ids = new ParticipantIds();
+        List<Person> identified = new ArrayList<>(states.size());
+        for (Person state : states)
+            identified.add(ids.identify(state));
+        newParticipants = null;
+        try (Statement statement = db.createStatement()) {
+            statement.execute("DELETE FROM participant_state");
+            statement.execute("DELETE FROM participant");
+            insert(db, identified);
+            db.commit();
+        } catch (SQLException e) {
+            throw rollback(db, e);
+        }
+    }
+    
+    /**
+     * Rolls back the current transaction after a failed write.
+     *
+     * @param db
+     *         the connection to the database
+     * @param cause
+     *         the failure of the write
+     * @return the exception to be thrown
+     */
+    private static IOException rollback(Connection db, SQLException cause) {
+        try {
+            db.rollback();
+        } catch (SQLException e) {
+            cause.addSuppressed(e);
+        }
+        return new IOException(cause.getMessage(), cause);
+    }
+    
+    /**
+     * Writes all states stored in the database into the {@link #exportFile}, oldest first.
+     *
+     * @return {@code true} if there was any state to be exported, otherwise {@code false}
+     * @throws IOException
+     *         if reading the database or writing the file fails
+     */
+    private boolean exportData() throws IOException {
+        RecordCodec codec = format.newCodec();
+        boolean exported = false;
+        try (Statement statement = connection().createStatement();
+             ResultSet rows = statement.executeQuery(
+                     "SELECT " + COLUMNS + " FROM participant_state ORDER BY seq");
+             OutputStream out = new BufferedOutputStream(Files.newOutputStream(exportFile))) {
+            out.write(codec.header());
+            while (rows.next()) {
+                out.write(codec.encode(read(rows)));
+                exported = true;
+            }
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        if (!exported) Files.delete(exportFile);
+        return exported;
+    }
+    
+    /**
+     * Informs about a new backup of the database content.
+     *
+     * @param backup
+     *         the new backup
+     */
+    private static void printBackupCreated(Backup backup) {
+        MainApp.printInfo(String.format("Creating backup file '%s' for old data.", backup.getFile()));
+    }
+    
+    /**
+     * Binds a participant state to the parameters of a statement, in the order of the {@link #COLUMNS}.
+     *
+     * @param statement
+     *         the statement
+     * @param state
+     *         the state to be bound
+     * @throws SQLException
+     *         if binding fails
+     */
+    private static void bind(PreparedStatement statement, Person state) throws SQLException {
+        statement.setString(1, state.getName());
+        statement.setObject(2, state.getBirthday());
+        statement.setString(3, state.getCategory() != null ? state.getCategory().name() : null);
+        if (state.getNumber() != null) statement.setInt(4, state.getNumber());
+        else statement.setNull(4, Types.INTEGER);
+        statement.setObject(5, toTimestamp(state.getStart()));
+        statement.setObject(6, toTimestamp(state.getStop()));
+        statement.setBoolean(7, state.isFinisher());
+        statement.setInt(8, state.getId());
+    }
+    
+    /**
+     * Reads a participant state from the current row, selecting the {@link #COLUMNS}.
+     *
+     * @param row
+     *         the result positioned on the row
+     * @return the participant state
+     * @throws SQLException
+     *         if reading fails
+     */
+    private static Person read(ResultSet row) throws SQLException {
+        PersonImpl state = new PersonImpl(row.getString(1), row.getObject(2, LocalDate.class));
+        String category = row.getString(3);
+        if (category != null) state.setCategory(Person.Category.valueOf(category));
+        int number = row.getInt(4);
+        if (!row.wasNull()) state.setNumber(number);
+        OffsetDateTime start = row.getObject(5, OffsetDateTime.class);
+        if (start != null) state.setStart(start.toInstant());
+        OffsetDateTime stop = row.getObject(6, OffsetDateTime.class);
+        if (stop != null) state.setStop(stop.toInstant());
+        state.setFinished(row.getBoolean(7));
+        state.setId(row.getInt(8));
+        return state;
+    }
+    
+    /**
+     * Converts a point in time to a value of a {@code TIMESTAMP WITH TIME ZONE} column.
+     *
+     * @param instant
+     *         the point in time, can be {@code null}
+     * @return the value in UTC, {@code null} if the given point in time is {@code null}
+     */
+    private static OffsetDateTime toTimestamp(Instant instant) {
+        return instant != null ? instant.atOffset(ZoneOffset.UTC) : null;
+    }
+}
@@ -0,0 +1,72 @@
+package trekkingtracker.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/** The formats the participant data can be stored in. */
+public enum LogFormat {
+    /** Human-readable lines, one per participant state */
+    TEXT,
+    /** Compact binary records, see {@link BinaryRecordCodec} */
+    BINARY;
+    
+    /**
+     * Parses a {@code LogFormat} case-insensitively, e.g. from a configuration value.
+     *
+     * @param identifier
+     *         the name of the format
+     * @return the parsed {@code LogFormat}
+     * @throws IllegalArgumentException
+     *         if there's no format with the given name
+     */
+    public static LogFormat parse(String identifier) {
+        return valueOf(identifier.trim().toUpperCase(Locale.ROOT));
+    }
+    
+    /**
+     * Creates a new codec which writes data in this format.
+     *
+     * @return the new codec
+     */
+    RecordCodec newCodec() {
+        return this == BINARY ? new BinaryRecordCodec() : new TextRecordCodec();
+    }
+    
+    /**
+     * Determines the format of the data starting at the buffer's position and creates a codec to decode it. If there
+     * is a header which must not be passed to {@link RecordCodec#decode}, the buffer's position will be moved behind
+     * it.
+     *
+     * @param data
+     *         the beginning of a data file
+     * @return a codec to decode the remaining data
+     * @throws IOException
+     *         if the data has been written in an unsupported version
+     */
+    static RecordCodec detect(ByteBuffer data) throws IOException {
+        RecordCodec binaryCodec = BinaryRecordCodec.readHeader(data);
+        return binaryCodec != null ? binaryCodec : TextRecordCodec.forData(data);
+    }
+    
+    /**
+     * Determines the format of the given file by its header.
+     *
+     * @param file
+     *         the file to be checked
+     * @return the format of the file
+     * @throws IOException
+     *         if reading the file fails or if it has been written in an unsupported version
+     */
+    static LogFormat of(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(BinaryRecordCodec.MAGIC.length + 1);
+            while (header.hasRemaining() && channel.read(header) >= 0) ;
+            header.flip();
+            return detect(header).getFormat();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package trekkingtracker.persistence;
+
+import trekkingtracker.data.Person;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts a participant data file into another {@link LogFormat}. The format of the source file is detected
+ * automatically. Can be run from the command line with the arguments {@code <source> <target> <text|binary>}.
+ */
+public final class LogFormatConverter {
+    /** Pure util class, not intended to be instantiated */
+    private LogFormatConverter() {
+    }
+    
+    /**
+     * Converts the data file given as first argument into the file given as second argument, using the format given
+     * as third argument.
+     *
+     * @param args
+     *         the source file, the target file and the target format
+     * @throws IOException
+     *         if reading or writing fails
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: LogFormatConverter <source> <target> <text|binary>");
+            System.exit(1);
+        }
+        convert(Paths.get(args[0]), Paths.get(args[1]), LogFormat.parse(args[2]));
+    }
+    
+    /**
+     * Converts a data file into the current version of a format. All participant states are kept in their order.
+     * States written by a former version without participant ids get the ids of their participants, recognized by
+     * their names and birthdays.
+     *
+     * @param source
+     *         the data file to be converted
+     * @param target
+     *         the file to write the converted data to, will be overridden if it exists
+     * @param format
+     *         the format of the target file
+     * @return the codec which wrote the target file, e.g. to append further records
+     * @throws IOException
+     *         if reading or writing fails, or if the data file contains invalid records
+     */
+    static RecordCodec convert(Path source, Path target, LogFormat format) throws IOException {
+        List<Person> states = new ArrayList<>();
+        ByteBuffer data = FileUtils.read(source, 0);
+        LogFormat.detect(data).decode(data, states::add);
+        if (data.hasRemaining())
+            throw new IOException(String.format("Invalid record at byte %d of %s.", data.position(), source));
+        RecordCodec encoder = format.newCodec();
+        ParticipantIds ids = new ParticipantIds();
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(target))) {
+            out.write(encoder.header());
+            for (Person state : states) out.write(encoder.encode(ids.identify(state)));
+        }
+        return encoder;
+    }
+}
@@ -0,0 +1,307 @@
+package trekkingtracker.persistence;
+
+import trekkingtracker.data.Person;
+
+import java.util.*;
+
+/**
+ * The in-memory model of the participant data: the latest state of each participant plus the locations of all its
+ * states in the data file, and a hash index from each start number to the participant holding it. Former states are
+ * not kept on the heap, they can be read from the data file on demand. The participants are indexed by their ids, so
+ * lookups by participant or start number take constant time regardless of the length of the history and without
+ * comparing names. Not thread-safe.
+ */
+final class ParticipantHistory {
+    /** The versions of each participant, by the participant's id */
+    private Versions[] versions;
+    /** The ids of the participants, to recognize participants without id */
+    private final ParticipantIds ids;
+    /** The latest state of the participant holding a start number, by start number */
+    private final Map<Integer, Person> startNumbers;
+    /** The number of participants */
+    private int participantCount = 0;
+    /** The number of states of all participants */
+    private int size = 0;
+    
+    /** Creates a new, empty {@code ParticipantHistory}. */
+    ParticipantHistory() {
+        versions = new Versions[16];
+        ids = new ParticipantIds();
+        startNumbers = new HashMap<>();
+    }
+    
+    /**
+     * Creates a copy of the given history.
+     *
+     * @param toCopy
+     *         the history to be copied, won't be modified
+     */
+    private ParticipantHistory(ParticipantHistory toCopy) {
+        versions = new Versions[toCopy.versions.length];
+        for (int id = 0; id < versions.length; id++)
+            if (toCopy.versions[id] != null) versions[id] = new Versions(toCopy.versions[id]);
+        ids = toCopy.ids.copy();
+        startNumbers = new HashMap<>(toCopy.startNumbers);
+        participantCount = toCopy.participantCount;
+        size = toCopy.size;
+    }
+    
+    /**
+     * Returns the given participant state with the id of its participant, to be stored. A participant which is not
+     * known yet gets a new id.
+     *
+     * @param state
+     *         the participant state
+     * @return the given state if it has an id already, otherwise a copy with the id
+     */
+    Person identify(Person state) {
+        return ids.identify(state);
+    }
+    
+    /**
+     * Adds a new state of a participant. If its start number is held by another participant already, the number
+     * stays linked to that one. A state without id is assigned to the participant with the same name and birthday.
+     *
+     * @param state
+     *         the new state, becomes the participant's latest state
+     * @param position
+     *         the offset of the state's record in the data file
+     * @param length
+     *         the number of bytes of the state's record
+     * @return the latest state of another participant holding the same start number, if there's one
+     */
+    Optional<Person> add(Person state, long position, int length) {
+        size++;
+        int id = ids.idOf(state);
+        if (id >= versions.length) versions = Arrays.copyOf(versions, Math.max(versions.length * 2, id + 1));
+        Versions chain = versions[id];
+        Integer previousNumber = null;
+        if (chain == null) {
+            ids.register(state, null);
+            versions[id] = new Versions(state, position, length);
+            participantCount++;
+        } else {
+            ids.register(state, chain.latest);
+            previousNumber = chain.latest.getNumber();
+            chain.add(state, position, length);
+        }
+        Integer number = state.getNumber();
+        if (previousNumber != null && !previousNumber.equals(number)) startNumbers.remove(previousNumber, state);
+        if (number == null) return Optional.empty();
+        Person holder = startNumbers.get(number);
+        if (holder != null && !holder.equals(state)) return Optional.of(holder);
+        startNumbers.put(number, state);
+        return Optional.empty();
+    }
+    
+    /**
+     * Tells whether there's any state of the given participant.
+     *
+     * @param participant
+     *         identifies the participant
+     * @return {@code true} if the participant is known, otherwise {@code false}
+     */
+    boolean contains(Person participant) {
+        return find(participant) != null;
+    }
+    
+    /**
+     * Returns the latest state of a participant.
+     *
+     * @param participant
+     *         identifies the participant
+     * @return the latest state, if the participant is known
+     */
+    Optional<Person> getLatest(Person participant) {
+        Versions chain = find(participant);
+        return chain != null ? Optional.of(chain.latest) : Optional.empty();
+    }
+    
+    /**
+     * Returns the versions of a participant.
+     *
+     * @param participant
+     *         identifies the participant
+     * @return the versions, if the participant is known. They must not be modified.
+     */
+    Optional<Versions> getVersions(Person participant) {
+        return Optional.ofNullable(find(participant));
+    }
+    
+    /**
+     * Returns the versions of all participants.
+     *
+     * @return the versions per participant, ordered by the participants' ids. They must not be modified.
+     */
+    Collection<Versions> getAllVersions() {
+        List<Versions> all = new ArrayList<>(participantCount);
+        for (Versions chain : versions)
+            if (chain != null) all.add(chain);
+        return Collections.unmodifiableCollection(all);
+    }
+    
+    /**
+     * Returns the latest state of the participant holding a start number.
+     *
+     * @param number
+     *         the start number
+     * @return the latest state of the participant holding the number, if there's one
+     */
+    Optional<Person> getByStartNumber(int number) {
+        return Optional.ofNullable(startNumbers.get(number));
+    }
+    
+    /**
+     * Returns the latest states of all participants.
+     *
+     * @return the latest state per participant, ordered by the participants' ids
+     */
+    List<Person> getLatestStates() {
+        List<Person> latest = new ArrayList<>(participantCount);
+        for (Versions chain : versions)
+            if (chain != null) latest.add(chain.latest);
+        return latest;
+    }
+    
+    /**
+     * Returns the number of states of all participants.
+     *
+     * @return the number of states added so far
+     */
+    int size() {
+        return size;
+    }
+    
+    /**
+     * Creates a copy of this history, e.g. to be written into a snapshot while this one keeps on changing.
+     *
+     * @return the copy
+     */
+    ParticipantHistory copy() {
+        return new ParticipantHistory(this);
+    }
+    
+    /**
+     * Looks up the versions of a participant by its id, or by its name and birthday if it has no id.
+     *
+     * @param participant
+     *         identifies the participant
+     * @return the versions, {@code null} if the participant is unknown
+     */
+    private Versions find(Person participant) {
+        int id = ids.find(participant);
+        return id > Person.NO_ID && id < versions.length ? versions[id] : null;
+    }
+    
+    /** The latest state of a participant and the locations of all its states in the data file */
+    static final class Versions {
+        /** The offsets of the records in the data file, oldest first */
+        private long[] positions;
+        /** The number of bytes of the records, in the same order as the {@link #positions} */
+        private int[] lengths;
+        /** The number of states */
+        private int count;
+        /** The latest state */
+        private Person latest;
+        
+        /**
+         * Creates a new {@code Versions} with a single state.
+         *
+         * @param state
+         *         the first state of the participant
+         * @param position
+         *         the offset of the state's record in the data file
+         * @param length
+         *         the number of bytes of the state's record
+         */
+        Versions(Person state, long position, int length) {
+            positions = new long[]{position};
+            lengths = new int[]{length};
+            count = 1;
+            latest = state;
+        }
+        
+        /**
+         * Creates a copy of the given versions.
+         *
+         * @param toCopy
+         *         the versions to be copied, won't be modified
+         */
+        private Versions(Versions toCopy) {
+            positions = Arrays.copyOf(toCopy.positions, toCopy.count);
+            lengths = Arrays.copyOf(toCopy.lengths, toCopy.count);
+            count = toCopy.count;
+            latest = toCopy.latest;
+        }
+        
+        /**
+         * Creates a copy of these versions, e.g. to read the states while further ones are added.
+         *
+         * @return the copy
+         */
+        Versions copy() {
+            return new Versions(this);
+        }
+        
+        /**
+         * Adds a new state.
+         *
+         * @param state
+         *         the new state, becomes the latest state
+         * @param position
+         *         the offset of the state's record in the data file
+         * @param length
+         *         the number of bytes of the state's record
+         */
+        void add(Person state, long position, int length) {
+            if (count == positions.length) {
+                positions = Arrays.copyOf(positions, count * 2);
+                lengths = Arrays.copyOf(lengths, count * 2);
+            }
+            positions[count] = position;
+            lengths[count] = length;
+            count++;
+            latest = state;
+        }
+        
+        /**
+         * Returns the latest state of the participant.
+         *
+         * @return the latest state
+         */
+        Person getLatest() {
+            return latest;
+        }
+        
+        /**
+         * Returns the number of states of the participant.
+         *
+         * @return the number of states
+         */
+        int getCount() {
+            return count;
+        }
+        
+        /**
+         * Returns the offset of a state's record in the data file.
+         *
+         * @param index
+         *         the index of the state, the oldest one is {@code 0}
+         * @return the offset of the record
+         */
+        long getPosition(int index) {
+            return positions[index];
+        }
+        
+        /**
+         * Returns the length of a state's record.
+         *
+         * @param index
+         *         the index of the state, the oldest one is {@code 0}
+         * @return the number of bytes of the record
+         */
+        int getLength(int index) {
+            return lengths[index];
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package trekkingtracker.persistence;
+
+import trekkingtracker.data.ImmutablePerson;
+import trekkingtracker.data.Person;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Assigns the ids to the participants. A participant without an id is recognized by its name and birthday, a new one
+ * gets the next unused id. Ids are handed out in ascending order starting at {@code 1}, so they can serve as array
+ * indexes. Not thread-safe.
+ */
+final class ParticipantIds {
+    /** The ids of the participants, by their name and birthday */
+    private final Map<Identity, Integer> ids;
+    /** The id the next new participant gets */
+    private int nextId = 1;
+    
+    /** Creates a new {@code ParticipantIds} without any known participants. */
+    ParticipantIds() {
+        ids = new HashMap<>();
+    }
+    
+    /**
+     * Creates a new {@code ParticipantIds} which hands out ids above the given ones only.
+     *
+     * @param maxId
+     *         the highest id in use
+     */
+    ParticipantIds(int maxId) {
+        this();
+        nextId = maxId + 1;
+    }
+    
+    /**
+     * Creates a copy of the given ids.
+     *
+     * @param toCopy
+     *         the ids to be copied, won't be modified
+     */
+    private ParticipantIds(ParticipantIds toCopy) {
+        ids = new HashMap<>(toCopy.ids);
+        nextId = toCopy.nextId;
+    }
+    
+    /**
+     * Returns the given participant state with the id of its participant. A participant which is not known yet is
+     * registered with a new id.
+     *
+     * @param state
+     *         the participant state
+     * @return the given state if it has an id already, otherwise a copy with the id
+     */
+    Person identify(Person state) {
+        int id = idOf(state);
+        return state.getId() == id ? state : ImmutablePerson.of(state).withId(id);
+    }
+    
+    /**
+     * Returns the id of a participant. A participant which is not known yet is registered with a new id.
+     *
+     * @param participant
+     *         identifies the participant
+     * @return the id of the participant
+     */
+    int idOf(Person participant) {
+        int id = participant.getId();
+        if (id != Person.NO_ID) {
+            if (id >= nextId) nextId = id + 1;
+            return id;
+        }
+        Identity identity = new Identity(participant.getName(), participant.getBirthday());
+        Integer known = ids.get(identity);
+        if (known != null) return known;
+        ids.put(identity, nextId);
+        return nextId++;
+    }
+    
+    /**
+     * Returns the id of a known participant.
+     *
+     * @param participant
+     *         identifies the participant
+     * @return the id of the participant, {@link Person#NO_ID} if the participant has no id and is unknown
+     */
+    int find(Person participant) {
+        if (participant.getId() != Person.NO_ID) return participant.getId();
+        Integer id = ids.get(new Identity(participant.getName(), participant.getBirthday()));
+        return id != null ? id : Person.NO_ID;
+    }
+    
+    /**
+     * Registers the id of a participant state unless its name and birthday are registered already, so states of the
+     * same participant without id will get the id, too. A former name or birthday of the participant won't be
+     * recognized anymore.
+     *
+     * @param state
+     *         the participant state with id
+     * @param former
+     *         the former latest state of the same participant, {@code null} if there's none
+     */
+    void register(Person state, Person former) {
+        if (former != null) {
+            if (former.getName().equals(state.getName()) && former.getBirthday().equals(state.getBirthday())) return;
+            ids.remove(new Identity(former.getName(), former.getBirthday()), state.getId());
+        }
+        ids.put(new Identity(state.getName(), state.getBirthday()), idOf(state));
+    }
+    
+    /**
+     * Returns the highest id handed out so far.
+     *
+     * @return the highest id, {@link Person#NO_ID} if there's none
+     */
+    int getMaxId() {
+        return nextId - 1;
+    }
+    
+    /**
+     * Creates a copy of these ids, e.g. to be used by a copy of the participant history.
+     *
+     * @return the copy
+     */
+    ParticipantIds copy() {
+        return new ParticipantIds(this);
+    }
+    
+    /** The name and birthday of a participant, recognizing participants without id */
+    private static final class Identity {
+        /** The name */
+        private final String name;
+        /** The birthday */
+        private final LocalDate birthday;
+        
+        /**
+         * Creates a new {@code Identity}.
+         *
+         * @param name
+         *         the name
+         * @param birthday
+         *         the birthday
+         */
+        private Identity(String name, LocalDate birthday) {
+            this.name = name;
+            this.birthday = birthday;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Identity)) return false;
+            Identity that = (Identity) o;
+            return name.equals(that.name) && birthday.equals(that.birthday);
+        }
+        
+        @Override
+        public int hashCode() {
+            return 31 * name.hashCode() + birthday.hashCode();
+        }
+    }
+}
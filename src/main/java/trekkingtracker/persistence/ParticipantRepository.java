@@ -0,0 +1,220 @@
+package trekkingtracker.persistence;
+
+import trekkingtracker.config.StoreConfig;
+import trekkingtracker.data.Person;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Persists all states of all participants together with their ids. The latest state of each participant can be looked
+ * up by its id (or its name and birthday if it has no id), its start number and its category, the former states can
+ * be read on demand. States without id get the id of their participant when they are stored. Implementations are not
+ * required to be thread-safe, the {@link ParticipantStore} ensures there's only one access at a time.
+ */
+public interface ParticipantRepository extends Closeable {
+    
+    /**
+     * Creates the repository configured as {@link StoreConfig#backend}.
+     *
+     * @param directory
+     *         the directory holding the stored data and its backups
+     * @param config
+     *         tells how the data shall be stored
+     * @return the new repository, not {@link #load() loaded} yet
+     * @throws IllegalArgumentException
+     *         if the configured backend is unknown
+     */
+    static ParticipantRepository create(Path directory, StoreConfig config) {
+        switch (config.backend.trim().toLowerCase(Locale.ROOT)) {
+            case "file":
+                return new FlatFileParticipantRepository(directory, config);
+            case "h2":
+                return new H2ParticipantRepository(directory, config);
+            default:
+                throw new IllegalArgumentException(String.format("Unknown store backend '%s'.", config.backend));
+        }
+    }
+    
+    /**
+     * Loads the stored data, repairing or converting it if necessary. Must be called before the stored data can be
+     * looked up or extended.
+     *
+     * @return the latest state per participant, in no particular order. Empty if there's no stored data.
+     * @throws IOException
+     *         if the stored data cannot be read
+     */
+    List<Person> load() throws IOException;
+    
+    /**
+     * Returns the given participant state with the id of its participant, so it can be stored and published. A state
+     * without id is recognized by its name and birthday, a participant which is not known yet gets a new id. The new
+     * id is not handed out to another participant, even before a state with it has been stored, so new participants
+     * should only be identified once their state is about to be stored.
+     *
+     * @param state
+     *         the participant state
+     * @return the given state if it has an id already, otherwise a copy with the id
+     * @throws IOException
+     *         if the lookup fails
+     */
+    Person identify(Person state) throws IOException;
+    
+    /**
+     * Tells whether there's any state of the given participant.
+     *
+     * @param participant
+     *         identifies the participant
+     * @return {@code true} if the participant is known, otherwise {@code false}
+     * @throws IOException
+     *         if the lookup fails
+     */
+    boolean contains(Person participant) throws IOException;
+    
+    /**
+     * Returns the latest state of a participant.
+     *
+     * @param participant
+     *         identifies the participant
+     * @return the latest state, if the participant is known
+     * @throws IOException
+     *         if the lookup fails
+     */
+    Optional<Person> findLatest(Person participant) throws IOException;
+    
+    /**
+     * Returns the latest state of the participant holding a start number. If several participants hold the same
+     * number, the same one of them is returned on each call.
+     *
+     * @param number
+     *         the start number
+     * @return the latest state of the participant holding the number, if there's one
+     * @throws IOException
+     *         if the lookup fails
+     */
+    Optional<Person> findByStartNumber(int number) throws IOException;
+    
+    /**
+     * Returns the latest states of all participants starting in a category.
+     *
+     * @param category
+     *         the category
+     * @return the latest states of the participants whose latest state is in the given category, in no particular
+     * order
+     * @throws IOException
+     *         if the lookup fails
+     */
+    List<Person> findByCategory(Person.Category category) throws IOException;
+    
+    /**
+     * Returns the latest states of all participants.
+     *
+     * @return the latest state per participant, in no particular order
+     * @throws IOException
+     *         if the lookup fails
+     */
+    List<Person> findAllLatest() throws IOException;
+    
+    /**
+     * Appends new states of participants. All given states are written at once, each one becomes the latest state of
+     * its participant right away.
+     *
+     * @param states
+     *         the new states in the order they shall be stored
+     * @return completed as soon as the states have been stored as configured by {@link StoreConfig#durability}, or
+     * completed exceptionally if storing fails
+     * @throws IOException
+     *         if the states cannot be stored
+     */
+    CompletableFuture<Void> append(List<Person> states) throws IOException;
+    
+    /**
+     * Replaces all stored data with the given states. The previously stored data is kept as backup.
+     *
+     * @param states
+     *         all states of all participants in the order they shall be stored
+     * @throws IOException
+     *         if storing fails
+     */
+    void replaceAll(Collection<Person> states) throws IOException;
+    
+    /**
+     * Reads all states of a participant.
+     *
+     * @param participant
+     *         identifies the participant
+     * @return all states of the participant, oldest first. Empty if the participant is unknown.
+     * @throws IOException
+     *         if the states cannot be read
+     */
+    List<Person> getHistory(Person participant) throws IOException;
+    
+    /**
+     * Prepares reading all states of a participant, so they can be read without blocking the other accesses to this
+     * repository. By default the states are read right away.
+     *
+     * @param participant
+     *         identifies the participant
+     * @return reads the states like {@link #getHistory(Person)}, can be run on any thread while this repository is
+     * accessed concurrently
+     * @throws IOException
+     *         if the states cannot be located
+     */
+    default HistoryReader prepareHistory(Person participant) throws IOException {
+        List<Person> history = getHistory(participant);
+        return () -> history;
+    }
+    
+    /**
+     * Lists the backups of formerly stored data.
+     *
+     * @return all backups, oldest first
+     */
+    List<Backup> getBackups();
+    
+    /**
+     * Replaces the stored data with one of its backups. The currently stored data is kept as a new backup. The
+     * repository has to be {@link #load() loaded} again afterwards.
+     *
+     * @param backupId
+     *         the id of the backup to be restored
+     * @throws IOException
+     *         if the backup cannot be restored
+     */
+    void restoreBackup(int backupId) throws IOException;
+    
+    /**
+     * Returns the statistics about the writes.
+     *
+     * @return the write statistics, updated continuously
+     */
+    WriteStatistics getWriteStatistics();
+    
+    /**
+     * Writes all pending updates and releases the stored data.
+     *
+     * @throws IOException
+     *         if writing or releasing fails
+     */
+    @Override
+    void close() throws IOException;
+    
+    /** Reads the states of a participant, prepared by {@link #prepareHistory(Person)} */
+    @FunctionalInterface
+    interface HistoryReader {
+        /**
+         * Reads the states of the participant.
+         *
+         * @return all states of the participant, oldest first. Empty if the participant is unknown.
+         * @throws IOException
+         *         if the states cannot be read
+         */
+        List<Person> read() throws IOException;
+    }
+}
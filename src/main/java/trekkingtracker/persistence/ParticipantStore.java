@@ -1,83 +1,124 @@
 package trekkingtracker.persistence;
 
-import trekkingtracker.Utils;
+import trekkingtracker.config.StoreConfig;
 import trekkingtracker.config.TableConfig;
+import trekkingtracker.data.ImmutablePerson;
 import trekkingtracker.data.Person;
 import trekkingtracker.data.PersonImpl;
+import trekkingtracker.event.participantevents.ParticipantBatchUpdateEvent;
 import trekkingtracker.event.participantevents.ParticipantInputChangedEvent;
+import trekkingtracker.event.participantevents.ParticipantUpdateEvent;
+import trekkingtracker.event.publishing.DispatchTable;
 import trekkingtracker.event.publishing.EventPublisher;
 import trekkingtracker.event.requestevents.*;
+import trekkingtracker.event.tracing.LatencyRecorder;
+import trekkingtracker.event.tracing.RequestTrace;
+import trekkingtracker.event.tracing.TraceStage;
 import trekkingtracker.ui.MainApp;
 
 import java.io.*;
 import java.nio.charset.Charset;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.time.Instant;
+import java.nio.file.Paths;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
- * Stores and restores the trekking related participants data. Can run in two modes, once which only appends updates
- * and one which replaces all data with the latest version
+ * Stores and restores the trekking related participants data. Validates the requested changes, writes them to the
+ * configured {@link ParticipantRepository} and propagates them. Must be {@link #close() closed} on shutdown so all
+ * pending updates get written.
  */
-public class ParticipantStore implements ParticipantOperator {
-    /** Store of the person data */
-    public static final File TREKKING_DATA = new File("participant_data.dat");
-    /** Header row, to be put at the beginning of a file */
-    private static final String HEADER = "# Name;Birthday;Category;Number;Start;Stop;Finisher";
-    /** Ensures there is only one file access at a time */
+public class ParticipantStore implements ParticipantOperator, Closeable {
+    /** Routes the requests to the methods handling them */
+    private static final DispatchTable<ParticipantStore, ParticipantEventRequest> REQUEST_HANDLERS = DispatchTable
+            .<ParticipantStore, ParticipantEventRequest>builder()
+            .on(ParticipantUpdateRequest.class, ParticipantStore::handleUpdate)
+            .on(ParticipantBatchUpdateRequest.class, ParticipantStore::handleBatchUpdate)
+            .on(ParticipantInputChangeRequest.class, ParticipantStore::handleInputChange)
+            .on(ParticipantInputResetRequest.class, ParticipantStore::handleReset)
+            .on(ParticipantBackupRestoreRequest.class, ParticipantStore::handleBackupRestore)
+            .on(ParticipantsInitRequest.class, ParticipantStore::handleInit)
+            .build();
+    /** Ensures there is only one access to the {@link #repository} at a time */
     private final Lock lock = new ReentrantLock();
-    /**
-     * Information about the participants. A value of {@code null} indicates that {@link #restore} has not been
-     * called successfully yet.
-     */
-    private List<Person> participantData = null;
+    /** {@code true} as soon as the {@link #repository} holds participant data */
+    private boolean initialized = false;
     // Tells about the structure of the input table
     private TableConfig config;
+    /** Tells how the participant data shall be written */
+    private final StoreConfig storeConfig;
+    /** Tells when updates count as stored */
+    private final Durability durability;
+    /** Persists the participant data */
+    private final ParticipantRepository repository;
+    /** The time in nanoseconds the write statistics have been reported last */
+    private final AtomicLong lastStatisticsReport = new AtomicLong(System.nanoTime());
     private final EventPublisher eventPublisher;
     /** Parses the birthdays of the {@code Persons} from the initial file of signed participants */
     private final Function<String, LocalDate> registeredParticipantBirthDayFormat;
-    /** Ensures now start number is linked to more than one participant */
-    private Map<Integer, Person> startNumbersToParticipants;
     
     /**
-     * Creates a new {@code ParticipantStore}.
+     * Creates a new {@code ParticipantStore} keeping its data in the working directory.
      *
      * @param config
      *         tells about the structure of the input table
+     * @param storeConfig
+     *         tells how the participant data shall be written
      * @param eventPublisher
      *         used to propagate events
      * @param registeredParticipantBirthDayFormat
      *         Parses the birthdays of the {@code Persons} from the initial file of registered participants
+     * @throws IllegalArgumentException
+     *         if the configured {@link StoreConfig#backend} is unknown
      */
-    public ParticipantStore(TableConfig config, EventPublisher eventPublisher,
+    public ParticipantStore(TableConfig config, StoreConfig storeConfig, EventPublisher eventPublisher,
                             Function<String, LocalDate> registeredParticipantBirthDayFormat) {
+        this(config, storeConfig, ParticipantRepository.create(Paths.get(""), storeConfig), eventPublisher,
+                registeredParticipantBirthDayFormat);
+    }
+    
+    /**
+     * Creates a new {@code ParticipantStore} with the given repository.
+     *
+     * @param config
+     *         tells about the structure of the input table
+     * @param storeConfig
+     *         tells how the participant data shall be written
+     * @param repository
+     *         persists the participant data, will be closed together with this store
+     * @param eventPublisher
+     *         used to propagate events
+     * @param registeredParticipantBirthDayFormat
+     *         Parses the birthdays of the {@code Persons} from the initial file of registered participants
+     */
+    ParticipantStore(TableConfig config, StoreConfig storeConfig, ParticipantRepository repository,
+                     EventPublisher eventPublisher, Function<String, LocalDate> registeredParticipantBirthDayFormat) {
         this.config = config;
+        this.storeConfig = Objects.requireNonNull(storeConfig);
+        this.durability = Durability.parse(storeConfig.durability);
+        this.repository = Objects.requireNonNull(repository);
         this.eventPublisher = Objects.requireNonNull(eventPublisher);
         this.registeredParticipantBirthDayFormat = Objects.requireNonNull(registeredParticipantBirthDayFormat);
     }
     
     /**
-     * Attempts to initialize the store by loading the latest state from {@link #TREKKING_DATA}.
+     * Attempts to initialize the store by loading the participant data stored by the {@link #repository}.
      *
      * @return {@code true} if the initialization was successful, otherwise {@code false}
      */
     private boolean restore() {
         try {
-            List<Person> restoredState = readExistingData().orElse(null);
-            if (restoredState == null || restoredState.size() == 0) return false;
-            else {
-                processStartNumbers(Utils.getLatestStateView(restoredState));
-                participantData = restoredState;
-                return true;
-            }
+            initialized = !repository.load().isEmpty();
+            if (initialized) reportStartNumberConflicts();
+            return initialized;
         } catch (Exception e) {
+            initialized = false;
             MainApp.printInfo("Could not restore the previous state.");
             return false;
         }
@@ -85,73 +126,360 @@ public class ParticipantStore implements ParticipantOperator {
     
     @Override
     public void handle(final ParticipantEventRequest request) {
+        if (request instanceof AcknowledgedRequest && !((AcknowledgedRequest) request).claim()) {
+            MainApp.printInfo(String.format("Skipped %s, it has been cancelled or timed out.", request));
+            return;
+        }
+        REQUEST_HANDLERS.dispatch(this, request);
+    }
+    
+    /**
+     * Stores the update of a participant and publishes it.
+     *
+     * @param updateRequest
+     *         the requested update
+     */
+    private void handleUpdate(ParticipantUpdateRequest updateRequest) {
+        CompletableFuture<RequestOutcome> stored;
+        ParticipantUpdateEvent update = null;
         lock.lock();
         try {
-            if (request instanceof ParticipantUpdateRequest) {
-                ParticipantUpdateRequest updateRequest = (ParticipantUpdateRequest) request;
-                boolean success = updatePerson(updateRequest.getOldValue(), updateRequest.getNewValue());
-                if (success) eventPublisher.publish(updateRequest.asEvent());
-            } else if (request instanceof ParticipantInputChangeRequest) {
-                ParticipantInputChangeRequest changeRequest = (ParticipantInputChangeRequest) request;
-                boolean success = setInput(changeRequest.getInput());
-                if (success) eventPublisher.publish(changeRequest.asEvent());
-            } else if (request instanceof ParticipantInputResetRequest) {
-                ParticipantInputResetRequest resetRequest = (ParticipantInputResetRequest) request;
-                boolean success = reset(resetRequest.getStartInput(), resetRequest.getCharset());
-                if (success) eventPublisher.publish(new ParticipantInputChangedEvent(participantData));
-            } else if (request instanceof ParticipantsInitRequest) {
-                /*boolean success = */
-                restore();
-                /*if (success)*/
-                eventPublisher.publish(new ParticipantInputChangedEvent(participantData));
+            checkInit();
+            update = identify(updateRequest);
+            RequestOutcome invalid = validate(update.getOldValue(), update.getNewValue());
+            if (invalid != null) stored = CompletableFuture.completedFuture(invalid);
+            else {
+                update = assignNewId(update);
+                stored = updatePerson(update.getNewValue(), update.getTrace());
             }
+        } catch (Exception e) {
+            stored = CompletableFuture.completedFuture(reject(String.format("Could not store %s.",
+                    updateRequest.getNewValue())));
         } finally {
             lock.unlock();
         }
+        // wait outside of the lock, so concurrent updates can be written with the same group commit
+        RequestOutcome outcome = stored.join();
+        if (outcome.isPersisted()) {
+            LatencyRecorder.INSTANCE.record(updateRequest.getTrace(), TraceStage.PERSISTED);
+            eventPublisher.publish(update);
+        }
+        updateRequest.acknowledge(outcome);
     }
     
     /**
-     * Processes a participant's update.
+     * Stores the updates of multiple participants at once and publishes them.
+     *
+     * @param batchRequest
+     *         the requested updates
+     */
+    private void handleBatchUpdate(ParticipantBatchUpdateRequest batchRequest) {
+        CompletableFuture<RequestOutcome> stored;
+        List<ParticipantUpdateRequest> requests = batchRequest.getUpdates();
+        List<ParticipantUpdateEvent> updates = new ArrayList<>(requests.size());
+        boolean[] skipped = new boolean[requests.size()];
+        lock.lock();
+        try {
+            for (ParticipantUpdateRequest request : requests)
+                updates.add(identify(request));
+            stored = updatePersons(updates, skipped, batchRequest.getTrace());
+        } catch (Exception e) {
+            stored = CompletableFuture.completedFuture(reject(String.format(
+                    "Could not store the updates of %d participants.", requests.size())));
+        } finally {
+            lock.unlock();
+        }
+        RequestOutcome outcome = stored.join();
+        if (outcome.isPersisted()) {
+            LatencyRecorder.INSTANCE.record(batchRequest.getTrace(), TraceStage.PERSISTED);
+            List<ParticipantUpdateEvent> events = new ArrayList<>(updates.size());
+            for (int i = 0; i < updates.size(); i++)
+                if (!skipped[i]) events.add(updates.get(i));
+            eventPublisher.publish(new ParticipantBatchUpdateEvent(events, batchRequest.getTrace()));
+        }
+        for (int i = 0; i < requests.size(); i++)
+            requests.get(i).acknowledge(outcome.isPersisted() && skipped[i] ? RequestOutcome.duplicate(
+                    requests.get(i).getNewValue() + " is stored already.") : outcome);
+        batchRequest.acknowledge(outcome);
+    }
+    
+    /**
+     * Replaces the participant data and publishes the new data.
+     *
+     * @param changeRequest
+     *         the requested participant data
+     */
+    private void handleInputChange(ParticipantInputChangeRequest changeRequest) {
+        lock.lock();
+        try {
+            boolean success = setInput(changeRequest.getInput());
+            if (success) {
+                LatencyRecorder.INSTANCE.record(changeRequest.getTrace(), TraceStage.PERSISTED);
+                eventPublisher.publish(new ParticipantInputChangedEvent(getInput(), changeRequest.getTrace()));
+            }
+            changeRequest.acknowledge(success ? RequestOutcome.persisted() : RequestOutcome.rejected(
+                    "Could not store the participant data."));
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Replaces the participant data with the initial data and publishes it.
+     *
+     * @param resetRequest
+     *         tells where to read the initial data from
+     */
+    private void handleReset(ParticipantInputResetRequest resetRequest) {
+        lock.lock();
+        try {
+            boolean success = reset(resetRequest.getStartInput(), resetRequest.getCharset());
+            if (success) {
+                LatencyRecorder.INSTANCE.record(resetRequest.getTrace(), TraceStage.PERSISTED);
+                eventPublisher.publish(new ParticipantInputChangedEvent(getInput(), resetRequest.getTrace()));
+            }
+            resetRequest.acknowledge(success ? RequestOutcome.persisted() : RequestOutcome.rejected(
+                    String.format("Could not read %s.", resetRequest.getStartInput())));
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Replaces the participant data with one of its backups and publishes it.
+     *
+     * @param restoreRequest
+     *         tells which backup to restore
+     */
+    private void handleBackupRestore(ParticipantBackupRestoreRequest restoreRequest) {
+        lock.lock();
+        try {
+            boolean success = restoreBackup(restoreRequest.getBackupId());
+            if (success) {
+                LatencyRecorder.INSTANCE.record(restoreRequest.getTrace(), TraceStage.PERSISTED);
+                eventPublisher.publish(new ParticipantInputChangedEvent(getInput(), restoreRequest.getTrace()));
+            }
+            restoreRequest.acknowledge(success ? RequestOutcome.persisted() : RequestOutcome.rejected(
+                    String.format("Could not restore backup %d.", restoreRequest.getBackupId())));
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Restores the persisted participant data and publishes it.
+     *
+     * @param initRequest
+     *         the request to initialize the data
+     */
+    private void handleInit(ParticipantsInitRequest initRequest) {
+        lock.lock();
+        try {
+            /*boolean success = */
+            restore();
+            /*if (success)*/
+            eventPublisher.publish(new ParticipantInputChangedEvent(getInput(), initRequest.getTrace()));
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Assigns the id of the participant to the states of a requested update. A new state without id gets the id of
+     * the old one, so a participant keeps its id when it's renamed. A new participant doesn't get an id yet, see
+     * {@link #assignNewId(ParticipantUpdateEvent)}.
+     *
+     * @param request
+     *         the requested update
+     * @return the update with the identified states, with the trace of the request
+     * @throws IOException
+     *         if the ids cannot be looked up
+     */
+    private ParticipantUpdateEvent identify(ParticipantUpdateRequest request) throws IOException {
+        Person oldP = request.getOldValue();
+        Person newP = request.getNewValue();
+        if (oldP != null) {
+            oldP = repository.identify(oldP);
+            if (newP.getId() == Person.NO_ID) newP = ImmutablePerson.of(newP).withId(oldP.getId());
+        }
+        return new ParticipantUpdateEvent(oldP, newP, request.getTrace());
+    }
+    
+    /**
+     * Assigns a new id to an added participant. Must only be called once the update has been validated, so no id is
+     * handed out for an update which isn't stored.
+     *
+     * @param update
+     *         the validated update
+     * @return the update with the new participant's id, the given one if it's no new participant without id
+     * @throws IOException
+     *         if the ids cannot be looked up
+     */
+    private ParticipantUpdateEvent assignNewId(ParticipantUpdateEvent update) throws IOException {
+        if (update.getOldValue() != null || update.getNewValue().getId() != Person.NO_ID) return update;
+        return new ParticipantUpdateEvent(null, repository.identify(update.getNewValue()), update.getTrace());
+    }
+    
+    /**
+     * Stores a participant's validated update.
      *
-     * @param oldP
-     *         the previous state of the participant
      * @param newP
-     *         the new state of the participant
-     * @return {@code true} if the update was successful, otherwise {@code false}
+     *         the new state of the participant, with its id
+     * @param trace
+     *         the trace of the request, the validation is recorded for it
+     * @return completed with the outcome as soon as the update has been stored or rejected. In {@link
+     * Durability#ASYNC} mode a valid update counts as persisted as soon as it has been queued for writing.
      */
-    private boolean updatePerson(Person oldP, Person newP) {
+    private CompletableFuture<RequestOutcome> updatePerson(Person newP, RequestTrace trace) {
+        try {
+            LatencyRecorder.INSTANCE.record(trace, TraceStage.VALIDATED);
+            CompletableFuture<Void> written = repository.append(Collections.singletonList(newP));
+            CompletableFuture<RequestOutcome> stored = written.handle((done, e) -> {
+                reportStatistics();
+                if (e != null) return reject(String.format("Could not store %s.", newP));
+                MainApp.printInfo(String.format("Stored updates for %s.", newP));
+                return RequestOutcome.persisted();
+            });
+            return durability == Durability.ASYNC ? CompletableFuture.completedFuture(RequestOutcome.persisted())
+                    : stored;
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(reject(String.format("Could not store %s.", newP)));
+        }
+        
+    }
+    
+    /**
+     * Processes the updates of multiple participants at once. Either all updates are valid and stored with a single
+     * write, or none of them is stored. Updates to states which have been stored already are skipped.
+     *
+     * @param updates
+     *         the updates with identified states, in the order they shall be stored. The new participants among them
+     *         are replaced by ones with their new ids once all updates are valid.
+     * @param skipped
+     *         set to {@code true} at the index of each update which is skipped because it has been stored already
+     * @param trace
+     *         the trace of the request, the validation is recorded for it
+     * @return completed with the outcome as soon as the updates have been stored or rejected, {@link
+     * RequestOutcome.Status#DUPLICATE} if all of them have been stored already. In {@link Durability#ASYNC} mode valid
+     * updates count as persisted as soon as they have been queued for writing.
+     */
+    private CompletableFuture<RequestOutcome> updatePersons(List<ParticipantUpdateEvent> updates, boolean[] skipped,
+            RequestTrace trace) {
         try {
             checkInit();
-            //adding new person is only allowed if person does not exist already
-            if (oldP == null && participantData.contains(newP)) {
-                String error = newP + " does already exist.";
-                MainApp.printInfo(error);
-                return false;
-            }
-            
-            Integer number = newP.getNumber();
-            if (number != null) {
-                Person existingWithNumber = startNumbersToParticipants.get(number);
-                if (existingWithNumber != null && !existingWithNumber.equals(newP)) {
-                    MainApp.printInfo(
-                            String.format("Starting number %d is in use by %s and %s. Please fix that immediately!",
-                                    number, newP, existingWithNumber));
-                    return false;
+            List<Person> newStates = new ArrayList<>(updates.size());
+            Set<Person> added = new HashSet<>();
+            Map<Integer, Person> claimedNumbers = new HashMap<>();
+            for (int i = 0; i < updates.size(); i++) {
+                ParticipantUpdateEvent update = updates.get(i);
+                Person newP = update.getNewValue();
+                RequestOutcome invalid = validate(update.getOldValue(), newP);
+                if (invalid != null) {
+                    // an unchanged participant doesn't prevent the others from being stored
+                    if (update.getOldValue() != null && invalid.getStatus() == RequestOutcome.Status.DUPLICATE) {
+                        skipped[i] = true;
+                        continue;
+                    }
+                    return rejectBatch(updates, invalid);
                 }
+                if (update.getOldValue() == null && !added.add(newP))
+                    return rejectBatch(updates, reject(newP + " is added twice."));
+                Integer number = newP.getNumber();
+                Person claimant = number != null ? claimedNumbers.putIfAbsent(number, newP) : null;
+                if (claimant != null && !claimant.equals(newP)) return rejectBatch(updates, reject(String.format(
+                        "Starting number %d is assigned to %s and %s at once.", number, claimant, newP)));
             }
-            participantData.add(newP);
-            storeSinglePerson(newP);
-            MainApp.printInfo(String.format("Stored updates for %s.", newP));
-            return true;
+            for (int i = 0; i < updates.size(); i++) {
+                if (skipped[i]) continue;
+                updates.set(i, assignNewId(updates.get(i)));
+                newStates.add(updates.get(i).getNewValue());
+            }
+            if (newStates.isEmpty()) return CompletableFuture.completedFuture(updates.isEmpty() ? RequestOutcome
+                    .rejected("There are no updates.") : RequestOutcome.duplicate(String.format(
+                    "The updates of %d participants are stored already.", updates.size())));
+            LatencyRecorder.INSTANCE.record(trace, TraceStage.VALIDATED);
+            CompletableFuture<Void> written = repository.append(newStates);
+            CompletableFuture<RequestOutcome> stored = written.handle((done, e) -> {
+                reportStatistics();
+                if (e != null) return reject(String.format("Could not store the updates of %d participants.",
+                        newStates.size()));
+                MainApp.printInfo(String.format("Stored updates for %d participants.", newStates.size()));
+                return RequestOutcome.persisted();
+            });
+            return durability == Durability.ASYNC ? CompletableFuture.completedFuture(RequestOutcome.persisted())
+                    : stored;
         } catch (Exception e) {
-            MainApp.printInfo(String.format("Could not store %s.", newP));
-            return false;
+            return CompletableFuture.completedFuture(reject(String.format(
+                    "Could not store the updates of %d participants.", updates.size())));
+        }
+    }
+    
+    /**
+     * Informs that a batch of updates has been rejected.
+     *
+     * @param updates
+     *         the rejected updates
+     * @param cause
+     *         the outcome of the update which caused the rejection
+     * @return completed with the rejection, for the reason of the cause
+     */
+    private static CompletableFuture<RequestOutcome> rejectBatch(List<ParticipantUpdateEvent> updates,
+            RequestOutcome cause) {
+        MainApp.printInfo(String.format("None of the updates of %d participants has been stored.", updates.size()));
+        return CompletableFuture.completedFuture(RequestOutcome.rejected(cause.getReason().orElse(cause.toString())));
+    }
+    
+    /**
+     * Informs that a request has been rejected.
+     *
+     * @param reason
+     *         why the request has been rejected
+     * @return the rejection
+     */
+    private static RequestOutcome reject(String reason) {
+        MainApp.printInfo(reason);
+        return RequestOutcome.rejected(reason);
+    }
+    
+    /**
+     * Checks whether a participant's update is consistent with the stored data.
+     *
+     * @param oldP
+     *         the previous state of the participant
+     * @param newP
+     *         the new state of the participant
+     * @return {@code null} if the update can be stored, otherwise why not: {@link RequestOutcome.Status#DUPLICATE} if
+     * the participant or its new state exists already, {@link RequestOutcome.Status#REJECTED} if it conflicts with
+     * the stored data
+     * @throws IOException
+     *         if the stored data cannot be looked up
+     */
+    private RequestOutcome validate(Person oldP, Person newP) throws IOException {
+        //adding new person is only allowed if person does not exist already
+        if (oldP == null && repository.contains(newP)) {
+            String error = newP + " does already exist.";
+            MainApp.printInfo(error);
+            return RequestOutcome.duplicate(error);
+        }
+        if (oldP != null && repository.findLatest(newP).filter(newP::deepEquals).isPresent()) {
+            String info = newP + " is stored already.";
+            MainApp.printInfo(info);
+            return RequestOutcome.duplicate(info);
         }
         
+        Integer number = newP.getNumber();
+        if (number != null) {
+            Person existingWithNumber = repository.findByStartNumber(number).orElse(null);
+            if (existingWithNumber != null && !existingWithNumber.equals(newP)) {
+                return reject(String.format("Starting number %d is in use by %s and %s. Please fix that immediately!",
+                        number, newP, existingWithNumber));
+            }
+        }
+        return null;
     }
     
     /**
-     * Sets the underlying data.
+     * Sets the underlying data. The former data is kept as backup.
      *
      * @param participants
      *         the data to set
@@ -159,21 +487,10 @@ public class ParticipantStore implements ParticipantOperator {
      */
     private boolean setInput(final Collection<Person> participants) {
         try {
-            if (TREKKING_DATA.exists()) backupData();
-            TREKKING_DATA.createNewFile();
-            if (!TREKKING_DATA.exists()) {
-                //MainApp.printInfo(String.format("Could not create file %s.", TREKKING_DATA));
-                return false;
-            }
-    
-            processStartNumbers(Utils.getLatestStateView(participants));
-            participantData = new ArrayList<>(participants);
-            startNumbersToParticipants = new HashMap<>();
-            for (Person participant : participantData)
-                startNumbersToParticipants.put(participant.getNumber(), participant);
-    
-            storeAllData();
-            // eventPublisher.publish(new ParticipantInputChangedEvent(participantData));
+            repository.replaceAll(participants);
+            initialized = true;
+            reportStartNumberConflicts();
+            // eventPublisher.publish(new ParticipantInputChangedEvent(getInput()));
             return true;
         } catch (Exception e) {
             return false;
@@ -191,100 +508,109 @@ public class ParticipantStore implements ParticipantOperator {
      */
     private boolean reset(File initialParticipantData, final Charset charset) {
         try {
-            List<Person> newState = readInitialData(initialParticipantData, charset).orElse(null);
-            setInput(newState);
-            return true;
+            Optional<List<Person>> newState = readInitialData(initialParticipantData, charset);
+            return newState.isPresent() && setInput(newState.get());
         } catch (Exception e) {
             return false;
         }
     }
     
     /**
-     * Renames an existing data file so it won't be overridden. The new file name will end with {@code .bak} plus a
-     * number.
+     * Replaces the stored data with one of its backups. The current data is kept as a new backup.
      *
-     * @throws IOException
-     *         if renaming the data file fails
+     * @param backupId
+     *         the id of the backup to be restored
+     * @return {@code true} if the backup has been restored successfully, otherwise {@code false}
      */
-    private void backupData() throws IOException {
-        File freeBackupFile = new File(TREKKING_DATA.toString());
-        if (Files.readAllBytes(freeBackupFile.toPath()).length == 0) return;
-        int fileNumber = 0;
-        while (freeBackupFile.exists()) {
-            freeBackupFile = new File(TREKKING_DATA.toString() + ".bak" + ++fileNumber);
+    private boolean restoreBackup(int backupId) {
+        try {
+            initialized = false;
+            repository.restoreBackup(backupId);
+            boolean restored = restore();
+            if (restored) MainApp.printInfo(String.format("Restored backup %d.", backupId));
+            return restored;
+        } catch (Exception e) {
+            MainApp.printInfo(String.format("Could not restore backup %d: %s", backupId, e.getMessage()));
+            return false;
         }
-        boolean renamed = TREKKING_DATA.renameTo(freeBackupFile);
-        MainApp.printInfo(String.format("Creating backup file '%s' for old data.", freeBackupFile));
-        if (!renamed) throw new IOException(String.format("Could not create backup file %s.", freeBackupFile));
     }
     
     /**
-     * Stores the state of a single participant in the data file
+     * Lists the backups of formerly stored data.
      *
-     * @param toStore
-     *         to be persisted in the data file
-     * @throws IOException
-     *         if writing into the data file fails
+     * @return all backups as recorded in their catalogue, oldest first
      */
-    private void storeSinglePerson(Person toStore) throws IOException {
-        checkInit();
-        writeData("\n" + createDataString(toStore));
+    public List<Backup> getBackups() {
+        lock.lock();
+        try {
+            return repository.getBackups();
+        } finally {
+            lock.unlock();
+        }
     }
     
     /**
-     * Stores the state of all participants in the data file.
+     * Reads all states of a participant from the {@link #repository}. Only locating the states blocks the other
+     * accesses to the repository, they are read afterwards. Should not be called by the ui thread since reading
+     * waits for pending writes.
      *
-     * @throws IOException
-     *         if writing into the data file fails
+     * @param participant
+     *         identifies the participant
+     * @return all states of the participant, oldest first. Empty if the participant is unknown or the states cannot
+     * be read.
      */
-    private void storeAllData() throws IOException {
-        checkInit();
-        
-        StringJoiner lines = new StringJoiner("\n");
-        lines.add(HEADER);
-        for (Person toWrite : participantData)
-            lines.add(createDataString(toWrite));
-        writeData(lines.toString());
+    public List<Person> getHistory(Person participant) {
+        ParticipantRepository.HistoryReader reader;
+        lock.lock();
+        try {
+            if (!initialized) return Collections.emptyList();
+            reader = repository.prepareHistory(participant);
+        } catch (Exception e) {
+            MainApp.printInfo(String.format("Could not read the history of %s: %s", participant, e.getMessage()));
+            return Collections.emptyList();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            return reader.read();
+        } catch (Exception e) {
+            MainApp.printInfo(String.format("Could not read the history of %s: %s", participant, e.getMessage()));
+            return Collections.emptyList();
+        }
     }
     
     /**
-     * Serializes a given {@code Person} to a {@code String} to be written into the data file.
+     * Returns the statistics about the writes of the {@link #repository}.
      *
-     * @param toWrite
-     *         to be serialized to a {@code String}
-     * @return the serialization {@code String}
+     * @return the write statistics, updated continuously
      */
-    private String createDataString(final Person toWrite) {
-        StringJoiner line = new StringJoiner(";");
-        String sanitizedName = FileUtils.sanitizeName(toWrite.getName());
-        if (!sanitizedName.equals(toWrite.getName())) MainApp.printInfo(
-                toWrite.getName() + " was stripped by invalid characters.");
-        line.add(sanitizedName);
-        line.add(toWrite.getBirthday().toString());
-        Person.Category category = toWrite.getCategory();
-        line.add(category != null ? category.toString() : "");
-        Integer number = toWrite.getNumber();
-        line.add(number != null ? number.toString() : "");
-        Instant start = toWrite.getStart();
-        line.add(start != null ? DateTimeFormatter.ISO_INSTANT.format(start) : "");
-        Instant stop = toWrite.getStop();
-        line.add(stop != null ? DateTimeFormatter.ISO_INSTANT.format(stop) : "");
-        line.add(Boolean.toString(toWrite.isFinisher()));
-        return line.toString();
+    public WriteStatistics getWriteStatistics() {
+        return repository.getWriteStatistics();
+    }
+    
+    /** Prints the write statistics if the configured interval has passed since they have been printed last. */
+    private void reportStatistics() {
+        if (storeConfig.statisticsIntervalSeconds <= 0) return;
+        long now = System.nanoTime();
+        long last = lastStatisticsReport.get();
+        if (now - last >= TimeUnit.SECONDS.toNanos(storeConfig.statisticsIntervalSeconds)
+                && lastStatisticsReport.compareAndSet(last, now))
+            MainApp.printInfo(repository.getWriteStatistics().toString());
     }
     
     /**
-     * Writes a given data {@code String} containing information about one or more participants into the data file.
+     * Writes all pending updates and releases the stored data.
      *
-     * @param dataToWrite
-     *         containts the information about one or more participants to be persisted in the data file
      * @throws IOException
-     *         if writing into the data file fails
+     *         if closing the {@link #repository} fails
      */
-    private void writeData(String dataToWrite) throws IOException {
-        try (OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(TREKKING_DATA, true),
-                StandardCharsets.UTF_8)) {
-            writer.write(dataToWrite);
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            repository.close();
+        } finally {
+            lock.unlock();
         }
     }
     
@@ -295,53 +621,7 @@ public class ParticipantStore implements ParticipantOperator {
      *         if this store is not initialized yet
      */
     private void checkInit() {
-        if (participantData == null) throw new IllegalStateException("Updater has not been initialized yet.");
-    }
-    
-    /**
-     * Reads the existing data file to restore a persisted state of participants.
-     *
-     * @return the latest state of all participants
-     */
-    private Optional<List<Person>> readExistingData() {
-        try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(new FileInputStream(TREKKING_DATA), StandardCharsets.UTF_8))) {
-            Iterable<String> lines = () -> FileUtils.lineIterator(reader);
-            List<Person> parsedPersons = new ArrayList<>();
-            int infoCount = HEADER.split(";").length;
-            for (String line : lines) {
-                String[] items = line.split(";", infoCount);
-                String name = items[0];
-                FileUtils.sanitizeName(name);
-                String birthdayIdent = items[1];
-                String catIdent = items[2];
-                String numberIdent = items[3];
-                String startIdent = items[4];
-                String stopIdent = items[5];
-                String finisherIdent = items[6];
-                PersonImpl parsed = new PersonImpl(name, LocalDate.parse(birthdayIdent));
-                if (isValid(catIdent)) parsed.setCategory(FileUtils.parseCategory(catIdent));
-                if (isValid(numberIdent)) parsed.setNumber(Integer.parseInt(numberIdent));
-                if (isValid(startIdent)) parsed.setStart(Instant.parse(startIdent));
-                if (isValid(stopIdent)) parsed.setStop(Instant.parse(stopIdent));
-                if (isValid(finisherIdent)) parsed.setFinished(Boolean.parseBoolean(finisherIdent));
-                parsedPersons.add(parsed);
-            }
-            return Optional.of(parsedPersons);
-        } catch (Exception e) {
-            return Optional.empty();
-        }
-    }
-    
-    /**
-     * Chechs whether a given {@code String} has the right form to be parsed.
-     *
-     * @param toCheck
-     *         the {@code String} to be checked
-     * @return {@code true} if the {@code String} is valid, otherwise {@code false}
-     */
-    private boolean isValid(String toCheck) {
-        return toCheck != null && !toCheck.isEmpty();
+        if (!initialized) throw new IllegalStateException("Updater has not been initialized yet.");
     }
     
     /**
@@ -355,16 +635,17 @@ public class ParticipantStore implements ParticipantOperator {
      */
     private Optional<List<Person>> readInitialData(File initialParticipantData, Charset cs) {
         List<Person> parsedPersons = new ArrayList<>();
-        try (BufferedReader lineReader = new BufferedReader(
-                new InputStreamReader(new FileInputStream(initialParticipantData), cs))) {
-            Iterator<String> lines = FileUtils.lineIterator(lineReader);
-            for (int i = 0; i < config.skipHeaderRows; i++) if (lines.hasNext()) lines.next();
-            while (lines.hasNext()) {
-                String line = lines.next();
-                String[] items = line.split(config.separator);
-                String name = items[config.nameCol - 1].trim();
-                String birthdayIdent = items[config.birthdayCol - 1].trim();
-                String categoryIdent = items[config.categoryCol - 1];
+        try (CsvTokenizer rows = new CsvTokenizer(new InputStreamReader(new FileInputStream(initialParticipantData),
+                cs), config.separator, config.nameCol, config.birthdayCol, config.categoryCol)) {
+            for (int i = 0; i < config.skipHeaderRows; i++) rows.nextRow();
+            while (rows.nextRow()) {
+                String name = rows.get(0);
+                String birthdayIdent = rows.get(1);
+                String categoryIdent = rows.get(2);
+                if (name == null || birthdayIdent == null || categoryIdent == null)
+                    throw new IOException(String.format("Row %d has too few columns.", rows.getRowCount()));
+                name = name.trim();
+                birthdayIdent = birthdayIdent.trim();
                 Person.Category cat = FileUtils.parseCategory(categoryIdent);
                 PersonImpl parsed = new PersonImpl(name, registeredParticipantBirthDayFormat.apply(birthdayIdent));
                 parsed.setCategory(cat);
@@ -391,30 +672,35 @@ public class ParticipantStore implements ParticipantOperator {
     }
     
     /**
-     * Checks that no start number is already in use by another participant. If {@link #startNumbersToParticipants}
-     * is not initialized yet, it will be initialized in here.
+     * Reports all start numbers which are in use by more than one participant.
      *
-     * @param participants
-     *         to be checked that they are not linked to any start numbers linked to other {@code Persons}
+     * @throws IOException
+     *         if the participants cannot be looked up
      */
-    private void processStartNumbers(Set<Person> participants) {
-        boolean initStartNumbersMap;
-        if (startNumbersToParticipants == null) {
-            initStartNumbersMap = true;
-            startNumbersToParticipants = new HashMap<>();
-        } else initStartNumbersMap = false;
-        for (Person participant : participants) {
-            Integer participantNumber = participant.getNumber();
-            if (participantNumber != null) {
-                Person existing = initStartNumbersMap ? startNumbersToParticipants.computeIfAbsent(participantNumber,
-                        x -> participant) : startNumbersToParticipants.get(participantNumber);
-                if (existing != null && !existing.equals(participant)) {
-                    String errorMessage = String.format(
-                            "Start number %d is in use by %s and %s. Please fix that immediately!", participantNumber,
-                            existing, participant);
-                    MainApp.printInfo(errorMessage);
-                }
-            }
+    private void reportStartNumberConflicts() throws IOException {
+        for (Person participant : repository.findAllLatest()) {
+            Integer number = participant.getNumber();
+            if (number == null) continue;
+            Person holder = repository.findByStartNumber(number).orElse(participant);
+            if (!holder.equals(participant)) MainApp.printInfo(
+                    String.format("Start number %d is in use by %s and %s. Please fix that immediately!", number,
+                            holder, participant));
+        }
+    }
+    
+    /**
+     * Returns the latest states of all participants, to be propagated as the new input. Their former states can be
+     * read with {@link #getHistory(Person)}.
+     *
+     * @return the latest state per participant, {@code null} if this store is not initialized or the states cannot be
+     * read
+     */
+    private List<Person> getInput() {
+        try {
+            return initialized ? repository.findAllLatest() : null;
+        } catch (IOException e) {
+            MainApp.printInfo(String.format("Could not read the participants: %s", e.getMessage()));
+            return null;
         }
     }
 }
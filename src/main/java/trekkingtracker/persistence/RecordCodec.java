@@ -0,0 +1,101 @@
+package trekkingtracker.persistence;
+
+import trekkingtracker.data.Person;
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * Encodes participant states into records of the data file and decodes them. Implementations can be stateful, i.e.
+ * a record can depend on the records encoded or decoded before (see {@link #encodeState()}), so an instance must not
+ * be shared between different files.
+ */
+interface RecordCodec {
+    /**
+     * Returns the format this codec reads and writes.
+     *
+     * @return the format of the records
+     */
+    LogFormat getFormat();
+    
+    /**
+     * Tells whether this codec handles data written by a former version of the format, e.g. without checksums. Such
+     * data should be converted into the current version before appending to it.
+     *
+     * @return {@code true} if the data has been written in a former version, otherwise {@code false}
+     */
+    boolean isLegacy();
+    
+    /**
+     * Returns the bytes a new file has to start with.
+     *
+     * @return the file header
+     */
+    byte[] header();
+    
+    /**
+     * Encodes the given participant state into a record to be appended to the header or the previous records.
+     *
+     * @param toEncode
+     *         the participant state to be encoded
+     * @return the encoded record
+     */
+    byte[] encode(Person toEncode);
+    
+    /**
+     * Encodes the internal state the records encoded so far depend on, e.g. a dictionary. Decoding it in a new
+     * codec (right after the header) restores this state, so it can decode the records which follow.
+     *
+     * @return the encoded state, can be empty
+     */
+    byte[] encodeState();
+    
+    /**
+     * Decodes all records from the current position of the given buffer until its limit, or until the first invalid
+     * record, e.g. one which has been written partially or which does not match its checksum. Afterwards the
+     * position of the buffer marks the end of the valid records, so it's at the limit if all records are valid.
+     *
+     * @param data
+     *         holding the records, positioned at the start of a record
+     * @param consumer
+     *         receives the decoded participant states in the order they're stored
+     */
+    default void decode(ByteBuffer data, Consumer<Person> consumer) {
+        decode(data, (state, position, length) -> consumer.accept(state));
+    }
+    
+    /**
+     * Decodes all records like {@link #decode(ByteBuffer, Consumer)}, but tells the location of each record as well.
+     * Decoding the bytes at this location with this codec, or a codec which has decoded all data up to there, yields
+     * the participant state again.
+     *
+     * @param data
+     *         holding the records, positioned at the start of a record
+     * @param consumer
+     *         receives the decoded participant states in the order they're stored together with their location
+     */
+    void decode(ByteBuffer data, RecordConsumer consumer);
+    
+    /**
+     * Creates a copy of this codec, including its internal state.
+     *
+     * @return the copy
+     */
+    RecordCodec copy();
+    
+    /** Receives decoded participant states together with the location of their records */
+    @FunctionalInterface
+    interface RecordConsumer {
+        /**
+         * Receives a decoded participant state.
+         *
+         * @param state
+         *         the decoded participant state
+         * @param position
+         *         the index of the record's first byte within the decoded buffer
+         * @param length
+         *         the number of bytes of the record
+         */
+        void accept(Person state, int position, int length);
+    }
+}
@@ -0,0 +1,281 @@
+package trekkingtracker.persistence;
+
+import trekkingtracker.ui.MainApp;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+/**
+ * Stores and reads snapshots of the latest participant states. A snapshot covers the data file up to a certain byte
+ * offset, so restoring only has to replay the records written afterwards. Besides the latest states it holds the
+ * locations of all states in the data file, so former states can still be read on demand. A checksum of the covered
+ * bytes tells whether the data file is still the one the snapshot has been taken of. Snapshots are written by a
+ * background compactor, so the participant updates won't be blocked.
+ */
+class SnapshotStore implements Closeable {
+    /** The first line of a snapshot file, followed by the offset of the data file the snapshot covers */
+    private static final String OFFSET_PREFIX = "# Snapshot of the data file up to byte ";
+    /** The second line of a snapshot file, followed by the CRC32 checksum of the covered bytes of the data file */
+    private static final String CHECKSUM_PREFIX = "# Checksum of the covered bytes ";
+    /** The third line of a snapshot file, followed by the length of the index of the record locations */
+    private static final String INDEX_PREFIX = "# Index of bytes ";
+    /** The number of bytes of the data file read at once to calculate the checksum */
+    private static final int CHECKSUM_BUFFER_SIZE = 1 << 16;
+    /** The file holding the snapshot */
+    private final Path snapshotFile;
+    /** The data file the snapshots are taken of */
+    private final Path dataFile;
+    /** Writes the snapshots in the background */
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "snapshot-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /** {@code true} while the {@link #compactor} is writing a snapshot */
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    
+    /**
+     * Creates a new {@code SnapshotStore}.
+     *
+     * @param snapshotFile
+     *         the file holding the snapshot
+     * @param dataFile
+     *         the data file the snapshots are taken of
+     */
+    SnapshotStore(Path snapshotFile, Path dataFile) {
+        this.snapshotFile = Objects.requireNonNull(snapshotFile);
+        this.dataFile = Objects.requireNonNull(dataFile);
+    }
+    
+    /**
+     * Reads the latest snapshot.
+     *
+     * @param dataFileLength
+     *         the current length of the data file. A snapshot covering more bytes than that does not belong to the
+     *         data file and is ignored.
+     * @param dataFileFormat
+     *         the format of the data file. A snapshot in another format does not belong to the data file and is
+     *         ignored, just like snapshots in a former version of the format.
+     * @return the snapshot, if there's a valid one whose checksum matches the covered bytes of the data file
+     */
+    Optional<Snapshot> read(long dataFileLength, LogFormat dataFileFormat) {
+        if (!Files.exists(snapshotFile)) return Optional.empty();
+        try {
+            ByteBuffer data = FileUtils.read(snapshotFile, 0);
+            String offsetLine = readLine(data);
+            if (!offsetLine.startsWith(OFFSET_PREFIX)) return Optional.empty();
+            long offset = Long.parseLong(offsetLine.substring(OFFSET_PREFIX.length()));
+            if (offset > dataFileLength) return Optional.empty();
+            String checksumLine = readLine(data);
+            if (!checksumLine.startsWith(CHECKSUM_PREFIX)) return Optional.empty(); // written by a former version
+            if (Long.parseLong(checksumLine.substring(CHECKSUM_PREFIX.length())) != checksum(offset)) {
+                MainApp.printInfo(String.format("Ignoring snapshot %s, it has been taken of another data file.",
+                        snapshotFile));
+                return Optional.empty();
+            }
+            String indexLine = readLine(data);
+            if (!indexLine.startsWith(INDEX_PREFIX)) return Optional.empty(); // written by a former version
+            ByteBuffer index = data.slice();
+            index.limit(Integer.parseInt(indexLine.substring(INDEX_PREFIX.length())));
+            data.position(data.position() + index.limit());
+            RecordCodec codec = LogFormat.detect(data);
+            if (codec.getFormat() != dataFileFormat || codec.isLegacy()) return Optional.empty();
+            ParticipantHistory participants = new ParticipantHistory();
+            codec.decode(data, participant -> {
+                for (int i = index.getInt(); i > 0; i--)
+                    participants.add(participant, index.getLong(), index.getInt());
+            });
+            if (data.hasRemaining() || index.hasRemaining())
+                throw new IOException("Snapshot contains invalid records.");
+            return Optional.of(new Snapshot(offset, participants, codec));
+        } catch (Exception e) {
+            MainApp.printInfo(String.format("Ignoring invalid snapshot %s.", snapshotFile));
+            return Optional.empty();
+        }
+    }
+    
+    /**
+     * Calculates the CRC32 checksum of the beginning of the data file.
+     *
+     * @param length
+     *         the number of bytes to be covered
+     * @return the checksum
+     * @throws IOException
+     *         if the data file cannot be read or is shorter than the length
+     */
+    private long checksum(long length) throws IOException {
+        CRC32 checksum = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(CHECKSUM_BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(dataFile, StandardOpenOption.READ)) {
+            for (long position = 0; position < length; ) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), length - position));
+                int read = channel.read(buffer, position);
+                if (read < 0) throw new EOFException();
+                buffer.flip();
+                checksum.update(buffer);
+                position += read;
+            }
+        }
+        return checksum.getValue();
+    }
+    
+    /**
+     * Reads an ASCII line.
+     *
+     * @param data
+     *         positioned at the start of the line, will be positioned behind its line break afterwards
+     * @return the line without the line break
+     */
+    private static String readLine(ByteBuffer data) {
+        StringBuilder line = new StringBuilder();
+        for (char c; data.hasRemaining() && (c = (char) data.get()) != '\n'; ) line.append(c);
+        return line.toString();
+    }
+    
+    /**
+     * Writes a snapshot in the background, unless there's already one being written.
+     *
+     * @param history
+     *         the participants covered by the snapshot. Must not be modified afterwards.
+     * @param offset
+     *         the length of the data file containing all given states
+     * @param codec
+     *         the codec which wrote the data file up to the offset. Must not be used anymore afterwards.
+     * @param written
+     *         completed as soon as the given states are written into the data file
+     * @return {@code true} if the snapshot will be written, {@code false} if it has been skipped
+     */
+    boolean writeInBackground(ParticipantHistory history, long offset, RecordCodec codec,
+                              CompletableFuture<?> written) {
+        if (!compacting.compareAndSet(false, true)) return false;
+        try {
+            compactor.execute(() -> {
+                try {
+                    written.join(); // never cover data which might not make it into the data file
+                    write(history, offset, codec);
+                } catch (Exception e) {
+                    MainApp.printInfo(String.format("Could not write snapshot %s.", snapshotFile));
+                } finally {
+                    compacting.set(false);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) { // already closed
+            compacting.set(false);
+            return false;
+        }
+    }
+    
+    /**
+     * Writes a snapshot to a temporary file and moves it into place afterwards, so a crash won't leave a broken
+     * snapshot behind.
+     *
+     * @param history
+     *         the participants covered by the snapshot, their latest states and the locations of all their states
+     *         will be stored
+     * @param offset
+     *         the length of the data file containing all given states, which must have been written already
+     * @param codec
+     *         the codec which wrote the data file up to the offset, its state will be stored in the snapshot so the
+     *         records after the offset can be decoded. Won't be modified.
+     * @throws IOException
+     *         if writing the snapshot fails
+     */
+    void write(ParticipantHistory history, long offset, RecordCodec codec) throws IOException {
+        Path tempFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        RecordCodec snapshotCodec = codec.copy();
+        ByteArrayOutputStream index = new ByteArrayOutputStream();
+        DataOutputStream indexOut = new DataOutputStream(index);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tempFile))) {
+            ByteArrayOutputStream records = new ByteArrayOutputStream();
+            records.write(snapshotCodec.header());
+            records.write(snapshotCodec.encodeState());
+            for (ParticipantHistory.Versions versions : history.getAllVersions()) {
+                records.write(snapshotCodec.encode(versions.getLatest()));
+                indexOut.writeInt(versions.getCount());
+                for (int i = 0; i < versions.getCount(); i++) {
+                    indexOut.writeLong(versions.getPosition(i));
+                    indexOut.writeInt(versions.getLength(i));
+                }
+            }
+            out.write((OFFSET_PREFIX + offset + "\n").getBytes(StandardCharsets.US_ASCII));
+            out.write((CHECKSUM_PREFIX + checksum(offset) + "\n").getBytes(StandardCharsets.US_ASCII));
+            out.write((INDEX_PREFIX + index.size() + "\n").getBytes(StandardCharsets.US_ASCII));
+            index.writeTo(out);
+            records.writeTo(out);
+        }
+        Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    /**
+     * Deletes the current snapshot, e.g. because the data file it belongs to has been replaced. Waits for a snapshot
+     * currently being written in the background.
+     *
+     * @throws IOException
+     *         if deleting the snapshot fails
+     */
+    void delete() throws IOException {
+        awaitCompaction();
+        Files.deleteIfExists(snapshotFile);
+    }
+    
+    /** Waits until a snapshot currently being written in the background is finished. */
+    private void awaitCompaction() {
+        try {
+            compactor.submit(() -> { }).get();
+        } catch (Exception e) {
+            /*no op*/
+        }
+    }
+    
+    /** Waits for a snapshot currently being written and stops the background compactor. */
+    @Override
+    public void close() {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /** The participants covering the data file up to an offset. */
+    static class Snapshot {
+        /** The length of the data file covered by this snapshot */
+        final long offset;
+        /** The latest states of all participants and the locations of all their states */
+        final ParticipantHistory participants;
+        /** Holds the state required to decode the data file after the offset */
+        final RecordCodec codec;
+        
+        /**
+         * Creates a new {@code Snapshot}.
+         *
+         * @param offset
+         *         the length of the data file covered by this snapshot
+         * @param participants
+         *         the latest states of all participants and the locations of all their states
+         * @param codec
+         *         holds the state required to decode the data file after the offset
+         */
+        Snapshot(long offset, ParticipantHistory participants, RecordCodec codec) {
+            this.offset = offset;
+            this.participants = participants;
+            this.codec = codec;
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package trekkingtracker.persistence;
+
+import trekkingtracker.data.Person;
+import trekkingtracker.data.PersonImpl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+/**
+ * Converts the state of a participant into a line of the data file and vice versa. Each line starts with the id of
+ * the participant and ends with the CRC32 checksum of the preceding fields, so lines written partially can be
+ * detected. Files written by former versions lack the ids or the checksums as well, they can be recognized by their
+ * {@link #CHECKSUM_HEADER} or {@link #LEGACY_HEADER}.
+ */
+final class TextRecordCodec implements RecordCodec {
+    /** Header row of files without ids and checksums */
+    private static final String LEGACY_HEADER = "# Name;Birthday;Category;Number;Start;Stop;Finisher";
+    /** Header row of files without ids */
+    private static final String CHECKSUM_HEADER = LEGACY_HEADER + ";Checksum";
+    /** Header row, to be put at the beginning of a file */
+    static final String HEADER = "# Id;Name;Birthday;Category;Number;Start;Stop;Finisher;Checksum";
+    /** The version of files without ids and checksums */
+    private static final int LEGACY_VERSION = 0;
+    /** The first version with checksums */
+    private static final int CHECKSUM_VERSION = 1;
+    /** The first version with ids, which is the current one */
+    private static final int ID_VERSION = 2;
+    /** The number of fields per line, without the id and the checksum */
+    private static final int INFO_COUNT = LEGACY_HEADER.split(";").length;
+    /** The number of hex digits of a checksum */
+    private static final int CHECKSUM_LENGTH = 8;
+    /** Data with at least this many bytes is decoded in parallel chunks */
+    static final int PARALLEL_THRESHOLD = 1 << 20;
+    /** The minimum number of bytes of a chunk decoded in parallel */
+    private static final int CHUNK_SIZE = 1 << 18;
+    /** The version of the lines, tells whether they carry ids and checksums */
+    private final int version;
+    
+    /** Creates a new {@code TextRecordCodec} which writes lines with ids and checksums. */
+    TextRecordCodec() {
+        this(ID_VERSION);
+    }
+    
+    /**
+     * Creates a new {@code TextRecordCodec}.
+     *
+     * @param version
+     *         the version of the lines, former versions lack the ids or the checksums
+     */
+    private TextRecordCodec(int version) {
+        this.version = version;
+    }
+    
+    /**
+     * Creates a codec to decode text data, depending on whether it starts with the {@link #HEADER} of lines with ids
+     * and checksums or the {@link #CHECKSUM_HEADER} of lines with checksums only.
+     *
+     * @param data
+     *         the beginning of a text data file, its position won't be changed
+     * @return a codec to decode the data
+     */
+    static TextRecordCodec forData(ByteBuffer data) {
+        if (!data.hasRemaining() || startsWith(data, HEADER)) return new TextRecordCodec(ID_VERSION);
+        return new TextRecordCodec(startsWith(data, CHECKSUM_HEADER) ? CHECKSUM_VERSION : LEGACY_VERSION);
+    }
+    
+    /**
+     * Tells whether the data starts with the given header.
+     *
+     * @param data
+     *         the beginning of a text data file, its position won't be changed
+     * @param header
+     *         the expected header
+     * @return {@code true} if the data starts with the header, otherwise {@code false}
+     */
+    private static boolean startsWith(ByteBuffer data, String header) {
+        byte[] bytes = header.getBytes(StandardCharsets.UTF_8);
+        if (data.remaining() < bytes.length) return false;
+        for (int i = 0; i < bytes.length; i++)
+            if (data.get(data.position() + i) != bytes[i]) return false;
+        return true;
+    }
+    
+    @Override
+    public LogFormat getFormat() {
+        return LogFormat.TEXT;
+    }
+    
+    @Override
+    public boolean isLegacy() {
+        return version < ID_VERSION;
+    }
+    
+    @Override
+    public byte[] header() {
+        String header = version >= ID_VERSION ? HEADER : version >= CHECKSUM_VERSION ? CHECKSUM_HEADER
+                : LEGACY_HEADER;
+        return header.getBytes(StandardCharsets.UTF_8);
+    }
+    
+    /** States without id get an empty id field. */
+    @Override
+    public byte[] encode(final Person toEncode) {
+        String line = encodeLine(toEncode);
+        if (version >= ID_VERSION) {
+            int id = toEncode.getId();
+            line = (id != Person.NO_ID ? Integer.toString(id) : "") + ';' + line;
+        }
+        if (version >= CHECKSUM_VERSION) {
+            CRC32 checksum = new CRC32();
+            checksum.update(line.getBytes(StandardCharsets.UTF_8));
+            line = String.format("%s;%08x", line, checksum.getValue());
+        }
+        return ("\n" + line).getBytes(StandardCharsets.UTF_8);
+    }
+    
+    @Override
+    public byte[] encodeState() {
+        return new byte[0];
+    }
+    
+    /**
+     * Decodes all lines of the given buffer up to the first invalid one. Empty lines and lines starting with {@code
+     * #} are skipped. Files without checksums have always been read by skipping invalid lines, so only a torn last
+     * line counts as invalid for them. Large data is split into chunks at line breaks which are validated and decoded
+     * in parallel on the common {@code ForkJoinPool}, the participant states are passed to the consumer in their
+     * original order nevertheless. If there's an invalid line, the position of the buffer will be set to the line
+     * break in front of it, so it can be cut off together with everything after it.
+     */
+    @Override
+    public void decode(final ByteBuffer data, final RecordConsumer consumer) {
+        if (data.remaining() < PARALLEL_THRESHOLD) {
+            DecodedLines decoded = decodeLines(data, consumer);
+            data.position(decoded.complete ? data.limit() : data.position() + decoded.validLength);
+        } else {
+            int start = data.position();
+            List<ByteBuffer> chunks = split(data, CHUNK_SIZE);
+            List<DecodedLines> decodedChunks = chunks.parallelStream().map(chunk -> {
+                List<Person> states = new ArrayList<>();
+                List<int[]> locations = new ArrayList<>();
+                DecodedLines decoded = decodeLines(chunk, (state, position, length) -> {
+                    states.add(state);
+                    locations.add(new int[]{position, length});
+                });
+                decoded.states = states;
+                decoded.locations = locations;
+                return decoded;
+            }).collect(Collectors.toList());
+            int chunkStart = start;
+            for (int i = 0; i < chunks.size(); i++) {
+                DecodedLines decoded = decodedChunks.get(i);
+                for (int j = 0; j < decoded.states.size(); j++) {
+                    int[] location = decoded.locations.get(j);
+                    consumer.accept(decoded.states.get(j), chunkStart + location[0], location[1]);
+                }
+                if (!decoded.complete) {
+                    data.position(chunkStart + decoded.validLength);
+                    return;
+                }
+                chunkStart += chunks.get(i).remaining();
+            }
+        }
+    }
+    
+    /** This codec is stateless, so there's no need for a copy. */
+    @Override
+    public RecordCodec copy() {
+        return this;
+    }
+    
+    /**
+     * Decodes all lines of the given buffer on the current thread up to the first invalid one. Empty lines and lines
+     * starting with {@code #} are skipped, as well as invalid lines of legacy files unless it's the last line of the
+     * buffer. The position of the buffer won't be changed.
+     *
+     * @param data
+     *         holding the lines, positioned at the start of a line
+     * @param consumer
+     *         receives the decoded participant states in the order they're stored, together with the location of
+     *         their lines within the buffer
+     * @return the number of valid bytes and whether all lines are valid
+     */
+    private DecodedLines decodeLines(final ByteBuffer data, final RecordConsumer consumer) {
+        byte[] bytes;
+        int offset;
+        if (data.hasArray()) {
+            bytes = data.array();
+            offset = data.arrayOffset() + data.position();
+        } else {
+            bytes = new byte[data.remaining()];
+            data.duplicate().get(bytes);
+            offset = 0;
+        }
+        int end = offset + data.remaining();
+        int validEnd = offset;
+        int lineStart = offset;
+        while (lineStart < end) {
+            int lineEnd = lineStart;
+            while (lineEnd < end && bytes[lineEnd] != '\n')
+                lineEnd++;
+            int contentEnd = lineEnd > lineStart && bytes[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+            if (contentEnd > lineStart && bytes[lineStart] != '#') {
+                Person decoded = decodeRecord(bytes, lineStart, contentEnd);
+                if (decoded == null) {
+                    // legacy files may hold invalid lines which have always been skipped, only a torn last one is cut
+                    if (version != LEGACY_VERSION || lineEnd == end) return new DecodedLines(validEnd - offset, false);
+                } else consumer.accept(decoded, data.position() + lineStart - offset, lineEnd - lineStart);
+            }
+            validEnd = lineEnd;
+            lineStart = lineEnd + 1;
+        }
+        return new DecodedLines(validEnd - offset, true);
+    }
+    
+    /**
+     * Validates and parses a single line.
+     *
+     * @param bytes
+     *         holding the line
+     * @param start
+     *         the index of the line's first byte
+     * @param end
+     *         the index behind the line's last byte, without the line break
+     * @return the parsed participant state, or {@code null} if the line is invalid
+     */
+    private Person decodeRecord(byte[] bytes, int start, int end) {
+        int fieldsEnd = end;
+        if (version >= CHECKSUM_VERSION) {
+            fieldsEnd = end - CHECKSUM_LENGTH - 1;
+            if (fieldsEnd < start || bytes[fieldsEnd] != ';') return null;
+            CRC32 checksum = new CRC32();
+            checksum.update(bytes, start, fieldsEnd - start);
+            try {
+                String stored = new String(bytes, fieldsEnd + 1, CHECKSUM_LENGTH, StandardCharsets.US_ASCII);
+                if (Long.parseLong(stored, 16) != checksum.getValue()) return null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        try {
+            String line = new String(bytes, start, fieldsEnd - start, StandardCharsets.UTF_8);
+            if (version < ID_VERSION) return decodeLine(line);
+            int idEnd = line.indexOf(';');
+            PersonImpl decoded = decodeLine(line.substring(idEnd + 1));
+            if (idEnd > 0) decoded.setId(Integer.parseInt(line.substring(0, idEnd)));
+            return decoded;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Splits the given buffer into chunks which end at line breaks (or the end of the data). Since a line break is a
+     * single byte in UTF-8, no chunk will start within a character or a line.
+     *
+     * @param data
+     *         to be split, will be read completely
+     * @param chunkSize
+     *         the minimum number of bytes per chunk, except for the last one
+     * @return the chunks in the order of the data
+     */
+    static List<ByteBuffer> split(final ByteBuffer data, final int chunkSize) {
+        List<ByteBuffer> chunks = new ArrayList<>();
+        int start = data.position();
+        int limit = data.limit();
+        while (start < limit) {
+            int end = Math.min(start + chunkSize, limit);
+            while (end < limit && data.get(end - 1) != '\n')
+                end++;
+            ByteBuffer chunk = data.duplicate();
+            chunk.limit(end).position(start);
+            chunks.add(chunk.slice());
+            start = end;
+        }
+        data.position(limit);
+        return chunks;
+    }
+    
+    /**
+     * Serializes a given {@code Person} to a {@code String} to be written into the data file, without the id and the
+     * checksum. Invalid characters will be stripped from the name.
+     *
+     * @param toWrite
+     *         to be serialized to a {@code String}
+     * @return the serialization {@code String}
+     */
+    static String encodeLine(final Person toWrite) {
+        StringJoiner line = new StringJoiner(";");
+        line.add(FileUtils.sanitizeName(toWrite.getName()));
+        line.add(toWrite.getBirthday().toString());
+        Person.Category category = toWrite.getCategory();
+        line.add(category != null ? category.toString() : "");
+        Integer number = toWrite.getNumber();
+        line.add(number != null ? number.toString() : "");
+        Instant start = toWrite.getStart();
+        line.add(start != null ? DateTimeFormatter.ISO_INSTANT.format(start) : "");
+        Instant stop = toWrite.getStop();
+        line.add(stop != null ? DateTimeFormatter.ISO_INSTANT.format(stop) : "");
+        line.add(Boolean.toString(toWrite.isFinisher()));
+        return line.toString();
+    }
+    
+    /**
+     * Parses a line of the data file, without the id and the checksum.
+     *
+     * @param line
+     *         a line created by {@link #encodeLine(Person)}
+     * @return the parsed {@code Person}, without id
+     * @throws RuntimeException
+     *         if the line cannot be parsed
+     */
+    static PersonImpl decodeLine(final String line) {
+        String[] items = line.split(";", INFO_COUNT);
+        String name = items[0];
+        String birthdayIdent = items[1];
+        String catIdent = items[2];
+        String numberIdent = items[3];
+        String startIdent = items[4];
+        String stopIdent = items[5];
+        String finisherIdent = items[6];
+        PersonImpl parsed = new PersonImpl(name, LocalDate.parse(birthdayIdent));
+        if (isValid(catIdent)) parsed.setCategory(FileUtils.parseCategory(catIdent));
+        if (isValid(numberIdent)) parsed.setNumber(Integer.parseInt(numberIdent));
+        if (isValid(startIdent)) parsed.setStart(Instant.parse(startIdent));
+        if (isValid(stopIdent)) parsed.setStop(Instant.parse(stopIdent));
+        if (isValid(finisherIdent)) parsed.setFinished(Boolean.parseBoolean(finisherIdent));
+        return parsed;
+    }
+    
+    /**
+     * Chechs whether a given {@code String} has the right form to be parsed.
+     *
+     * @param toCheck
+     *         the {@code String} to be checked
+     * @return {@code true} if the {@code String} is valid, otherwise {@code false}
+     */
+    private static boolean isValid(String toCheck) {
+        return toCheck != null && !toCheck.isEmpty();
+    }
+    
+    /** The result of decoding a sequence of lines */
+    private static class DecodedLines {
+        /** The number of bytes up to the line break in front of the first invalid line */
+        private final int validLength;
+        /** {@code true} if all lines are valid, otherwise {@code false} */
+        private final boolean complete;
+        /** The decoded participant states, if they have been collected */
+        private List<Person> states;
+        /** The position and length of each collected state's line within the decoded chunk */
+        private List<int[]> locations;
+        
+        /**
+         * Creates a new {@code DecodedLines}.
+         *
+         * @param validLength
+         *         the number of bytes up to the line break in front of the first invalid line
+         * @param complete
+         *         {@code true} if all lines are valid, otherwise {@code false}
+         */
+        private DecodedLines(int validLength, boolean complete) {
+            this.validLength = validLength;
+            this.complete = complete;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package trekkingtracker.persistence;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Collects statistics about the writes to the data file. Thread-safe. */
+public final class WriteStatistics {
+    /** The number of updates waiting to be written */
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    /** The highest number of updates which have been waiting to be written at once */
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    /** The number of updates written */
+    private final LongAdder writes = new LongAdder();
+    /** The total time in nanoseconds from appending the updates until they were written */
+    private final LongAdder writeLatencyNanos = new LongAdder();
+    /** The longest time in nanoseconds from appending an update until it was written */
+    private final AtomicLong maxWriteLatencyNanos = new AtomicLong();
+    /** The number of times written data has been forced to the storage device */
+    private final LongAdder forces = new LongAdder();
+    /** The total time in nanoseconds spent on forcing written data to the storage device */
+    private final LongAdder forceNanos = new LongAdder();
+    /** The longest time in nanoseconds spent on forcing written data to the storage device at once */
+    private final AtomicLong maxForceNanos = new AtomicLong();
+    
+    /**
+     * Sets the number of updates currently waiting to be written.
+     *
+     * @param depth
+     *         the number of waiting updates
+     */
+    void queueDepth(int depth) {
+        queueDepth.set(depth);
+        maxQueueDepth.accumulateAndGet(depth, Math::max);
+    }
+    
+    /**
+     * Records an update which has been written.
+     *
+     * @param latencyNanos
+     *         the time in nanoseconds from appending the update until it was written
+     */
+    void written(long latencyNanos) {
+        writes.increment();
+        writeLatencyNanos.add(latencyNanos);
+        maxWriteLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+    }
+    
+    /**
+     * Records a force of written data to the storage device.
+     *
+     * @param durationNanos
+     *         the time in nanoseconds the force took
+     */
+    void forced(long durationNanos) {
+        forces.increment();
+        forceNanos.add(durationNanos);
+        maxForceNanos.accumulateAndGet(durationNanos, Math::max);
+    }
+    
+    /**
+     * Returns the number of updates currently waiting to be written.
+     *
+     * @return the number of waiting updates
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+    
+    /**
+     * Returns the highest number of updates which have been waiting to be written at once.
+     *
+     * @return the highest number of waiting updates
+     */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+    
+    /**
+     * Returns the number of updates written so far.
+     *
+     * @return the number of written updates
+     */
+    public long getWriteCount() {
+        return writes.sum();
+    }
+    
+    /**
+     * Returns the average time from appending an update until it was written.
+     *
+     * @return the average write latency in milliseconds, {@code 0} if nothing has been written yet
+     */
+    public double getAverageWriteLatencyMillis() {
+        return averageMillis(writeLatencyNanos.sum(), writes.sum());
+    }
+    
+    /**
+     * Returns the longest time from appending an update until it was written.
+     *
+     * @return the maximum write latency in milliseconds
+     */
+    public double getMaxWriteLatencyMillis() {
+        return averageMillis(maxWriteLatencyNanos.get(), 1);
+    }
+    
+    /**
+     * Returns the number of times written data has been forced to the storage device.
+     *
+     * @return the number of forces
+     */
+    public long getForceCount() {
+        return forces.sum();
+    }
+    
+    /**
+     * Returns the average time spent on forcing written data to the storage device.
+     *
+     * @return the average fsync time in milliseconds, {@code 0} if nothing has been forced yet
+     */
+    public double getAverageForceMillis() {
+        return averageMillis(forceNanos.sum(), forces.sum());
+    }
+    
+    /**
+     * Returns the longest time spent on forcing written data to the storage device at once.
+     *
+     * @return the maximum fsync time in milliseconds
+     */
+    public double getMaxForceMillis() {
+        return averageMillis(maxForceNanos.get(), 1);
+    }
+    
+    /**
+     * Calculates an average duration.
+     *
+     * @param totalNanos
+     *         the sum of all durations in nanoseconds
+     * @param count
+     *         the number of durations
+     * @return the average duration in milliseconds, {@code 0} if the count is {@code 0}
+     */
+    private static double averageMillis(long totalNanos, long count) {
+        return count == 0 ? 0 : (double) totalNanos / count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+    
+    @Override
+    public String toString() {
+        return String.format(
+                "Write queue depth %d (max %d), write latency %.2f ms (max %.2f ms) over %d updates, fsync %.2f ms (max"
+                        + " %.2f ms) over %d forces", getQueueDepth(), getMaxQueueDepth(),
+                getAverageWriteLatencyMillis(), getMaxWriteLatencyMillis(), getWriteCount(), getAverageForceMillis(),
+                getMaxForceMillis(), getForceCount());
+    }
+}
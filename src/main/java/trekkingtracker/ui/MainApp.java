@@ -9,10 +9,15 @@ import javafx.scene.image.Image;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 import trekkingtracker.config.GeneralConfig;
+import trekkingtracker.data.StartNumberAllocator;
+import trekkingtracker.event.participantevents.ParticipantBatchUpdateEvent;
 import trekkingtracker.event.participantevents.ParticipantEvent;
+import trekkingtracker.event.participantevents.StartNumberIndex;
+import trekkingtracker.event.publishing.EventPriority;
 import trekkingtracker.event.publishing.ThreadAwareEventPublisher;
 import trekkingtracker.event.requestevents.ParticipantEventRequest;
 import trekkingtracker.event.requestevents.ParticipantsInitRequest;
+import trekkingtracker.event.tracing.LatencyRecorder;
 import trekkingtracker.persistence.ParticipantStore;
 import trekkingtracker.ui.groups.*;
 
@@ -38,6 +43,10 @@ public class MainApp extends Application {
     private static InfoOutput infoOutput;
     /** Holds the configuration for this application */
     private GeneralConfig config;
+    /** Persists the participants' data */
+    private ParticipantStore participantStore;
+    /** Dispatches the events between the persistence and the ui */
+    private ThreadAwareEventPublisher eventPublisher;
     
     /**
      * Prints the given text in the info box
@@ -55,30 +64,39 @@ public class MainApp extends Application {
         
         VBox root = new VBox();
         
-        ThreadAwareEventPublisher eventPublisher = new ThreadAwareEventPublisher();
+        eventPublisher = new ThreadAwareEventPublisher(config.eventConfig, ParticipantBatchUpdateEvent::combine);
         
-        final ParticipantStore participantStore = new ParticipantStore(config.tableConfig, eventPublisher,
+        participantStore = new ParticipantStore(config.tableConfig, config.storeConfig, eventPublisher,
                 s -> registeredBirthdayFormatter.parse(s, LocalDate::from));
         eventPublisher.addEventListenerNonUi(ParticipantEventRequest.class, participantStore);
         
         AddParticipants addingParticipants = new AddParticipants(root, eventPublisher, FILE_EXTENSION);
         eventPublisher.addEventListenerUi(ParticipantEvent.class, addingParticipants);
         
-        ParticipantModification participModify = new ParticipantModification(root, eventPublisher, zone);
+        // registered as critical, so the ui groups find it up to date when they receive the same event
+        StartNumberIndex startNumbers = new StartNumberIndex(new StartNumberAllocator(config.startNumberConfig));
+        eventPublisher.addEventListener(ParticipantEvent.class, startNumbers, true, EventPriority.CRITICAL);
+        
+        ParticipantModification participModify = new ParticipantModification(root, eventPublisher, startNumbers,
+                zone, participantStore::getHistory);
         eventPublisher.addEventListenerUi(ParticipantEvent.class, participModify);
         
-        ParticipantStart participStart = new ParticipantStart(root, eventPublisher, zone);
+        ParticipantStart participStart = new ParticipantStart(root, eventPublisher, startNumbers, zone);
         eventPublisher.addEventListenerUi(ParticipantEvent.class, participStart);
         
-        ParticipantStop participStop = new ParticipantStop(root, eventPublisher, zone);
+        ParticipantStop participStop = new ParticipantStop(root, eventPublisher, startNumbers, zone);
         eventPublisher.addEventListenerUi(ParticipantEvent.class, participStop);
         
         Overview overview = new Overview(root, zone);
-        eventPublisher.addEventListenerUi(ParticipantEvent.class, overview);
+        eventPublisher.addEventListenerUi(ParticipantEvent.class, overview, EventPriority.BACKGROUND);
+        
+        Diagnostics diagnostics = new Diagnostics(root, LatencyRecorder.INSTANCE,
+                () -> "Dispatching: " + eventPublisher.getStatistics() + System.lineSeparator() + "Writing: "
+                        + participantStore.getWriteStatistics());
         
         infoOutput = new InfoOutput(root);
         
-        root.getChildren().addAll(addingParticipants, participModify, participStop, infoOutput);
+        root.getChildren().addAll(addingParticipants, participModify, participStop, diagnostics, infoOutput);
         
         Scene scene = new Scene(root, 800, 600);
         primaryStage.setTitle("TrekkingTracker");
@@ -89,6 +107,12 @@ public class MainApp extends Application {
         eventPublisher.publish(ParticipantsInitRequest.INSTANCE);
     }
     
+    @Override
+    public void stop() throws IOException {
+        if (eventPublisher != null) eventPublisher.close();
+        if (participantStore != null) participantStore.close();
+    }
+    
     private void setup() throws IOException {
         //config.registerConverter(ZoneId.class, new SettingConverter(Object::toString,ZoneId::of));
         this.config = new ConfigPreparer(new File(CONFIG_FILE)).registerConverter(ZoneId.class,
@@ -6,19 +6,21 @@ import javafx.scene.Group;
 import javafx.scene.control.*;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.Pane;
-import trekkingtracker.Utils;
 import trekkingtracker.data.Person;
 import trekkingtracker.event.participantevents.ParticipantInputChangedEvent;
 import trekkingtracker.event.participantevents.ParticipantProcessor;
 import trekkingtracker.event.participantevents.ParticipantUpdateEvent;
+import trekkingtracker.event.participantevents.StartNumberIndex;
 import trekkingtracker.event.publishing.EventPublisher;
+import trekkingtracker.event.requestevents.ParticipantBatchUpdateRequest;
 import trekkingtracker.event.requestevents.ParticipantUpdateRequest;
+import trekkingtracker.event.requestevents.RequestOutcome;
 import trekkingtracker.ui.MainApp;
 import trekkingtracker.ui.utils.CollapsibleGridPane;
 import trekkingtracker.ui.utils.UiUtils;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -32,6 +34,8 @@ public abstract class AbstractGroupModification extends Group implements Partici
     
     /** Allowed input for the start numbers field */
     private final Pattern NUMBERS_INPUT_PATTERN = Pattern.compile("[0-9,]*");
+    /** The time in seconds a modification may take until its start numbers are offered for another attempt */
+    private static final long ACKNOWLEDGEMENT_TIMEOUT_SECONDS = 10;
     /** Tooltip text to be displayed when no start numbers are entered */
     private static final String DEFAULT_TEST_HINT = "Enter the participants' start numbers you want to modify at once";
     protected final TextField numbersText;
@@ -41,8 +45,8 @@ public abstract class AbstractGroupModification extends Group implements Partici
     protected final EventPublisher eventPublisher;
     /** Allows this ui element to collapse */
     private final TitledPane collapsibleContainer;
-    /** Holds all participants which a start number by this start number */
-    private Map<Integer, Person> startNumbersToPersons = new ConcurrentHashMap<>();
+    /** Tells which participant holds which start number */
+    private final StartNumberIndex startNumbers;
     /** Holds the custom content of this group, i.e. the content which is not related to the number input */
     protected final GridPane contentPane;
     
@@ -53,11 +57,15 @@ public abstract class AbstractGroupModification extends Group implements Partici
      *         this ui element will be put in
      * @param eventPublisher
      *         used to propagate events
+     * @param startNumbers
+     *         tells which participant holds which start number
      * @param description
      *         the text of the button and the group
      */
-    public AbstractGroupModification(Pane parent, final EventPublisher eventPublisher, String description) {
+    public AbstractGroupModification(Pane parent, final EventPublisher eventPublisher, StartNumberIndex startNumbers,
+            String description) {
         this.eventPublisher = requireNonNull(eventPublisher);
+        this.startNumbers = requireNonNull(startNumbers);
         CollapsibleGridPane mainPane = UiUtils.createFramedArea(parent, description);
         collapsibleContainer = mainPane.getCollapsibleContainer();
         collapsibleContainer.setExpanded(false);
@@ -101,7 +109,7 @@ public abstract class AbstractGroupModification extends Group implements Partici
         
         // update tooltip when input changes
         numbersText.textProperty().addListener((obs, o, n) -> {
-            MatchingResult matchingPersons = new MatchingResult(startNumbersToPersons, numbersText.getText());
+            MatchingResult matchingPersons = new MatchingResult(startNumbers, numbersText.getText());
             numbersFoundTooltip.setText(matchingPersons.found.toString());
         });
     }
@@ -115,7 +123,7 @@ public abstract class AbstractGroupModification extends Group implements Partici
     private void prepareModifiyButton(final Button storeModificationButton) {
         // on click find matching persons and set their start numbers
         storeModificationButton.setOnAction(
-                e -> storeModification(new MatchingResult(startNumbersToPersons, numbersText.getText())));
+                e -> storeModification(new MatchingResult(startNumbers, numbersText.getText())));
     }
     
     protected void storeModification(MatchingResult matchingPersons) {
@@ -124,11 +132,39 @@ public abstract class AbstractGroupModification extends Group implements Partici
         String remaining = notFound.stream().map(Object::toString).collect(Collectors.joining(","));
         numbersText.setText(remaining);
         List<Person> foundPersons = matchingPersons.found;
+        List<ParticipantUpdateRequest> updates = new ArrayList<>(foundPersons.size());
         foundPersons.forEach(p -> {
             Optional<Person> update = createUpdate(p);
-            if (update.isPresent()) eventPublisher.publish(new ParticipantUpdateRequest(p, update.get()));
+            if (update.isPresent()) updates.add(new ParticipantUpdateRequest(p, update.get()));
             else MainApp.printInfo(String.format("Update for %s cancelled.", p));
         });
+        // all participants at once, so e.g. a mass start is validated and stored as a single operation
+        if (!updates.isEmpty()) submit(updates);
+    }
+    
+    /**
+     * Submits the updates of multiple participants at once. If they are rejected or withdrawn because the store hasn't
+     * taken them up in time, their start numbers are put back into the {@link #numbersText}, so they can be submitted
+     * again. Updates the store has taken up are never put back, their outcome is awaited instead.
+     *
+     * @param updates
+     *         the updates to be submitted
+     */
+    protected void submit(List<ParticipantUpdateRequest> updates) {
+        eventPublisher.submit(new ParticipantBatchUpdateRequest(updates), ACKNOWLEDGEMENT_TIMEOUT_SECONDS,
+                TimeUnit.SECONDS).whenComplete((outcome, e) -> {
+            if (e == null && outcome.getStatus() != RequestOutcome.Status.REJECTED) return;
+            if (e != null) MainApp.printInfo(String.format(
+                    "The updates of %d participants have not been taken up in time and were not stored.",
+                    updates.size()));
+            String numbers = updates.stream().map(update -> update.getOldValue().getNumber()).filter(
+                    Objects::nonNull).map(Object::toString).collect(Collectors.joining(","));
+            if (numbers.isEmpty()) return;
+            UiUtils.uiJob(() -> {
+                String remaining = numbersText.getText();
+                numbersText.setText(remaining.isEmpty() ? numbers : remaining + "," + numbers);
+            });
+        });
     }
     
     /**
@@ -147,17 +183,12 @@ public abstract class AbstractGroupModification extends Group implements Partici
             collapsibleContainer.setExpanded(false);
             return;
         }
-        startNumbersToPersons = Utils.getStartNumberToParticipantMap(participants);
         collapsibleContainer.setExpanded(true);
     }
     
+    /** Nothing to do, the start numbers are kept up to date by the {@link StartNumberIndex}. */
     @Override
     public void updatePerson(final ParticipantUpdateEvent updateEvent) {
-        Person oldP = updateEvent.getOldValue();
-        Person newP = updateEvent.getNewValue();
-        if (oldP != null) startNumbersToPersons.remove(oldP.getNumber());
-        Integer number = newP.getNumber();
-        if (number != null) startNumbersToPersons.put(number, newP);
     }
     
     /**
@@ -177,20 +208,20 @@ public abstract class AbstractGroupModification extends Group implements Partici
         /**
          * Creates  a new {@code MatchingResult}
          *
-         * @param startNumbersToPersons
-         *         all known {@code Persons} by their start numbers
+         * @param startNumbers
+         *         tells which participant holds which start number
          * @param toParse
          *         containing a comma-separated list of all start numbers the the matching {@code Person} shall be
-         *         identified for (by the given map)
+         *         identified for (by the given index)
          */
-        public MatchingResult(Map<Integer, Person> startNumbersToPersons, String toParse) {
-            found = new ArrayList<>(startNumbersToPersons.size());
+        public MatchingResult(StartNumberIndex startNumbers, String toParse) {
+            found = new ArrayList<>();
             if (toParse == null || toParse.isEmpty()) return;
             for (String number : toParse.split(",")) {
-                Integer startNumber = Integer.parseInt(number);
-                Person matchingPerson = startNumbersToPersons.get(startNumber);
-                if (matchingPerson == null) notFound.add(startNumber);
-                else found.add(matchingPerson);
+                int startNumber = Integer.parseInt(number);
+                Optional<Person> matchingPerson = startNumbers.findHolder(startNumber);
+                if (matchingPerson.isPresent()) found.add(matchingPerson.get());
+                else notFound.add(startNumber);
             }
         }
     }
@@ -0,0 +1,135 @@
+package trekkingtracker.ui.groups;
+
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.collections.FXCollections;
+import javafx.scene.Group;
+import javafx.scene.control.*;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.Pane;
+import javafx.stage.FileChooser;
+import trekkingtracker.event.tracing.LatencyHistogram;
+import trekkingtracker.event.tracing.LatencyRecorder;
+import trekkingtracker.ui.MainApp;
+import trekkingtracker.ui.utils.CollapsibleGridPane;
+import trekkingtracker.ui.utils.UiUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Displays the latencies of the requests per stage, from creating a request until it has been validated, persisted and
+ * applied by each ui element, and allows to export them, e.g. after the event.
+ */
+public class Diagnostics extends Group {
+    /** Holds the latencies to be displayed */
+    private final LatencyRecorder recorder;
+    /** Supplies further statistics, e.g. about the event dispatching and the writes */
+    private final Supplier<String> statistics;
+    /** Displays one histogram per row */
+    private final TableView<Map.Entry<String, LatencyHistogram>> histogramView = new TableView<>();
+    /** Displays the further statistics */
+    private final Label statisticsLabel = new Label();
+    
+    /**
+     * Creates a new {@code Diagnostics} interface.
+     *
+     * @param parent
+     *         this ui element will be put in
+     * @param recorder
+     *         holds the latencies to be displayed
+     * @param statistics
+     *         supplies further statistics to be displayed, e.g. about the event dispatching and the writes
+     */
+    public Diagnostics(Pane parent, LatencyRecorder recorder, Supplier<String> statistics) {
+        this.recorder = recorder;
+        this.statistics = statistics;
+        CollapsibleGridPane mainPane = UiUtils.createFramedArea(parent, "Diagnostics");
+        TitledPane collapsibleContainer = mainPane.getCollapsibleContainer();
+        collapsibleContainer.setExpanded(false);
+        collapsibleContainer.expandedProperty().addListener((obs, o, expanded) -> {
+            if (expanded) refresh();
+        });
+        
+        histogramView.getColumns().add(createColumn("Stage", Map.Entry::getKey));
+        histogramView.getColumns().add(createColumn("Count", e -> Long.toString(e.getValue().getCount())));
+        histogramView.getColumns().add(createColumn("Mean", e -> formatMillis(e.getValue().getMeanMillis())));
+        for (double percentile : new double[]{50, 90, 99})
+            histogramView.getColumns().add(createColumn(String.format("p%.0f", percentile),
+                    e -> formatMillis(e.getValue().getPercentileMillis(percentile))));
+        histogramView.getColumns().add(createColumn("Max", e -> formatMillis(e.getValue().getMaxMillis())));
+        histogramView.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
+        histogramView.setPrefHeight(160);
+        mainPane.addRow(0, histogramView);
+        mainPane.addRow(1, statisticsLabel);
+        
+        GridPane buttons = new GridPane();
+        buttons.setHgap(5);
+        Button refreshButton = new Button("Refresh");
+        refreshButton.setOnAction(e -> refresh());
+        Button resetButton = new Button("Reset");
+        resetButton.setTooltip(new Tooltip("Discards all recorded latencies"));
+        resetButton.setOnAction(e -> {
+            recorder.clear();
+            refresh();
+        });
+        Button exportButton = new Button("Export");
+        exportButton.setTooltip(new Tooltip("Writes the latencies to a CSV file"));
+        exportButton.setOnAction(e -> export());
+        buttons.addRow(0, refreshButton, resetButton, exportButton);
+        mainPane.addRow(2, buttons);
+    }
+    
+    /**
+     * Creates a column displaying a text derived from the histogram of the row.
+     *
+     * @param title
+     *         the title of the column
+     * @param text
+     *         derives the text to be displayed from the histogram and its name
+     * @return the created column
+     */
+    private static TableColumn<Map.Entry<String, LatencyHistogram>, String> createColumn(String title,
+            Function<Map.Entry<String, LatencyHistogram>, String> text) {
+        TableColumn<Map.Entry<String, LatencyHistogram>, String> column = new TableColumn<>(title);
+        column.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(text.apply(cell.getValue())));
+        column.setSortable(false);
+        return column;
+    }
+    
+    /**
+     * Formats a latency for displaying.
+     *
+     * @param millis
+     *         the latency in milliseconds
+     * @return the formatted latency
+     */
+    private static String formatMillis(double millis) {
+        return String.format(Locale.ROOT, "%.1f ms", millis);
+    }
+    
+    /** Displays the latest latencies and statistics. */
+    private void refresh() {
+        histogramView.setItems(FXCollections.observableArrayList(recorder.getHistograms().entrySet()));
+        statisticsLabel.setText(statistics.get());
+    }
+    
+    /** Lets the user choose a file and writes the latencies to it. */
+    private void export() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Export Latencies");
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV Files (*.csv)", "*.csv"));
+        fileChooser.setInitialFileName("latencies.csv");
+        File chosen = fileChooser.showSaveDialog(getScene().getWindow());
+        if (chosen == null) return;
+        try {
+            recorder.export(chosen.toPath());
+            MainApp.printInfo("Exported the latencies to " + chosen + ".");
+        } catch (IOException e) {
+            MainApp.printInfo("Could not export the latencies: " + e.getMessage());
+        }
+    }
+}
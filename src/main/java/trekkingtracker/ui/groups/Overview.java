@@ -10,8 +10,9 @@ import javafx.scene.control.cell.TextFieldListCell;
 import javafx.scene.input.*;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.Pane;
+import trekkingtracker.data.ParticipantTable;
 import trekkingtracker.data.Person;
-import trekkingtracker.data.PersonTripTimeComparator;
+import trekkingtracker.event.participantevents.ParticipantBatchUpdateEvent;
 import trekkingtracker.event.participantevents.ParticipantInputChangedEvent;
 import trekkingtracker.event.participantevents.ParticipantProcessor;
 import trekkingtracker.event.participantevents.ParticipantUpdateEvent;
@@ -22,9 +23,7 @@ import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.util.Collection;
-import java.util.Comparator;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -38,8 +37,10 @@ public class Overview extends Group implements ParticipantProcessor {
     private final ListView<Person> onTour;
     /** Used to format the participants' start time for better readability */
     private final Function<Instant, String> dateFormatter;
-    /** All participants in all {@code Categories}, the basis for the rank calculations */
-    private Collection<Person> participants = ConcurrentHashMap.newKeySet();
+    /** Displays the progress of the participants in the chosen {@code Category} */
+    private final Label summaryLabel = new Label();
+    /** The latest states of all participants in all {@code Categories}, the basis for the rank calculations */
+    private final ParticipantTable participants = new ParticipantTable();
     /** Tells whether all participants who are still on track or all who have already arrived shall be displayed */
     private final SingleSelectionModel<Boolean> showMissing;
     
@@ -65,6 +66,7 @@ public class Overview extends Group implements ParticipantProcessor {
         rankingView = new ListView<>();
         rankingView.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
         firstCol.addRow(1, rankingView);
+        firstCol.addRow(2, summaryLabel);
         
         GridPane secondCol = new GridPane();
         mainPane.add(secondCol, 1, 0);
@@ -159,30 +161,27 @@ public class Overview extends Group implements ParticipantProcessor {
     }
     
     /**
-     * Refreshes the content of the {@link #rankingView} based on the chosen {@code Category}.
+     * Refreshes the content of the {@link #rankingView} and the {@link #summaryLabel} based on the chosen {@code
+     * Category}.
      *
      * @param category
      *         the chosen {@code Category}
      */
     private void refreshRankingView(final Person.Category category) {
-        UiUtils.backgroundJob(() -> participants.stream()
-                                                .filter(p -> p.getCategory() == category)
-                                                .sorted(PersonTripTimeComparator.INSTANCE)
-                                                .collect(Collectors.toList()), l -> {
+        UiUtils.backgroundJob(() -> participants.ranking(category), l -> {
             rankingView.setItems(FXCollections.observableList(l));
             rankingView.refresh();
         });
+        UiUtils.backgroundJob(() -> participants.summarize(category), summary -> summaryLabel.setText(String.format(
+                "%d participants, %d started, %d arrived, %d finishers", summary.getParticipants(),
+                summary.getStarted(), summary.getArrived(), summary.getFinishers())));
     }
     
     /**
      * Refreshes the content of the {@link #rankingView} based on the chosen {@code Category}.
      */
     private void refreshOnTourView(boolean showNotArrived) {
-        UiUtils.backgroundJob(() -> participants.stream()
-                                                .filter(p -> p.getStart() != null)
-                                                .filter(p -> showNotArrived == (p.getStop() == null))
-                                                .sorted(Comparator.comparing(Person::getStart))
-                                                .collect(Collectors.toList()), l -> {
+        UiUtils.backgroundJob(() -> participants.byStartTime(!showNotArrived), l -> {
             onTour.setItems(FXCollections.observableList(l));
             onTour.refresh();
         });
@@ -192,8 +191,7 @@ public class Overview extends Group implements ParticipantProcessor {
     public void setInput(final ParticipantInputChangedEvent inputEvent) {
         Collection<Person> input = inputEvent.getInputView();
         if (input == null) return;
-        this.participants = ConcurrentHashMap.newKeySet(input.size());
-        this.participants.addAll(input);
+        participants.replaceAll(input);
         refreshRankingView(category.getSelectedItem());
         refreshOnTourView(showMissing.getSelectedItem());
     }
@@ -202,11 +200,27 @@ public class Overview extends Group implements ParticipantProcessor {
     public void updatePerson(final ParticipantUpdateEvent updateEvent) {
         Person oldP = updateEvent.getOldValue();
         Person newP = updateEvent.getNewValue();
-        if (oldP != null) participants.remove(oldP);
-        participants.add(newP);
+        participants.update(newP);
         Person.Category selectedCategory = category.getSelectedItem();
         if (newP.getCategory() == selectedCategory) refreshRankingView(selectedCategory);
         if (oldP == null || (oldP.getStop() != newP.getStop() || oldP.getStart() != newP.getStart())) refreshOnTourView(
                 showMissing.getSelectedItem());
     }
+    
+    /** Applies all updates before refreshing each view at most once. */
+    @Override
+    public void updatePersons(final ParticipantBatchUpdateEvent batchEvent) {
+        Person.Category selectedCategory = category.getSelectedItem();
+        boolean rankingChanged = false;
+        boolean onTourChanged = false;
+        for (ParticipantUpdateEvent updateEvent : batchEvent.getUpdates()) {
+            Person oldP = updateEvent.getOldValue();
+            Person newP = updateEvent.getNewValue();
+            participants.update(newP);
+            rankingChanged |= newP.getCategory() == selectedCategory;
+            onTourChanged |= oldP == null || (oldP.getStop() != newP.getStop() || oldP.getStart() != newP.getStart());
+        }
+        if (rankingChanged) refreshRankingView(selectedCategory);
+        if (onTourChanged) refreshOnTourView(showMissing.getSelectedItem());
+    }
 }
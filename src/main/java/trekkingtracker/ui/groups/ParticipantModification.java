@@ -9,13 +9,15 @@ import javafx.scene.control.cell.TextFieldListCell;
 import javafx.scene.input.MouseButton;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.Pane;
-import trekkingtracker.Utils;
+import trekkingtracker.data.ImmutablePerson;
 import trekkingtracker.data.Person;
 import trekkingtracker.data.PersonAphabeticComparator;
-import trekkingtracker.data.PersonImpl;
+import trekkingtracker.data.StartNumberAllocator;
+import trekkingtracker.event.participantevents.ParticipantBatchUpdateEvent;
 import trekkingtracker.event.participantevents.ParticipantInputChangedEvent;
 import trekkingtracker.event.participantevents.ParticipantProcessor;
 import trekkingtracker.event.participantevents.ParticipantUpdateEvent;
+import trekkingtracker.event.participantevents.StartNumberIndex;
 import trekkingtracker.event.publishing.EventPublisher;
 import trekkingtracker.event.requestevents.ParticipantUpdateRequest;
 import trekkingtracker.ui.MainApp;
@@ -28,7 +30,6 @@ import java.text.ParsePosition;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.function.Function;
 
@@ -36,6 +37,8 @@ import static java.util.Objects.requireNonNull;
 
 /** Class which allows the modification of all attributes of a {@code Participant}. */
 public class ParticipantModification extends Group implements ParticipantProcessor {
+    /** The number of participant histories kept in the {@link #historyCache} */
+    private static final int HISTORY_CACHE_SIZE = 16;
     /** Holds the proposed participants */
     private final ComboBox<Person> participantsComboBox;
     /** Used to restore the {@code ComboBox's} content after it has been reduced to filtered proposals */
@@ -57,20 +60,32 @@ public class ParticipantModification extends Group implements ParticipantProcess
     private final TitledPane collapsibleContainer;
     /** Tells whether the start number displayed is a proposal or not */
     private final Label proposalHint;
-    /** Holds all assigned start numbers */
-    private Map<Integer, Person> usedStartNumbers = new ConcurrentHashMap<>();
+    /** Tells which participant holds which start number */
+    private final StartNumberIndex startNumbers;
     /** Allows to set and modify a participant's start number */
     private final TextField startNumberField;
-    /** The last start number which was used, so proposals can just increment this number */
-    private int lastStartNumber = 0;
+    /** The lease of the start number proposed for the current participant, {@code null} if none is proposed */
+    private StartNumberAllocator.Lease proposal = null;
     /** The current participant selected for modification */
     private Person currentPerson = null;
     /** Stores all settings for a participant is is disabled if the content is invalid */
     private final Button storeButton;
     /** Allows to set and modify a participant's stop time */
     private final DateTimePane stopTimePane;
-    /** Holds the state history of all participants to display the selected participant's state history */
-    private final Map<Person, List<Person>> allStatesData = new ConcurrentHashMap<>();
+    /** Reads all states of a participant, oldest first. Run in the background since it might wait for writes. */
+    private final Function<Person, List<Person>> historyLoader;
+    /** Identifies the latest history load, the results of former ones are outdated and dropped */
+    private Object historyRequest = null;
+    /**
+     * Holds the state histories of the participants loaded recently by their ids, the least recently loaded one is
+     * dropped
+     */
+    private final Map<Integer, List<Person>> historyCache = new LinkedHashMap<>(HISTORY_CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Integer, List<Person>> eldest) {
+            return size() > HISTORY_CACHE_SIZE;
+        }
+    };
     
     /**
      * Creates a new {@code ParticipantModification} interface.
@@ -79,11 +94,20 @@ public class ParticipantModification extends Group implements ParticipantProcess
      *         this ui element will be put in
      * @param eventPublisher
      *         used to propagate events
+     * @param startNumbers
+     *         tells which participant holds which start number
      * @param zoneId
      *         used to display the start and stop time infos
+     * @param historyLoader
+     *         reads all states of a participant, oldest first, to display the selected participant's state history.
+     *         Called on a background thread.
      */
-    public ParticipantModification(final Pane parent, final EventPublisher eventPublisher, ZoneId zoneId) {
+    public ParticipantModification(final Pane parent, final EventPublisher eventPublisher,
+                                   StartNumberIndex startNumbers, ZoneId zoneId,
+                                   Function<Person, List<Person>> historyLoader) {
         this.eventPublisher = requireNonNull(eventPublisher);
+        this.startNumbers = requireNonNull(startNumbers);
+        this.historyLoader = requireNonNull(historyLoader);
         final CollapsibleGridPane mainPane = UiUtils.createFramedArea(parent, "Modify participant properties");
         collapsibleContainer = mainPane.getCollapsibleContainer();
         collapsibleContainer.setExpanded(false);
@@ -182,14 +206,12 @@ public class ParticipantModification extends Group implements ParticipantProcess
                     // make sure that restoring a previous version won't assign a start number which is already in
                     // use by another person
                     Integer clickedVersionNumber = clickedVersion.getNumber();
-                    if (clickedVersionNumber != null) {
-                        Person usingNumber = usedStartNumbers.get(clickedVersionNumber);
-                        if (usingNumber != null && !usingNumber.equals(clickedVersion)) {
-                            MainApp.printInfo(String.format(
-                                    "Can't restore version because the start number %d is already in use by %s.",
-                                    clickedVersionNumber, usingNumber));
-                            return;
-                        }
+                    if (clickedVersionNumber != null
+                            && startNumbers.isTakenByOther(clickedVersionNumber, clickedVersion)) {
+                        MainApp.printInfo(String.format(
+                                "Can't restore version because the start number %d is already in use by %s.",
+                                clickedVersionNumber, startNumbers.findHolder(clickedVersionNumber).orElse(null)));
+                        return;
                     }
                     eventPublisher.publish(new ParticipantUpdateRequest(latestVersion, clickedVersion));
                     MainApp.printInfo(String.format("Restored older version of %s.", clickedVersion));
@@ -210,23 +232,42 @@ public class ParticipantModification extends Group implements ParticipantProcess
         Integer currentPersonNumber = toLoad.getNumber();
         proposalHint.setVisible(currentPersonNumber == null);
         
-        Integer proposedNumber;
-        if (currentPersonNumber == null) {
-            proposedNumber = lastStartNumber + 1;
-            while (usedStartNumbers.containsKey(proposedNumber)) proposedNumber++;
-        } else proposedNumber = currentPersonNumber;
+        StartNumberAllocator allocator = startNumbers.getAllocator();
+        if (proposal != null) allocator.release(proposal);
+        proposal = currentPersonNumber == null ? allocator.lease(toLoad.getCategory()).orElse(null) : null;
+        Integer proposedNumber = proposal != null ? (Integer) proposal.getNumber() : currentPersonNumber;
         
         Instant proposedStartTime = nowIfAbsent(toLoad.getStart());
         Instant proposedStopTime = nowIfAbsent(toLoad.getStop());
-        final String no = Integer.toString(proposedNumber);
-        startNumberField.setText(no);
+        startNumberField.setText(proposedNumber != null ? proposedNumber.toString() : "");
         startTimePane.setValue(proposedStartTime);
         if (proposedStopTime != null) stopTimePane.setValue(proposedStopTime);
         categoryComboBox.getSelectionModel().select(toLoad.getCategory());
         useStopDate.setSelected(false);
         stopTimePane.setDisable(proposedStopTime != null);
         isFinisherCheckBox.setSelected(toLoad.isFinisher());
-        List<Person> history = allStatesData.get(toLoad);
+        Object request = new Object();
+        historyRequest = request;
+        List<Person> history = historyCache.get(toLoad.getId());
+        if (history != null) showHistory(history);
+        else {
+            showHistory(Collections.singletonList(toLoad)); // until the history has been loaded
+            UiUtils.backgroundJob(() -> historyLoader.apply(toLoad), loaded -> {
+                if (historyRequest != request) return; // another participant or a newer state has been loaded
+                if (loaded.isEmpty()) return;
+                historyCache.put(toLoad.getId(), loaded);
+                showHistory(loaded);
+            });
+        }
+    }
+    
+    /**
+     * Displays the states of the current participant, selecting the latest one.
+     *
+     * @param history
+     *         all states of the participant, oldest first
+     */
+    private void showHistory(List<Person> history) {
         personHistoryView.setItems(FXCollections.observableArrayList(history));
         personHistoryView.refresh();
         personHistoryView.scrollTo(history.size() - 1);
@@ -247,17 +288,18 @@ public class ParticipantModification extends Group implements ParticipantProcess
     /** Sets the behavior or the store button, i.e propagate the changes of the selected {@code Person}. */
     private void prepareStoreButton() {
         storeButton.setOnAction(e -> {
-            lastStartNumber = Integer.parseInt(startNumberField.getText());
-            if (numberIsBlocked(lastStartNumber)) MainApp.printInfo(
-                    String.format("Start number %d is already in use.", lastStartNumber));
+            int startNumber = Integer.parseInt(startNumberField.getText());
+            if (numberIsBlocked(startNumber)) MainApp.printInfo(
+                    String.format("Start number %d is already in use.", startNumber));
             else if (!timesAreValid()) MainApp.printInfo("Start time must lie before the stop time.");
             else {
-                PersonImpl newPerson = new PersonImpl(currentPerson);
-                newPerson.setCategory(categoryComboBox.getValue());
-                newPerson.setNumber(lastStartNumber);
-                newPerson.setStart(startTimePane.getValue().orElse(null));
-                if (useStopDate.isSelected()) newPerson.setStop(stopTimePane.getValue().orElse(null));
-                newPerson.setFinished(isFinisherCheckBox.isSelected());
+                Instant stop = useStopDate.isSelected() ? stopTimePane.getValue().orElse(null)
+                                                        : currentPerson.getStop();
+                Person newPerson = ImmutablePerson.of(currentPerson)
+                                                  .withCategory(categoryComboBox.getValue())
+                                                  .withNumber(startNumber)
+                                                  .withStart(startTimePane.getValue().orElse(null))
+                                                  .withStop(stop, isFinisherCheckBox.isSelected());
                 eventPublisher.publish(new ParticipantUpdateRequest(currentPerson, newPerson));
             }
         });
@@ -282,8 +324,7 @@ public class ParticipantModification extends Group implements ParticipantProcess
      * @return {@code true} if the start number is already in use, otherwise {@code false}
      */
     private boolean numberIsBlocked(int number) {
-        Person existingPerson = usedStartNumbers.get(number);
-        return existingPerson != null && !Objects.equals(existingPerson, currentPerson);
+        return startNumbers.isTakenByOther(number, currentPerson);
     }
     
     private void prepareNumberField() {
@@ -317,16 +358,13 @@ public class ParticipantModification extends Group implements ParticipantProcess
         }
         participantsComboContent.clear();
         participantsComboContent.addAll(participants);
-        usedStartNumbers = Utils.getStartNumberToParticipantMap(participants);
         // Clear list first, otherwise a longer list than before causes an ArrayOutOfBoundsException for some reason
         participantsComboBox.setItems(FXCollections.emptyObservableList());
         participantsComboBox.setItems(FXCollections.observableArrayList(participants));
         SingleSelectionModel<Person> selectionModel = participantsComboBox.getSelectionModel();
         selectionModel.selectFirst();
         
-        allStatesData.clear();
-        for (Person participant : inputEvent.getInput())
-            allStatesData.computeIfAbsent(participant, x -> new ArrayList<>()).add(participant);
+        historyCache.clear();
         
         loadPerson(selectionModel.getSelectedItem());
         collapsibleContainer.setExpanded(true);
@@ -334,28 +372,41 @@ public class ParticipantModification extends Group implements ParticipantProcess
     
     @Override
     public void updatePerson(final ParticipantUpdateEvent updateEvent) {
+        if (applyUpdate(updateEvent)) loadPerson(currentPerson);
+    }
+    
+    /** Applies all updates before loading the current participant at most once. */
+    @Override
+    public void updatePersons(final ParticipantBatchUpdateEvent batchEvent) {
+        boolean currentPersonChanged = false;
+        for (ParticipantUpdateEvent updateEvent : batchEvent.getUpdates())
+            currentPersonChanged |= applyUpdate(updateEvent);
+        if (currentPersonChanged) loadPerson(currentPerson);
+    }
+    
+    /**
+     * Updates the internal state based on the given update, without adjusting the displayed participant.
+     *
+     * @param updateEvent
+     *         holds information about the participant (state) that was replaced and the replacement (state)
+     * @return {@code true} if the currently displayed participant has been updated and must be loaded again
+     */
+    private boolean applyUpdate(final ParticipantUpdateEvent updateEvent) {
         Person oldP = updateEvent.getOldValue();
         Person newP = updateEvent.getNewValue();
-        Person existingWithNumber = usedStartNumbers.get(newP.getNumber());
-        if (existingWithNumber != null && !existingWithNumber.equals(newP)) {
-            MainApp.printInfo(String.format("Starting number %d is in use by %s and %s. Please fix that immediately!",
-                    newP.getNumber(), newP, oldP));
-            return;
-        }
-        if (oldP != null) {
-            usedStartNumbers.remove(oldP.getNumber());
-            participantsComboContent.remove(oldP);
-        }
+        // the conflict has been reported by the start number index already
+        if (newP.getNumber() != null && startNumbers.isTakenByOther(newP.getNumber(), newP)) return false;
+        if (oldP != null) participantsComboContent.remove(oldP);
         
-        usedStartNumbers.put(newP.getNumber(), newP);
-        allStatesData.computeIfAbsent(newP, x -> new ArrayList<>()).add(newP);
+        historyCache.remove(newP.getId()); // will be read again when the participant is loaded next time
         
         participantsComboContent.add(newP);
         if (oldP == null) participantsComboBox.getItems().add(newP);
         if (currentPerson.equals(oldP)) {
             //participantsComboBox.getSelectionModel().select(currentPerson);
             currentPerson = newP;
-            loadPerson(currentPerson);
+            return true;
         }
+        return false;
     }
 }
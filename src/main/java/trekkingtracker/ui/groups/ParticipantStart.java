@@ -2,8 +2,9 @@ package trekkingtracker.ui.groups;
 
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.Pane;
+import trekkingtracker.data.ImmutablePerson;
 import trekkingtracker.data.Person;
-import trekkingtracker.data.PersonImpl;
+import trekkingtracker.event.participantevents.StartNumberIndex;
 import trekkingtracker.event.publishing.EventPublisher;
 import trekkingtracker.ui.utils.DateTimePane;
 
@@ -26,11 +27,14 @@ public class ParticipantStart extends AbstractGroupModification {
      *         this ui element will be put in
      * @param eventPublisher
      *         used to propagate events
+     * @param startNumbers
+     *         tells which participant holds which start number
      * @param zoneId
      *         used to display the stop time proposal
      */
-    public ParticipantStart(Pane parent, final EventPublisher eventPublisher, ZoneId zoneId) {
-        super(parent, eventPublisher, "Start");
+    public ParticipantStart(Pane parent, final EventPublisher eventPublisher, StartNumberIndex startNumbers,
+            ZoneId zoneId) {
+        super(parent, eventPublisher, startNumbers, "Start");
         this.zoneId = zoneId;
         preparePane(contentPane);
     }
@@ -53,8 +57,6 @@ public class ParticipantStart extends AbstractGroupModification {
     
     @Override
     protected Optional<Person> createUpdate(Person toUpdate) {
-        PersonImpl copy = new PersonImpl(toUpdate);
-        copy.setStart(startTimePane.getValue().orElse(null));
-        return Optional.of(copy);
+        return Optional.of(ImmutablePerson.of(toUpdate).withStart(startTimePane.getValue().orElse(null)));
     }
 }
@@ -4,8 +4,9 @@ import javafx.scene.control.CheckBox;
 import javafx.scene.control.ChoiceDialog;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.Pane;
+import trekkingtracker.data.ImmutablePerson;
 import trekkingtracker.data.Person;
-import trekkingtracker.data.PersonImpl;
+import trekkingtracker.event.participantevents.StartNumberIndex;
 import trekkingtracker.event.publishing.EventPublisher;
 import trekkingtracker.event.requestevents.ParticipantUpdateRequest;
 import trekkingtracker.ui.MainApp;
@@ -14,6 +15,7 @@ import trekkingtracker.ui.utils.DateTimePane;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -41,11 +43,14 @@ public class ParticipantStop extends AbstractGroupModification {
      *         this ui element will be put in
      * @param eventPublisher
      *         used to propagate events
+     * @param startNumbers
+     *         tells which participant holds which start number
      * @param zoneId
      *         used to display the stop time proposal
      */
-    public ParticipantStop(Pane parent, final EventPublisher eventPublisher, ZoneId zoneId) {
-        super(parent, eventPublisher, "Stop");
+    public ParticipantStop(Pane parent, final EventPublisher eventPublisher, StartNumberIndex startNumbers,
+            ZoneId zoneId) {
+        super(parent, eventPublisher, startNumbers, "Stop");
         this.zoneId = zoneId;
         confirmationTimeFormat = DateTimeFormatter.ofPattern("HH:mm:ss dd.MM.yyyy").withZone(zoneId);
         preparePane(contentPane);
@@ -98,22 +103,18 @@ public class ParticipantStop extends AbstractGroupModification {
         
         String remaining = notFound.stream().map(Object::toString).collect(Collectors.joining(","));
         numbersText.setText(remaining);
-        Instant stopTimeToUse = stopTime;
-        foundPersons.forEach(p -> {
-            PersonImpl copy = new PersonImpl(p);
-            copy.setStop(stopTimeToUse);
-            copy.setFinished(finishersCheckBox.isSelected());
-            eventPublisher.publish(new ParticipantUpdateRequest(p, copy));
-        });
+        List<ParticipantUpdateRequest> updates = new ArrayList<>(foundPersons.size());
+        for (Person p : foundPersons) {
+            updates.add(new ParticipantUpdateRequest(p, ImmutablePerson.of(p).withStop(stopTime,
+                    finishersCheckBox.isSelected())));
+        }
+        submit(updates);
         finishersCheckBox.setSelected(true);
     }
     
     @Override
     protected Optional<Person> createUpdate(Person toUpdate) {
-        PersonImpl copy = new PersonImpl(toUpdate);
         Instant stopTime = stopTimePane.getValue().orElse(null);
-        copy.setStop(stopTime);
-        copy.setFinished(finishersCheckBox.isSelected());
-        return Optional.of(copy);
+        return Optional.of(ImmutablePerson.of(toUpdate).withStop(stopTime, finishersCheckBox.isSelected()));
     }
 }
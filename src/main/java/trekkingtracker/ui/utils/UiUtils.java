@@ -1,5 +1,6 @@
 package trekkingtracker.ui.utils;
 
+import javafx.animation.AnimationTimer;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -141,6 +142,23 @@ public final class UiUtils {
         Platform.runLater(uiJob);
     }
     
+    /**
+     * Runs a UI job on the next JavaFX pulse, i.e. together with the next layout and rendering pass instead of as soon
+     * as possible. Jobs scheduled before the same pulse are run in the order they have been scheduled.
+     *
+     * @param uiJob
+     *         UI job to be run
+     */
+    public static void pulseJob(final Runnable uiJob) {
+        uiJob(() -> new AnimationTimer() {
+            @Override
+            public void handle(final long now) {
+                stop();
+                uiJob.run();
+            }
+        }.start());
+    }
+    
     /**
      * Runs a given non-UI job which returns a result. This result will be applied to a UI job afterwards. A typical
      * use case is a slow data fetch which will update the UI with the data once fetched. This way the UI won't
@@ -0,0 +1,181 @@
+package trekkingtracker.data;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the queries of the {@link ParticipantTable} with the stream pipelines over the {@code Person} instances
+ * the overview used before, for 100k simulated participants. Run it with {@code org.openjdk.jmh.Main
+ * ParticipantTableBenchmark} on the test class path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParticipantTableBenchmark {
+    /** The start of the simulated event */
+    private static final Instant EVENT_START = Instant.parse("2020-06-01T06:00:00Z");
+    /** The number of simulated participants */
+    @Param({"100000"})
+    public int participants;
+    /** The participants by their ids */
+    private Map<Integer, Person> byId;
+    /** The same participants column by column */
+    private ParticipantTable table;
+    
+    /** Creates the participants, about a third of them have arrived and another third is still on track. */
+    @Setup
+    public void setUp() {
+        byId = participants(participants, new Random(42));
+        table = new ParticipantTable();
+        table.replaceAll(byId.values());
+    }
+    
+    /**
+     * Creates participants with consecutive ids.
+     *
+     * @param count
+     *         the number of participants
+     * @param random
+     *         decides about the participants' progress
+     * @return the participants by their ids
+     */
+    static Map<Integer, Person> participants(int count, Random random) {
+        Map<Integer, Person> participants = new HashMap<>(count * 2);
+        for (int id = 1; id <= count; id++)
+            participants.put(id, participant(id, random));
+        return participants;
+    }
+    
+    /**
+     * Creates a participant which has registered, started or arrived.
+     *
+     * @param id
+     *         the id of the participant
+     * @param random
+     *         decides about the participant's progress
+     * @return the participant
+     */
+    static Person participant(int id, Random random) {
+        PersonImpl participant = new PersonImpl("Participant " + random.nextInt(1000), LocalDate.of(1950, 1, 1)
+                                                                                                 .plusDays(id));
+        participant.setId(id);
+        Person.Category[] categories = Person.Category.values();
+        participant.setCategory(categories[random.nextInt(categories.length)]);
+        participant.setNumber(id % 1000);
+        int progress = random.nextInt(3);
+        if (progress > 0) participant.setStart(EVENT_START.plusSeconds(60 * random.nextInt(240)));
+        if (progress > 1) {
+            participant.setStop(participant.getStart().plusSeconds(60 * (60 + random.nextInt(600))));
+            participant.setFinished(random.nextInt(10) > 0);
+        }
+        return participant;
+    }
+    
+    /**
+     * Ranks participants the way the overview did before.
+     *
+     * @param participants
+     *         the participants
+     * @param category
+     *         the {@code Category} to be ranked
+     * @return the ranking
+     */
+    static List<Person> streamRanking(Collection<Person> participants, Person.Category category) {
+        return participants.stream()
+                           .filter(p -> p.getCategory() == category)
+                           .sorted(PersonTripTimeComparator.INSTANCE)
+                           .collect(Collectors.toList());
+    }
+    
+    /**
+     * Lists started participants by their start time the way the overview did before.
+     *
+     * @param participants
+     *         the participants
+     * @param arrived
+     *         whether the participants who have arrived or the ones still on track shall be listed
+     * @return the participants, earliest start first
+     */
+    static List<Person> streamByStartTime(Collection<Person> participants, boolean arrived) {
+        return participants.stream()
+                           .filter(p -> p.getStart() != null)
+                           .filter(p -> arrived == (p.getStop() != null))
+                           .sorted(Comparator.comparing(Person::getStart))
+                           .collect(Collectors.toList());
+    }
+    
+    /**
+     * Ranks a {@code Category} with the stream pipeline.
+     *
+     * @return the ranking
+     */
+    @Benchmark
+    public List<Person> streamRanking() {
+        return streamRanking(byId.values(), Person.Category.DOGTREKKING);
+    }
+    
+    /**
+     * Ranks a {@code Category} with the table.
+     *
+     * @return the ranking
+     */
+    @Benchmark
+    public List<Person> tableRanking() {
+        return table.ranking(Person.Category.DOGTREKKING);
+    }
+    
+    /**
+     * Lists the participants still on track with the stream pipeline.
+     *
+     * @return the participants on track
+     */
+    @Benchmark
+    public List<Person> streamOnTrack() {
+        return streamByStartTime(byId.values(), false);
+    }
+    
+    /**
+     * Lists the participants still on track with the table.
+     *
+     * @return the participants on track
+     */
+    @Benchmark
+    public List<Person> tableOnTrack() {
+        return table.byStartTime(false);
+    }
+    
+    /**
+     * Counts the finishers of a {@code Category} and their fastest trip time with a stream pipeline.
+     *
+     * @return the fastest trip time plus the number of finishers, so nothing is optimized away
+     */
+    @Benchmark
+    public long streamSummary() {
+        LongSummaryStatistics finishers = byId.values()
+                                              .stream()
+                                              .filter(p -> p.getCategory() == Person.Category.DOGTREKKING)
+                                              .filter(Person::isFinisher)
+                                              .mapToLong(Person::getTripTimeMillis)
+                                              .summaryStatistics();
+        return finishers.getMin() + finishers.getCount();
+    }
+    
+    /**
+     * Counts the finishers of a {@code Category} and their fastest trip time with the table.
+     *
+     * @return the fastest trip time plus the number of finishers, so nothing is optimized away
+     */
+    @Benchmark
+    public long tableSummary() {
+        ParticipantTable.Summary summary = table.summarize(Person.Category.DOGTREKKING);
+        return summary.getFastestTripTimeMillis() + summary.getFinishers();
+    }
+}
@@ -0,0 +1,104 @@
+package trekkingtracker.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class ParticipantTableTest {
+    
+    @Test
+    void queriesMatchStreams() {
+        Map<Integer, Person> participants = ParticipantTableBenchmark.participants(2000, new Random(7));
+        ParticipantTable table = new ParticipantTable();
+        table.replaceAll(participants.values());
+        assertQueries(participants, table);
+        
+        // updates, renames and removals
+        Random random = new Random(11);
+        for (int i = 0; i < 500; i++) {
+            int id = 1 + random.nextInt(participants.size() + 100);
+            ImmutablePerson state = ImmutablePerson.of(ParticipantTableBenchmark.participant(id, random));
+            if (random.nextInt(10) == 0) state = state.withName("Renamed " + i);
+            participants.put(id, state);
+            table.update(state);
+        }
+        for (int id = 1; id < 100; id += 7) {
+            participants.remove(id);
+            table.remove(id);
+        }
+        assertQueries(participants, table);
+        
+        table.replaceAll(Collections.emptyList());
+        assertEquals(0, table.size());
+        assertEquals(Collections.emptyList(), table.ranking(Person.Category.TOUR));
+        assertFalse(table.findByStartNumber(1).isPresent());
+    }
+    
+    @Test
+    void summary() {
+        ParticipantTable table = new ParticipantTable();
+        Instant start = Instant.parse("2020-06-01T08:00:00Z");
+        ImmutablePerson registered = new ImmutablePerson("Jane", LocalDate.of(1980, 5, 17)).withId(3).withCategory(
+                Person.Category.TOUR);
+        table.update(registered);
+        table.update(registered.withName("Jim").withId(20).withStart(start).withStop(start.plusSeconds(3600), true));
+        table.update(registered.withName("Joe").withId(5).withStart(start).withStop(start.plusSeconds(60), false));
+        table.update(registered.withName("Jack").withId(6).withStart(start).withCategory(Person.Category.DOGHIKE));
+        ParticipantTable.Summary tour = table.summarize(Person.Category.TOUR);
+        assertEquals(3, tour.getParticipants());
+        assertEquals(2, tour.getStarted());
+        assertEquals(2, tour.getArrived());
+        assertEquals(1, tour.getFinishers());
+        assertEquals(3600_000, tour.getFastestTripTimeMillis());
+        assertEquals(Person.NO_TRIP_TIME, table.summarize(Person.Category.DOGHIKE).getFastestTripTimeMillis());
+    }
+    
+    /**
+     * Asserts the queries of the table return what the stream pipelines return for the same participants.
+     *
+     * @param participants
+     *         the participants by their ids
+     * @param table
+     *         holding the same participants
+     */
+    private static void assertQueries(Map<Integer, Person> participants, ParticipantTable table) {
+        assertEquals(participants.size(), table.size());
+        for (Person.Category category : Person.Category.values()) {
+            assertEquals(ParticipantTableBenchmark.streamRanking(participants.values(), category), table.ranking(
+                    category));
+            List<Person> ofCategory = participants.values().stream().filter(p -> p.getCategory() == category)
+                                                  .collect(Collectors.toList());
+            ParticipantTable.Summary summary = table.summarize(category);
+            assertEquals(ofCategory.size(), summary.getParticipants());
+            assertEquals(ofCategory.stream().filter(Person::isFinisher).count(), summary.getFinishers());
+            assertEquals(ofCategory.stream().mapToLong(Person::getTripTimeMillis).min().orElse(Person.NO_TRIP_TIME),
+                    summary.getFastestTripTimeMillis());
+        }
+        for (boolean arrived : new boolean[]{true, false})
+            assertEquals(startTimes(ParticipantTableBenchmark.streamByStartTime(participants.values(), arrived)),
+                    startTimes(table.byStartTime(arrived)));
+        for (int number = 0; number < 50; number++) {
+            int wanted = number;
+            assertEquals(participants.values().stream().filter(p -> p.getNumber() != null && p.getNumber() == wanted)
+                                     .min(Comparator.comparingInt(Person::getId)), table.findByStartNumber(number));
+        }
+    }
+    
+    /**
+     * Returns the start times of participants, which tell whether participants with the same start time are in the
+     * right order.
+     *
+     * @param participants
+     *         the participants
+     * @return their start times in the same order
+     */
+    private static List<Instant> startTimes(List<Person> participants) {
+        return participants.stream().map(Person::getStart).collect(Collectors.toList());
+    }
+}
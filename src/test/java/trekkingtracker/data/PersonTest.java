@@ -8,6 +8,10 @@ import java.util.List;
 import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class PersonTest {
     @Test
@@ -38,6 +42,74 @@ class PersonTest {
         assertEquals(expected, sorted);
     }
     
+    @Test
+    void immutablePerson() {
+        PersonImpl mutable = createPerson("P1", Person.Category.DOGHIKE);
+        mutable.setStart(createDate(2018, 1, 1, 2, 0));
+        ImmutablePerson started = ImmutablePerson.of(mutable);
+        assertSame(started, ImmutablePerson.of(started));
+        assertTrue(started.deepEquals(mutable));
+        assertEquals(mutable.hashCode(), started.hashCode());
+        assertEquals(Person.NO_TRIP_TIME, started.getTripTimeMillis());
+        
+        ImmutablePerson finished = started.withStop(plus(started.getStart(), 3), true).withNumber(7);
+        assertEquals(started, finished);
+        assertFalse(started.deepEquals(finished));
+        assertEquals(Duration.ofHours(3).toMillis(), finished.getTripTimeMillis());
+        assertEquals(Duration.ofHours(3), finished.getTripTime().orElse(null));
+        assertEquals(7, finished.getNumber());
+        
+        mutable.setStop(finished.getStop());
+        mutable.setFinished(true);
+        mutable.setNumber(7);
+        assertTrue(finished.deepEquals(mutable));
+        assertTrue(mutable.deepEquals(finished));
+        assertEquals(finished.getTripTimeMillis(), mutable.getTripTimeMillis());
+        assertEquals(Person.NO_TRIP_TIME, finished.withStart(null).getTripTimeMillis());
+    }
+    
+    @Test
+    void finisherWithoutStart() {
+        PersonImpl mutable = createPerson("P1", Person.Category.TOUR);
+        Instant start = createDate(2018, 1, 1, 2, 0);
+        Instant stop = plus(start, 3);
+        ImmutablePerson immutable = ImmutablePerson.of(mutable).withStop(stop, true);
+        mutable.setStop(stop);
+        mutable.setFinished(true);
+        assertFalse(immutable.isFinisher());
+        assertTrue(immutable.deepEquals(mutable));
+        
+        // the finisher flag takes effect once the start is set afterwards
+        immutable = immutable.withStart(start);
+        mutable.setStart(start);
+        assertTrue(immutable.isFinisher());
+        assertEquals(mutable.isFinisher(), immutable.isFinisher());
+        assertEquals(Duration.ofHours(3).toMillis(), immutable.getTripTimeMillis());
+        assertEquals(mutable.getTripTimeMillis(), immutable.getTripTimeMillis());
+        assertTrue(immutable.deepEquals(mutable));
+        assertTrue(mutable.deepEquals(immutable));
+    }
+    
+    @Test
+    void participantIds() {
+        PersonImpl jane = createPerson("Jane", Person.Category.TOUR);
+        ImmutablePerson identified = ImmutablePerson.of(jane).withId(42);
+        assertNotEquals(jane, identified);
+        assertNotEquals(identified, jane);
+        
+        ImmutablePerson renamed = identified.withName("Janet");
+        assertEquals(identified, renamed);
+        assertEquals(identified.hashCode(), renamed.hashCode());
+        assertFalse(identified.deepEquals(renamed));
+        
+        jane.setId(42);
+        assertEquals(jane, renamed);
+        assertEquals(renamed, jane);
+        assertEquals(jane.hashCode(), renamed.hashCode());
+        assertTrue(jane.deepEquals(identified));
+        assertNotEquals(identified, identified.withId(43));
+    }
+    
     private static PersonImpl createPerson(String name, Person.Category category) {
         PersonImpl toReturn = new PersonImpl(name, LocalDate.now());
         toReturn.setCategory(category);
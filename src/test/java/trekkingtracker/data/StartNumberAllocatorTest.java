@@ -0,0 +1,147 @@
+package trekkingtracker.data;
+
+import org.junit.jupiter.api.Test;
+import trekkingtracker.config.StartNumberConfig;
+import trekkingtracker.data.Person.Category;
+import trekkingtracker.data.StartNumberAllocator.Lease;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StartNumberAllocatorTest {
+    
+    @Test
+    void proposesLowestFreeNumbersOfTheRanges() {
+        StartNumberAllocator allocator = new StartNumberAllocator(config(1000, "TOUR:1-199, DOGTREKKING:200-399"));
+        allocator.reset(new int[]{1, 2, 4, 200, 400, 401});
+        assertEquals(3, allocator.lease(Category.TOUR).map(Lease::getNumber).orElse(-1));
+        assertEquals(5, allocator.lease(Category.TOUR).map(Lease::getNumber).orElse(-1));
+        assertEquals(201, allocator.lease(Category.DOGTREKKING).map(Lease::getNumber).orElse(-1));
+        // categories without a range skip the reserved ones
+        assertEquals(402, allocator.lease(Category.DOGHIKE).map(Lease::getNumber).orElse(-1));
+        
+        // numbers are found across many full words of the bit set
+        for (int number = 402; number <= 999; number++) allocator.take(number);
+        assertEquals(1000, allocator.lease(Category.UNKNOWN).map(Lease::getNumber).orElse(-1));
+        assertFalse(allocator.lease(Category.UNKNOWN).isPresent());
+        allocator.free(777);
+        assertEquals(777, allocator.lease(Category.BARRIER_FREE).map(Lease::getNumber).orElse(-1));
+        
+        // an exhausted range falls back to the unreserved numbers
+        for (int number = 202; number <= 399; number++) allocator.take(number);
+        allocator.free(500);
+        assertEquals(500, allocator.lease(Category.DOGTREKKING).map(Lease::getNumber).orElse(-1));
+    }
+    
+    @Test
+    void leasesEndWhenTakenReleasedOrExpired() {
+        MutableClock clock = new MutableClock();
+        StartNumberAllocator allocator = new StartNumberAllocator(config(100, ""), clock);
+        Lease first = allocator.lease(Category.TOUR).orElseThrow();
+        Lease second = allocator.lease(Category.TOUR).orElseThrow();
+        assertEquals(1, first.getNumber());
+        assertEquals(2, second.getNumber());
+        
+        // a taken number stays taken even if its lease is released afterwards
+        allocator.take(1);
+        allocator.release(first);
+        assertFalse(allocator.isFree(1));
+        // a released number is proposed again
+        allocator.release(second);
+        assertTrue(allocator.isFree(2));
+        Lease third = allocator.lease(Category.TOUR).orElseThrow();
+        assertEquals(2, third.getNumber());
+        
+        // a leased number isn't freed by participants or reloads, but when the lease expires
+        allocator.free(2);
+        allocator.reset(new int[]{1});
+        assertFalse(allocator.isFree(2));
+        clock.now = third.getExpiry();
+        assertTrue(allocator.isFree(2));
+        assertEquals(2, allocator.lease(Category.TOUR).map(Lease::getNumber).orElse(-1));
+    }
+    
+    @Test
+    void concurrentLeasesDontCollide() throws Exception {
+        StartNumberAllocator allocator = new StartNumberAllocator(config(5000, "TOUR:1-999"));
+        int desks = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(desks);
+        try {
+            List<Future<List<Integer>>> leased = new ArrayList<>();
+            for (int desk = 0; desk < desks; desk++) {
+                Category category = desk % 2 == 0 ? Category.TOUR : Category.DOGHIKE;
+                leased.add(executor.submit(() -> {
+                    List<Integer> numbers = new ArrayList<>();
+                    for (int i = 0; i < 400; i++) {
+                        int number = allocator.lease(category).orElseThrow().getNumber();
+                        if (i % 2 == 0) allocator.take(number);
+                        numbers.add(number);
+                    }
+                    return numbers;
+                }));
+            }
+            Set<Integer> distinct = new HashSet<>();
+            for (Future<List<Integer>> numbers : leased)
+                distinct.addAll(numbers.get(30, TimeUnit.SECONDS));
+            assertEquals(desks * 400, distinct.size());
+            for (int number : distinct) assertFalse(allocator.isFree(number));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    @Test
+    void rejectsInvalidRanges() {
+        for (String ranges : Arrays.asList("TOUR:1-50,DOGHIKE:50-60", "TOUR:1-101", "WALK:1-10", "TOUR:10",
+                "TOUR:1-10,TOUR:20-30"))
+            assertThrows(IllegalArgumentException.class, () -> new StartNumberAllocator(config(100, ranges)));
+    }
+    
+    /**
+     * Creates a configuration with leases of five minutes.
+     *
+     * @param maxNumber
+     *         the highest number
+     * @param reservedRanges
+     *         the reserved ranges
+     * @return the configuration
+     */
+    private static StartNumberConfig config(int maxNumber, String reservedRanges) {
+        StartNumberConfig config = new StartNumberConfig();
+        config.maxNumber = maxNumber;
+        config.reservedRanges = reservedRanges;
+        config.leaseSeconds = (int) Duration.ofMinutes(5).getSeconds();
+        return config;
+    }
+    
+    /** A {@code Clock} which is set by the tests */
+    private static final class MutableClock extends Clock {
+        /** The current time */
+        private volatile Instant now = Instant.parse("2019-06-01T08:00:00Z");
+        
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+        
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+        
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
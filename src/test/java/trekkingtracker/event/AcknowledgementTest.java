@@ -0,0 +1,42 @@
+package trekkingtracker.event;
+
+import org.junit.jupiter.api.Test;
+import trekkingtracker.event.publishing.Acknowledgement;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AcknowledgementTest {
+    
+    @Test
+    void claimedEventIsNotWithdrawn() throws Exception {
+        Acknowledgement<String> acknowledgement = new Acknowledgement<>();
+        CompletableFuture<String> outcome = acknowledgement.orTimeout(10, TimeUnit.MILLISECONDS);
+        assertTrue(acknowledgement.claim());
+        // neither the timeout nor a cancellation withdraw the event while it's processed
+        Thread.sleep(50);
+        assertFalse(acknowledgement.cancel(false));
+        assertFalse(outcome.isDone());
+        assertFalse(acknowledgement.isWithdrawn());
+        assertTrue(acknowledgement.complete("stored"));
+        assertEquals("stored", outcome.join());
+    }
+    
+    @Test
+    void withdrawnEventIsNotClaimed() {
+        Acknowledgement<String> timedOut = new Acknowledgement<>();
+        assertTrue(timedOut.completeExceptionally(new TimeoutException()));
+        assertTrue(timedOut.isWithdrawn());
+        assertFalse(timedOut.claim());
+        
+        Acknowledgement<String> cancelled = new Acknowledgement<>();
+        assertTrue(cancelled.cancel(false));
+        assertFalse(cancelled.claim());
+        assertTrue(cancelled.isCancelled());
+    }
+}
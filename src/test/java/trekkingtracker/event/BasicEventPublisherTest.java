@@ -0,0 +1,56 @@
+package trekkingtracker.event;
+
+import org.junit.jupiter.api.Test;
+import trekkingtracker.event.publishing.BasicEventPublisher;
+import trekkingtracker.event.publishing.EventHandler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BasicEventPublisherTest {
+    
+    @Test
+    void dispatchFollowsRegistrations() {
+        BasicEventPublisher toTest = new BasicEventPublisher();
+        List<String> received = new ArrayList<>();
+        EventHandler<Object> objectListener = o -> received.add("object " + o);
+        EventHandler<CharSequence> sequenceListener = s -> received.add("sequence " + s);
+        toTest.addEventListener(Object.class, objectListener);
+        toTest.addEventListener(CharSequence.class, sequenceListener);
+        toTest.addEventListener(Integer.class, i -> received.add("integer " + i));
+        
+        toTest.publish("a");
+        toTest.publish("b"); // served from the cache
+        assertEquals(Arrays.asList("object a", "sequence a", "object b", "sequence b"), received);
+        
+        received.clear();
+        toTest.addEventListener(String.class, s -> received.add("string " + s));
+        toTest.publish("c");
+        assertEquals(Arrays.asList("object c", "sequence c", "string c"), received);
+        
+        received.clear();
+        toTest.removeEventListener(CharSequence.class, sequenceListener);
+        toTest.publish("d");
+        toTest.publish(1);
+        assertEquals(Arrays.asList("object d", "string d", "object 1", "integer 1"), received);
+        
+        received.clear();
+        toTest.addEventListener(Number.class, objectListener::handle);
+        toTest.addEventListener(String.class, objectListener::handle);
+        toTest.removeEventListener(objectListener);
+        toTest.publish("e");
+        toTest.publish(2);
+        toTest.publish(new Object());
+        assertEquals(Arrays.asList("string e", "object e", "integer 2", "object 2"), received);
+        
+        received.clear();
+        toTest.addEventListener(Object.class, o -> {throw new IllegalStateException();});
+        toTest.addEventListener(Object.class, o -> received.add("after failure"));
+        toTest.publish(new Object());
+        assertEquals(Collections.singletonList("after failure"), received);
+    }
+}
@@ -0,0 +1,40 @@
+package trekkingtracker.event;
+
+import org.junit.jupiter.api.Test;
+import trekkingtracker.event.publishing.DispatchTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DispatchTableTest {
+    
+    @Test
+    void routesByEventClass() {
+        DispatchTable<List<String>, Object> table = DispatchTable.<List<String>, Object>builder()
+                .on(Integer.class, (handled, number) -> handled.add("integer " + number))
+                .on(Number.class, (handled, number) -> handled.add("number " + number))
+                .on(CharSequence.class, (handled, text) -> handled.add("text " + text))
+                .build();
+        List<String> handled = new ArrayList<>();
+        assertTrue(table.dispatch(handled, 1));
+        assertTrue(table.dispatch(handled, 2L));
+        assertTrue(table.dispatch(handled, new StringBuilder("a")));
+        assertTrue(table.dispatch(handled, "b"));
+        assertFalse(table.dispatch(handled, new Object()));
+        assertTrue(table.dispatch(handled, 3L)); // resolved before
+        
+        assertEquals(Arrays.asList("integer 1", "number 2", "text a", "text b", "number 3"), handled);
+    }
+    
+    @Test
+    void rejectsTwoHandlersForTheSameClass() {
+        DispatchTable.Builder<Object, Object> builder = DispatchTable.builder().on(String.class, (r, e) -> {});
+        assertThrows(IllegalArgumentException.class, () -> builder.on(String.class, (r, e) -> {}));
+    }
+}
@@ -0,0 +1,222 @@
+package trekkingtracker.event;
+
+import org.junit.jupiter.api.Test;
+import trekkingtracker.data.PersonImpl;
+import trekkingtracker.event.participantevents.ParticipantBatchUpdateEvent;
+import trekkingtracker.event.participantevents.ParticipantUpdateEvent;
+import trekkingtracker.event.publishing.DispatchOrdering;
+import trekkingtracker.event.publishing.EventPriority;
+import trekkingtracker.event.publishing.KeyedEvent;
+import trekkingtracker.event.publishing.PrioritizedEvent;
+import trekkingtracker.event.publishing.ThreadAwareEventPublisher;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventDispatcherTest {
+    
+    @Test
+    void keepsOrderPerKeyAndAroundBarriers() throws Exception {
+        List<Integer> barriers = Collections.synchronizedList(new ArrayList<>());
+        List<List<Integer>> handledPerKey = new ArrayList<>();
+        for (int key = 0; key < 10; key++)
+            handledPerKey.add(Collections.synchronizedList(new ArrayList<>()));
+        List<Integer> uiHandled = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch finished = new CountDownLatch(1);
+        try (ThreadAwareEventPublisher publisher = new ThreadAwareEventPublisher(DispatchOrdering.PARTICIPANT, 4,
+                Runnable::run, events -> null)) {
+            publisher.addEventListenerNonUi(Update.class, update -> {
+                // a barrier must not overtake the update or be overtaken by it
+                assertEquals(update.sequence / 100, barriers.size());
+                handledPerKey.get(update.key).add(update.sequence);
+            });
+            publisher.addEventListenerUi(Update.class, update -> {
+                assertTrue(handledPerKey.get(update.key).contains(update.sequence));
+                uiHandled.add(update.sequence);
+            });
+            publisher.addEventListenerNonUi(String.class, barrier -> {
+                int handledBefore = handledPerKey.stream().mapToInt(List::size).sum();
+                assertEquals((barriers.size() + 1) * 100, handledBefore);
+                barriers.add(handledBefore);
+            });
+            publisher.addEventListenerUi(Integer.class, end -> finished.countDown());
+            
+            for (int sequence = 0; sequence < 300; sequence++) {
+                publisher.publish(new Update(sequence % 10, sequence));
+                if (sequence % 100 == 99) publisher.publish("barrier");
+            }
+            publisher.publish(0);
+            assertTrue(finished.await(10, TimeUnit.SECONDS));
+            
+            assertEquals(3, barriers.size());
+            for (List<Integer> handled : handledPerKey) {
+                assertEquals(30, handled.size());
+                for (int i = 1; i < handled.size(); i++)
+                    assertTrue(handled.get(i - 1) < handled.get(i));
+            }
+            assertEquals(300, uiHandled.size());
+            assertEquals(304, publisher.getStatistics().getDispatchCount());
+            assertEquals(0, publisher.getStatistics().getQueueDepth());
+            assertTrue(publisher.getStatistics().getMaxQueueDepth() > 0);
+        }
+    }
+    
+    @Test
+    void globalOrderingKeepsPublishingOrder() throws Exception {
+        List<Integer> handled = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch finished = new CountDownLatch(1);
+        try (ThreadAwareEventPublisher publisher = new ThreadAwareEventPublisher(DispatchOrdering.GLOBAL, 4,
+                Runnable::run, events -> null)) {
+            publisher.addEventListenerNonUi(Update.class, update -> handled.add(update.sequence));
+            publisher.addEventListenerUi(String.class, end -> finished.countDown());
+            for (int sequence = 0; sequence < 100; sequence++)
+                publisher.publish(new Update(sequence % 7, sequence));
+            publisher.publish("end");
+            assertTrue(finished.await(10, TimeUnit.SECONDS));
+            
+            assertEquals(100, handled.size());
+            for (int i = 0; i < handled.size(); i++)
+                assertEquals(i, handled.get(i));
+        }
+    }
+    
+    @Test
+    void coalescesUiEventsPerFlush() {
+        List<Runnable> flushes = Collections.synchronizedList(new ArrayList<>());
+        List<Object> delivered = new ArrayList<>();
+        PersonImpl[] first = new PersonImpl[3];
+        for (int i = 0; i < first.length; i++) {
+            first[i] = new PersonImpl("First", LocalDate.of(1980, 1, 1));
+            first[i].setNumber(i);
+        }
+        PersonImpl second = new PersonImpl("Second", LocalDate.of(1990, 1, 1));
+        ThreadAwareEventPublisher publisher = new ThreadAwareEventPublisher(DispatchOrdering.PARTICIPANT, 2,
+                flushes::add, ParticipantBatchUpdateEvent::combine);
+        publisher.addEventListenerUi(Object.class, delivered::add);
+        publisher.publish(new ParticipantUpdateEvent(null, first[0]));
+        publisher.publish(new ParticipantUpdateEvent(first[0], first[1]));
+        publisher.publish(new ParticipantUpdateEvent(null, second));
+        publisher.publish(new ParticipantUpdateEvent(first[1], first[2]));
+        publisher.publish("input");
+        publisher.close(); // waits for the background listeners
+        
+        assertEquals(1, flushes.size());
+        flushes.get(0).run();
+        assertEquals(2, delivered.size());
+        List<ParticipantUpdateEvent> updates = ((ParticipantBatchUpdateEvent) delivered.get(0)).getUpdates();
+        assertEquals(2, updates.size());
+        for (ParticipantUpdateEvent update : updates) {
+            assertEquals(null, update.getOldValue());
+            if (update.getNewValue().equals(first[0])) assertEquals(2, update.getNewValue().getNumber());
+            else assertEquals(second, update.getNewValue());
+        }
+        assertEquals("input", delivered.get(1));
+        assertEquals(5, publisher.getStatistics().getDispatchCount());
+    }
+    
+    @Test
+    void criticalEventsOvertakeUnrelatedOnes() throws Exception {
+        List<Object> handled = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+        try (ThreadAwareEventPublisher publisher = new ThreadAwareEventPublisher(DispatchOrdering.PARTICIPANT, 1,
+                Runnable::run, events -> null)) {
+            publisher.addEventListenerNonUi(Update.class, update -> {
+                if (update.sequence == 0) {
+                    blocked.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                handled.add(update.sequence);
+            });
+            publisher.addEventListenerNonUi(String.class, handled::add);
+            publisher.addEventListenerUi(Integer.class, end -> finished.countDown());
+            
+            publisher.publish(new Update(0, 0));
+            assertTrue(blocked.await(10, TimeUnit.SECONDS));
+            publisher.publish(new Update(1, 1));
+            publisher.publish(new Update(2, 2));
+            publisher.publish(new Update(3, 3, EventPriority.CRITICAL));
+            publisher.publish(new Update(1, 4, EventPriority.CRITICAL)); // must not overtake the update of key 1
+            publisher.publish("barrier");
+            publisher.publish(new Update(4, 5, EventPriority.CRITICAL)); // must not overtake the barrier
+            publisher.publish(0);
+            release.countDown();
+            assertTrue(finished.await(10, TimeUnit.SECONDS));
+            
+            assertEquals(Arrays.asList(0, 3, 1, 2, 4, "barrier", 5), handled);
+        }
+    }
+    
+    @Test
+    void backgroundUiListenersReceiveMergedEvents() throws Exception {
+        List<Object> delivered = Collections.synchronizedList(new ArrayList<>());
+        List<Object> deliveredInBackground = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch finished = new CountDownLatch(1);
+        PersonImpl[] states = new PersonImpl[3];
+        for (int i = 0; i < states.length; i++) {
+            states[i] = new PersonImpl("Person", LocalDate.of(1980, 1, 1));
+            states[i].setNumber(i);
+        }
+        try (ThreadAwareEventPublisher publisher = new ThreadAwareEventPublisher(DispatchOrdering.PARTICIPANT, 2,
+                Runnable::run, events -> null, 500)) {
+            publisher.addEventListenerUi(ParticipantUpdateEvent.class, delivered::add);
+            publisher.addEventListenerUi(ParticipantUpdateEvent.class, update -> {
+                deliveredInBackground.add(update);
+                finished.countDown();
+            }, EventPriority.BACKGROUND);
+            publisher.publish(new ParticipantUpdateEvent(null, states[0]));
+            publisher.publish(new ParticipantUpdateEvent(states[0], states[1]));
+            publisher.publish(new ParticipantUpdateEvent(states[1], states[2]));
+            assertTrue(finished.await(10, TimeUnit.SECONDS));
+            
+            assertEquals(3, delivered.size());
+            assertEquals(1, deliveredInBackground.size());
+            ParticipantUpdateEvent merged = (ParticipantUpdateEvent) deliveredInBackground.get(0);
+            assertEquals(null, merged.getOldValue());
+            assertEquals(2, merged.getNewValue().getNumber());
+        }
+    }
+    
+    /** Test event relating to a single key */
+    private static final class Update implements KeyedEvent, PrioritizedEvent {
+        /** The key the event relates to */
+        private final int key;
+        /** The number of events published before */
+        private final int sequence;
+        /** The priority of the event */
+        private final EventPriority priority;
+        
+        private Update(int key, int sequence) {
+            this(key, sequence, EventPriority.NORMAL);
+        }
+        
+        private Update(int key, int sequence, EventPriority priority) {
+            this.key = key;
+            this.sequence = sequence;
+            this.priority = priority;
+        }
+        
+        @Override
+        public Object getDispatchKey() {
+            return key;
+        }
+        
+        @Override
+        public EventPriority getPriority() {
+            return priority;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package trekkingtracker.event;
+
+import org.openjdk.jmh.annotations.*;
+import trekkingtracker.data.PersonImpl;
+import trekkingtracker.event.participantevents.ParticipantEvent;
+import trekkingtracker.event.participantevents.ParticipantInputChangedEvent;
+import trekkingtracker.event.participantevents.ParticipantUpdateEvent;
+import trekkingtracker.event.publishing.BasicEventPublisher;
+import trekkingtracker.event.publishing.EventHandler;
+import trekkingtracker.event.publishing.EventPublisher;
+import trekkingtracker.event.requestevents.ParticipantEventRequest;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares publishing with the cached dispatch table of the {@link BasicEventPublisher} to resolving the listeners by
+ * scanning all registrations on each event, for a growing number of listeners. Run it with {@code
+ * org.openjdk.jmh.Main EventPublisherBenchmark} on the test class path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventPublisherBenchmark {
+    /** The event types the listeners are registered for, in turns */
+    private static final Class<?>[] EVENT_TYPES = {Object.class, ParticipantEvent.class, ParticipantUpdateEvent.class,
+            ParticipantInputChangedEvent.class, ParticipantEventRequest.class};
+    /** The number of registered listeners */
+    @Param({"5", "50", "500"})
+    public int listeners;
+    /** Resolves the listeners once per event class */
+    private EventPublisher cached;
+    /** Resolves the listeners on each event */
+    private EventPublisher scanning;
+    /** The event to be published, three of five listeners match it */
+    private ParticipantUpdateEvent event;
+    /** Counts the handled events, so the handlers are not optimized away */
+    private long handled = 0;
+    
+    /** Registers the listeners at both publishers. */
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        cached = new BasicEventPublisher();
+        scanning = new ScanningEventPublisher();
+        for (int i = 0; i < listeners; i++) {
+            Class<Object> eventType = (Class<Object>) EVENT_TYPES[i % EVENT_TYPES.length];
+            EventHandler<Object> handler = e -> handled++;
+            cached.addEventListener(eventType, handler);
+            scanning.addEventListener(eventType, handler);
+        }
+        event = new ParticipantUpdateEvent(null, new PersonImpl("Jane Doe", LocalDate.of(1985, 3, 12)));
+    }
+    
+    /**
+     * Publishes with the cached dispatch table.
+     *
+     * @return the number of handled events
+     */
+    @Benchmark
+    public long cachedPublish() {
+        cached.publish(event);
+        return handled;
+    }
+    
+    /**
+     * Publishes with a scan of all registrations.
+     *
+     * @return the number of handled events
+     */
+    @Benchmark
+    public long scanningPublish() {
+        scanning.publish(event);
+        return handled;
+    }
+    
+    /** The former {@code BasicEventPublisher}, scanning all registrations on each event. */
+    private static final class ScanningEventPublisher implements EventPublisher {
+        /** Holds all listeners */
+        private final Map<Class<?>, Collection<EventHandler<?>>> eventListeners = new ConcurrentHashMap<>();
+        
+        @Override
+        public <T> void addEventListener(Class<T> eventType, EventHandler<T> toAdd) {
+            eventListeners.computeIfAbsent(eventType, x -> new ConcurrentLinkedQueue<>()).add(toAdd);
+        }
+        
+        @Override
+        public void removeEventListener(EventHandler<?> toRemove) {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public <T> void removeEventListener(Class<T> eventType, EventHandler<T> toRemove) {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> void publish(T event) {
+            Collection<EventHandler<T>> listeners = eventListeners.entrySet()
+                                                                  .stream()
+                                                                  .filter(e -> e.getKey()
+                                                                                .isAssignableFrom(event.getClass()))
+                                                                  .flatMap(e -> e.getValue().stream())
+                                                                  .map(l -> (EventHandler<T>) l)
+                                                                  .collect(Collectors.toList());
+            listeners.forEach(l -> { try {l.handle(event);} catch (Exception e) {/*no op*/} });
+        }
+    }
+}
@@ -2,7 +2,9 @@ package trekkingtracker.event;
 
 import javafx.embed.swing.JFXPanel;
 import org.junit.jupiter.api.Test;
+import trekkingtracker.event.publishing.RingBufferEventPublisher;
 import trekkingtracker.event.publishing.ThreadAwareEventPublisher;
+import trekkingtracker.event.publishing.UiAwareEventPublisher;
 
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -12,7 +14,19 @@ import static org.junit.jupiter.api.Assertions.*;
 class EventPublisherTest {
     @Test
     void eventPublisher() throws Exception {
-        ThreadAwareEventPublisher toTest = new ThreadAwareEventPublisher();
+        try (ThreadAwareEventPublisher toTest = new ThreadAwareEventPublisher()) {
+            assertUiAfterNonUi(toTest);
+        }
+    }
+    
+    @Test
+    void ringBufferEventPublisher() throws Exception {
+        try (RingBufferEventPublisher toTest = new RingBufferEventPublisher()) {
+            assertUiAfterNonUi(toTest);
+        }
+    }
+    
+    private static void assertUiAfterNonUi(UiAwareEventPublisher toTest) throws InterruptedException {
         AtomicBoolean notTriggered = new AtomicBoolean();
         AtomicInteger listenerResult = new AtomicInteger();
         AtomicBoolean objectListenerTriggered = new AtomicBoolean();
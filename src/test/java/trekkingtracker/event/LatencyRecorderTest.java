@@ -0,0 +1,69 @@
+package trekkingtracker.event;
+
+import org.junit.jupiter.api.Test;
+import trekkingtracker.event.tracing.LatencyHistogram;
+import trekkingtracker.event.tracing.LatencyRecorder;
+import trekkingtracker.event.tracing.RequestTrace;
+import trekkingtracker.event.tracing.TraceStage;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyRecorderTest {
+    
+    @Test
+    void histogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileMillis(99));
+        for (int millis = 1; millis <= 100; millis++)
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(millis));
+        histogram.record(-1);
+        
+        assertEquals(101, histogram.getCount());
+        assertEquals(5050d / 101, histogram.getMeanMillis(), 0.001);
+        assertEquals(100, histogram.getMaxMillis(), 0.001);
+        for (double percentile : new double[]{50, 90, 99}) {
+            double expected = percentile * 101 / 100 - 1;
+            double actual = histogram.getPercentileMillis(percentile);
+            assertTrue(actual >= expected && actual <= expected * 1.125 + 1, percentile + ": " + actual);
+        }
+        assertEquals(100, histogram.getPercentileMillis(100), 0.001);
+    }
+    
+    @Test
+    void recordsAndExportsPerStage() throws Exception {
+        LatencyRecorder recorder = new LatencyRecorder();
+        RequestTrace first = RequestTrace.start();
+        RequestTrace second = RequestTrace.start();
+        assertTrue(second.getId() > first.getId());
+        recorder.record(first, TraceStage.VALIDATED);
+        recorder.record(second, TraceStage.VALIDATED);
+        recorder.record(first, TraceStage.APPLIED, "Overview");
+        recorder.record(null, TraceStage.PERSISTED);
+        
+        SortedMap<String, LatencyHistogram> histograms = recorder.getHistograms();
+        assertEquals(2, histograms.size());
+        assertEquals(2, histograms.get(TraceStage.VALIDATED.getLabel()).getCount());
+        
+        Path file = Files.createTempFile("latencies", ".csv");
+        try {
+            recorder.export(file);
+            List<String> lines = Files.readAllLines(file);
+            assertEquals(3, lines.size());
+            assertEquals("stage,count,mean_ms,p50_ms,p90_ms,p99_ms,p99_9_ms,max_ms", lines.get(0));
+            for (String line : lines.subList(1, lines.size()))
+                assertEquals(8, line.split(",").length);
+            
+            recorder.clear();
+            assertTrue(recorder.getHistograms().isEmpty());
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
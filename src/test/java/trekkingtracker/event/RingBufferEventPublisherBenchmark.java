@@ -0,0 +1,93 @@
+package trekkingtracker.event;
+
+import org.openjdk.jmh.annotations.*;
+import trekkingtracker.data.PersonImpl;
+import trekkingtracker.event.participantevents.ParticipantEvent;
+import trekkingtracker.event.participantevents.ParticipantUpdateEvent;
+import trekkingtracker.event.publishing.DispatchOrdering;
+import trekkingtracker.event.publishing.RingBufferEventPublisher;
+import trekkingtracker.event.publishing.ThreadAwareEventPublisher;
+import trekkingtracker.event.publishing.UiAwareEventPublisher;
+import trekkingtracker.event.publishing.WaitStrategy;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares the {@link RingBufferEventPublisher} with each wait strategy to the {@link ThreadAwareEventPublisher}:
+ * the throughput of bursts of events and the latency of a single event until its ui listener has run. The ui
+ * listeners are run directly instead of in the JavaFX thread. Run it with {@code org.openjdk.jmh.Main
+ * RingBufferEventPublisherBenchmark} on the test class path.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RingBufferEventPublisherBenchmark {
+    /** The number of events published at once by {@link #throughput()} */
+    private static final int BURST_SIZE = 1000;
+    /** The publisher to be measured, {@code ring-} followed by a {@link WaitStrategy} or {@code thread-aware} */
+    @Param({"ring-blocking", "ring-yielding", "ring-busy-spin", "thread-aware"})
+    public String publisher;
+    /** The publisher to be measured */
+    private UiAwareEventPublisher toTest;
+    /** The event to be published */
+    private ParticipantUpdateEvent event;
+    /** The number of events published so far */
+    private long published = 0;
+    /** The number of events whose ui listener has run so far */
+    private final AtomicLong handled = new AtomicLong();
+    
+    /** Creates the publisher and registers a background and an ui listener. */
+    @Setup
+    public void setUp() {
+        if (publisher.startsWith("ring-")) toTest = new RingBufferEventPublisher(1024,
+                WaitStrategy.parse(publisher.substring("ring-".length())), Runnable::run, () -> false);
+        else toTest = new ThreadAwareEventPublisher(DispatchOrdering.PARTICIPANT, 4, Runnable::run, events -> null);
+        toTest.addEventListenerNonUi(ParticipantEvent.class, e -> {});
+        toTest.addEventListenerUi(ParticipantEvent.class, e -> handled.incrementAndGet());
+        event = new ParticipantUpdateEvent(null, new PersonImpl("Jane Doe", LocalDate.of(1985, 3, 12)));
+    }
+    
+    /**
+     * Stops the threads of the publisher.
+     *
+     * @throws IOException
+     *         if closing fails
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        ((Closeable) toTest).close();
+    }
+    
+    /** Publishes a burst of events and waits until all of them have been handled. */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @OperationsPerInvocation(BURST_SIZE)
+    public void throughput() {
+        for (int i = 0; i < BURST_SIZE; i++)
+            toTest.publish(event);
+        published += BURST_SIZE;
+        awaitHandled();
+    }
+    
+    /** Publishes a single event and waits until it has been handled. */
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void latency() {
+        toTest.publish(event);
+        published++;
+        awaitHandled();
+    }
+    
+    /** Waits until the ui listener has run for all published events. */
+    private void awaitHandled() {
+        while (handled.get() < published)
+            Thread.yield();
+    }
+}
@@ -0,0 +1,88 @@
+package trekkingtracker.event;
+
+import org.junit.jupiter.api.Test;
+import trekkingtracker.event.publishing.RingBufferEventPublisher;
+import trekkingtracker.event.publishing.WaitStrategy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RingBufferEventPublisherTest {
+    
+    @Test
+    void dispatchesInOrderWithEachWaitStrategy() throws Exception {
+        for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+            List<Integer> nonUiHandled = Collections.synchronizedList(new ArrayList<>());
+            List<Integer> uiHandled = Collections.synchronizedList(new ArrayList<>());
+            CountDownLatch finished = new CountDownLatch(1);
+            // the ring is much smaller than the number of events, so the slots are reused several times
+            try (RingBufferEventPublisher toTest = new RingBufferEventPublisher(8, waitStrategy, Runnable::run,
+                    () -> false)) {
+                toTest.addEventListenerNonUi(Integer.class, nonUiHandled::add);
+                toTest.addEventListenerUi(Integer.class, i -> {
+                    assertTrue(nonUiHandled.contains(i));
+                    uiHandled.add(i);
+                    if (i == 999) finished.countDown();
+                });
+                for (int i = 0; i < 1000; i++)
+                    toTest.publish(i);
+                assertTrue(finished.await(10, TimeUnit.SECONDS), waitStrategy.name());
+            }
+            assertEquals(1000, uiHandled.size());
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(i, nonUiHandled.get(i));
+                assertEquals(i, uiHandled.get(i));
+            }
+        }
+    }
+    
+    @Test
+    void listenersPublishIntoFullRing() throws Exception {
+        List<Object> handled = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch finished = new CountDownLatch(1);
+        try (RingBufferEventPublisher toTest = new RingBufferEventPublisher(2, WaitStrategy.BLOCKING, Runnable::run,
+                () -> false)) {
+            toTest.addEventListenerNonUi(String.class, s -> {
+                // more follow-up events than slots, must not wait for the own thread
+                for (int i = 0; i < 5; i++)
+                    toTest.publish(i);
+            });
+            toTest.addEventListenerUi(Object.class, e -> {
+                handled.add(e);
+                if (handled.size() == 6) finished.countDown();
+            });
+            toTest.publish("request");
+            assertTrue(finished.await(10, TimeUnit.SECONDS));
+        }
+        assertEquals(List.of("request", 0, 1, 2, 3, 4), handled);
+    }
+    
+    @Test
+    void uiThreadPublishesIntoFullRingBeforeFirstBatch() {
+        List<Object> handled = Collections.synchronizedList(new ArrayList<>());
+        Queue<Runnable> uiJobs = new ConcurrentLinkedQueue<>();
+        Thread ui = Thread.currentThread();
+        try (RingBufferEventPublisher toTest = new RingBufferEventPublisher(2, WaitStrategy.BLOCKING, uiJobs::add,
+                () -> Thread.currentThread() == ui)) {
+            toTest.addEventListenerUi(Integer.class, handled::add);
+            // no ui batch has run yet, the ui thread must not wait for itself
+            for (int i = 0; i < 5; i++)
+                toTest.publish(i);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (handled.size() < 5 && System.nanoTime() < deadline) {
+                Runnable job = uiJobs.poll();
+                if (job != null) job.run();
+                else Thread.yield();
+            }
+        }
+        assertEquals(List.of(0, 1, 2, 3, 4), handled);
+    }
+}
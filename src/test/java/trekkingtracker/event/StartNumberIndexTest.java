@@ -0,0 +1,137 @@
+package trekkingtracker.event;
+
+import org.junit.jupiter.api.Test;
+import trekkingtracker.config.StartNumberConfig;
+import trekkingtracker.data.ImmutablePerson;
+import trekkingtracker.data.Person;
+import trekkingtracker.data.StartNumberAllocator;
+import trekkingtracker.event.participantevents.ParticipantBatchUpdateEvent;
+import trekkingtracker.event.participantevents.ParticipantInputChangedEvent;
+import trekkingtracker.event.participantevents.ParticipantUpdateEvent;
+import trekkingtracker.event.participantevents.StartNumberIndex;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StartNumberIndexTest {
+    
+    @Test
+    void holdersAndConflicts() {
+        ImmutablePerson jane = participant(1, "Jane", 7);
+        ImmutablePerson jim = participant(2, "Jim", 7);
+        ImmutablePerson joe = participant(3, "Joe", null);
+        StartNumberIndex index = index();
+        index.handle(new ParticipantInputChangedEvent(Arrays.asList(jane, jim, joe)));
+        assertEquals(Optional.of(jane), index.findHolder(7));
+        assertTrue(index.isTakenByOther(7, jim));
+        assertFalse(index.isTakenByOther(7, jane));
+        assertEquals(Collections.singletonMap(7, Arrays.asList(jane, jim)), index.getConflicts());
+        
+        // the claimant takes over once the holder moves on
+        ImmutablePerson janeRenumbered = jane.withNumber(8);
+        index.handle(new ParticipantUpdateEvent(jane, janeRenumbered));
+        assertEquals(Optional.of(jim), index.findHolder(7));
+        assertEquals(Optional.of(janeRenumbered), index.findHolder(8));
+        assertTrue(index.getConflicts().isEmpty());
+        
+        // a renamed participant keeps its number, a new one is added
+        ImmutablePerson joeNumbered = joe.withNumber(9).withName("Joseph");
+        ImmutablePerson jack = participant(4, "Jack", 8);
+        index.handle(new ParticipantBatchUpdateEvent(Arrays.asList(new ParticipantUpdateEvent(joe, joeNumbered),
+                new ParticipantUpdateEvent(jim, jim.withName("James")), new ParticipantUpdateEvent(null, jack))));
+        assertEquals("James", index.findHolder(7).map(Person::getName).orElse(null));
+        assertEquals(Optional.of(joeNumbered), index.findHolder(9));
+        assertEquals(Collections.singletonMap(8, Arrays.asList(janeRenumbered, jack)), index.getConflicts());
+        
+        // the claimant gives up the number
+        index.handle(new ParticipantUpdateEvent(jack, jack.withNumber(10)));
+        assertEquals(Optional.of(janeRenumbered), index.findHolder(8));
+        assertTrue(index.getConflicts().isEmpty());
+        
+        // the allocator won't propose held numbers, but the released ones
+        StartNumberAllocator allocator = index.getAllocator();
+        assertFalse(allocator.isFree(7) || allocator.isFree(8) || allocator.isFree(9) || allocator.isFree(10));
+        assertTrue(allocator.isFree(1));
+        index.handle(new ParticipantUpdateEvent(jack.withNumber(10), null));
+        assertTrue(allocator.isFree(10));
+        
+        index.handle(new ParticipantInputChangedEvent(Collections.singletonList(jack)));
+        assertFalse(index.findHolder(7).isPresent());
+        assertEquals(Optional.of(jack), index.findHolder(8));
+    }
+    
+    @Test
+    void growsAndReusesReleasedNumbers() throws Exception {
+        StartNumberIndex index = index();
+        index.handle(new ParticipantInputChangedEvent(Collections.emptyList()));
+        AtomicBoolean done = new AtomicBoolean(false);
+        AtomicReference<String> mismatch = new AtomicReference<>();
+        // looks up concurrently, a number must never be reported for a participant not holding it
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                for (int number = -50; number < 5000; number += 7) {
+                    Person holder = index.findHolder(number).orElse(null);
+                    if (holder != null && holder.getNumber() != number) mismatch.set(holder + " for " + number);
+                }
+            }
+        });
+        reader.start();
+        List<ImmutablePerson> participants = new ArrayList<>();
+        for (int id = 1; id <= 3000; id++) {
+            ImmutablePerson participant = participant(id, "P" + id, id - 50);
+            participants.add(participant);
+            index.handle(new ParticipantUpdateEvent(null, participant));
+        }
+        // move every participant to another number twice, leaving many released slots behind
+        for (int round = 1; round <= 2; round++) {
+            for (int i = 0; i < participants.size(); i++) {
+                ImmutablePerson moved = participants.get(i).withNumber(participants.get(i).getNumber() + 3000);
+                index.handle(new ParticipantUpdateEvent(participants.get(i), moved));
+                participants.set(i, moved);
+            }
+        }
+        done.set(true);
+        reader.join();
+        assertNull(mismatch.get());
+        assertFalse(index.findHolder(-50).isPresent());
+        assertFalse(index.findHolder(2950).isPresent());
+        for (ImmutablePerson participant : participants)
+            assertEquals(Optional.of(participant), index.findHolder(participant.getNumber()));
+        assertTrue(index.getConflicts().isEmpty());
+    }
+    
+    /**
+     * Creates an empty index with an allocator for the numbers up to {@code 9999}.
+     *
+     * @return the index
+     */
+    private static StartNumberIndex index() {
+        StartNumberConfig config = new StartNumberConfig();
+        config.maxNumber = 9999;
+        config.leaseSeconds = 300;
+        return new StartNumberIndex(new StartNumberAllocator(config));
+    }
+    
+    /**
+     * Creates a participant with an id.
+     *
+     * @param id
+     *         the id of the participant
+     * @param name
+     *         the name of the participant
+     * @param number
+     *         the start number, can be {@code null}
+     * @return the participant
+     */
+    private static ImmutablePerson participant(int id, String name, Integer number) {
+        ImmutablePerson participant = new ImmutablePerson(name, LocalDate.of(1980, 5, 17)).withId(id);
+        return number != null ? participant.withNumber(number) : participant;
+    }
+}
@@ -0,0 +1,69 @@
+package trekkingtracker.persistence;
+
+import org.junit.jupiter.api.Test;
+import trekkingtracker.data.PersonImpl;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BackupManagerTest {
+    
+    @Test
+    void retentionAndRestore() throws Exception {
+        Path directory = Files.createTempDirectory("backups");
+        Path dataFile = directory.resolve("participant_data.dat");
+        Path catalogue = directory.resolve("participant_data.backups");
+        try {
+            Files.write(directory.resolve("participant_data.dat.bak1"), dataWith(1)); // left by a former version
+            BackupManager manager = new BackupManager(dataFile, catalogue, 2, "gzip");
+            for (int records = 2; records <= 3; records++) {
+                Files.write(dataFile, dataWith(records));
+                assertTrue(manager.backup().isPresent());
+            }
+            manager.close();
+            
+            BackupManager reopened = new BackupManager(dataFile, catalogue, 2, "gzip");
+            List<Backup> backups = reopened.list();
+            assertEquals(Arrays.asList(2, 3), backups.stream().map(Backup::getId).collect(Collectors.toList()));
+            assertEquals(Arrays.asList(2L, 3L), backups.stream()
+                                                       .map(Backup::getRecordCount)
+                                                       .collect(Collectors.toList()));
+            assertTrue(backups.stream().allMatch(Backup::isCompressed));
+            try (Stream<Path> files = Files.list(directory)) {
+                assertEquals(Arrays.asList("participant_data.backups", "participant_data.dat.bak2.gz",
+                        "participant_data.dat.bak3.gz"), files.map(f -> f.getFileName().toString())
+                                                              .sorted()
+                                                              .collect(Collectors.toList()));
+            }
+            Files.write(dataFile, dataWith(4));
+            assertEquals(4, reopened.restore(2).map(Backup::getId).orElse(-1)); // data file kept, backup 2 evicted
+            assertArrayEquals(dataWith(2), Files.readAllBytes(dataFile));
+            reopened.close();
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+                    Files.delete(file);
+            }
+        }
+    }
+    
+    private static byte[] dataWith(int records) {
+        RecordCodec codec = new TextRecordCodec();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(codec.header());
+        for (int i = 0; i < records; i++)
+            out.writeBytes(codec.encode(new PersonImpl("P" + i, LocalDate.of(1990, 1, 1 + i))));
+        return out.toByteArray();
+    }
+}
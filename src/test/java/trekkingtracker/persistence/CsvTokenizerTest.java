@@ -0,0 +1,45 @@
+package trekkingtracker.persistence;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CsvTokenizerTest {
+    
+    @Test
+    void quotedFields() throws Exception {
+        String table = "Name,Id,Birthday\r\n"
+                + "# a comment, \"not quoted\n"
+                + "\"Doe, Jane\",1,1985-03-12\r\n"
+                + "\r\n"
+                + "\"Jim \"\"The Dog\"\" Smith\",2,\"1950-01-01\"\n"
+                + "\"Multi\nLine\",3,2000-02-02\r"
+                + "Short,4";
+        List<List<String>> rows = new ArrayList<>();
+        try (CsvTokenizer tokenizer = new CsvTokenizer(new StringReader(table), ",", 1, 3)) {
+            tokenizer.nextRow();
+            while (tokenizer.nextRow())
+                rows.add(Arrays.asList(tokenizer.get(0), tokenizer.get(1)));
+        }
+        assertEquals(Arrays.asList(Arrays.asList("Doe, Jane", "1985-03-12"),
+                Arrays.asList("Jim \"The Dog\" Smith", "1950-01-01"), Arrays.asList("Multi\nLine", "2000-02-02"),
+                Arrays.asList("Short", null)), rows);
+    }
+    
+    @Test
+    void literalSeparator() throws Exception {
+        List<String> values = new ArrayList<>();
+        try (CsvTokenizer tokenizer = new CsvTokenizer(new StringReader("a||b|c||d||\n||e"), "||", 3, 2)) {
+            while (tokenizer.nextRow()) {
+                values.add(tokenizer.get(0));
+                values.add(tokenizer.get(1));
+            }
+        }
+        assertEquals(Arrays.asList("d", "b|c", null, "e"), values);
+    }
+}
@@ -0,0 +1,214 @@
+package trekkingtracker.persistence;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DataLogTest {
+    
+    @Test
+    void groupCommit() throws Exception {
+        Path file = Files.createTempFile("data_log", ".dat");
+        try {
+            List<CompletableFuture<Void>> written = new ArrayList<>();
+            DataLog log = new DataLog(file, Durability.GROUP, 50, 0, new WriteStatistics());
+            StringBuilder expected = new StringBuilder();
+            for (int i = 0; i < 100; i++) {
+                String line = "\nline " + i;
+                expected.append(line);
+                written.add(log.append(line.getBytes(StandardCharsets.UTF_8)));
+            }
+            log.close(); // must write everything still pending
+            written.forEach(CompletableFuture::join);
+            assertEquals(expected.toString(), new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+    
+    @Test
+    void directWrite() throws Exception {
+        Path file = Files.createTempFile("data_log", ".dat");
+        try {
+            Files.write(file, "header".getBytes(StandardCharsets.UTF_8));
+            try (DataLog log = new DataLog(file, Durability.SYNC, 0, 0, new WriteStatistics())) {
+                assertTrue(log.append("\nfirst".getBytes(StandardCharsets.UTF_8)).isDone());
+                log.append("\nsecond".getBytes(StandardCharsets.UTF_8)).join();
+            }
+            assertEquals("header\nfirst\nsecond", new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+    
+    @Test
+    void asyncWrite() throws Exception {
+        Path file = Files.createTempFile("data_log", ".dat");
+        try {
+            WriteStatistics statistics = new WriteStatistics();
+            DataLog log = new DataLog(file, Durability.ASYNC, 0, 2, statistics);
+            StringBuilder expected = new StringBuilder();
+            for (int i = 0; i < 100; i++) {
+                String line = "\nline " + i;
+                expected.append(line);
+                log.append(line.getBytes(StandardCharsets.UTF_8)); // blocks while the queue is full
+                assertTrue(statistics.getQueueDepth() <= 2);
+            }
+            log.close(); // must drain the queue
+            assertEquals(expected.toString(), new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+            assertEquals(100, statistics.getWriteCount());
+            assertEquals(0, statistics.getQueueDepth());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+    
+    @Test
+    void failedWriteBreaksLog() throws Exception {
+        Path file = Files.createTempFile("data_log", ".dat");
+        try {
+            FailingChannel channel = new FailingChannel(
+                    FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+            try (DataLog log = new DataLog(channel, Durability.SYNC, 0, 0, new WriteStatistics())) {
+                log.append("\nfirst".getBytes(StandardCharsets.UTF_8)).join();
+                channel.failForce = true;
+                CompletableFuture<Void> failed = log.append("\nsecond".getBytes(StandardCharsets.UTF_8));
+                assertThrows(CompletionException.class, failed::join);
+                // the bytes written before the failure are gone, nothing is appended behind them
+                assertEquals("\nfirst", new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+                assertEquals(6, log.length());
+                channel.failForce = false;
+                CompletableFuture<Void> rejected = log.append("\nthird".getBytes(StandardCharsets.UTF_8));
+                assertThrows(CompletionException.class, rejected::join);
+                assertEquals(6, log.length());
+            }
+            assertEquals("\nfirst", new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+    
+    /** Delegates to a {@code FileChannel}, but fails to force the written data on demand */
+    private static final class FailingChannel extends FileChannel {
+        /** The channel to delegate to */
+        private final FileChannel delegate;
+        /** Tells whether forcing the data fails */
+        private volatile boolean failForce = false;
+        
+        /**
+         * Creates a new {@code FailingChannel}.
+         *
+         * @param delegate
+         *         the channel to delegate to
+         */
+        private FailingChannel(FileChannel delegate) {
+            this.delegate = delegate;
+        }
+        
+        @Override
+        public void force(boolean metaData) throws IOException {
+            if (failForce) throw new IOException("Device is gone.");
+            delegate.force(metaData);
+        }
+        
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return delegate.read(dst);
+        }
+        
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return delegate.read(dsts, offset, length);
+        }
+        
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return delegate.write(src);
+        }
+        
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return delegate.write(srcs, offset, length);
+        }
+        
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+        
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+        
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+        
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            delegate.truncate(size);
+            return this;
+        }
+        
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return delegate.transferTo(position, count, target);
+        }
+        
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return delegate.transferFrom(src, position, count);
+        }
+        
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return delegate.read(dst, position);
+        }
+        
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return delegate.write(src, position);
+        }
+        
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return delegate.map(mode, position, size);
+        }
+        
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return delegate.lock(position, size, shared);
+        }
+        
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return delegate.tryLock(position, size, shared);
+        }
+        
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package trekkingtracker.persistence;
+
+import org.junit.jupiter.api.Test;
+import trekkingtracker.config.StoreConfig;
+import trekkingtracker.data.Person;
+import trekkingtracker.data.PersonImpl;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FlatFileParticipantRepositoryTest extends ParticipantRepositoryContract {
+    
+    @Override
+    ParticipantRepository create(Path directory, StoreConfig config) {
+        return new FlatFileParticipantRepository(directory, config);
+    }
+    
+    @Test
+    void snapshotAndTailAreLoaded() throws Exception {
+        PersonImpl jane = participant("Jane", Person.Category.TOUR, 1);
+        PersonImpl jim = participant("Jim", Person.Category.DOGHIKE, 2);
+        PersonImpl janeStarted = new PersonImpl(jane);
+        janeStarted.setStart(Instant.parse("2020-06-01T08:00:00Z"));
+        PersonImpl jimStarted = new PersonImpl(jim);
+        jimStarted.setStart(Instant.parse("2020-06-01T08:05:00Z"));
+        PersonImpl janeFinished = new PersonImpl(janeStarted);
+        janeFinished.setStop(Instant.parse("2020-06-01T17:30:00Z"));
+        janeFinished.setFinished(true);
+        Path dataFile = directory.resolve(FlatFileParticipantRepository.DATA_FILE);
+        Path snapshotFile = directory.resolve(FlatFileParticipantRepository.SNAPSHOT_FILE);
+        Path savedSnapshot = directory.resolve("saved.snapshot");
+        
+        try (ParticipantRepository repository = create(directory, config())) {
+            repository.load();
+            repository.replaceAll(Arrays.asList(jane, jim));
+            repository.append(Collections.singletonList(janeStarted)).join();
+        }
+        Files.copy(snapshotFile, savedSnapshot);
+        try (ParticipantRepository repository = create(directory, config())) {
+            repository.load();
+            repository.append(Collections.singletonList(jimStarted)).join();
+            repository.append(Collections.singletonList(janeFinished)).join();
+        }
+        // the former snapshot only covers the beginning of the data file, the rest has to be replayed
+        Files.move(savedSnapshot, snapshotFile, StandardCopyOption.REPLACE_EXISTING);
+        try (SnapshotStore snapshots = new SnapshotStore(snapshotFile, dataFile)) {
+            Optional<SnapshotStore.Snapshot> snapshot = snapshots.read(Files.size(dataFile), LogFormat.of(dataFile));
+            assertTrue(snapshot.isPresent());
+            assertTrue(snapshot.get().offset < Files.size(dataFile));
+        }
+        try (ParticipantRepository reopened = create(directory, config())) {
+            assertLines(Arrays.asList(janeFinished, jimStarted), reopened.load());
+            assertEquals(encode(Arrays.asList(jane, janeStarted, janeFinished)), encode(reopened.getHistory(jane)));
+            assertEquals(encode(Arrays.asList(jim, jimStarted)), encode(reopened.getHistory(jim)));
+            assertLines(Collections.singletonList(jimStarted), reopened.findByStartNumber(2).map(
+                    Collections::singletonList).orElse(Collections.emptyList()));
+        }
+    }
+    
+    @Test
+    void snapshotOfAnotherDataFileIsIgnored() throws Exception {
+        PersonImpl jane = participant("Jane", Person.Category.TOUR, 1);
+        PersonImpl janeStarted = new PersonImpl(jane);
+        janeStarted.setStart(Instant.parse("2020-06-01T08:00:00Z"));
+        List<Person> others = new ArrayList<>();
+        for (int i = 0; i < 20; i++)
+            others.add(participant("P" + i, Person.Category.DOGHIKE, 100 + i));
+        Path dataFile = directory.resolve(FlatFileParticipantRepository.DATA_FILE);
+        Path snapshotFile = directory.resolve(FlatFileParticipantRepository.SNAPSHOT_FILE);
+        Path otherDirectory = Files.createDirectory(directory.resolve("other"));
+        Path otherDataFile = otherDirectory.resolve(FlatFileParticipantRepository.DATA_FILE);
+        
+        try (ParticipantRepository repository = create(directory, config())) {
+            repository.load();
+            repository.replaceAll(Collections.singletonList(jane));
+            repository.append(Collections.singletonList(janeStarted)).join();
+        }
+        try (ParticipantRepository other = create(otherDirectory, config())) {
+            other.load();
+            other.replaceAll(others);
+        }
+        // the snapshot still fits into the swapped data file, but it doesn't belong to it
+        assertTrue(Files.exists(snapshotFile));
+        assertTrue(Files.size(otherDataFile) > Files.size(dataFile));
+        Files.copy(otherDataFile, dataFile, StandardCopyOption.REPLACE_EXISTING);
+        try (SnapshotStore snapshots = new SnapshotStore(snapshotFile, dataFile)) {
+            assertFalse(snapshots.read(Files.size(dataFile), LogFormat.of(dataFile)).isPresent());
+        }
+        try (ParticipantRepository reopened = create(directory, config())) {
+            assertLines(others, reopened.load());
+            assertFalse(reopened.contains(jane));
+        }
+    }
+}
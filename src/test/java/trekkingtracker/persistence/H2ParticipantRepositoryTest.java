@@ -0,0 +1,13 @@
+package trekkingtracker.persistence;
+
+import trekkingtracker.config.StoreConfig;
+
+import java.nio.file.Path;
+
+class H2ParticipantRepositoryTest extends ParticipantRepositoryContract {
+    
+    @Override
+    ParticipantRepository create(Path directory, StoreConfig config) {
+        return new H2ParticipantRepository(directory, config);
+    }
+}
@@ -0,0 +1,79 @@
+package trekkingtracker.persistence;
+
+import org.openjdk.jmh.annotations.*;
+import trekkingtracker.data.Person;
+import trekkingtracker.data.PersonImpl;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the lookups of the indexed participant model with a scan of the plain history list, for growing histories.
+ * Run it with {@code org.openjdk.jmh.Main ParticipantHistoryBenchmark} on the test class path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParticipantHistoryBenchmark {
+    /** The number of participant states in the history, ten per participant */
+    @Param({"1000", "10000", "100000"})
+    public int states;
+    /** The indexed history */
+    private ParticipantHistory history;
+    /** The same history as plain list */
+    private List<Person> list;
+    /** A participant which is not part of the history, the worst case for the list */
+    private Person unknown;
+    
+    /** Creates the history, each participant gets a start number and nine further updates. */
+    @Setup
+    public void setUp() {
+        history = new ParticipantHistory();
+        list = new ArrayList<>(states);
+        int participants = states / 10;
+        for (int update = 0; update < 10; update++) {
+            for (int i = 0; i < participants; i++) {
+                PersonImpl state = new PersonImpl("Participant " + i, LocalDate.of(1960 + i % 40, 1, 1));
+                state.setNumber(i);
+                history.add(state, list.size(), 1);
+                list.add(state);
+            }
+        }
+        unknown = new PersonImpl("Newcomer", LocalDate.of(2000, 1, 1));
+    }
+    
+    /**
+     * Checks for a duplicate participant with the index.
+     *
+     * @return whether the participant exists
+     */
+    @Benchmark
+    public boolean indexedContains() {
+        return history.contains(unknown);
+    }
+    
+    /**
+     * Checks for a duplicate participant by scanning the history.
+     *
+     * @return whether the participant exists
+     */
+    @Benchmark
+    public boolean scannedContains() {
+        return list.contains(unknown);
+    }
+    
+    /**
+     * Looks up the holder of a start number with the index.
+     *
+     * @return the holder of the start number
+     */
+    @Benchmark
+    public Person indexedStartNumber() {
+        return history.getByStartNumber(states / 20).orElse(null);
+    }
+}
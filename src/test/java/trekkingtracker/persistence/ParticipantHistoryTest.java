@@ -0,0 +1,49 @@
+package trekkingtracker.persistence;
+
+import org.junit.jupiter.api.Test;
+import trekkingtracker.data.Person;
+import trekkingtracker.data.PersonImpl;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParticipantHistoryTest {
+    
+    @Test
+    void latestStatesAndStartNumbers() {
+        PersonImpl jane = new PersonImpl("Jane Doe", LocalDate.of(1985, 3, 12));
+        PersonImpl jim = new PersonImpl("Jim", LocalDate.of(1950, 1, 1));
+        PersonImpl janeWith7 = new PersonImpl(jane);
+        janeWith7.setNumber(7);
+        PersonImpl janeWith8 = new PersonImpl(jane);
+        janeWith8.setNumber(8);
+        PersonImpl jimWith8 = new PersonImpl(jim);
+        jimWith8.setNumber(8);
+        PersonImpl jimWith7 = new PersonImpl(jim);
+        jimWith7.setNumber(7);
+        
+        ParticipantHistory history = new ParticipantHistory();
+        List<Person> states = Arrays.asList(jane, jim, janeWith7, janeWith8);
+        for (int i = 0; i < states.size(); i++)
+            assertEquals(Optional.empty(), history.add(states.get(i), 10 * i, 10));
+        assertEquals(Optional.of(janeWith8), history.add(jimWith8, 40, 10));
+        assertEquals(Optional.empty(), history.add(jimWith7, 50, 10)); // 7 has been released by Jane
+        
+        assertTrue(history.contains(new PersonImpl("Jim", LocalDate.of(1950, 1, 1))));
+        assertSame(jimWith7, history.getLatest(jim).orElse(null));
+        ParticipantHistory.Versions janesVersions = history.getVersions(jane).orElseThrow();
+        assertEquals(3, janesVersions.getCount());
+        assertEquals(Arrays.asList(0L, 20L, 30L), Arrays.asList(janesVersions.getPosition(0),
+                janesVersions.getPosition(1), janesVersions.getPosition(2)));
+        assertSame(janeWith8, janesVersions.getLatest());
+        assertSame(jimWith7, history.getByStartNumber(7).orElse(null));
+        assertSame(janeWith8, history.getByStartNumber(8).orElse(null));
+        assertEquals(6, history.size());
+    }
+}
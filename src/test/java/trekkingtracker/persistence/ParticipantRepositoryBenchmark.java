@@ -0,0 +1,171 @@
+package trekkingtracker.persistence;
+
+import org.openjdk.jmh.annotations.*;
+import trekkingtracker.config.StoreConfig;
+import trekkingtracker.data.Person;
+import trekkingtracker.data.PersonImpl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compares the repository backends on the same workload: single and batched updates, lookups by start number and
+ * category and reading a participant's history. Run it with {@code org.openjdk.jmh.Main ParticipantRepositoryBenchmark}
+ * on the test class path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParticipantRepositoryBenchmark {
+    /** The number of participants in the repository */
+    private static final int PARTICIPANTS = 1000;
+    /** The number of states written by {@link #appendBatch()} */
+    private static final int BATCH_SIZE = 100;
+    /** The backend to be measured, see {@link StoreConfig#backend} */
+    @Param({"file", "h2"})
+    public String backend;
+    /** The durability of the writes, see {@link StoreConfig#durability} */
+    @Param({"sync", "async"})
+    public String durability;
+    /** Holds the data */
+    private Path directory;
+    /** The repository to be measured */
+    private ParticipantRepository repository;
+    /** The latest state of each participant */
+    private List<PersonImpl> participants;
+    /** The number of updates written so far, used to pick the participant to be updated next */
+    private int updates = 0;
+    
+    /**
+     * Creates a repository holding the participants, each one with a start number and a start time.
+     *
+     * @throws IOException
+     *         if the repository cannot be created
+     */
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("repository-benchmark");
+        StoreConfig config = ParticipantRepositoryContract.config();
+        config.backend = backend;
+        config.durability = durability;
+        config.writeQueueCapacity = 1000;
+        config.snapshotInterval = 200;
+        repository = ParticipantRepository.create(directory, config);
+        repository.load();
+        participants = new ArrayList<>(PARTICIPANTS);
+        for (int i = 0; i < PARTICIPANTS; i++) {
+            PersonImpl participant = new PersonImpl("Participant " + i, LocalDate.of(1960 + i % 40, 1, 1));
+            participant.setCategory(Person.Category.values()[i % Person.Category.values().length]);
+            participant.setNumber(i);
+            participants.add(participant);
+        }
+        repository.replaceAll(new ArrayList<>(participants));
+        List<Person> started = new ArrayList<>(PARTICIPANTS);
+        for (PersonImpl participant : participants) {
+            participant.setStart(Instant.ofEpochSecond(1_600_000_000L));
+            started.add(new PersonImpl(participant));
+        }
+        repository.append(started).join();
+    }
+    
+    /**
+     * Closes the repository and deletes its data.
+     *
+     * @throws IOException
+     *         if closing or deleting fails
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        repository.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+                Files.delete(file);
+        }
+    }
+    
+    /**
+     * Creates the next update of a participant.
+     *
+     * @return the new state
+     */
+    private Person nextUpdate() {
+        PersonImpl participant = participants.get(updates++ % PARTICIPANTS);
+        participant.setStop(Instant.ofEpochSecond(1_600_000_000L + updates));
+        return new PersonImpl(participant);
+    }
+    
+    /**
+     * Writes a single update.
+     *
+     * @throws IOException
+     *         if writing fails
+     */
+    @Benchmark
+    public void appendSingle() throws IOException {
+        repository.append(Collections.singletonList(nextUpdate())).join();
+    }
+    
+    /**
+     * Writes {@link #BATCH_SIZE} updates at once.
+     *
+     * @throws IOException
+     *         if writing fails
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void appendBatch() throws IOException {
+        List<Person> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++)
+            batch.add(nextUpdate());
+        repository.append(batch).join();
+    }
+    
+    /**
+     * Looks up the holder of a start number.
+     *
+     * @return the holder of the start number
+     * @throws IOException
+     *         if the lookup fails
+     */
+    @Benchmark
+    public Person findByStartNumber() throws IOException {
+        return repository.findByStartNumber(PARTICIPANTS / 2).orElse(null);
+    }
+    
+    /**
+     * Looks up all participants of a category.
+     *
+     * @return the participants of the category
+     * @throws IOException
+     *         if the lookup fails
+     */
+    @Benchmark
+    public List<Person> findByCategory() throws IOException {
+        return repository.findByCategory(Person.Category.DOGHIKE);
+    }
+    
+    /**
+     * Reads all states of a participant.
+     *
+     * @return the states of the participant
+     * @throws IOException
+     *         if reading fails
+     */
+    @Benchmark
+    public List<Person> getHistory() throws IOException {
+        return repository.getHistory(participants.get(PARTICIPANTS / 3));
+    }
+}
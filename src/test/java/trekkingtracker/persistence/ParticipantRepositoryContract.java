@@ -0,0 +1,219 @@
+package trekkingtracker.persistence;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import trekkingtracker.config.StoreConfig;
+import trekkingtracker.data.ImmutablePerson;
+import trekkingtracker.data.Person;
+import trekkingtracker.data.PersonImpl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** The behaviour every {@link ParticipantRepository} must show, run against each implementation by its subclass. */
+abstract class ParticipantRepositoryContract {
+    Path directory;
+    
+    /**
+     * Creates the repository to be tested.
+     *
+     * @param directory
+     *         the directory to keep the data in
+     * @param config
+     *         tells how the data shall be stored
+     * @return the new repository
+     */
+    abstract ParticipantRepository create(Path directory, StoreConfig config);
+    
+    static StoreConfig config() {
+        StoreConfig config = new StoreConfig();
+        config.durability = "sync";
+        config.groupCommitWindowMillis = 10;
+        config.writeQueueCapacity = 100;
+        config.snapshotInterval = 2;
+        config.format = "binary";
+        config.backupRetention = 0;
+        config.backupCompression = "none";
+        return config;
+    }
+    
+    static PersonImpl participant(String name, Person.Category category, Integer number) {
+        PersonImpl participant = new PersonImpl(name, LocalDate.of(1980, 5, 17));
+        participant.setCategory(category);
+        if (number != null) participant.setNumber(number);
+        return participant;
+    }
+    
+    @BeforeEach
+    void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("repository");
+    }
+    
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+                Files.delete(file);
+        }
+    }
+    
+    @Test
+    void emptyWithoutData() throws Exception {
+        try (ParticipantRepository repository = create(directory, config())) {
+            assertTrue(repository.load().isEmpty());
+            assertTrue(repository.getBackups().isEmpty());
+        }
+    }
+    
+    @Test
+    void lookupsAndHistory() throws Exception {
+        PersonImpl jane = participant("Jane", Person.Category.TOUR, 1);
+        PersonImpl jim = participant("Jim", Person.Category.DOGHIKE, null);
+        PersonImpl joe = participant("Joe", Person.Category.TOUR, 3);
+        PersonImpl janeStarted = new PersonImpl(jane);
+        janeStarted.setStart(Instant.parse("2020-06-01T08:00:00.123Z"));
+        PersonImpl jimNumbered = new PersonImpl(jim);
+        jimNumbered.setNumber(2);
+        PersonImpl janeFinished = new PersonImpl(janeStarted);
+        janeFinished.setStop(Instant.parse("2020-06-01T17:30:00Z"));
+        janeFinished.setFinished(true);
+        
+        try (ParticipantRepository repository = create(directory, config())) {
+            repository.load();
+            repository.replaceAll(Arrays.asList(jane, jim, joe));
+            repository.append(Arrays.asList(janeStarted, jimNumbered)).join();
+            repository.append(Collections.singletonList(janeFinished)).join();
+            
+            assertTrue(repository.contains(jim));
+            assertFalse(repository.contains(participant("Jack", Person.Category.TOUR, null)));
+            assertLines(Collections.singletonList(janeFinished), repository.findLatest(jane).map(
+                    Collections::singletonList).orElse(Collections.emptyList()));
+            assertLines(Collections.singletonList(jimNumbered), repository.findByStartNumber(2).map(
+                    Collections::singletonList).orElse(Collections.emptyList()));
+            assertFalse(repository.findByStartNumber(4).isPresent());
+            assertLines(Arrays.asList(janeFinished, joe), repository.findByCategory(Person.Category.TOUR));
+            assertEquals(encode(Arrays.asList(jane, janeStarted, janeFinished)), encode(repository.getHistory(jane)));
+        }
+        try (ParticipantRepository reopened = create(directory, config())) {
+            assertLines(Arrays.asList(janeFinished, jimNumbered, joe), reopened.load());
+            assertEquals(encode(Arrays.asList(jim, jimNumbered)), encode(reopened.getHistory(jim)));
+            assertTrue(reopened.getHistory(participant("Jack", Person.Category.TOUR, null)).isEmpty());
+        }
+    }
+    
+    @Test
+    void backups() throws Exception {
+        List<Person> first = Arrays.asList(participant("Jane", Person.Category.TOUR, 1), participant("Jim",
+                Person.Category.DOGHIKE, 2));
+        List<Person> second = Collections.singletonList(participant("Joe", Person.Category.TOUR, 3));
+        try (ParticipantRepository repository = create(directory, config())) {
+            repository.load();
+            repository.replaceAll(first);
+            repository.replaceAll(second);
+            List<Backup> backups = repository.getBackups();
+            assertEquals(1, backups.size());
+            
+            repository.restoreBackup(backups.get(0).getId());
+            assertLines(first, repository.load());
+            assertEquals(2, repository.getBackups().size());
+            assertLines(Collections.singletonList(first.get(1)), repository.findByStartNumber(2).map(
+                    Collections::singletonList).orElse(Collections.emptyList()));
+        }
+    }
+    
+    @Test
+    void failedReplaceKeepsData() throws Exception {
+        List<Person> stored = Arrays.asList(participant("Jane", Person.Category.TOUR, 1), participant("Jim",
+                Person.Category.DOGHIKE, 2));
+        try (ParticipantRepository repository = create(directory, config())) {
+            repository.load();
+            repository.replaceAll(stored);
+            assertThrows(NullPointerException.class, () -> repository.replaceAll(null));
+            assertLines(stored, repository.findAllLatest());
+            assertTrue(repository.getBackups().isEmpty());
+        }
+        try (ParticipantRepository reopened = create(directory, config())) {
+            assertLines(stored, reopened.load());
+        }
+    }
+    
+    @Test
+    void stableIdsAndRenames() throws Exception {
+        Map<String, Person> loaded = new HashMap<>();
+        try (ParticipantRepository repository = create(directory, config())) {
+            repository.load();
+            repository.replaceAll(Arrays.asList(participant("Jane", Person.Category.TOUR, 1), participant("Jim",
+                    Person.Category.DOGHIKE, 2)));
+            for (Person participant : repository.load())
+                loaded.put(participant.getName(), participant);
+            int janeId = loaded.get("Jane").getId();
+            int jimId = loaded.get("Jim").getId();
+            assertNotEquals(Person.NO_ID, janeId);
+            assertNotEquals(Person.NO_ID, jimId);
+            assertNotEquals(janeId, jimId);
+            assertEquals(janeId, repository.identify(participant("Jane", Person.Category.TOUR, 1)).getId());
+            Person jack = repository.identify(participant("Jack", Person.Category.TOUR, null));
+            assertFalse(Arrays.asList(Person.NO_ID, janeId, jimId).contains(jack.getId()));
+            assertEquals(jack.getId(), repository.identify(participant("Jack", Person.Category.TOUR, null)).getId());
+            
+            Person janet = ImmutablePerson.of(loaded.get("Jane")).withName("Janet");
+            repository.append(Collections.singletonList(janet)).join();
+            assertEquals(Arrays.asList("Jane", "Janet"), repository.getHistory(loaded.get("Jane"))
+                                                                    .stream()
+                                                                    .map(Person::getName)
+                                                                    .collect(Collectors.toList()));
+            assertEquals(janeId, repository.findLatest(participant("Janet", Person.Category.TOUR, 1))
+                                           .map(Person::getId)
+                                           .orElse(Person.NO_ID));
+            assertFalse(repository.contains(participant("Jane", Person.Category.TOUR, 1)));
+        }
+        try (ParticipantRepository reopened = create(directory, config())) {
+            Map<String, Integer> ids = reopened.load().stream().collect(Collectors.toMap(Person::getName,
+                    Person::getId));
+            assertEquals(loaded.get("Jane").getId(), (int) ids.get("Janet"));
+            assertEquals(loaded.get("Jim").getId(), (int) ids.get("Jim"));
+            assertEquals(2, reopened.getHistory(loaded.get("Jane")).size());
+        }
+    }
+    
+    @Test
+    void preparedHistoryIgnoresLaterStates() throws Exception {
+        PersonImpl jane = participant("Jane", Person.Category.TOUR, 1);
+        try (ParticipantRepository repository = create(directory, config())) {
+            repository.load();
+            repository.replaceAll(Collections.singletonList(jane));
+            Person janeNumbered = ImmutablePerson.of(repository.findLatest(jane).orElseThrow()).withNumber(2);
+            repository.append(Collections.singletonList(janeNumbered)).join();
+            ParticipantRepository.HistoryReader reader = repository.prepareHistory(jane);
+            // read while further states with new names are appended
+            Person janet = ImmutablePerson.of(janeNumbered).withName("Janet");
+            repository.append(Collections.singletonList(janet)).join();
+            repository.append(Collections.singletonList(participant("Jack", Person.Category.TOUR, 3))).join();
+            assertEquals(Arrays.asList(1, 2), reader.read().stream().map(Person::getNumber).collect(
+                    Collectors.toList()));
+            assertEquals(3, repository.getHistory(janet).size());
+        }
+    }
+    
+    static void assertLines(List<? extends Person> expected, List<? extends Person> actual) {
+        assertEquals(encode(expected).stream().sorted().collect(Collectors.toList()),
+                encode(actual).stream().sorted().collect(Collectors.toList()));
+    }
+    
+    static List<String> encode(List<? extends Person> states) {
+        return states.stream().map(TextRecordCodec::encodeLine).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,211 @@
+package trekkingtracker.persistence;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import trekkingtracker.config.StoreConfig;
+import trekkingtracker.config.TableConfig;
+import trekkingtracker.data.ImmutablePerson;
+import trekkingtracker.data.Person;
+import trekkingtracker.data.PersonImpl;
+import trekkingtracker.event.participantevents.ParticipantBatchUpdateEvent;
+import trekkingtracker.event.participantevents.ParticipantEvent;
+import trekkingtracker.event.participantevents.ParticipantInputChangedEvent;
+import trekkingtracker.event.participantevents.ParticipantUpdateEvent;
+import trekkingtracker.event.publishing.BasicEventPublisher;
+import trekkingtracker.event.requestevents.ParticipantBatchUpdateRequest;
+import trekkingtracker.event.requestevents.ParticipantEventRequest;
+import trekkingtracker.event.requestevents.ParticipantInputChangeRequest;
+import trekkingtracker.event.requestevents.ParticipantInputResetRequest;
+import trekkingtracker.event.requestevents.ParticipantUpdateRequest;
+import trekkingtracker.event.requestevents.RequestOutcome;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParticipantStoreTest {
+    private Path directory;
+    private ParticipantRepository repository;
+    private BasicEventPublisher publisher;
+    private final List<ParticipantEvent> events = new ArrayList<>();
+    private final List<Person> participants = new ArrayList<>();
+    private ParticipantStore store;
+    
+    @BeforeEach
+    void createStore() throws Exception {
+        directory = Files.createTempDirectory("store");
+        StoreConfig config = ParticipantRepositoryContract.config();
+        repository = new FlatFileParticipantRepository(directory, config);
+        publisher = new BasicEventPublisher();
+        publisher.addEventListener(ParticipantEvent.class, events::add);
+        for (int i = 0; i < 3; i++)
+            participants.add(ParticipantRepositoryContract.participant("P" + i, Person.Category.TOUR, i));
+        store = new ParticipantStore(new TableConfig(), config, repository, publisher, LocalDate::parse);
+    }
+    
+    @AfterEach
+    void closeStore() throws Exception {
+        try {
+            store.close();
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+                    Files.delete(file);
+            }
+        }
+    }
+    
+    @Test
+    void batchUpdateIsAtomic() throws Exception {
+        store.handle(new ParticipantInputChangeRequest(participants));
+        events.clear();
+        
+        List<ParticipantUpdateRequest> massStart = new ArrayList<>();
+        for (Person participant : participants) {
+            PersonImpl started = new PersonImpl(participant);
+            started.setStart(Instant.parse("2020-06-01T08:00:00Z"));
+            massStart.add(new ParticipantUpdateRequest(participant, started));
+        }
+        store.handle(new ParticipantBatchUpdateRequest(massStart));
+        assertEquals(1, events.size());
+        assertEquals(3, ((ParticipantBatchUpdateEvent) events.get(0)).getUpdates().size());
+        for (Person participant : participants)
+            assertEquals(2, store.getHistory(participant).size());
+        
+        // the second update takes a start number in use, so the first one must not be stored either
+        PersonImpl renumbered = new PersonImpl(participants.get(0));
+        renumbered.setNumber(10);
+        PersonImpl conflicting = new PersonImpl(participants.get(1));
+        conflicting.setNumber(2);
+        store.handle(new ParticipantBatchUpdateRequest(Arrays.asList(new ParticipantUpdateRequest(
+                participants.get(0), renumbered), new ParticipantUpdateRequest(participants.get(1),
+                conflicting))));
+        assertEquals(1, events.size());
+        assertEquals(2, store.getHistory(participants.get(0)).size());
+        assertFalse(repository.findByStartNumber(10).isPresent());
+        
+        // two participants taking the same free number at once
+        PersonImpl first = new PersonImpl(participants.get(0));
+        first.setNumber(20);
+        PersonImpl second = new PersonImpl(participants.get(1));
+        second.setNumber(20);
+        store.handle(new ParticipantBatchUpdateRequest(Arrays.asList(new ParticipantUpdateRequest(
+                participants.get(0), first), new ParticipantUpdateRequest(participants.get(1), second))));
+        assertEquals(1, events.size());
+        assertTrue(store.getHistory(participants.get(1)).stream().noneMatch(p -> p.getNumber() == 20));
+    }
+    
+    @Test
+    void submittedRequestsAreAcknowledged() throws Exception {
+        publisher.addEventListener(ParticipantEventRequest.class, store);
+        assertEquals(RequestOutcome.persisted(), publisher.submit(new ParticipantInputChangeRequest(participants))
+                .join());
+        events.clear();
+        
+        PersonImpl started = new PersonImpl(participants.get(0));
+        started.setStart(Instant.parse("2020-06-01T08:00:00Z"));
+        assertTrue(publisher.submit(new ParticipantUpdateRequest(participants.get(0), started)).join()
+                .isPersisted());
+        assertEquals(1, events.size());
+        
+        // submitting the same start again
+        RequestOutcome duplicate = publisher.submit(new ParticipantUpdateRequest(participants.get(0), started))
+                .join();
+        assertEquals(RequestOutcome.Status.DUPLICATE, duplicate.getStatus());
+        assertEquals(1, events.size());
+        assertEquals(2, store.getHistory(participants.get(0)).size());
+        
+        // a batch skips the participants which are stored already
+        PersonImpl alsoStarted = new PersonImpl(participants.get(1));
+        alsoStarted.setStart(started.getStart());
+        ParticipantUpdateRequest skipped = new ParticipantUpdateRequest(participants.get(0), started);
+        assertTrue(publisher.submit(new ParticipantBatchUpdateRequest(Arrays.asList(skipped,
+                new ParticipantUpdateRequest(participants.get(1), alsoStarted)))).join().isPersisted());
+        assertEquals(RequestOutcome.Status.DUPLICATE, skipped.getAcknowledgement().join().getStatus());
+        assertEquals(1, ((ParticipantBatchUpdateEvent) events.get(1)).getUpdates().size());
+        
+        PersonImpl conflicting = new PersonImpl(participants.get(1));
+        conflicting.setNumber(0);
+        RequestOutcome rejected = publisher.submit(new ParticipantUpdateRequest(participants.get(1),
+                conflicting)).join();
+        assertEquals(RequestOutcome.Status.REJECTED, rejected.getStatus());
+        assertTrue(rejected.getReason().isPresent());
+        
+        // a cancelled request must not be stored anymore
+        PersonImpl stopped = new PersonImpl(started);
+        stopped.setStop(Instant.parse("2020-06-01T12:00:00Z"));
+        ParticipantUpdateRequest cancelled = new ParticipantUpdateRequest(started, stopped);
+        cancelled.getAcknowledgement().cancel(false);
+        publisher.publish(cancelled);
+        assertEquals(2, events.size());
+        assertEquals(2, store.getHistory(participants.get(0)).size());
+    }
+    
+    @Test
+    void rejectedAddsDontTakeIds() throws Exception {
+        store.handle(new ParticipantInputChangeRequest(participants));
+        int maxId = repository.findAllLatest().stream().mapToInt(Person::getId).max().orElse(Person.NO_ID);
+        
+        ParticipantUpdateRequest duplicate = new ParticipantUpdateRequest(null, participants.get(0));
+        store.handle(duplicate);
+        assertEquals(RequestOutcome.Status.DUPLICATE, duplicate.getAcknowledgement().join().getStatus());
+        ParticipantUpdateRequest conflicting = new ParticipantUpdateRequest(null, ParticipantRepositoryContract
+                .participant("Q0", Person.Category.TOUR, 1));
+        store.handle(conflicting);
+        assertEquals(RequestOutcome.Status.REJECTED, conflicting.getAcknowledgement().join().getStatus());
+        
+        ParticipantUpdateRequest added = new ParticipantUpdateRequest(null, ParticipantRepositoryContract
+                .participant("Q1", Person.Category.TOUR, null));
+        store.handle(added);
+        assertTrue(added.getAcknowledgement().join().isPersisted());
+        assertEquals(maxId + 1, ((ParticipantUpdateEvent) events.get(events.size() - 1)).getParticipantId());
+    }
+    
+    @Test
+    void unreadableInitialDataIsRejected() throws Exception {
+        store.handle(new ParticipantInputChangeRequest(participants));
+        events.clear();
+        
+        ParticipantInputResetRequest reset = new ParticipantInputResetRequest(directory.resolve("missing.csv")
+                .toFile(), StandardCharsets.UTF_8);
+        store.handle(reset);
+        assertEquals(RequestOutcome.Status.REJECTED, reset.getAcknowledgement().join().getStatus());
+        assertTrue(events.isEmpty());
+        assertEquals(participants.size(), repository.findAllLatest().size());
+    }
+    
+    @Test
+    void updatesCarryParticipantIds() throws Exception {
+        store.handle(new ParticipantInputChangeRequest(participants));
+        Map<String, Person> input = new HashMap<>();
+        for (Person participant : ((ParticipantInputChangedEvent) events.get(0)).getInputView())
+            input.put(participant.getName(), participant);
+        assertEquals(participants.size(), input.values().stream().map(Person::getId).filter(
+                id -> id != Person.NO_ID).distinct().count());
+        
+        // the participant keeps its id and history when it's renamed
+        Person p0 = input.get("P0");
+        ImmutablePerson renamed = ImmutablePerson.of(p0).withName("Q0");
+        store.handle(new ParticipantUpdateRequest(p0, renamed));
+        assertEquals(p0.getId(), ((ParticipantUpdateEvent) events.get(1)).getParticipantId());
+        assertEquals(2, store.getHistory(renamed).size());
+        
+        // states without id get the one of their participant
+        PersonImpl started = new PersonImpl(participants.get(1));
+        started.setStart(Instant.parse("2020-06-01T08:00:00Z"));
+        store.handle(new ParticipantUpdateRequest(participants.get(1), started));
+        ParticipantUpdateEvent update = (ParticipantUpdateEvent) events.get(2);
+        assertEquals(input.get("P1").getId(), update.getParticipantId());
+        assertEquals(update.getParticipantId(), update.getOldValue().getId());
+    }
+}
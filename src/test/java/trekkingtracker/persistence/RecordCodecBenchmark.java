@@ -0,0 +1,94 @@
+package trekkingtracker.persistence;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import trekkingtracker.data.Person;
+import trekkingtracker.data.PersonImpl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares encoding and decoding of the data file formats. Run it with {@code org.openjdk.jmh.Main
+ * RecordCodecBenchmark} on the test class path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecordCodecBenchmark {
+    /** The format to be benchmarked */
+    @Param({"TEXT", "BINARY"})
+    public LogFormat format;
+    /** The number of participant states in the data file */
+    @Param("10000")
+    public int records;
+    /** The participant states to be encoded */
+    private List<Person> states;
+    /** The encoded data file */
+    private byte[] encoded;
+    
+    /**
+     * Creates the participant states, one start and one stop update per participant, and encodes them.
+     *
+     * @throws IOException
+     *         never
+     */
+    @Setup
+    public void setUp() throws IOException {
+        states = new ArrayList<>(records);
+        Instant start = Instant.parse("2020-06-01T08:00:00Z");
+        for (int i = 0; i < records; i++) {
+            PersonImpl state = new PersonImpl("Participant " + i / 2, LocalDate.of(1960 + i % 40, 1 + i % 12,
+                    1 + i % 28));
+            state.setCategory(Person.Category.values()[i % Person.Category.values().length]);
+            state.setNumber(i / 2);
+            state.setStart(start.plusSeconds(i));
+            if (i % 2 == 1) {
+                state.setStop(start.plusSeconds(3600 + i));
+                state.setFinished(true);
+            }
+            states.add(state);
+        }
+        encoded = encode();
+    }
+    
+    /**
+     * Encodes all participant states into a data file.
+     *
+     * @return the encoded data file
+     * @throws IOException
+     *         never
+     */
+    @Benchmark
+    public byte[] encode() throws IOException {
+        RecordCodec codec = format.newCodec();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(codec.header());
+        for (Person state : states)
+            out.write(codec.encode(state));
+        return out.toByteArray();
+    }
+    
+    /**
+     * Decodes all participant states from the data file.
+     *
+     * @param blackhole
+     *         consumes the decoded states
+     * @throws IOException
+     *         if decoding fails
+     */
+    @Benchmark
+    public void decode(Blackhole blackhole) throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(encoded);
+        LogFormat.detect(data).decode(data, blackhole::consume);
+    }
+}
@@ -0,0 +1,182 @@
+package trekkingtracker.persistence;
+
+import org.junit.jupiter.api.Test;
+import trekkingtracker.data.Person;
+import trekkingtracker.data.PersonImpl;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RecordCodecTest {
+    
+    @Test
+    void roundTrip() throws Exception {
+        PersonImpl registered = new PersonImpl("Jane Doe", LocalDate.of(1985, 3, 12));
+        registered.setId(300);
+        PersonImpl started = new PersonImpl(registered);
+        started.setCategory(Person.Category.DOGHIKE);
+        started.setNumber(-3);
+        started.setStart(Instant.parse("2020-06-01T08:00:00.123Z"));
+        PersonImpl finished = new PersonImpl(started);
+        finished.setNumber(300);
+        finished.setStop(Instant.parse("2020-06-01T17:30:00Z"));
+        finished.setFinished(true);
+        List<Person> states = Arrays.asList(registered, started, finished, new PersonImpl("Jim", LocalDate.of(1950, 1,
+                1)));
+        for (LogFormat format : LogFormat.values()) {
+            RecordCodec codec = format.newCodec();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.write(codec.header());
+            for (Person state : states)
+                out.write(codec.encode(state));
+            
+            ByteBuffer data = ByteBuffer.wrap(out.toByteArray());
+            RecordCodec decoder = LogFormat.detect(data);
+            assertEquals(format, decoder.getFormat());
+            List<Person> decoded = new ArrayList<>();
+            decoder.decode(data, decoded::add);
+            assertEquals(states.size(), decoded.size());
+            for (int i = 0; i < states.size(); i++) {
+                assertEquals(TextRecordCodec.encodeLine(states.get(i)), TextRecordCodec.encodeLine(decoded.get(i)));
+                assertEquals(states.get(i).getId(), decoded.get(i).getId());
+            }
+        }
+    }
+    
+    @Test
+    void continueFromState() throws Exception {
+        RecordCodec codec = new BinaryRecordCodec();
+        codec.encode(new PersonImpl("Jane Doe", LocalDate.of(1985, 3, 12)));
+        // a record referencing the already known name, as it would follow a snapshot
+        PersonImpl update = new PersonImpl("Jane Doe", LocalDate.of(1985, 3, 12));
+        update.setNumber(7);
+        byte[] tail = codec.encode(update);
+        
+        RecordCodec restored = new BinaryRecordCodec();
+        restored.decode(ByteBuffer.wrap(codec.encodeState()), p -> {});
+        List<Person> decoded = new ArrayList<>();
+        restored.decode(ByteBuffer.wrap(tail), decoded::add);
+        assertEquals(1, decoded.size());
+        assertEquals(Integer.valueOf(7), decoded.get(0).getNumber());
+        assertEquals("Jane Doe", decoded.get(0).getName());
+    }
+    
+    @Test
+    void parallelTextDecode() throws Exception {
+        RecordCodec codec = new TextRecordCodec();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(codec.header());
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; out.size() < 2 * TextRecordCodec.PARALLEL_THRESHOLD; i++) {
+            PersonImpl state = new PersonImpl("Participant " + i, LocalDate.of(1980, 1, 1).plusDays(i));
+            state.setNumber(i);
+            expected.add(TextRecordCodec.encodeLine(state));
+            out.write(codec.encode(state));
+            if (i % 100 == 0) out.write("\r\n# comment;;\n".getBytes(StandardCharsets.UTF_8));
+        }
+        
+        List<String> decoded = new ArrayList<>();
+        ByteBuffer data = ByteBuffer.wrap(out.toByteArray());
+        codec.decode(data, p -> decoded.add(TextRecordCodec.encodeLine(p)));
+        assertEquals(expected, decoded);
+        assertEquals(0, data.remaining());
+    }
+    
+    @Test
+    void recordLocations() throws Exception {
+        for (LogFormat format : LogFormat.values()) {
+            RecordCodec codec = format.newCodec();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.writeBytes(codec.header());
+            for (int i = 0; out.size() < 2 * TextRecordCodec.PARALLEL_THRESHOLD; i++) {
+                PersonImpl state = new PersonImpl("Participant " + i % 1000, LocalDate.of(1980, 1, 1).plusDays(i));
+                state.setNumber(i);
+                out.writeBytes(codec.encode(state));
+            }
+            
+            byte[] bytes = out.toByteArray();
+            ByteBuffer data = ByteBuffer.wrap(bytes);
+            RecordCodec decoder = LogFormat.detect(data);
+            List<String> decoded = new ArrayList<>();
+            List<String> located = new ArrayList<>();
+            decoder.decode(data, (state, position, length) -> {
+                decoded.add(TextRecordCodec.encodeLine(state));
+                decoder.decode(ByteBuffer.wrap(bytes, position, length).slice(),
+                        p -> located.add(TextRecordCodec.encodeLine(p)));
+            });
+            assertEquals(decoded, located);
+        }
+    }
+    
+    @Test
+    void splitAtLineBreaks() {
+        ByteBuffer data = ByteBuffer.wrap("a\nbcd\n\nef".getBytes(StandardCharsets.UTF_8));
+        List<String> chunks = new ArrayList<>();
+        for (ByteBuffer chunk : TextRecordCodec.split(data, 3))
+            chunks.add(StandardCharsets.UTF_8.decode(chunk).toString());
+        assertEquals(Arrays.asList("a\nbcd\n", "\nef"), chunks);
+    }
+    
+    @Test
+    void tornTail() throws Exception {
+        for (LogFormat format : LogFormat.values()) {
+            RecordCodec codec = format.newCodec();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.writeBytes(codec.header());
+            for (int i = 0; i < 3; i++)
+                out.writeBytes(codec.encode(new PersonImpl("P" + i, LocalDate.of(1990, 1, 1 + i))));
+            int validLength = out.size();
+            byte[] last = codec.encode(new PersonImpl("P2", LocalDate.of(1990, 1, 3)));
+            out.write(last, 0, last.length - 2);
+            
+            ByteBuffer data = ByteBuffer.wrap(out.toByteArray());
+            List<Person> decoded = new ArrayList<>();
+            LogFormat.detect(data).decode(data, decoded::add);
+            assertEquals(3, decoded.size());
+            assertEquals(validLength, data.position());
+        }
+    }
+    
+    @Test
+    void legacyInvalidLinesAreSkipped() throws Exception {
+        String text = "# Name;Birthday;Category;Number;Start;Stop;Finisher\nP0;1990-01-01;;;;;\nbroken\n"
+                + "P1;1990-01-02;;;;;\nP2;1990-01";
+        ByteBuffer data = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        List<Person> decoded = new ArrayList<>();
+        LogFormat.detect(data).decode(data, decoded::add);
+        assertEquals(2, decoded.size());
+        assertEquals("P1", decoded.get(1).getName());
+        assertEquals(text.lastIndexOf('\n'), data.position());
+    }
+    
+    @Test
+    void parallelCorruptionStopsDecoding() {
+        RecordCodec codec = new TextRecordCodec();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(codec.header());
+        int corruptRecord = 20000;
+        int corruptOffset = -1;
+        for (int i = 0; out.size() < 2 * TextRecordCodec.PARALLEL_THRESHOLD; i++) {
+            byte[] record = codec.encode(new PersonImpl("Participant " + i, LocalDate.of(1980, 1, 1).plusDays(i)));
+            if (i == corruptRecord) {
+                corruptOffset = out.size();
+                record[5] ^= 1;
+            }
+            out.writeBytes(record);
+        }
+        
+        ByteBuffer data = ByteBuffer.wrap(out.toByteArray());
+        List<Person> decoded = new ArrayList<>();
+        codec.decode(data, decoded::add);
+        assertEquals(corruptRecord, decoded.size());
+        assertEquals(corruptOffset, data.position());
+    }
+}